@@ -869,6 +869,9 @@ public class TimetableXMLLoader extends TimetableLoader {
             }
         }
 
+        iProgress.setPhase("Computing domains ...", getModel().variables().size());
+        getModel().computeDomains();
+
         if (getModel().getProperties().getPropertyBoolean("General.PurgeInvalidPlacements", true)) {
             iProgress.setPhase("Purging invalid placements ...", getModel().variables().size());
             for (Lecture lecture : getModel().variables()) {
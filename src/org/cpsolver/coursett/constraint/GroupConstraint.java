@@ -4,8 +4,10 @@ import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.HashSet;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.cpsolver.coursett.Constants;
@@ -121,6 +123,7 @@ public class GroupConstraint extends ConstraintWithContext<Lecture, Placement, G
     private boolean iMaxNHoursADayConsiderDatePatterns = true;
     private int iForwardCheckMaxDepth = 2;
     private int iForwardCheckMaxDomainSize = 1000;
+    private boolean iForwardCheckCache = true;
     private int iNrWorkDays = 5;
     private int iFirstWorkDay = 0;
     
@@ -830,6 +833,7 @@ public class GroupConstraint extends ConstraintWithContext<Lecture, Placement, G
             iPrecedenceConsiderDatePatterns = config.getPropertyBoolean("Precedence.ConsiderDatePatterns", true);
             iForwardCheckMaxDepth = config.getPropertyInt("ForwardCheck.MaxDepth", iForwardCheckMaxDepth);
             iForwardCheckMaxDomainSize = config.getPropertyInt("ForwardCheck.MaxDomainSize", iForwardCheckMaxDomainSize);
+            iForwardCheckCache = config.getPropertyBoolean("ForwardCheck.Cache", iForwardCheckCache);
             iMaxNHoursADayConsiderDatePatterns = config.getPropertyBoolean("MaxNHoursADay.ConsiderDatePatterns", iMaxNHoursADayConsiderDatePatterns);
             iNrWorkDays = (config.getPropertyInt("General.LastWorkDay", 4) - config.getPropertyInt("General.FirstWorkDay", 0) + 1);
             if (iNrWorkDays <= 0) iNrWorkDays += 7;
@@ -967,10 +971,10 @@ public class GroupConstraint extends ConstraintWithContext<Lecture, Placement, G
                 if (iMaxNHoursADayConsiderDatePatterns) {
                     for (BitSet week: ((TimetableModel)getModel()).getWeeks()) {
                         if (!value1.getTimeLocation().shareWeeks(week) && !value2.getTimeLocation().shareWeeks(week)) continue;
-                        if (nrSlotsADay(null, dayCode, week, assignments, null) > getType().getMax()) return false;
+                        if (nrSlotsADay(null, null, dayCode, week, assignments, null) > getType().getMax()) return false;
                     }
                 } else {
-                    if (nrSlotsADay(null, dayCode, null, assignments, null) > getType().getMax()) return false;
+                    if (nrSlotsADay(null, null, dayCode, null, assignments, null) > getType().getMax()) return false;
                 }
             }
         }
@@ -1006,13 +1010,14 @@ public class GroupConstraint extends ConstraintWithContext<Lecture, Placement, G
                 conflicts.add(value);
         }
         if (getType().is(Flag.MAX_HRS_DAY)) {
+            GroupConstraintContext context = getContext(assignment);
             HashMap<Lecture, Placement> assignments = new HashMap<Lecture, Placement>();
             assignments.put(value.variable(), value);
             for (int dayCode: Constants.DAY_CODES) {
                 if (iMaxNHoursADayConsiderDatePatterns) {
                     for (BitSet week: ((TimetableModel)getModel()).getWeeks()) {
                         if (!value.getTimeLocation().shareWeeks(week)) continue;
-                        if (nrSlotsADay(assignment, dayCode, week, assignments, conflicts) > getType().getMax()) {
+                        if (nrSlotsADay(context, assignment, dayCode, week, assignments, conflicts) > getType().getMax()) {
                             List<Placement> adepts = new ArrayList<Placement>();
                             for (Lecture l: variables()) {
                                 if (l.equals(value.variable()) || l.isConstant()) continue;
@@ -1026,11 +1031,11 @@ public class GroupConstraint extends ConstraintWithContext<Lecture, Placement, G
                                 Placement conflict = ToolBox.random(adepts);
                                 adepts.remove(conflict);
                                 conflicts.add(conflict);
-                            } while (nrSlotsADay(assignment, dayCode, week, assignments, conflicts) > getType().getMax());
+                            } while (nrSlotsADay(context, assignment, dayCode, week, assignments, conflicts) > getType().getMax());
                         }
                     }
                 } else {
-                    if (nrSlotsADay(assignment, dayCode, null, assignments, conflicts) > getType().getMax()) {
+                    if (nrSlotsADay(context, assignment, dayCode, null, assignments, conflicts) > getType().getMax()) {
                         List<Placement> adepts = new ArrayList<Placement>();
                         for (Lecture l: variables()) {
                             if (l.equals(value.variable()) || l.isConstant()) continue;
@@ -1044,7 +1049,7 @@ public class GroupConstraint extends ConstraintWithContext<Lecture, Placement, G
                             Placement conflict = ToolBox.random(adepts);
                             adepts.remove(conflict);
                             conflicts.add(conflict);
-                        } while (nrSlotsADay(assignment, dayCode, null, assignments, conflicts) > getType().getMax());
+                        } while (nrSlotsADay(context, assignment, dayCode, null, assignments, conflicts) > getType().getMax());
                     }
                 }
             }
@@ -1055,6 +1060,34 @@ public class GroupConstraint extends ConstraintWithContext<Lecture, Placement, G
     }
     
     public void forwardCheck(Assignment<Lecture, Placement> assignment, Placement value, Set<Placement> conflicts, Set<GroupConstraint> ignore, int depth) {
+        if (depth < 0) return;
+        GroupConstraintContext context = (isForwardCheckCacheable() && !conflicts.contains(value) ? getContext(assignment) : null);
+        if (context != null) {
+            List<Placement> cached = context.getForwardCheckConflicts(value);
+            if (cached != null) {
+                conflicts.addAll(cached);
+                return;
+            }
+        }
+        List<Placement> added = (context == null ? null : new ArrayList<Placement>());
+        boolean[] cacheable = new boolean[] { context != null };
+        forwardCheck(assignment, value, conflicts, ignore, depth, added, cacheable);
+        if (cacheable[0])
+            context.setForwardCheckConflicts(value, added);
+    }
+    
+    /**
+     * True if the results of the forward checking can be cached in the constraint context, i.e., if the pair check does not
+     * depend on the current assignment and ForwardCheck.Cache is true (which is the default). Only results that do not propagate
+     * into other constraints and that do not depend on domains that are computed from the current assignment are cached,
+     * these only depend on the assignments of the variables of this constraint (see {@link GroupConstraintContext#getVersion()}).
+     * @return true if forward checking results can be cached
+     */
+    protected boolean isForwardCheckCacheable() {
+        return iForwardCheckCache && getType().iAssignmentCheck == null;
+    }
+    
+    private void forwardCheck(Assignment<Lecture, Placement> assignment, Placement value, Set<Placement> conflicts, Set<GroupConstraint> ignore, int depth, List<Placement> added, boolean[] cacheable) {
         try {
             if (depth < 0) return;
             ignore.add(this);
@@ -1075,6 +1108,7 @@ public class GroupConstraint extends ConstraintWithContext<Lecture, Placement, G
                         continue;
                     }
                     conflicts.add(current);
+                    if (added != null) added.add(current);
                 }
                 
                 // Look for supporting assignments assignment
@@ -1085,6 +1119,7 @@ public class GroupConstraint extends ConstraintWithContext<Lecture, Placement, G
                     // ignore variables with large domains
                     return;
                 }
+                if (!lecture.isDomainCached()) cacheable[0] = false;
                 List<Placement> values = lecture.values(assignment);
                 if (values.isEmpty()) {
                     // ignore variables with empty domain
@@ -1108,6 +1143,7 @@ public class GroupConstraint extends ConstraintWithContext<Lecture, Placement, G
                 // No supporting assignment -> fail
                 if (nrSupports == 0) {
                     conflicts.add(value); // other class cannot be assigned with this value
+                    if (added != null) added.add(value);
                     return;
                 }
                 // Increase needed size if all supporters are of the same room and in overlapping times
@@ -1117,6 +1153,7 @@ public class GroupConstraint extends ConstraintWithContext<Lecture, Placement, G
 
                 // Only one supporter -> propagate the new assignment over other hard constraints of the lecture
                 if (nrSupports == 1) {
+                    cacheable[0] = false;
                     for (Constraint<Lecture, Placement> other: lecture.hardConstraints()) {
                         if (other instanceof WeakeningConstraint) continue;
                         if (other instanceof GroupConstraint) {
@@ -1140,6 +1177,7 @@ public class GroupConstraint extends ConstraintWithContext<Lecture, Placement, G
             if (canShareRoom() && neededSize > value.getRoomSize()) {
                 // room is too small to fit all meet with classes
                 conflicts.add(value);
+                if (added != null) added.add(value);
             }
             
         } finally {
@@ -1167,17 +1205,18 @@ public class GroupConstraint extends ConstraintWithContext<Lecture, Placement, G
                 return true;
         }
         if (getType().is(Flag.MAX_HRS_DAY)) {
+            GroupConstraintContext context = getContext(assignment);
             HashMap<Lecture, Placement> assignments = new HashMap<Lecture, Placement>();
             assignments.put(value.variable(), value);
             for (int dayCode: Constants.DAY_CODES) {
                 if (iMaxNHoursADayConsiderDatePatterns) {
                     for (BitSet week: ((TimetableModel)getModel()).getWeeks()) {
                         if (!value.getTimeLocation().shareWeeks(week)) continue;
-                        if (nrSlotsADay(assignment, dayCode, week, assignments, null) > getType().getMax())
+                        if (nrSlotsADay(context, assignment, dayCode, week, assignments, null) > getType().getMax())
                             return true;
                     }
                 } else {
-                    if (nrSlotsADay(assignment, dayCode, null, assignments, null) > getType().getMax()) return true;
+                    if (nrSlotsADay(context, assignment, dayCode, null, assignments, null) > getType().getMax()) return true;
                 }
             }
         }
@@ -1188,6 +1227,20 @@ public class GroupConstraint extends ConstraintWithContext<Lecture, Placement, G
     }
     
     public boolean forwardCheck(Assignment<Lecture, Placement> assignment, Placement value, Set<GroupConstraint> ignore, int depth) {
+        if (depth < 0) return true;
+        GroupConstraintContext context = (isForwardCheckCacheable() ? getContext(assignment) : null);
+        if (context != null) {
+            Boolean cached = context.getForwardCheck(value);
+            if (cached != null) return cached;
+        }
+        boolean[] cacheable = new boolean[] { context != null };
+        boolean ret = forwardCheck(assignment, value, ignore, depth, cacheable);
+        if (cacheable[0])
+            context.setForwardCheck(value, ret);
+        return ret;
+    }
+    
+    private boolean forwardCheck(Assignment<Lecture, Placement> assignment, Placement value, Set<GroupConstraint> ignore, int depth, boolean[] cacheable) {
         try {
             if (depth < 0) return true;
             ignore.add(this);
@@ -1216,12 +1269,13 @@ public class GroupConstraint extends ConstraintWithContext<Lecture, Placement, G
                     // ignore variables with large domains
                     return true;
                 }
+                if (!lecture.isDomainCached()) cacheable[0] = false;
                 List<Placement> values = lecture.values(assignment);
                 if (values.isEmpty()) {
                     // ignore variables with empty domain
                     return true;
                 }
-                for (Placement other: lecture.values(assignment)) {
+                for (Placement other: values) {
                     if (nrSupports < 2) {
                         if (isSatisfiedPair(assignment, value, other)) {
                             if (support == null) support = other;
@@ -1247,6 +1301,7 @@ public class GroupConstraint extends ConstraintWithContext<Lecture, Placement, G
 
                 // Only one supporter -> propagate the new assignment over other hard constraints of the lecture
                 if (nrSupports == 1) {
+                    cacheable[0] = false;
                     for (Constraint<Lecture, Placement> other: lecture.hardConstraints()) {
                         if (other instanceof WeakeningConstraint) continue;
                         if (other instanceof GroupConstraint) {
@@ -1288,6 +1343,11 @@ public class GroupConstraint extends ConstraintWithContext<Lecture, Placement, G
      * @return current preference
      */
     public int getCurrentPreference(Assignment<Lecture, Placement> assignment) {
+        if (isHard()) return 0; // no preference
+        return getCurrentPreference(assignment, getType().is(Flag.MAX_HRS_DAY) ? getContext(assignment) : null);
+    }
+    
+    private int getCurrentPreference(Assignment<Lecture, Placement> assignment, GroupConstraintContext context) {
         if (isHard()) return 0; // no preference
         if (countAssignedVariables(assignment) < 2) return - Math.abs(iPreference); // not enough variable
         if (getType().is(Flag.MAX_HRS_DAY)) { // max hours a day
@@ -1295,9 +1355,9 @@ public class GroupConstraint extends ConstraintWithContext<Lecture, Placement, G
             for (int dayCode: Constants.DAY_CODES) {
                 if (iMaxNHoursADayConsiderDatePatterns) {
                     for (BitSet week: ((TimetableModel)getModel()).getWeeks())
-                        over += Math.max(0, nrSlotsADay(assignment, dayCode, week, null, null) - getType().getMax());
+                        over += Math.max(0, nrSlotsADay(context, assignment, dayCode, week, null, null) - getType().getMax());
                 } else {
-                    over += Math.max(0, nrSlotsADay(assignment, dayCode, null, null, null) - getType().getMax());
+                    over += Math.max(0, nrSlotsADay(context, assignment, dayCode, null, null, null) - getType().getMax());
                 }
             }
             return (over > 0 ? Math.abs(iPreference) * over / 12 : - Math.abs(iPreference));
@@ -1331,6 +1391,7 @@ public class GroupConstraint extends ConstraintWithContext<Lecture, Placement, G
         if (isHard()) return 0; // no preference
         if (countAssignedVariables(assignment) + (assignment.getValue(placement.variable()) == null ? 1 : 0) < 2) return 0; // not enough variable
         if (getType().is(Flag.MAX_HRS_DAY)) {
+            GroupConstraintContext context = getContext(assignment);
             HashMap<Lecture, Placement> assignments = new HashMap<Lecture, Placement>();
             assignments.put(placement.variable(), placement);
             HashMap<Lecture, Placement> unassignments = new HashMap<Lecture, Placement>();
@@ -1340,12 +1401,12 @@ public class GroupConstraint extends ConstraintWithContext<Lecture, Placement, G
             for (int dayCode: Constants.DAY_CODES) {
                 if (iMaxNHoursADayConsiderDatePatterns) {
                     for (BitSet week: ((TimetableModel)getModel()).getWeeks()) {
-                        after += Math.max(0, nrSlotsADay(assignment, dayCode, week, assignments, null) - getType().getMax());
-                        before += Math.max(0, nrSlotsADay(assignment, dayCode, week, unassignments, null) - getType().getMax());
+                        after += Math.max(0, nrSlotsADay(context, assignment, dayCode, week, assignments, null) - getType().getMax());
+                        before += Math.max(0, nrSlotsADay(context, assignment, dayCode, week, unassignments, null) - getType().getMax());
                     }
                 } else {
-                    after += Math.max(0, nrSlotsADay(assignment, dayCode, null, assignments, null) - getType().getMax());
-                    before += Math.max(0, nrSlotsADay(assignment, dayCode, null, unassignments, null) - getType().getMax());
+                    after += Math.max(0, nrSlotsADay(context, assignment, dayCode, null, assignments, null) - getType().getMax());
+                    before += Math.max(0, nrSlotsADay(context, assignment, dayCode, null, unassignments, null) - getType().getMax());
                 }
             }
             return (after > 0 ? Math.abs(iPreference) * after / 12 : - Math.abs(iPreference)) - (before > 0 ? Math.abs(iPreference) * before / 12 : - Math.abs(iPreference));
@@ -1452,7 +1513,7 @@ public class GroupConstraint extends ConstraintWithContext<Lecture, Placement, G
                 if (a && b) return t1.getStartSlot() + t1.getLength() <= t2.getStartSlot(); // same day: check times
             }
         }
-        return t1.getStartSlots().nextElement() + t1.getLength() <= t2.getStartSlots().nextElement();
+        return t1.getFirstStartSlot() + t1.getLength() <= t2.getFirstStartSlot();
     }
 
     private boolean isBackToBackDays(TimeLocation t1, TimeLocation t2) {
@@ -1821,7 +1882,18 @@ public class GroupConstraint extends ConstraintWithContext<Lecture, Placement, G
         return getType().is(Flag.CAN_SHARE_ROOM);
     }
     
-    private int nrSlotsADay(Assignment<Lecture, Placement> assignment, int dayCode, BitSet week, HashMap<Lecture, Placement> assignments, Set<Placement> conflicts) {
+    private int nrSlotsADay(GroupConstraintContext context, Assignment<Lecture, Placement> assignment, int dayCode, BitSet week, HashMap<Lecture, Placement> assignments, Set<Placement> conflicts) {
+        if (context != null && assignment != null && (assignments == null || assignments.size() <= 1)) {
+            // use the slot histograms of the context
+            Lecture lecture = null;
+            Placement placement = null;
+            if (assignments != null && !assignments.isEmpty()) {
+                Map.Entry<Lecture, Placement> entry = assignments.entrySet().iterator().next();
+                lecture = entry.getKey(); placement = entry.getValue();
+            }
+            int nrSlots = context.nrSlotsADay(dayCode, week, lecture, placement, conflicts);
+            if (nrSlots >= 0) return nrSlots;
+        }
         Set<Integer> slots = new HashSet<Integer>();
         for (Lecture lecture: variables()) {
             Placement placement = null;
@@ -1850,31 +1922,208 @@ public class GroupConstraint extends ConstraintWithContext<Lecture, Placement, G
         return new GroupConstraintContext(assignment);
     }
 
+    /**
+     * Group constraint context. Besides the current preference of the constraint, it keeps a version that is incremented with
+     * each assignment change of a variable of the constraint, the cached results of the forward checking that are dropped when
+     * the version changes and, for the MAX_HRS_DAY constraints, the number of classes using each time slot of each day (and
+     * each week when MaxNHoursADay.ConsiderDatePatterns is true).
+     */
     public class GroupConstraintContext implements AssignmentConstraintContext<Lecture, Placement> {
         private int iLastPreference = 0;
+        private long iVersion = 0;
+        private long iForwardCheckVersion = 0;
+        private Map<Placement, Boolean> iForwardChecks = null;
+        private Map<Placement, List<Placement>> iForwardCheckConflicts = null;
+        private Map<Lecture, Placement> iPlacements = null;
+        private List<BitSet> iWeeks = null;
+        private Map<BitSet, Integer> iWeekIndexes = null;
+        private int[][] iSlots = null;
+        private int[] iNrSlots = null;
         
         public GroupConstraintContext(Assignment<Lecture, Placement> assignment) {
+            if (getType().is(Flag.MAX_HRS_DAY)) {
+                iPlacements = new HashMap<Lecture, Placement>();
+                if (iMaxNHoursADayConsiderDatePatterns) {
+                    iWeeks = ((TimetableModel)getModel()).getWeeks();
+                    iWeekIndexes = new IdentityHashMap<BitSet, Integer>();
+                    for (int i = 0; i < iWeeks.size(); i++)
+                        iWeekIndexes.put(iWeeks.get(i), i);
+                }
+                iSlots = new int[Constants.DAY_CODES.length * (iWeeks == null ? 1 : iWeeks.size())][];
+                iNrSlots = new int[iSlots.length];
+                for (Lecture lecture: variables()) {
+                    Placement placement = assignment.getValue(lecture);
+                    if (placement != null) {
+                        iPlacements.put(lecture, placement);
+                        updateSlots(placement, 1);
+                    }
+                }
+            }
             updateCriterion(assignment);
         }
 
         @Override
         public void assigned(Assignment<Lecture, Placement> assignment, Placement value) {
+            iVersion ++;
+            if (iPlacements != null) {
+                Placement previous = iPlacements.put(value.variable(), value);
+                if (previous != null) updateSlots(previous, -1);
+                updateSlots(value, 1);
+            }
             updateCriterion(assignment);
         }
 
         @Override
         public void unassigned(Assignment<Lecture, Placement> assignment, Placement value) {
+            iVersion ++;
+            if (iPlacements != null) {
+                Placement previous = iPlacements.remove(value.variable());
+                if (previous != null) updateSlots(previous, -1);
+            }
             updateCriterion(assignment);
         }
         
         private void updateCriterion(Assignment<Lecture, Placement> assignment) {
             if (!isHard()) {
                 getModel().getCriterion(DistributionPreferences.class).inc(assignment, -iLastPreference);
-                iLastPreference = getCurrentPreference(assignment) + Math.abs(iPreference);
+                iLastPreference = getCurrentPreference(assignment, this) + Math.abs(iPreference);
                 getModel().getCriterion(DistributionPreferences.class).inc(assignment, iLastPreference);
             }
         }
         
         public int getPreference() { return iLastPreference; }
+        
+        /**
+         * Version of the context, incremented with each assignment change of a variable of the constraint
+         * @return current version
+         */
+        public long getVersion() { return iVersion; }
+        
+        private void checkVersion() {
+            if (iForwardCheckVersion != iVersion) {
+                iForwardChecks = null; iForwardCheckConflicts = null;
+                iForwardCheckVersion = iVersion;
+            }
+        }
+        
+        /**
+         * Cached result of {@link GroupConstraint#forwardCheck(Assignment, Placement, Set, int)}
+         * @param placement a placement
+         * @return true if consistent, null if not cached or changed since computed
+         */
+        public synchronized Boolean getForwardCheck(Placement placement) {
+            checkVersion();
+            return (iForwardChecks == null ? null : iForwardChecks.get(placement));
+        }
+        
+        /**
+         * Cache result of {@link GroupConstraint#forwardCheck(Assignment, Placement, Set, int)}
+         * @param placement a placement
+         * @param consistent result of the forward check
+         */
+        public synchronized void setForwardCheck(Placement placement, boolean consistent) {
+            checkVersion();
+            if (iForwardChecks == null) iForwardChecks = new HashMap<Placement, Boolean>();
+            iForwardChecks.put(placement, consistent);
+        }
+        
+        /**
+         * Cached conflicts of {@link GroupConstraint#forwardCheck(Assignment, Placement, Set, Set, int)}
+         * @param placement a placement
+         * @return conflicting placements, null if not cached or changed since computed
+         */
+        public synchronized List<Placement> getForwardCheckConflicts(Placement placement) {
+            checkVersion();
+            return (iForwardCheckConflicts == null ? null : iForwardCheckConflicts.get(placement));
+        }
+        
+        /**
+         * Cache conflicts of {@link GroupConstraint#forwardCheck(Assignment, Placement, Set, Set, int)}
+         * @param placement a placement
+         * @param conflicts conflicting placements
+         */
+        public synchronized void setForwardCheckConflicts(Placement placement, List<Placement> conflicts) {
+            checkVersion();
+            if (iForwardCheckConflicts == null) iForwardCheckConflicts = new HashMap<Placement, List<Placement>>();
+            iForwardCheckConflicts.put(placement, conflicts);
+        }
+        
+        private int getSlotsIndex(int dayCode, BitSet week) {
+            int day = -1;
+            for (int i = 0; i < Constants.DAY_CODES.length; i++)
+                if (Constants.DAY_CODES[i] == dayCode) { day = i; break; }
+            if (day < 0) return -1;
+            if (iWeeks == null) return (week == null ? day : -1);
+            if (week == null) return -1;
+            Integer index = iWeekIndexes.get(week);
+            if (index == null) index = iWeeks.indexOf(week);
+            return (index < 0 ? -1 : day * iWeeks.size() + index);
+        }
+        
+        private void updateSlots(Placement placement, int delta) {
+            TimeLocation t = placement.getTimeLocation();
+            if (t == null) return;
+            int start = t.getStartSlot(), end = Math.min(Constants.SLOTS_PER_DAY, t.getStartSlot() + t.getLength());
+            for (int day = 0; day < Constants.DAY_CODES.length; day++) {
+                if ((t.getDayCode() & Constants.DAY_CODES[day]) == 0) continue;
+                for (int w = 0; w < (iWeeks == null ? 1 : iWeeks.size()); w++) {
+                    if (iWeeks != null && !t.shareWeeks(iWeeks.get(w))) continue;
+                    int index = (iWeeks == null ? day : day * iWeeks.size() + w);
+                    if (iSlots[index] == null) iSlots[index] = new int[Constants.SLOTS_PER_DAY];
+                    int[] slots = iSlots[index];
+                    for (int i = start; i < end; i++) {
+                        if (delta > 0 && slots[i]++ == 0) iNrSlots[index] ++;
+                        if (delta < 0 && --slots[i] == 0) iNrSlots[index] --;
+                    }
+                }
+            }
+        }
+        
+        /**
+         * Number of slots of the given day (and week) that are used by the classes of the constraint
+         * @param dayCode day code (one of {@link Constants#DAY_CODES})
+         * @param week week (when MaxNHoursADay.ConsiderDatePatterns is true), null otherwise
+         * @param lecture a class whose placement is to be changed, can be null
+         * @param placement new placement of the class, null if the class is to be unassigned
+         * @param conflicts placements that are to be ignored, can be null
+         * @return number of slots used, -1 if the slots are not tracked for the given day and week
+         */
+        public int nrSlotsADay(int dayCode, BitSet week, Lecture lecture, Placement placement, Set<Placement> conflicts) {
+            if (iSlots == null) return -1;
+            int index = getSlotsIndex(dayCode, week);
+            if (index < 0) return -1;
+            int[] slots = iSlots[index];
+            int[] delta = null;
+            int ret = iNrSlots[index];
+            if (lecture != null) {
+                Placement current = iPlacements.get(lecture);
+                if (current != null) delta = updateDelta(delta, current, dayCode, week, -1);
+                if (placement != null && (conflicts == null || !conflicts.contains(placement)))
+                    delta = updateDelta(delta, placement, dayCode, week, 1);
+            }
+            if (conflicts != null)
+                for (Placement conflict: conflicts) {
+                    if (conflict.variable().equals(lecture)) continue;
+                    if (conflict.equals(iPlacements.get(conflict.variable())))
+                        delta = updateDelta(delta, conflict, dayCode, week, -1);
+                }
+            if (delta != null)
+                for (int i = 0; i < Constants.SLOTS_PER_DAY; i++) {
+                    if (delta[i] == 0) continue;
+                    int before = (slots == null ? 0 : slots[i]);
+                    if (before > 0 && before + delta[i] <= 0) ret --;
+                    if (before <= 0 && before + delta[i] > 0) ret ++;
+                }
+            return ret;
+        }
+        
+        private int[] updateDelta(int[] delta, Placement placement, int dayCode, BitSet week, int change) {
+            TimeLocation t = placement.getTimeLocation();
+            if (t == null || (t.getDayCode() & dayCode) == 0 || (week != null && !t.shareWeeks(week))) return delta;
+            if (delta == null) delta = new int[Constants.SLOTS_PER_DAY];
+            for (int i = t.getStartSlot(); i < Math.min(Constants.SLOTS_PER_DAY, t.getStartSlot() + t.getLength()); i++)
+                delta[i] += change;
+            return delta;
+        }
     }
 }
@@ -2,7 +2,6 @@ package org.cpsolver.coursett.constraint;
 
 import java.util.ArrayList;
 import java.util.BitSet;
-import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -145,11 +144,12 @@ public class InstructorConstraint extends ConstraintWithContext<Lecture, Placeme
         for (int i = 0; i < available.length; i++)
             available[i] = null;
         for (Placement p: iUnavailabilities) {
-            for (Enumeration<Integer> e = p.getTimeLocation().getSlots(); e.hasMoreElements();) {
-                int slot = e.nextElement();
-                if (available[slot] == null)
-                    available[slot] = new ArrayList<Placement>(1);
-                available[slot].add(p);
+            for (int start: p.getTimeLocation().getStartSlotsArray()) {
+                for (int slot = start; slot < start + p.getTimeLocation().getLength(); slot++) {
+                    if (available[slot] == null)
+                        available[slot] = new ArrayList<Placement>(1);
+                    available[slot].add(p);
+                }
             }
         }
         return available;
@@ -216,22 +216,24 @@ public class InstructorConstraint extends ConstraintWithContext<Lecture, Placeme
         BitSet weekCode = placement.getTimeLocation().getWeekCode();
         InstructorConstraintContext context = getContext(assignment);
 
-        for (Enumeration<Integer> e = placement.getTimeLocation().getSlots(); e.hasMoreElements();) {
-            int slot = e.nextElement();
-            for (Placement p : context.getPlacements(slot)) {
-                if (!p.equals(current) && p.getTimeLocation().shareWeeks(weekCode)) {
-                    if (p.canShareRooms(placement) && p.sameRooms(placement))
-                        continue;
-                    conflicts.add(p);
+        if (context.isOccupied(placement.getTimeLocation())) {
+            for (int start: placement.getTimeLocation().getStartSlotsArray()) {
+                for (int slot = start; slot < start + placement.getTimeLocation().getLength(); slot++) {
+                    for (Placement p : context.getPlacements(slot)) {
+                        if (!p.equals(current) && p.getTimeLocation().shareWeeks(weekCode)) {
+                            if (p.canShareRooms(placement) && p.sameRooms(placement))
+                                continue;
+                            conflicts.add(p);
+                        }
+                    }
                 }
             }
         }
         if (!iIgnoreDistances) {
-            for (Enumeration<Integer> e = placement.getTimeLocation().getStartSlots(); e.hasMoreElements();) {
-                int startSlot = e.nextElement();
+            for (int startSlot: placement.getTimeLocation().getStartSlotsArray()) {
 
                 int prevSlot = startSlot - 1;
-                if (prevSlot >= 0 && (prevSlot / Constants.SLOTS_PER_DAY) == (startSlot / Constants.SLOTS_PER_DAY)) {
+                if (prevSlot >= 0 && (prevSlot / Constants.SLOTS_PER_DAY) == (startSlot / Constants.SLOTS_PER_DAY) && context.isOccupied(prevSlot)) {
                     for (Placement c : context.getPlacements(prevSlot, placement)) {
                         if (lecture.equals(c.variable())) continue;
                         if (c.canShareRooms(placement) && c.sameRooms(placement)) continue;
@@ -240,7 +242,7 @@ public class InstructorConstraint extends ConstraintWithContext<Lecture, Placeme
                     }
                 }
                 int nextSlot = startSlot + placement.getTimeLocation().getLength();
-                if ((nextSlot / Constants.SLOTS_PER_DAY) == (startSlot / Constants.SLOTS_PER_DAY)) {
+                if ((nextSlot / Constants.SLOTS_PER_DAY) == (startSlot / Constants.SLOTS_PER_DAY) && context.isOccupied(nextSlot)) {
                     for (Placement c : context.getPlacements(nextSlot, placement)) {
                         if (lecture.equals(c.variable())) continue;
                         if (c.canShareRooms(placement) && c.sameRooms(placement)) continue;
@@ -276,22 +278,24 @@ public class InstructorConstraint extends ConstraintWithContext<Lecture, Placeme
         BitSet weekCode = placement.getTimeLocation().getWeekCode();
         InstructorConstraintContext context = getContext(assignment);
         
-        for (Enumeration<Integer> e = placement.getTimeLocation().getSlots(); e.hasMoreElements();) {
-            int slot = e.nextElement();
-            for (Placement p : context.getPlacements(slot)) {
-                if (!p.equals(current) && p.getTimeLocation().shareWeeks(weekCode)) {
-                    if (p.canShareRooms(placement) && p.sameRooms(placement))
-                        continue;
-                    return true;
+        if (context.isOccupied(placement.getTimeLocation())) {
+            for (int start: placement.getTimeLocation().getStartSlotsArray()) {
+                for (int slot = start; slot < start + placement.getTimeLocation().getLength(); slot++) {
+                    for (Placement p : context.getPlacements(slot)) {
+                        if (!p.equals(current) && p.getTimeLocation().shareWeeks(weekCode)) {
+                            if (p.canShareRooms(placement) && p.sameRooms(placement))
+                                continue;
+                            return true;
+                        }
+                    }
                 }
             }
         }
         if (!iIgnoreDistances) {
-            for (Enumeration<Integer> e = placement.getTimeLocation().getStartSlots(); e.hasMoreElements();) {
-                int startSlot = e.nextElement();
+            for (int startSlot: placement.getTimeLocation().getStartSlotsArray()) {
                 
                 int prevSlot = startSlot - 1;
-                if (prevSlot >= 0 && (prevSlot / Constants.SLOTS_PER_DAY) == (startSlot / Constants.SLOTS_PER_DAY)) {
+                if (prevSlot >= 0 && (prevSlot / Constants.SLOTS_PER_DAY) == (startSlot / Constants.SLOTS_PER_DAY) && context.isOccupied(prevSlot)) {
                     for (Placement c : context.getPlacements(prevSlot, placement)) {
                         if (lecture.equals(c.variable())) continue;
                         if (c.canShareRooms(placement) && c.sameRooms(placement)) continue;
@@ -300,7 +304,7 @@ public class InstructorConstraint extends ConstraintWithContext<Lecture, Placeme
                     }
                 }
                 int nextSlot = startSlot + placement.getTimeLocation().getLength();
-                if ((nextSlot / Constants.SLOTS_PER_DAY) == (startSlot / Constants.SLOTS_PER_DAY)) {
+                if ((nextSlot / Constants.SLOTS_PER_DAY) == (startSlot / Constants.SLOTS_PER_DAY) && context.isOccupied(nextSlot)) {
                     for (Placement c : context.getPlacements(nextSlot, placement)) {
                         if (lecture.equals(c.variable())) continue;
                         if (c.canShareRooms(placement) && c.sameRooms(placement)) continue;
@@ -356,8 +360,7 @@ public class InstructorConstraint extends ConstraintWithContext<Lecture, Placeme
         HashSet<Placement> checked = new HashSet<Placement>();
         InstructorConstraintContext context = getContext(assignment);
         
-        for (Enumeration<Integer> e = placement.getTimeLocation().getStartSlots(); e.hasMoreElements();) {
-            int startSlot = e.nextElement();
+        for (int startSlot: placement.getTimeLocation().getStartSlotsArray()) {
             
             int prevSlot = startSlot - 1;
             if (prevSlot >= 0 && (prevSlot / Constants.SLOTS_PER_DAY) == (startSlot / Constants.SLOTS_PER_DAY)) {
@@ -452,8 +455,7 @@ public class InstructorConstraint extends ConstraintWithContext<Lecture, Placeme
         HashSet<Placement> checked = new HashSet<Placement>();
         InstructorConstraintContext context = getContext(assignment);
         
-        for (Enumeration<Integer> e = placement.getTimeLocation().getStartSlots(); e.hasMoreElements();) {
-            int startSlot = e.nextElement();
+        for (int startSlot: placement.getTimeLocation().getStartSlotsArray()) {
             
             int prevSlot = startSlot - 1;
             if (prevSlot >= 0 && (prevSlot / Constants.SLOTS_PER_DAY) == (startSlot / Constants.SLOTS_PER_DAY)) {
@@ -573,6 +575,7 @@ public class InstructorConstraint extends ConstraintWithContext<Lecture, Placeme
     public class InstructorConstraintContext implements AssignmentConstraintContext<Lecture, Placement> {
         public int iPreference = 0;
         protected List<Placement>[] iResource;
+        protected long[] iOccupied = TimeLocation.createSlotOccupancy();
  
         @SuppressWarnings("unchecked")
         public InstructorConstraintContext(Assignment<Lecture, Placement> assignment) {
@@ -582,9 +585,11 @@ public class InstructorConstraint extends ConstraintWithContext<Lecture, Placeme
             for (Lecture lecture: variables()) {
                 Placement placement = assignment.getValue(lecture);
                 if (placement != null) {
-                    for (Enumeration<Integer> e = placement.getTimeLocation().getSlots(); e.hasMoreElements();) {
-                        int slot = e.nextElement();
-                        iResource[slot].add(placement);
+                    for (int start: placement.getTimeLocation().getStartSlotsArray()) {
+                        for (int slot = start; slot < start + placement.getTimeLocation().getLength(); slot++) {
+                            iResource[slot].add(placement);
+                            TimeLocation.setSlotOccupied(iOccupied, slot, true);
+                        }
                     }
                 }
             }
@@ -594,9 +599,11 @@ public class InstructorConstraint extends ConstraintWithContext<Lecture, Placeme
 
         @Override
         public void assigned(Assignment<Lecture, Placement> assignment, Placement placement) {
-            for (Enumeration<Integer> e = placement.getTimeLocation().getSlots(); e.hasMoreElements();) {
-                int slot = e.nextElement();
-                iResource[slot].add(placement);
+            for (int start: placement.getTimeLocation().getStartSlotsArray()) {
+                for (int slot = start; slot < start + placement.getTimeLocation().getLength(); slot++) {
+                    iResource[slot].add(placement);
+                    TimeLocation.setSlotOccupied(iOccupied, slot, true);
+                }
             }
             getModel().getCriterion(BackToBackInstructorPreferences.class).inc(assignment, -iPreference);
             iPreference = countPreference(assignment);
@@ -605,9 +612,11 @@ public class InstructorConstraint extends ConstraintWithContext<Lecture, Placeme
         
         @Override
         public void unassigned(Assignment<Lecture, Placement> assignment, Placement placement) {
-            for (Enumeration<Integer> e = placement.getTimeLocation().getSlots(); e.hasMoreElements();) {
-                int slot = e.nextElement();
-                iResource[slot].remove(placement);
+            for (int start: placement.getTimeLocation().getStartSlotsArray()) {
+                for (int slot = start; slot < start + placement.getTimeLocation().getLength(); slot++) {
+                    if (iResource[slot].remove(placement) && iResource[slot].isEmpty())
+                        TimeLocation.setSlotOccupied(iOccupied, slot, false);
+                }
             }
             getModel().getCriterion(BackToBackInstructorPreferences.class).inc(assignment, -iPreference);
             iPreference = countPreference(assignment);
@@ -616,6 +625,21 @@ public class InstructorConstraint extends ConstraintWithContext<Lecture, Placeme
         
         public List<Placement> getPlacements(int slot) { return iResource[slot]; }
         
+        /**
+         * Check whether any of the slots of the given time is used by some placement (weeks are ignored). This is a
+         * quick check (using a slot occupancy bit set) that avoids walking through the slots when the instructor is free.
+         * @param time a time location
+         * @return true if there is a placement in at least one slot of the given time
+         */
+        public boolean isOccupied(TimeLocation time) { return time.hasSlot(iOccupied); }
+        
+        /**
+         * Check whether the given slot is used by some placement (weeks are ignored)
+         * @param slot a slot of the week
+         * @return true if there is a placement in the given slot
+         */
+        public boolean isOccupied(int slot) { return TimeLocation.isSlotOccupied(iOccupied, slot); }
+        
         public Placement getPlacement(int slot, int day) {
             for (Placement p : iResource[slot]) {
                 if (p.getTimeLocation().hasDay(day))
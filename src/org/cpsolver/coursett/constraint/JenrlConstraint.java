@@ -153,6 +153,8 @@ public class JenrlConstraint extends BinaryConstraintWithContext<Lecture, Placem
         if (student.getInstructor() != null && (student.getInstructor().variables().contains(first()) ||
                 student.getInstructor().variables().contains(second())))
             iInstructors.add(student);
+        if (getModel() instanceof TimetableModel)
+            ((TimetableModel)getModel()).jenrlChanged(this);
         for (Criterion<Lecture, Placement> criterion: getModel().getCriteria())
             if (criterion instanceof StudentConflict)
                 ((StudentConflict)criterion).incJenrl(assignment, this, jenrlWeight, conflictPriority, student);
@@ -180,6 +182,8 @@ public class JenrlConstraint extends BinaryConstraintWithContext<Lecture, Placem
         if (conflictPriority != null) iPriority -= conflictPriority * jenrlWeight;
         iStudents.remove(student);
         iInstructors.remove(student);
+        if (getModel() instanceof TimetableModel)
+            ((TimetableModel)getModel()).jenrlChanged(this);
         for (Criterion<Lecture, Placement> criterion: getModel().getCriteria())
             if (criterion instanceof StudentConflict)
                 ((StudentConflict)criterion).incJenrl(assignment, this, -jenrlWeight, conflictPriority, student);
@@ -2,7 +2,6 @@ package org.cpsolver.coursett.constraint;
 
 import java.util.ArrayList;
 import java.util.BitSet;
-import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -90,11 +89,12 @@ public class RoomConstraint extends ConstraintWithContext<Lecture, Placement, Ro
             for (int i = 0; i < iAvailable.length; i++)
                 iAvailable[i] = null;
         }
-        for (Enumeration<Integer> e = placement.getTimeLocation().getSlots(); e.hasMoreElements();) {
-            int slot = e.nextElement();
-            if (iAvailable[slot] == null)
-                iAvailable[slot] = new ArrayList<Placement>(1);
-            iAvailable[slot].add(placement);
+        for (int start: placement.getTimeLocation().getStartSlotsArray()) {
+            for (int slot = start; slot < start + placement.getTimeLocation().getLength(); slot++) {
+                if (iAvailable[slot] == null)
+                    iAvailable[slot] = new ArrayList<Placement>(1);
+                iAvailable[slot].add(placement);
+            }
         }
         for (Lecture lecture: variables())
             lecture.clearValueCache();
@@ -110,14 +110,15 @@ public class RoomConstraint extends ConstraintWithContext<Lecture, Placement, Ro
 
     public boolean isAvailable(Lecture lecture, TimeLocation time, Long scheduler) {
         if (iAvailable != null) {
-            for (Enumeration<Integer> e = time.getSlots(); e.hasMoreElements();) {
-                int slot = e.nextElement();
-                if (iAvailable[slot] != null) {
-                    for (Placement p : iAvailable[slot]) {
-                        if (lecture.canShareRoom(p.variable()))
-                            continue;
-                        if (time.shareWeeks(p.getTimeLocation()))
-                            return false;
+            for (int start: time.getStartSlotsArray()) {
+                for (int slot = start; slot < start + time.getLength(); slot++) {
+                    if (iAvailable[slot] != null) {
+                        for (Placement p : iAvailable[slot]) {
+                            if (lecture.canShareRoom(p.variable()))
+                                continue;
+                            if (time.shareWeeks(p.getTimeLocation()))
+                                return false;
+                        }
                     }
                 }
             }
@@ -179,26 +180,29 @@ public class RoomConstraint extends ConstraintWithContext<Lecture, Placement, Ro
         HashSet<Placement> skipPlacements = null;
         BitSet weekCode = placement.getTimeLocation().getWeekCode();
         RoomConstraintContext context = getContext(assignment);
+        if (!context.isOccupied(placement.getTimeLocation()))
+            return;
 
-        for (Enumeration<Integer> e = placement.getTimeLocation().getSlots(); e.hasMoreElements();) {
-            int slot = e.nextElement();
-            for (Placement confPlacement : context.getPlacements(slot)) {
-                if (!confPlacement.getTimeLocation().shareWeeks(weekCode))
-                    continue;
-                if (confPlacement.equals(current))
-                    continue;
-                Lecture confLecture = confPlacement.variable();
-                if (skipPlacements != null && skipPlacements.contains(confPlacement))
-                    continue;
-                if (canShareRoom && confPlacement.canShareRooms(placement)
-                        && confLecture.maxRoomUse() + size <= getCapacity()) {
-                    size += confLecture.maxRoomUse();
-                    if (skipPlacements == null)
-                        skipPlacements = new HashSet<Placement>();
-                    skipPlacements.add(confPlacement);
-                    continue;
+        for (int start: placement.getTimeLocation().getStartSlotsArray()) {
+            for (int slot = start; slot < start + placement.getTimeLocation().getLength(); slot++) {
+                for (Placement confPlacement : context.getPlacements(slot)) {
+                    if (!confPlacement.getTimeLocation().shareWeeks(weekCode))
+                        continue;
+                    if (confPlacement.equals(current))
+                        continue;
+                    Lecture confLecture = confPlacement.variable();
+                    if (skipPlacements != null && skipPlacements.contains(confPlacement))
+                        continue;
+                    if (canShareRoom && confPlacement.canShareRooms(placement)
+                            && confLecture.maxRoomUse() + size <= getCapacity()) {
+                        size += confLecture.maxRoomUse();
+                        if (skipPlacements == null)
+                            skipPlacements = new HashSet<Placement>();
+                        skipPlacements.add(confPlacement);
+                        continue;
+                    }
+                    conflicts.add(confPlacement);
                 }
-                conflicts.add(confPlacement);
             }
         }
     }
@@ -215,25 +219,28 @@ public class RoomConstraint extends ConstraintWithContext<Lecture, Placement, Ro
         HashSet<Placement> skipPlacements = null;
         BitSet weekCode = placement.getTimeLocation().getWeekCode();
         RoomConstraintContext context = getContext(assignment);
+        if (!context.isOccupied(placement.getTimeLocation()))
+            return false;
 
-        for (Enumeration<Integer> e = placement.getTimeLocation().getSlots(); e.hasMoreElements();) {
-            int slot = e.nextElement();
-            for (Placement confPlacement : context.getPlacements(slot)) {
-                if (!confPlacement.getTimeLocation().shareWeeks(weekCode))
-                    continue;
-                if (confPlacement.equals(current))
-                    continue;
-                Lecture confLecture = confPlacement.variable();
-                if (skipPlacements != null && skipPlacements.contains(confPlacement))
-                    continue;
-                if (confPlacement.canShareRooms(placement) && confLecture.maxRoomUse() + size <= getCapacity()) {
-                    size += confLecture.maxRoomUse();
-                    if (skipPlacements == null)
-                        skipPlacements = new HashSet<Placement>();
-                    skipPlacements.add(confPlacement);
-                    continue;
+        for (int start: placement.getTimeLocation().getStartSlotsArray()) {
+            for (int slot = start; slot < start + placement.getTimeLocation().getLength(); slot++) {
+                for (Placement confPlacement : context.getPlacements(slot)) {
+                    if (!confPlacement.getTimeLocation().shareWeeks(weekCode))
+                        continue;
+                    if (confPlacement.equals(current))
+                        continue;
+                    Lecture confLecture = confPlacement.variable();
+                    if (skipPlacements != null && skipPlacements.contains(confPlacement))
+                        continue;
+                    if (confPlacement.canShareRooms(placement) && confLecture.maxRoomUse() + size <= getCapacity()) {
+                        size += confLecture.maxRoomUse();
+                        if (skipPlacements == null)
+                            skipPlacements = new HashSet<Placement>();
+                        skipPlacements.add(confPlacement);
+                        continue;
+                    }
+                    return true;
                 }
-                return true;
             }
         }
         return false;
@@ -332,8 +339,9 @@ public class RoomConstraint extends ConstraintWithContext<Lecture, Placement, Ro
 
     public class RoomConstraintContext implements AssignmentConstraintContext<Lecture, Placement> {
         private List<Placement>[] iResource;
+        private long[] iOccupied = TimeLocation.createSlotOccupancy();
         private int iLastUselessHalfHours = 0;
-        private double iLastBrokenTimePatterns = 0;
+        private int iLastBrokenTimePatterns = 0;
  
         @SuppressWarnings("unchecked")
         public RoomConstraintContext(Assignment<Lecture, Placement> assignment) {
@@ -343,52 +351,83 @@ public class RoomConstraint extends ConstraintWithContext<Lecture, Placement, Ro
             for (Lecture lecture: variables()) {
                 Placement placement = assignment.getValue(lecture);
                 if (placement != null && placement.hasRoomLocation(getResourceId())) {
-                    for (Enumeration<Integer> e = placement.getTimeLocation().getSlots(); e.hasMoreElements();) {
-                        int slot = e.nextElement();
-                        iResource[slot].add(placement);
+                    for (int start: placement.getTimeLocation().getStartSlotsArray()) {
+                        for (int slot = start; slot < start + placement.getTimeLocation().getLength(); slot++) {
+                            iResource[slot].add(placement);
+                            TimeLocation.setSlotOccupied(iOccupied, slot, true);
+                        }
                     }
                 }
             }
             iLastUselessHalfHours = UselessHalfHours.countUselessSlotsHalfHours(this);
             getModel().getCriterion(UselessHalfHours.class).inc(assignment, iLastUselessHalfHours);
-            iLastBrokenTimePatterns = BrokenTimePatterns.countUselessSlotsBrokenTimePatterns(this) / 6.0;
-            getModel().getCriterion(BrokenTimePatterns.class).inc(assignment, iLastBrokenTimePatterns);
+            iLastBrokenTimePatterns = BrokenTimePatterns.countUselessSlotsBrokenTimePatterns(this);
+            getModel().getCriterion(BrokenTimePatterns.class).inc(assignment, iLastBrokenTimePatterns / 6.0);
         }
 
         @Override
         public void assigned(Assignment<Lecture, Placement> assignment, Placement placement) {
             if (!placement.hasRoomLocation(getResourceId()))
                 return;
-            for (Enumeration<Integer> e = placement.getTimeLocation().getSlots(); e.hasMoreElements();) {
-                int slot = e.nextElement();
-                iResource[slot].add(placement);
+            TimeLocation time = placement.getTimeLocation();
+            int uselessHalfHours = UselessHalfHours.countUselessSlotsHalfHours(this, time);
+            int brokenTimePatterns = BrokenTimePatterns.countUselessSlotsBrokenTimePatterns(this, time);
+            for (int start: time.getStartSlotsArray()) {
+                for (int slot = start; slot < start + time.getLength(); slot++) {
+                    iResource[slot].add(placement);
+                    TimeLocation.setSlotOccupied(iOccupied, slot, true);
+                }
             }
-            getModel().getCriterion(UselessHalfHours.class).inc(assignment, -iLastUselessHalfHours);
-            iLastUselessHalfHours = UselessHalfHours.countUselessSlotsHalfHours(this);
-            getModel().getCriterion(UselessHalfHours.class).inc(assignment, iLastUselessHalfHours);
-            getModel().getCriterion(BrokenTimePatterns.class).inc(assignment, -iLastBrokenTimePatterns);
-            iLastBrokenTimePatterns = BrokenTimePatterns.countUselessSlotsBrokenTimePatterns(this) / 6.0;
-            getModel().getCriterion(BrokenTimePatterns.class).inc(assignment, iLastBrokenTimePatterns);
+            updateCriteria(assignment, time, uselessHalfHours, brokenTimePatterns);
         }
         
         @Override
         public void unassigned(Assignment<Lecture, Placement> assignment, Placement placement) {
             if (!placement.hasRoomLocation(getResourceId()))
                 return;
-            for (Enumeration<Integer> e = placement.getTimeLocation().getSlots(); e.hasMoreElements();) {
-                int slot = e.nextElement();
-                iResource[slot].remove(placement);
+            TimeLocation time = placement.getTimeLocation();
+            int uselessHalfHours = UselessHalfHours.countUselessSlotsHalfHours(this, time);
+            int brokenTimePatterns = BrokenTimePatterns.countUselessSlotsBrokenTimePatterns(this, time);
+            for (int start: time.getStartSlotsArray()) {
+                for (int slot = start; slot < start + time.getLength(); slot++) {
+                    if (iResource[slot].remove(placement) && iResource[slot].isEmpty())
+                        TimeLocation.setSlotOccupied(iOccupied, slot, false);
+                }
+            }
+            updateCriteria(assignment, time, uselessHalfHours, brokenTimePatterns);
+        }
+        
+        /**
+         * Update useless half hours and broken time patterns criteria, only the slots that can be affected by the
+         * given time are recomputed
+         * @param assignment current assignment
+         * @param time time that has been assigned or unassigned
+         * @param uselessHalfHours useless half hours around the given time before the change
+         * @param brokenTimePatterns broken time patterns in the slots of the given time before the change
+         */
+        private void updateCriteria(Assignment<Lecture, Placement> assignment, TimeLocation time, int uselessHalfHours, int brokenTimePatterns) {
+            int deltaUselessHalfHours = UselessHalfHours.countUselessSlotsHalfHours(this, time) - uselessHalfHours;
+            if (deltaUselessHalfHours != 0) {
+                iLastUselessHalfHours += deltaUselessHalfHours;
+                getModel().getCriterion(UselessHalfHours.class).inc(assignment, deltaUselessHalfHours);
+            }
+            int deltaBrokenTimePatterns = BrokenTimePatterns.countUselessSlotsBrokenTimePatterns(this, time) - brokenTimePatterns;
+            if (deltaBrokenTimePatterns != 0) {
+                iLastBrokenTimePatterns += deltaBrokenTimePatterns;
+                getModel().getCriterion(BrokenTimePatterns.class).inc(assignment, deltaBrokenTimePatterns / 6.0);
             }
-            getModel().getCriterion(UselessHalfHours.class).inc(assignment, -iLastUselessHalfHours);
-            iLastUselessHalfHours = UselessHalfHours.countUselessSlotsHalfHours(this);
-            getModel().getCriterion(UselessHalfHours.class).inc(assignment, iLastUselessHalfHours);
-            getModel().getCriterion(BrokenTimePatterns.class).inc(assignment, -iLastBrokenTimePatterns);
-            iLastBrokenTimePatterns = BrokenTimePatterns.countUselessSlotsBrokenTimePatterns(this) / 6.0;
-            getModel().getCriterion(BrokenTimePatterns.class).inc(assignment, iLastBrokenTimePatterns);
         }
         
         public List<Placement> getPlacements(int slot) { return iResource[slot]; }
         
+        /**
+         * Check whether any of the slots of the given time is used by some placement (weeks are ignored). This is a
+         * quick check (using a slot occupancy bit set) that avoids walking through the slots when the room is free.
+         * @param time a time location
+         * @return true if there is a placement in at least one slot of the given time
+         */
+        public boolean isOccupied(TimeLocation time) { return time.hasSlot(iOccupied); }
+        
         public Placement getPlacement(int slot, int day) {
             for (Placement p : iResource[slot]) {
                 if (p.getTimeLocation().hasDay(day))
@@ -406,12 +445,14 @@ public class RoomConstraint extends ConstraintWithContext<Lecture, Placement, Ro
         }
         
         public boolean inConflict(Lecture lecture, TimeLocation time) {
-            for (Enumeration<Integer> e = time.getSlots(); e.hasMoreElements();) {
-                int slot = e.nextElement();
-                for (Placement confPlacement : getPlacements(slot)) {
-                    if (!confPlacement.getTimeLocation().shareWeeks(time.getWeekCode())) continue;
-                    if (confPlacement.variable().equals(lecture)) continue;
-                    if (!confPlacement.variable().canShareRoom(lecture)) return true;
+            if (!isOccupied(time)) return false;
+            for (int start: time.getStartSlotsArray()) {
+                for (int slot = start; slot < start + time.getLength(); slot++) {
+                    for (Placement confPlacement : getPlacements(slot)) {
+                        if (!confPlacement.getTimeLocation().shareWeeks(time.getWeekCode())) continue;
+                        if (confPlacement.variable().equals(lecture)) continue;
+                        if (!confPlacement.variable().canShareRoom(lecture)) return true;
+                    }
                 }
             }
             return false;
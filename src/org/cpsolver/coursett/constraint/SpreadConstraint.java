@@ -1,6 +1,5 @@
 package org.cpsolver.coursett.constraint;
 
-import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -381,23 +380,24 @@ public class SpreadConstraint extends ConstraintWithContext<Lecture, Placement,
     public int getMaxPenalty(Assignment<Lecture, Placement> assignment, Placement placement) {
         SpreadConstraintContext context = getContext(assignment);
         int penalty = 0;
-        for (Enumeration<Integer> e = placement.getTimeLocation().getSlots(); e.hasMoreElements();) {
-            int slot = e.nextElement();
-            int day = slot / Constants.SLOTS_PER_DAY;
-            int time = slot % Constants.SLOTS_PER_DAY;
-            if (time < iFirstDaySlot || time > iLastDaySlot)
-                continue;
-            if (iLastWorkDay < 7) {
-                if (day < iFirstWorkDay || day > iLastWorkDay)
-                    continue;
-            } else {
-                if (day < iFirstWorkDay && day > iLastWorkDay - 7)
+        for (int start: placement.getTimeLocation().getStartSlotsArray()) {
+            for (int slot = start; slot < start + placement.getTimeLocation().getLength(); slot++) {
+                int day = slot / Constants.SLOTS_PER_DAY;
+                int time = slot % Constants.SLOTS_PER_DAY;
+                if (time < iFirstDaySlot || time > iLastDaySlot)
                     continue;
-                if (day < iFirstWorkDay) day += 7;
+                if (iLastWorkDay < 7) {
+                    if (day < iFirstWorkDay || day > iLastWorkDay)
+                        continue;
+                } else {
+                    if (day < iFirstWorkDay && day > iLastWorkDay - 7)
+                        continue;
+                    if (day < iFirstWorkDay) day += 7;
+                }
+                int dif = 1 + context.getNrCourses(time, day, placement) - context.getMaxCourses(time, day);
+                if (dif > penalty)
+                    penalty = dif;
             }
-            int dif = 1 + context.getNrCourses(time, day, placement) - context.getMaxCourses(time, day);
-            if (dif > penalty)
-                penalty = dif;
         }
         return penalty;
     }
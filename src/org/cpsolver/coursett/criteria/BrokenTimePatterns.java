@@ -199,6 +199,49 @@ public class BrokenTimePatterns extends TimetablingCriterion {
         return ret;
     }
     
+    /** Is the given slot useless (it is empty, but the same slot on the related days is used)
+     * @param rc room constraint
+     * @param s slot of the day
+     * @param d day
+     * @return true if the slot breaks a time pattern
+     **/
+    private static boolean isUseless(RoomConstraintContext rc, int s, int d) {
+        if (!rc.getPlacements(d * Constants.SLOTS_PER_DAY + s).isEmpty()) return false;
+        switch (d) {
+            case 0:
+                return !rc.getPlacements(2 * Constants.SLOTS_PER_DAY + s).isEmpty() && !rc.getPlacements(4 * Constants.SLOTS_PER_DAY + s).isEmpty();
+            case 1:
+                return !rc.getPlacements(3 * Constants.SLOTS_PER_DAY + s).isEmpty();
+            case 2:
+                return !rc.getPlacements(0 * Constants.SLOTS_PER_DAY + s).isEmpty() && !rc.getPlacements(4 * Constants.SLOTS_PER_DAY + s).isEmpty();
+            case 3:
+                return !rc.getPlacements(1 * Constants.SLOTS_PER_DAY + s).isEmpty();
+            case 4:
+                return !rc.getPlacements(0 * Constants.SLOTS_PER_DAY + s).isEmpty() && !rc.getPlacements(2 * Constants.SLOTS_PER_DAY + s).isEmpty();
+            default:
+                return false;
+        }
+    }
+    
+    /** Number of useless slots for this room that can be affected by the given time, i.e., only the slots
+     * of the given time (on all days of the week) are checked. This is used to update the penalty incrementally
+     * (count the affected slots before and after a change).
+     * @param rc room constraint
+     * @param time time location that is being assigned or unassigned
+     * @return number of broken time patterns in the slots of the given time
+     **/
+    public static int countUselessSlotsBrokenTimePatterns(RoomConstraintContext rc, TimeLocation time) {
+        if ((time.getDayCode() & (sDaysMWF | sDaysTTh)) == 0) return 0;
+        int ret = 0;
+        for (int s = time.getStartSlot(); s < time.getStartSlot() + time.getLength(); s++) {
+            for (int d = 0; d < Math.min(5, Constants.NR_DAYS); d++) {
+                if (isUseless(rc, s, d))
+                    ret++;
+            }
+        }
+        return ret;
+    }
+    
     /** Number of useless slots for this room 
      * @param rc room constraint
      * @return current penalty for the given room
@@ -207,31 +250,8 @@ public class BrokenTimePatterns extends TimetablingCriterion {
         int ret = 0;
         for (int d = 0; d < Constants.NR_DAYS; d++) {
             for (int s = 0; s < Constants.SLOTS_PER_DAY; s++) {
-                int slot = d * Constants.SLOTS_PER_DAY + s;
-                if (rc.getPlacements(slot).isEmpty()) {
-                    switch (d) {
-                        case 0:
-                            if (!rc.getPlacements(2 * Constants.SLOTS_PER_DAY + s).isEmpty() && !rc.getPlacements(4 * Constants.SLOTS_PER_DAY + s).isEmpty())
-                                ret++;
-                            break;
-                        case 1:
-                            if (!rc.getPlacements(3 * Constants.SLOTS_PER_DAY + s).isEmpty())
-                                ret++;
-                            break;
-                        case 2:
-                            if (!rc.getPlacements(0 * Constants.SLOTS_PER_DAY + s).isEmpty() && !rc.getPlacements(4 * Constants.SLOTS_PER_DAY + s).isEmpty())
-                                ret++;
-                            break;
-                        case 3:
-                            if (!rc.getPlacements(1 * Constants.SLOTS_PER_DAY + s).isEmpty())
-                                ret++;
-                            break;
-                        case 4:
-                            if (!rc.getPlacements(0 * Constants.SLOTS_PER_DAY + s).isEmpty() && !rc.getPlacements(2 * Constants.SLOTS_PER_DAY + s).isEmpty())
-                                ret++;
-                            break;
-                    }
-                }
+                if (isUseless(rc, s, d))
+                    ret++;
             }
         }
         return ret;
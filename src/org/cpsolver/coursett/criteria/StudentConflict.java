@@ -6,6 +6,7 @@ import java.util.Set;
 
 import org.cpsolver.coursett.Constants;
 import org.cpsolver.coursett.constraint.JenrlConstraint;
+import org.cpsolver.coursett.model.JenrlGraph;
 import org.cpsolver.coursett.model.Lecture;
 import org.cpsolver.coursett.model.Placement;
 import org.cpsolver.coursett.model.Student;
@@ -22,6 +23,10 @@ import org.cpsolver.ifs.util.DistanceMetric;
  * in time or place back-to-back in rooms that are too far a part. The combinations of classes
  * that share students are maintained by {@link JenrlConstraint}.  
  * <br>
+ * When General.JenrlGraph is enabled, the value of a placement is computed using the
+ * {@link JenrlGraph} of the model instead (see {@link TimetableModel#getJenrlGraph()}). Conflicts with
+ * committed classes that are counted per student (see {@link StudentCommittedConflict}) are not a part of the graph.
+ * <br>
  * 
  * @version CourseTT 1.3 (University Course Timetabling)<br>
  *          Copyright (C) 2006 - 2014 Tomas Muller<br>
@@ -76,6 +81,40 @@ public class StudentConflict extends TimetablingCriterion {
         return jenrl.jenrl();
     }
     
+    /**
+     * Joint enrollment of an edge of the {@link JenrlGraph}, defaults to the weight of the edge. Criteria that change
+     * {@link StudentConflict#jointEnrollment(JenrlConstraint, Placement, Placement)} must change this method as well.
+     * @param graph joint enrollment graph
+     * @param edge edge index
+     * @param p1 placement of the class of the edge
+     * @param p2 placement of the adjacent class
+     * @return joint enrollment weight
+     */
+    protected double jointEnrollment(JenrlGraph graph, int edge, Placement p1, Placement p2) {
+        return graph.getWeight(edge);
+    }
+    
+    /**
+     * Applicability of an edge of the {@link JenrlGraph}, defaults to {@link StudentConflict#isApplicable(Lecture, Lecture)}.
+     * Criteria that change the applicability based on the joint enrollment constraint may use the weights of the edge instead.
+     * @param graph joint enrollment graph
+     * @param edge edge index
+     * @param l1 class of the edge
+     * @param l2 adjacent class of the edge
+     * @return true if the edge is to be considered
+     */
+    protected boolean isApplicable(JenrlGraph graph, int edge, Lecture l1, Lecture l2) {
+        return isApplicable(l1, l2);
+    }
+    
+    /**
+     * Joint enrollment graph of the model
+     * @return joint enrollment graph, null if it is not used
+     */
+    public JenrlGraph getJenrlGraph() {
+        return (getModel() == null ? null : ((TimetableModel)getModel()).getJenrlGraph());
+    }
+    
     public static boolean distance(DistanceMetric m, Placement p1, Placement p2) {
         if (m == null && p1 != null) m = ((TimetableModel)p1.variable().getModel()).getDistanceMetric();
         if (m == null && p2 != null) m = ((TimetableModel)p2.variable().getModel()).getDistanceMetric();
@@ -145,6 +184,8 @@ public class StudentConflict extends TimetablingCriterion {
     
     @Override
     public double getValue(Assignment<Lecture, Placement> assignment, Placement value, Set<Placement> conflicts) {
+        JenrlGraph graph = getJenrlGraph();
+        if (graph != null) return getValue(assignment, graph, value, conflicts);
         double ret = 0.0;
         for (JenrlConstraint jenrl: value.variable().jenrlConstraints()) {
             Lecture other = jenrl.another(value.variable());
@@ -170,6 +211,41 @@ public class StudentConflict extends TimetablingCriterion {
         return ret;
     }
     
+    /**
+     * Value of the given placement, computed using the joint enrollment graph
+     * @param assignment current assignment
+     * @param graph joint enrollment graph
+     * @param value given placement
+     * @param conflicts placements that are to be unassigned
+     * @return value of the placement
+     */
+    protected double getValue(Assignment<Lecture, Placement> assignment, JenrlGraph graph, Placement value, Set<Placement> conflicts) {
+        double ret = 0.0;
+        Lecture lecture = value.variable();
+        for (int edge = graph.getEdgeStart(lecture); edge < graph.getEdgeEnd(lecture); edge++) {
+            Lecture other = graph.getAdjacent(edge);
+            if (!isApplicable(graph, edge, lecture, other)) continue;
+            Placement another = assignment.getValue(other);
+            if (another == null) continue;
+            if (conflicts != null && conflicts.contains(another)) continue;
+            if (inConflict(value, another))
+                ret += jointEnrollment(graph, edge, value, another);
+        }
+        if (iIncludeConflicts && conflicts != null)
+            for (Placement conflict: conflicts) {
+                for (int edge = graph.getEdgeStart(conflict.variable()); edge < graph.getEdgeEnd(conflict.variable()); edge++) {
+                    Lecture other = graph.getAdjacent(edge);
+                    if (!isApplicable(graph, edge, conflict.variable(), other)) continue;
+                    Placement another = assignment.getValue(other);
+                    if (another == null || another.variable().equals(lecture)) continue;
+                    if (conflicts.contains(another)) continue;
+                    if (inConflict(conflict, another))
+                        ret -= jointEnrollment(graph, edge, conflict, another);
+                }
+            }
+        return ret;
+    }
+    
     @Override
     public double getValue(Assignment<Lecture, Placement> assignment, Collection<Lecture> variables) {
         double ret = 0.0;
@@ -140,6 +140,26 @@ public class UselessHalfHours extends BrokenTimePatterns {
                 !rc.getPlacements(slot + 6).isEmpty());
     }
 
+    /** Number of useless half hours for this room that can be affected by the given time, i.e., only the slots
+     * of the days of the given time that are up to six slots before or one slot after the time are checked.
+     * This is used to update the penalty incrementally (count the affected slots before and after a change).
+     * @param rc room constraint assignment context
+     * @param time time location that is being assigned or unassigned
+     * @return number of useless slots around the given time
+     **/
+    public static int countUselessSlotsHalfHours(RoomConstraintContext rc, TimeLocation time) {
+        int ret = 0;
+        int first = Math.max(0, time.getStartSlot() - 6);
+        int last = Math.min(Constants.SLOTS_PER_DAY - 1, time.getStartSlot() + time.getLength());
+        for (int d: time.getDaysArray()) {
+            for (int s = first; s <= last; s++) {
+                if (isUseless(rc, d * Constants.SLOTS_PER_DAY + s))
+                    ret++;
+            }
+        }
+        return ret;
+    }
+
     /** Number of useless slots for this room 
      * @param rc room constraint assignment context
      * @return current penalty for the given room
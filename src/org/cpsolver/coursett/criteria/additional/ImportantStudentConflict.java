@@ -5,6 +5,7 @@ import java.util.Map;
 
 import org.cpsolver.coursett.constraint.JenrlConstraint;
 import org.cpsolver.coursett.criteria.StudentConflict;
+import org.cpsolver.coursett.model.JenrlGraph;
 import org.cpsolver.coursett.model.Lecture;
 import org.cpsolver.coursett.model.Placement;
 import org.cpsolver.coursett.model.Student;
@@ -41,6 +42,16 @@ import org.cpsolver.ifs.util.DataProperties;
  */
 public class ImportantStudentConflict extends StudentConflict {
     
+    @Override
+    protected double jointEnrollment(JenrlGraph graph, int edge, Placement p1, Placement p2) {
+        return graph.getPriority(edge);
+    }
+    
+    @Override
+    protected boolean isApplicable(JenrlGraph graph, int edge, Lecture l1, Lecture l2) {
+        return l1 != null && l2 != null && !ignore(l1, l2) && applicable(l1, l2) && graph.getPriority(edge) > 0.0;
+    }
+    
     @Override
     protected double jointEnrollment(JenrlConstraint jenrl) {
         return jenrl.priority();
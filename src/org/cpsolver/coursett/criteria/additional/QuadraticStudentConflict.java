@@ -2,6 +2,7 @@ package org.cpsolver.coursett.criteria.additional;
 
 import org.cpsolver.coursett.constraint.JenrlConstraint;
 import org.cpsolver.coursett.criteria.StudentConflict;
+import org.cpsolver.coursett.model.JenrlGraph;
 import org.cpsolver.coursett.model.Lecture;
 import org.cpsolver.coursett.model.Placement;
 import org.cpsolver.coursett.model.Student;
@@ -51,6 +52,11 @@ public class QuadraticStudentConflict extends StudentConflict {
         return "Placement.NrStudConfsWeight";
     }
 
+    @Override
+    protected double jointEnrollment(JenrlGraph graph, int edge, Placement p1, Placement p2) {
+        return graph.getWeight(edge) * graph.getWeight(edge);
+    }
+    
     @Override
     protected double jointEnrollment(JenrlConstraint jenrl) {
         return jenrl.jenrl() * jenrl.jenrl();
@@ -7,6 +7,7 @@ import java.util.Set;
 
 import org.cpsolver.coursett.constraint.JenrlConstraint;
 import org.cpsolver.coursett.criteria.StudentConflict;
+import org.cpsolver.coursett.model.JenrlGraph;
 import org.cpsolver.coursett.model.Lecture;
 import org.cpsolver.coursett.model.Placement;
 import org.cpsolver.coursett.model.Student;
@@ -68,6 +69,11 @@ public class StudentMinimizeDaysOfWeek extends StudentConflict {
         return dayDistance(p1, p2) > 0.0;
     }
     
+    @Override
+    protected double jointEnrollment(JenrlGraph graph, int edge, Placement p1, Placement p2) {
+        return dayDistance(p1, p2) * graph.getWeight(edge);
+    }
+    
     @Override
     protected double jointEnrollment(JenrlConstraint jenrl, Placement p1, Placement p2) {
         return dayDistance(p1, p2) * jenrl.jenrl();
@@ -4,16 +4,28 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import org.cpsolver.coursett.constraint.FlexibleConstraint;
+import org.cpsolver.coursett.constraint.GroupConstraint;
+import org.cpsolver.coursett.constraint.SpreadConstraint;
 import org.cpsolver.coursett.criteria.TimetablingCriterion;
 import org.cpsolver.coursett.model.Lecture;
 import org.cpsolver.coursett.model.Placement;
 import org.cpsolver.coursett.model.TimetableModel;
 import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.assignment.context.HasAssignmentContext;
 import org.cpsolver.ifs.criteria.Criterion;
 import org.cpsolver.ifs.extension.Extension;
 import org.cpsolver.ifs.extension.MacPropagation;
 import org.cpsolver.ifs.heuristics.ValueSelection;
+import org.cpsolver.ifs.model.Constraint;
 import org.cpsolver.ifs.solution.Solution;
 import org.cpsolver.ifs.solver.Solver;
 import org.cpsolver.ifs.util.DataProperties;
@@ -67,6 +79,21 @@ import org.cpsolver.ifs.util.ToolBox;
  * <td>{@link Double}</td>
  * <td>MPP: limit on the perturbations penalty (-1 for no limit)</td>
  * </tr>
+ * <tr>
+ * <td>Placement.NrThreads</td>
+ * <td>{@link Integer}</td>
+ * <td>Number of threads used to evaluate the placements of a class (defaults to 1, i.e., no parallel evaluation).
+ * The conflicts and the costs of the placements are computed in parallel, the selection itself is done afterwards
+ * in the order of the domain. When a constraint of the class may pick its conflicts randomly (e.g., a spread or a
+ * flexible constraint), the conflicts are computed by the calling thread in the order of the domain and only the costs
+ * are computed in parallel, so that the selected placement does not depend on the number of threads. All the
+ * constraints and criteria must be safe for concurrent reads of the current assignment.</td>
+ * </tr>
+ * <tr>
+ * <td>Placement.ParallelMinValues</td>
+ * <td>{@link Integer}</td>
+ * <td>Placements are only evaluated in parallel for classes with at least the given number of placements (defaults to 200)</td>
+ * </tr>
  * </table>
  * <br>
  * Parameters (for each level of selection):
@@ -216,6 +243,12 @@ public class PlacementSelection implements ValueSelection<Lecture, Placement> {
     private boolean iMPP = false;
 
     private boolean iCanUnassingSingleton = false;
+    
+    private int iNrThreads = 1;
+    public static final String NR_THREADS = "Placement.NrThreads";
+    private int iParallelMinValues = 200;
+    public static final String PARALLEL_MIN_VALUES = "Placement.ParallelMinValues";
+    private static ThreadPoolExecutor sExecutor = null;
 
     @Override
     public void init(Solver<Lecture, Placement> solver) {
@@ -238,6 +271,8 @@ public class PlacementSelection implements ValueSelection<Lecture, Placement> {
         if (iTabuSize > 0)
             iTabu = new ArrayList<Placement>(iTabuSize);
         iUseThreshold = properties.getPropertyBoolean("Placement.UseThreshold", USE_THRESHOLD);
+        iNrThreads = properties.getPropertyInt(NR_THREADS, iNrThreads);
+        iParallelMinValues = properties.getPropertyInt(PARALLEL_MIN_VALUES, iParallelMinValues);
         for (int level = 0; level < NR_LEVELS; level++)
             iThresholdKoef[level] = (USE_THRESHOLD ? properties.getPropertyDouble(NR_THRESHOLD_KOEF + (level + 1), (level == 0 ? 0.1 : 0.0)) : 0.0);
     }
@@ -287,24 +322,35 @@ public class PlacementSelection implements ValueSelection<Lecture, Placement> {
         List<Placement> selectionValues = null;
 
         HeuristicSelector<Placement> selector = (iUseThreshold ? new HeuristicSelector<Placement>(iThresholdKoef) : null);
+        List<Placement> candidates = new ArrayList<Placement>(values.size());
         for (Placement value : values) {
             if (iTabu != null && iTabu.contains(value))
                 continue;
             if (current != null && current.equals(value))
                 continue;
-
-            Set<Placement> conflicts = value.variable().getModel().conflictValues(assignment, value);
-            
-            if (containsItselfSingletonOrCommited(model, conflicts, value))
-                continue;
+            candidates.add(value);
+        }
+        double[][] evaluated = (iNrThreads > 1 && candidates.size() >= iParallelMinValues ? evaluate(model, assignment, candidates) : null);
+        for (int index = 0; index < candidates.size(); index++) {
+            Placement value = candidates.get(index);
+            Set<Placement> conflicts = null;
+            if (evaluated != null) {
+                if (evaluated[index] == null) continue;
+            } else {
+                conflicts = value.variable().getModel().conflictValues(assignment, value);
+                if (containsItselfSingletonOrCommited(model, conflicts, value))
+                    continue;
+            }
 
             if (iUseThreshold) {
                 Double flt = selector.firstLevelThreshold();
-                double[] costs = new double[NR_LEVELS];
-                for (int level = 0; level < NR_LEVELS; level++) {
-                    costs[level] = getCost(assignment, level, value, conflicts);
-                    if (level == 0 && flt != null && costs[0] > flt.doubleValue()) {
-                        break;
+                double[] costs = (evaluated != null ? evaluated[index] : new double[NR_LEVELS]);
+                if (evaluated == null) {
+                    for (int level = 0; level < NR_LEVELS; level++) {
+                        costs[level] = getCost(assignment, level, value, conflicts);
+                        if (level == 0 && flt != null && costs[0] > flt.doubleValue()) {
+                            break;
+                        }
                     }
                 }
                 if (flt != null && costs[0] > flt.doubleValue())
@@ -314,7 +360,7 @@ public class PlacementSelection implements ValueSelection<Lecture, Placement> {
                 boolean fail = false;
                 boolean best = false;
                 for (int level = 0; !fail && level < 1; level++) {
-                    double val = getCost(assignment, level, value, conflicts);
+                    double val = (evaluated != null ? evaluated[index][level] : getCost(assignment, level, value, conflicts));
                     long cost = Math.round(PRECISION * val);
                     if (selectionValues != null && !best) {
                         if (cost > bestCost[level]) {
@@ -398,6 +444,146 @@ public class PlacementSelection implements ValueSelection<Lecture, Placement> {
         }
     }
 
+    /**
+     * Evaluate the given placements in parallel. The placements are split into chunks that are evaluated by the calling thread
+     * and by the threads of the shared pool (see {@link PlacementSelection#getExecutor()}). The assignment contexts that can be
+     * read during the evaluation are created by the calling thread first (see {@link PlacementSelection#createContexts(TimetableModel, Assignment, Lecture)}).
+     * When the conflicts may be picked randomly (see {@link PlacementSelection#hasRandomizedConflicts(TimetableModel, Lecture)}),
+     * they are computed by the calling thread in the order of the given list first, so that the random numbers are drawn
+     * in the same order as when the placements are evaluated sequentially. Only the costs are then evaluated in parallel.
+     * @param model timetabling model
+     * @param assignment current assignment, it is not changed
+     * @param candidates placements to evaluate
+     * @return costs of the placements (for each level when the threshold is used, only the first level otherwise), in the
+     * order of the given list; null for a placement that cannot be assigned (see {@link PlacementSelection#containsItselfSingletonOrCommited(TimetableModel, Set, Placement)})
+     */
+    protected double[][] evaluate(final TimetableModel model, final Assignment<Lecture, Placement> assignment, final List<Placement> candidates) {
+        final double[][] costs = new double[candidates.size()][];
+        createContexts(model, assignment, candidates.get(0).variable());
+        final List<Set<Placement>> conflicts;
+        if (hasRandomizedConflicts(model, candidates.get(0).variable())) {
+            conflicts = new ArrayList<Set<Placement>>(candidates.size());
+            for (Placement value: candidates)
+                conflicts.add(model.conflictValues(assignment, value));
+        } else {
+            conflicts = null;
+        }
+        int nrChunks = 4 * iNrThreads;
+        int chunk = Math.max(1, (candidates.size() + nrChunks - 1) / nrChunks);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        ThreadPoolExecutor executor = getExecutor();
+        for (int start = chunk; start < candidates.size(); start += chunk) {
+            final int from = start, to = Math.min(candidates.size(), start + chunk);
+            futures.add(executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    evaluate(model, assignment, candidates, conflicts, costs, from, to);
+                    return null;
+                }
+            }));
+        }
+        evaluate(model, assignment, candidates, conflicts, costs, 0, Math.min(candidates.size(), chunk));
+        for (Future<?> future: futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e.getMessage(), e);
+            } catch (ExecutionException e) {
+                throw (e.getCause() instanceof RuntimeException ? (RuntimeException)e.getCause() : new RuntimeException(e.getCause().getMessage(), e.getCause()));
+            }
+        }
+        return costs;
+    }
+    
+    private void evaluate(TimetableModel model, Assignment<Lecture, Placement> assignment, List<Placement> candidates, List<Set<Placement>> computedConflicts, double[][] costs, int from, int to) {
+        for (int index = from; index < to; index++) {
+            Placement value = candidates.get(index);
+            Set<Placement> conflicts = (computedConflicts != null ? computedConflicts.get(index) : model.conflictValues(assignment, value));
+            if (containsItselfSingletonOrCommited(model, conflicts, value))
+                continue;
+            costs[index] = new double[iUseThreshold ? NR_LEVELS : 1];
+            for (int level = 0; level < costs[index].length; level++)
+                costs[index][level] = getCost(assignment, level, value, conflicts);
+        }
+    }
+    
+    /**
+     * Check whether the conflicts of a placement of the given class may be picked randomly, i.e., whether the class or the model
+     * has a constraint that draws random numbers while computing its conflicts (a spread, a group, or a flexible constraint).
+     * The conflicts of such a class are not computed in parallel, as the order in which the random numbers are drawn would
+     * depend on the number of threads.
+     * @param model timetabling model
+     * @param lecture class of which placements are to be evaluated
+     * @return true if some of the conflicts may be picked randomly
+     */
+    protected boolean hasRandomizedConflicts(TimetableModel model, Lecture lecture) {
+        for (Constraint<Lecture, Placement> constraint: lecture.hardConstraints())
+            if (isRandomized(constraint)) return true;
+        for (Constraint<Lecture, Placement> constraint: model.globalConstraints())
+            if (isRandomized(constraint)) return true;
+        return false;
+    }
+    
+    /** True if the given constraint may pick its conflicts randomly */
+    private static boolean isRandomized(Constraint<Lecture, Placement> constraint) {
+        return constraint instanceof SpreadConstraint || constraint instanceof GroupConstraint || constraint instanceof FlexibleConstraint;
+    }
+    
+    /**
+     * Create the assignment contexts that can be read during the evaluation of the placements of the given class, so that
+     * none of them is created lazily by two threads at the same time. These are the contexts of the model, its criteria and
+     * global constraints, the class, and all the constraints of the class (including the room constraints of all the rooms
+     * of the class).
+     * @param model timetabling model
+     * @param assignment current assignment
+     * @param lecture class of which placements are to be evaluated
+     */
+    protected void createContexts(TimetableModel model, Assignment<Lecture, Placement> assignment, Lecture lecture) {
+        createContext(assignment, model);
+        for (Criterion<Lecture, Placement> criterion: model.getCriteria())
+            createContext(assignment, criterion);
+        for (Constraint<Lecture, Placement> constraint: model.globalConstraints())
+            createContext(assignment, constraint);
+        createContext(assignment, lecture);
+        for (Constraint<Lecture, Placement> constraint: lecture.constraints())
+            createContext(assignment, constraint);
+    }
+    
+    /** Create assignment context of the given object, if it has one */
+    @SuppressWarnings("unchecked")
+    private static void createContext(Assignment<Lecture, Placement> assignment, Object object) {
+        if (object instanceof HasAssignmentContext)
+            ((HasAssignmentContext<Lecture, Placement, ?>)object).getContext(assignment);
+    }
+    
+    /**
+     * Thread pool used to evaluate placements in parallel. The pool is shared by all the instances (e.g., by all the solver
+     * threads of a {@link org.cpsolver.ifs.solver.ParallelSolver}), it has Placement.NrThreads - 1 threads (the highest number
+     * when different instances use different numbers of threads) and the threads are stopped when not used for a minute.
+     * @return shared thread pool
+     */
+    protected ThreadPoolExecutor getExecutor() {
+        synchronized (PlacementSelection.class) {
+            if (sExecutor == null) {
+                sExecutor = new ThreadPoolExecutor(iNrThreads - 1, iNrThreads - 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private int iThreadNumber = 0;
+                    @Override
+                    public synchronized Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable);
+                        thread.setName("PlacementSelection-" + (++iThreadNumber));
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+                sExecutor.allowCoreThreadTimeOut(true);
+            } else if (sExecutor.getMaximumPoolSize() < iNrThreads - 1) {
+                sExecutor.setMaximumPoolSize(iNrThreads - 1);
+                sExecutor.setCorePoolSize(iNrThreads - 1);
+            }
+            return sExecutor;
+        }
+    }
+
     private double getCost(Assignment<Lecture, Placement> assignment, int level, Placement value, Set<Placement> conflicts) {
         double ret = 0.0;
         for (Criterion<Lecture, Placement> criterion: value.variable().getModel().getCriteria()) {
@@ -0,0 +1,235 @@
+package org.cpsolver.coursett.model;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.cpsolver.coursett.constraint.JenrlConstraint;
+
+/**
+ * Joint enrollment graph. A compressed sparse row index of all the
+ * {@link JenrlConstraint}s of a model. Classes are identified by their variable index
+ * (see {@link Lecture#getIndex()}, committed classes that have no index are numbered after
+ * all the other classes), edges of a class are stored in a continuous range of
+ * primitive arrays (adjacent class index, joint enrollment weight, priority of the joint enrollment, and the
+ * weight of the instructors that are enrolled in the other class), sorted by the index
+ * of the adjacent class. Each joint enrollment constraint is represented by two edges, one
+ * in each direction. <br>
+ * <br>
+ * The graph is used by the {@link org.cpsolver.coursett.criteria.StudentConflict} criteria to
+ * evaluate a placement by a scan over the edges of its class, instead of iterating over the
+ * joint enrollment constraints of the class. It is kept in addition to the joint enrollment
+ * constraints (which are still used by the hard conflicts, weakening, and sectioning), so it
+ * speeds up the evaluation at the cost of some additional memory (about 28 bytes per edge). Weights are kept up to date by
+ * {@link JenrlConstraint#incJenrl(org.cpsolver.ifs.assignment.Assignment, Student)} and
+ * {@link JenrlConstraint#decJenrl(org.cpsolver.ifs.assignment.Assignment, Student)}, the graph
+ * itself is dropped by the model when a class or a joint enrollment constraint is added or
+ * removed (see {@link TimetableModel#getJenrlGraph()}).
+ *
+ * @version CourseTT 1.3 (University Course Timetabling)<br>
+ *          Copyright (C) 2006 - 2014 Tomas Muller<br>
+ *          <a href="mailto:muller@unitime.org">muller@unitime.org</a><br>
+ *          <a href="http://muller.unitime.org">http://muller.unitime.org</a><br>
+ * <br>
+ *          This library is free software; you can redistribute it and/or modify
+ *          it under the terms of the GNU Lesser General Public License as
+ *          published by the Free Software Foundation; either version 3 of the
+ *          License, or (at your option) any later version. <br>
+ * <br>
+ *          This library is distributed in the hope that it will be useful, but
+ *          WITHOUT ANY WARRANTY; without even the implied warranty of
+ *          MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *          Lesser General Public License for more details. <br>
+ * <br>
+ *          You should have received a copy of the GNU Lesser General Public
+ *          License along with this library; if not see
+ *          <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ */
+public class JenrlGraph {
+    private Lecture[] iLectures;
+    private int[] iOffsets;
+    private int[] iAdjacent;
+    private double[] iWeights;
+    private double[] iPriorities;
+    private double[] iInstructorWeights;
+    private Map<Lecture, Integer> iCommitted = new HashMap<Lecture, Integer>();
+
+    /**
+     * Create the graph from the given classes and their joint enrollment constraints
+     * @param lectures all classes of the model, including the committed ones
+     */
+    public JenrlGraph(Collection<Lecture> lectures) {
+        int size = 0;
+        for (Lecture lecture: lectures)
+            size = Math.max(size, lecture.getIndex() + 1);
+        for (Lecture lecture: lectures)
+            if (lecture.getIndex() < 0) iCommitted.put(lecture, size + iCommitted.size());
+        size += iCommitted.size();
+        iLectures = new Lecture[size];
+        for (Lecture lecture: lectures)
+            iLectures[lecture.getIndex() >= 0 ? lecture.getIndex() : iCommitted.get(lecture)] = lecture;
+
+        int[] degree = new int[size];
+        int nrEdges = 0;
+        for (int i = 0; i < size; i++) {
+            if (iLectures[i] == null) continue;
+            for (JenrlConstraint jenrl: iLectures[i].jenrlConstraints()) {
+                Lecture other = jenrl.another(iLectures[i]);
+                if (!contains(other)) continue;
+                degree[index(other)] ++; nrEdges ++;
+            }
+        }
+        iOffsets = new int[size + 1];
+        for (int i = 0; i < size; i++)
+            iOffsets[i + 1] = iOffsets[i] + degree[i];
+        iAdjacent = new int[nrEdges];
+        iWeights = new double[nrEdges];
+        iPriorities = new double[nrEdges];
+        iInstructorWeights = new double[nrEdges];
+
+        // going through the classes in the order of their indexes, an edge i -> j is appended to the row of the class j
+        // (as the edge j -> i), which keeps the rows sorted by the adjacent class index without any additional sorting
+        int[] next = Arrays.copyOf(iOffsets, size);
+        for (int i = 0; i < size; i++) {
+            if (iLectures[i] == null) continue;
+            for (JenrlConstraint jenrl: iLectures[i].jenrlConstraints()) {
+                Lecture other = jenrl.another(iLectures[i]);
+                if (!contains(other)) continue;
+                int j = index(other);
+                int edge = next[j]++;
+                iAdjacent[edge] = i;
+                set(edge, jenrl);
+            }
+        }
+    }
+
+    /**
+     * Index of a class in the graph
+     * @param lecture a class
+     * @return its variable index, an index after all the variables for a committed class, -1 if the class is not a part of the graph
+     */
+    public int index(Lecture lecture) {
+        if (lecture == null) return -1;
+        if (lecture.getIndex() >= 0)
+            return (lecture.getIndex() < iLectures.length && iLectures[lecture.getIndex()] == lecture ? lecture.getIndex() : -1);
+        Integer index = iCommitted.get(lecture);
+        return (index == null ? -1 : index.intValue());
+    }
+
+    /** True if the given class is a part of the graph */
+    private boolean contains(Lecture lecture) {
+        return index(lecture) >= 0;
+    }
+
+    /**
+     * Number of classes (the size of the variable index range, including committed classes)
+     * @return number of classes
+     */
+    public int size() {
+        return iLectures.length;
+    }
+
+    /**
+     * Number of edges (twice the number of joint enrollment constraints)
+     * @return number of edges
+     */
+    public int nrEdges() {
+        return iAdjacent.length;
+    }
+
+    /**
+     * First edge of the given class
+     * @param lecture a class
+     * @return index of the first edge of the class, equal to {@link JenrlGraph#getEdgeEnd(Lecture)} when the class has no edges or it is not a part of the graph
+     */
+    public int getEdgeStart(Lecture lecture) {
+        int index = index(lecture);
+        return (index < 0 ? 0 : iOffsets[index]);
+    }
+
+    /**
+     * End of the edges of the given class (exclusive)
+     * @param lecture a class
+     * @return index after the last edge of the class
+     */
+    public int getEdgeEnd(Lecture lecture) {
+        int index = index(lecture);
+        return (index < 0 ? 0 : iOffsets[index + 1]);
+    }
+
+    /**
+     * Adjacent class of an edge
+     * @param edge edge index
+     * @return the other class of the edge
+     */
+    public Lecture getAdjacent(int edge) {
+        return iLectures[iAdjacent[edge]];
+    }
+
+    /**
+     * Joint enrollment weight of an edge
+     * @param edge edge index
+     * @return weighted number of students attending both classes (see {@link JenrlConstraint#jenrl()})
+     */
+    public double getWeight(int edge) {
+        return iWeights[edge];
+    }
+
+    /**
+     * Priority of the joint enrollment of an edge
+     * @param edge edge index
+     * @return priority of the students attending both classes (see {@link JenrlConstraint#priority()})
+     */
+    public double getPriority(int edge) {
+        return iPriorities[edge];
+    }
+
+    /**
+     * Instructor weight of an edge
+     * @param edge edge index
+     * @return weighted number of students that are teaching one of the two classes and are enrolled in the other (see {@link JenrlConstraint#getInstructors()})
+     */
+    public double getInstructorWeight(int edge) {
+        return iInstructorWeights[edge];
+    }
+
+    /**
+     * Find the edge between two classes
+     * @param l1 first class
+     * @param l2 second class
+     * @return index of the edge going from the first class to the second one, -1 if there is no such edge
+     */
+    public int getEdge(Lecture l1, Lecture l2) {
+        int i1 = index(l1), i2 = index(l2);
+        if (i1 < 0 || i2 < 0) return -1;
+        int edge = Arrays.binarySearch(iAdjacent, iOffsets[i1], iOffsets[i1 + 1], i2);
+        return (edge < 0 ? -1 : edge);
+    }
+
+    /**
+     * Update weights of the edges of a joint enrollment constraint, called when the number of joint enrollments changes
+     * @param jenrl a joint enrollment constraint
+     */
+    public void update(JenrlConstraint jenrl) {
+        int e1 = getEdge(jenrl.first(), jenrl.second());
+        if (e1 >= 0) set(e1, jenrl);
+        int e2 = getEdge(jenrl.second(), jenrl.first());
+        if (e2 >= 0) set(e2, jenrl);
+    }
+
+    /** Set weights of an edge from its joint enrollment constraint */
+    private void set(int edge, JenrlConstraint jenrl) {
+        iWeights[edge] = jenrl.jenrl();
+        iPriorities[edge] = jenrl.priority();
+        double instructorWeight = 0.0;
+        for (Student student: jenrl.getInstructors())
+            instructorWeight += student.getJenrlWeight(jenrl.first(), jenrl.second());
+        iInstructorWeights[edge] = instructorWeight;
+    }
+
+    @Override
+    public String toString() {
+        return "JenrlGraph{classes=" + size() + ", edges=" + nrEdges() + "}";
+    }
+}
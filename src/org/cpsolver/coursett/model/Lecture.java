@@ -1,6 +1,8 @@
 package org.cpsolver.coursett.model;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -104,6 +106,7 @@ public class Lecture extends VariableWithContext<Lecture, Placement, Lecture.Lec
     public static boolean sSaveMemory = false;
     public static boolean sAllowBreakHard = false;
     private int iMaxRoomCombinations = -1;
+    private volatile CompactDomain iCompactDomain = null;
 
     private Integer iCacheMinRoomSize = null;
     private Integer iCacheMaxRoomSize = null;
@@ -391,6 +394,23 @@ public class Lecture extends VariableWithContext<Lecture, Placement, Lecture.Lec
         return isCommitted() || (!sSaveMemory && (iNrRooms <= 1 || getMaxRoomCombinations() <= 0 || ToolBox.binomial(iRoomLocations.size(), iNrRooms) <= getMaxRoomCombinations()));
     }
     
+    /**
+     * True if the domain is not cached, but it does not depend on the current assignment either (i.e., {@link Lecture#sSaveMemory} is set and
+     * all the room combinations are enumerated). Such a domain is kept in a compact form, see {@link CompactDomain}.
+     */
+    private boolean isCompactDomain() {
+        return !isCacheDomain() && (iNrRooms <= 1 || getMaxRoomCombinations() <= 0 || ToolBox.binomial(iRoomLocations.size(), iNrRooms) <= getMaxRoomCombinations());
+    }
+    
+    /**
+     * Returns true if the domain of this class is cached (or it is kept in a compact form) once computed.
+     * Such domains can be computed ahead of time, see {@link TimetableModel#computeDomains(int)}.
+     * @return true if the domain does not depend on the current assignment
+     */
+    public boolean isDomainCached() {
+        return isCacheDomain() || isCompactDomain();
+    }
+    
     /** Domain -- all combinations of room and time locations 
      * @param assignment current assignment
      * @param allowBreakHard breaking of hard constraints is allowed
@@ -493,6 +513,7 @@ public class Lecture extends VariableWithContext<Lecture, Placement, Lecture.Lec
     
     public void clearValueCache() {
         super.setValues(null);
+        iCompactDomain = null;
     }
 
     /** All values */
@@ -508,6 +529,13 @@ public class Lecture extends VariableWithContext<Lecture, Placement, Lecture.Lec
                 List<Placement> values = computeValues(null, sAllowBreakHard); 
                 setValues(values);
                 return values;
+            } else if (isCompactDomain()) {
+                CompactDomain domain = iCompactDomain;
+                if (domain == null || domain.isAllowBreakHard() != sAllowBreakHard) {
+                    domain = new CompactDomain(computeValues(null, sAllowBreakHard), sAllowBreakHard);
+                    iCompactDomain = domain;
+                }
+                return domain;
             } else {
                 return computeValues(assignment, sAllowBreakHard);
             }
@@ -709,6 +737,7 @@ public class Lecture extends VariableWithContext<Lecture, Placement, Lecture.Lec
     @Override
     public void addContstraint(Constraint<Lecture, Placement> constraint) {
         super.addContstraint(constraint);
+        iCompactDomain = null;
 
         if (constraint instanceof WeakeningConstraint)
             iWeakeningConstraints.add(constraint);
@@ -752,6 +781,7 @@ public class Lecture extends VariableWithContext<Lecture, Placement, Lecture.Lec
     @Override
     public void removeContstraint(Constraint<Lecture, Placement> constraint) {
         super.removeContstraint(constraint);
+        iCompactDomain = null;
 
         if (constraint instanceof WeakeningConstraint)
             iWeakeningConstraints.remove(constraint);
@@ -1574,5 +1604,77 @@ public class Lecture extends VariableWithContext<Lecture, Placement, Lecture.Lec
    
    public void setMaxRoomCombinations(int maxRoomCombinations) {
        iMaxRoomCombinations = maxRoomCombinations;
+       iCompactDomain = null;
+   }
+   
+   /**
+    * Compact representation of a domain that is not cached. Instead of the placements, only a time index and
+    * a room combination index (of the rooms of the class, see {@link ToolBox#permutation(List, int, long)}) are kept for each value,
+    * encoded in a single long. The placements are created on the fly, when accessed. The values are in the same order as returned
+    * by {@link Lecture#computeValues(Assignment, boolean)}.
+    */
+   private class CompactDomain extends AbstractList<Placement> {
+       private TimeLocation[] iTimes;
+       private RoomLocation[] iRooms;
+       private List<RoomLocation> iRoomList;
+       private long[] iValues;
+       private boolean iAllowBreakHard;
+       
+       /**
+        * Constructor
+        * @param values domain as computed by {@link Lecture#computeValues(Assignment, boolean)}
+        * @param allowBreakHard breaking of hard constraints was allowed
+        */
+       CompactDomain(List<Placement> values, boolean allowBreakHard) {
+           iAllowBreakHard = allowBreakHard;
+           iTimes = iTimeLocations.toArray(new TimeLocation[iTimeLocations.size()]);
+           iRooms = iRoomLocations.toArray(new RoomLocation[iRoomLocations.size()]);
+           iRoomList = Collections.unmodifiableList(Arrays.asList(iRooms));
+           Map<TimeLocation, Integer> times = new HashMap<TimeLocation, Integer>();
+           for (int i = 0; i < iTimes.length; i++)
+               times.put(iTimes[i], i);
+           Map<RoomLocation, Integer> rooms = new HashMap<RoomLocation, Integer>();
+           for (int i = 0; i < iRooms.length; i++)
+               rooms.put(iRooms[i], i);
+           iValues = new long[values.size()];
+           int[] positions = new int[iNrRooms];
+           for (int i = 0; i < iValues.length; i++) {
+               Placement p = values.get(i);
+               long id = 0;
+               if (iNrRooms == 1) {
+                   id = rooms.get(p.getRoomLocation());
+               } else if (iNrRooms > 1) {
+                   int idx = 0;
+                   for (RoomLocation room: p.getRoomLocations())
+                       positions[idx++] = rooms.get(room);
+                   id = ToolBox.permutationId(iRooms.length, positions);
+               }
+               iValues[i] = id * iTimes.length + times.get(p.getTimeLocation());
+           }
+       }
+       
+       /** Breaking of hard constraints was allowed when the domain was computed */
+       boolean isAllowBreakHard() { return iAllowBreakHard; }
+
+       @Override
+       public Placement get(int index) {
+           long value = iValues[index];
+           TimeLocation time = iTimes[(int)(value % iTimes.length)];
+           long id = value / iTimes.length;
+           Placement p = null;
+           if (iNrRooms == 0)
+               p = new Placement(Lecture.this, time, (RoomLocation) null);
+           else if (iNrRooms == 1)
+               p = new Placement(Lecture.this, time, iRooms[(int)id]);
+           else
+               p = new Placement(Lecture.this, time, ToolBox.permutation(iRoomList, iNrRooms, id));
+           p.setVariable(Lecture.this);
+           return p;
+       }
+
+       @Override
+       public int size() {
+           return iValues.length;
+       }
    }
 }
\ No newline at end of file
@@ -1,7 +1,6 @@
 package org.cpsolver.coursett.model;
 
 import java.util.ArrayList;
-import java.util.Enumeration;
 import java.util.List;
 
 import org.cpsolver.coursett.Constants;
@@ -537,12 +536,13 @@ public class Placement extends Value<Lecture, Placement> {
                 for (RoomLocation roomLocation : getRoomLocations()) {
                     if (roomLocation.getRoomConstraint() != null && !roomLocation.getRoomConstraint().isAvailable(lecture, getTimeLocation(), lecture.getScheduler())) {
                         if (roomLocation.getRoomConstraint().getAvailableArray() != null) {
-                            for (Enumeration<Integer> e = getTimeLocation().getSlots(); e.hasMoreElements();) {
-                                int slot = e.nextElement();
-                                if (roomLocation.getRoomConstraint().getAvailableArray()[slot] != null) {
-                                    for (Placement c : roomLocation.getRoomConstraint().getAvailableArray()[slot]) {
-                                        if (c.getTimeLocation().hasIntersection(getTimeLocation()) && !lecture.canShareRoom(c.variable())) {
-                                            return "room " + roomLocation.getName() + " not available at " + getTimeLocation().getLongName(useAmPm) + " due to " + c.variable().getName();
+                            for (int start: getTimeLocation().getStartSlotsArray()) {
+                                for (int slot = start; slot < start + getTimeLocation().getLength(); slot++) {
+                                    if (roomLocation.getRoomConstraint().getAvailableArray()[slot] != null) {
+                                        for (Placement c : roomLocation.getRoomConstraint().getAvailableArray()[slot]) {
+                                            if (c.getTimeLocation().hasIntersection(getTimeLocation()) && !lecture.canShareRoom(c.variable())) {
+                                                return "room " + roomLocation.getName() + " not available at " + getTimeLocation().getLongName(useAmPm) + " due to " + c.variable().getName();
+                                            }
                                         }
                                     }
                                 }
@@ -554,12 +554,13 @@ public class Placement extends Value<Lecture, Placement> {
             } else {
                 if (getRoomLocation().getRoomConstraint() != null && !getRoomLocation().getRoomConstraint().isAvailable(lecture, getTimeLocation(), lecture.getScheduler()))
                     if (getRoomLocation().getRoomConstraint().getAvailableArray() != null) {
-                        for (Enumeration<Integer> e = getTimeLocation().getSlots(); e.hasMoreElements();) {
-                            int slot = e.nextElement();
-                            if (getRoomLocation().getRoomConstraint().getAvailableArray()[slot] != null) {
-                                for (Placement c : getRoomLocation().getRoomConstraint().getAvailableArray()[slot]) {
-                                    if (c.getTimeLocation().hasIntersection(getTimeLocation()) && !lecture.canShareRoom(c.variable())) {
-                                        return "room " + getRoomLocation().getName() + " not available at " + getTimeLocation().getLongName(useAmPm) + " due to " + c.variable().getName();
+                        for (int start: getTimeLocation().getStartSlotsArray()) {
+                            for (int slot = start; slot < start + getTimeLocation().getLength(); slot++) {
+                                if (getRoomLocation().getRoomConstraint().getAvailableArray()[slot] != null) {
+                                    for (Placement c : getRoomLocation().getRoomConstraint().getAvailableArray()[slot]) {
+                                        if (c.getTimeLocation().hasIntersection(getTimeLocation()) && !lecture.canShareRoom(c.variable())) {
+                                            return "room " + getRoomLocation().getName() + " not available at " + getTimeLocation().getLongName(useAmPm) + " due to " + c.variable().getName();
+                                        }
                                     }
                                 }
                             }
@@ -36,6 +36,7 @@ public class RoomLocation implements Comparable<RoomLocation> {
     private Double iPosX = null, iPosY = null;
     private RoomConstraint iRoomConstraint = null;
     private boolean iIgnoreTooFar = false;
+    private volatile LocationIndex iLocationIndex = null;
 
     /**
      * Constructor
@@ -120,6 +121,7 @@ public class RoomLocation implements Comparable<RoomLocation> {
     public void setCoordinates(Double x, Double y) {
         iPosX = x;
         iPosY = y;
+        iLocationIndex = null;
     }
 
     /** X-position of the building 
@@ -156,11 +158,28 @@ public class RoomLocation implements Comparable<RoomLocation> {
         return getId().equals(((RoomLocation) o).getId());
     }
 
+    /**
+     * Index of the room in the distance matrix of the given distance metric
+     * @param m distance metric
+     * @return location index, see {@link DistanceMetric#getLocationIndex(Long, Double, Double)}
+     */
+    protected int getLocationIndex(DistanceMetric m) {
+        LocationIndex index = iLocationIndex;
+        if (index == null || index.getDistanceMetric() != m) {
+            index = new LocationIndex(m, m.getLocationIndex(getId(), getPosX(), getPosY()));
+            iLocationIndex = index;
+        }
+        return index.getIndex();
+    }
+
     public double getDistanceInMeters(DistanceMetric m, RoomLocation roomLocation) {
         if (getId().equals(roomLocation.getId()))
             return 0.0;
         if (getIgnoreTooFar() || roomLocation.getIgnoreTooFar())
             return 0.0;
+        int i1 = getLocationIndex(m), i2 = roomLocation.getLocationIndex(m);
+        if (i1 >= 0 && i2 >= 0)
+            return m.getDistanceInMeters(i1, i2);
         return m.getDistanceInMeters(getId(), getPosX(), getPosY(), roomLocation.getId(), roomLocation.getPosX(), roomLocation.getPosY());
     }
 
@@ -169,6 +188,9 @@ public class RoomLocation implements Comparable<RoomLocation> {
             return 0;
         if (getIgnoreTooFar() || roomLocation.getIgnoreTooFar())
             return 0;
+        int i1 = getLocationIndex(m), i2 = roomLocation.getLocationIndex(m);
+        if (i1 >= 0 && i2 >= 0)
+            return m.getDistanceInMinutes(i1, i2);
         return  m.getDistanceInMinutes(getId(), getPosX(), getPosY(), roomLocation.getId(), roomLocation.getPosX(), roomLocation.getPosY());
     }
 
@@ -184,4 +206,19 @@ public class RoomLocation implements Comparable<RoomLocation> {
     public int hashCode() {
         return getName().hashCode();
     }
+    
+    /**
+     * Location index of a room in the distance matrix of a distance metric
+     */
+    private static class LocationIndex {
+        private final DistanceMetric iDistanceMetric;
+        private final int iIndex;
+        
+        private LocationIndex(DistanceMetric metric, int index) {
+            iDistanceMetric = metric; iIndex = index;
+        }
+        
+        private DistanceMetric getDistanceMetric() { return iDistanceMetric; }
+        private int getIndex() { return iIndex; }
+    }
 }
@@ -43,6 +43,11 @@ public class TimeLocation {
     private int iLength;
     private int iNrMeetings;
     private int iBreakTime;
+    private int[] iDays, iStartSlots;
+    private long[] iSlotMask;
+    private int iSlotMaskFirstWord;
+    /** Number of long words of a slot occupancy table that are needed to cover a day, see {@link TimeLocation#createSlotOccupancy()} */
+    public static final int SLOT_MASK_WORDS_PER_DAY = (Constants.SLOTS_PER_DAY + 63) / 64;
 
     private BitSet iWeekCode;
     private Long iDatePatternId = null;
@@ -81,6 +86,15 @@ public class TimeLocation {
                 continue;
             iNrMeetings++;
         }
+        iDays = new int[iNrMeetings];
+        iStartSlots = new int[iNrMeetings];
+        for (int i = 0, j = 0; i < Constants.DAY_CODES.length; i++) {
+            if ((iDayCode & Constants.DAY_CODES[i]) == 0)
+                continue;
+            iDays[j] = i;
+            iStartSlots[j] = i * Constants.SLOTS_PER_DAY + iStartSlot;
+            j++;
+        }
         iHashCode = combine(combine(iDayCode, iStartSlot), iLength);
         iDatePatternName = datePatternName;
         iWeekCode = weekCode;
@@ -93,6 +107,10 @@ public class TimeLocation {
             for (int i = 0; i <= 365; i++)
                 iWeekCode.set(i);
         }
+        iSlotMaskFirstWord = iStartSlot >> 6;
+        iSlotMask = new long[iLength <= 0 ? 0 : ((iStartSlot + iLength - 1) >> 6) - iSlotMaskFirstWord + 1];
+        for (int s = iStartSlot; s < iStartSlot + iLength; s++)
+            iSlotMask[(s >> 6) - iSlotMaskFirstWord] |= (1l << (s & 63));
     }
     
     public TimeLocation(int dayCode, int startTime, int length, int pref, double normPref, Long datePatternId,
@@ -279,6 +297,64 @@ public class TimeLocation {
         return iWeekCode.get(day);
     }
 
+    /**
+     * Create an empty slot occupancy table. A slot occupancy table is a bit set (one bit for each slot of the week,
+     * see {@link TimeLocation#getSlots()}) that is used by the resource constraints to quickly check whether a time
+     * is using any occupied slot, see {@link TimeLocation#hasSlot(long[])}.
+     * @return empty slot occupancy table
+     */
+    public static long[] createSlotOccupancy() {
+        return new long[Constants.NR_DAYS * SLOT_MASK_WORDS_PER_DAY];
+    }
+    
+    /**
+     * Mark the given slot as occupied or free in the given slot occupancy table
+     * @param occupancy slot occupancy table, see {@link TimeLocation#createSlotOccupancy()}
+     * @param slot slot of the week (day * {@link Constants#SLOTS_PER_DAY} + slot of the day)
+     * @param occupied true if the slot is occupied
+     */
+    public static void setSlotOccupied(long[] occupancy, int slot, boolean occupied) {
+        int s = slot % Constants.SLOTS_PER_DAY;
+        int word = (slot / Constants.SLOTS_PER_DAY) * SLOT_MASK_WORDS_PER_DAY + (s >> 6);
+        if (occupied)
+            occupancy[word] |= (1l << (s & 63));
+        else
+            occupancy[word] &= ~(1l << (s & 63));
+    }
+    
+    /**
+     * Check whether the given slot is occupied in the given slot occupancy table
+     * @param occupancy slot occupancy table, see {@link TimeLocation#createSlotOccupancy()}
+     * @param slot slot of the week (day * {@link Constants#SLOTS_PER_DAY} + slot of the day)
+     * @return true if the slot is occupied
+     */
+    public static boolean isSlotOccupied(long[] occupancy, int slot) {
+        int s = slot % Constants.SLOTS_PER_DAY;
+        return (occupancy[(slot / Constants.SLOTS_PER_DAY) * SLOT_MASK_WORDS_PER_DAY + (s >> 6)] & (1l << (s & 63))) != 0;
+    }
+    
+    /**
+     * Check whether any of the slots of this time is occupied in the given slot occupancy table. Only a few words
+     * of the table need to be checked for each day of the time.
+     * @param occupancy slot occupancy table, see {@link TimeLocation#createSlotOccupancy()}
+     * @return true if at least one slot of this time is occupied (weeks are ignored)
+     */
+    public boolean hasSlot(long[] occupancy) {
+        if (iStartSlot + iLength > Constants.SLOTS_PER_DAY) {
+            // time overflowing to the next day, check slot by slot
+            for (int start: iStartSlots)
+                for (int slot = start; slot < start + iLength; slot++)
+                    if (isSlotOccupied(occupancy, slot % (Constants.NR_DAYS * Constants.SLOTS_PER_DAY))) return true;
+            return false;
+        }
+        for (int i: iDays) {
+            int word = i * SLOT_MASK_WORDS_PER_DAY + iSlotMaskFirstWord;
+            for (int j = 0; j < iSlotMask.length; j++)
+                if ((occupancy[word + j] & iSlotMask[j]) != 0) return true;
+        }
+        return false;
+    }
+
     /** true if overlap 
      * @param anotherLocation another time
      * @return true if the two times overlap, this means that all three checks {@link TimeLocation#shareDays(TimeLocation)}, {@link TimeLocation#shareHours(TimeLocation)} and {@link TimeLocation#shareWeeks(TimeLocation)} are true.
@@ -308,15 +384,27 @@ public class TimeLocation {
         return new DaysEnum();
     }
 
-    private int[] iDaysCache = null;
+    /** Days, one for each meeting (the array is shared, it must not be modified)
+     * @return days of week of the time (0 for Monday, 1 for Tuesday, etc.)
+     **/
     public int[] getDaysArray() {
-        if (iDaysCache == null) {
-            iDaysCache = new int[getNrMeetings()];
-            int i = 0;
-            for (Enumeration<Integer> e = getDays(); e.hasMoreElements();)
-                iDaysCache[i++] = e.nextElement();
-        }
-        return iDaysCache;
+        return iDays;
+    }
+    
+    /** Used start slots, one for each meeting (the array is shared, it must not be modified). Together with
+     * {@link TimeLocation#getLength()}, this can be used to iterate over all the slots of the time without creating
+     * any objects, i.e., <code>for (int start: time.getStartSlotsArray()) for (int slot = start; slot &lt; start + time.getLength(); slot++) ...</code>
+     * @return start slots for each meeting of the time (day * {@link Constants#SLOTS_PER_DAY} + start slot)
+     **/
+    public int[] getStartSlotsArray() {
+        return iStartSlots;
+    }
+    
+    /** Start slot of the first meeting, equals to the first element of {@link TimeLocation#getStartSlots()}
+     * @return start slot of the first meeting (day * {@link Constants#SLOTS_PER_DAY} + start slot)
+     **/
+    public int getFirstStartSlot() {
+        return (iStartSlots.length == 0 ? Constants.DAY_CODES.length * Constants.SLOTS_PER_DAY + iStartSlot : iStartSlots[0]);
     }
 
     /** Text representation 
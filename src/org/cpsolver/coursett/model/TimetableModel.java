@@ -5,6 +5,7 @@ import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -53,6 +54,7 @@ import org.cpsolver.ifs.solution.Solution;
 import org.cpsolver.ifs.termination.TerminationCondition;
 import org.cpsolver.ifs.util.DataProperties;
 import org.cpsolver.ifs.util.DistanceMetric;
+import org.cpsolver.ifs.util.Progress;
 
 
 /**
@@ -96,6 +98,8 @@ public class TimetableModel extends ConstantModel<Lecture, Placement> {
     private List<BitSet> iWeeks = null;
     private boolean iOnFlySectioning = false;
     private int iStudentWorkDayLimit = -1;
+    private boolean iUseJenrlGraph = false;
+    private volatile JenrlGraph iJenrlGraph = null;
 
     private HashSet<Student> iAllStudents = new HashSet<Student>();
     
@@ -113,6 +117,7 @@ public class TimetableModel extends ConstantModel<Lecture, Placement> {
             addModelListener(new OnFlySectioning(this)); iOnFlySectioning = true;
         }
         iStudentWorkDayLimit = properties.getPropertyInt("StudentConflict.WorkDayLimit", -1);
+        iUseJenrlGraph = properties.getPropertyBoolean("General.JenrlGraph", iUseJenrlGraph);
         String criteria = properties.getProperty("General.Criteria",
                 // Objectives
                 StudentConflict.class.getName() + ";" +
@@ -176,6 +181,41 @@ public class TimetableModel extends ConstantModel<Lecture, Placement> {
         return iStudentWorkDayLimit;
     }
     
+    /**
+     * Joint enrollment graph, used by the student conflict criteria instead of iterating over the
+     * {@link JenrlConstraint}s of a class. The graph is only used when General.JenrlGraph is set to true (defaults
+     * to false). It is created when needed and dropped whenever a class or a joint enrollment constraint is added
+     * or removed, so it is best used on problems where the joint enrollments do not change much (e.g., during the
+     * search, but not during the student sectioning).
+     * @return joint enrollment graph, null if not used
+     */
+    public JenrlGraph getJenrlGraph() {
+        if (!iUseJenrlGraph) return null;
+        JenrlGraph graph = iJenrlGraph;
+        if (graph == null) {
+            synchronized (this) {
+                graph = iJenrlGraph;
+                if (graph == null) {
+                    List<Lecture> lectures = new ArrayList<Lecture>(variables());
+                    if (constantVariables() != null)
+                        lectures.addAll(constantVariables());
+                    graph = new JenrlGraph(lectures);
+                    iJenrlGraph = graph;
+                }
+            }
+        }
+        return graph;
+    }
+    
+    /**
+     * Called by a {@link JenrlConstraint} when its number of joint enrollments has changed
+     * @param jenrl joint enrollment constraint
+     */
+    public void jenrlChanged(JenrlConstraint jenrl) {
+        JenrlGraph graph = iJenrlGraph;
+        if (graph != null) graph.update(jenrl);
+    }
+    
     /**
      * Returns interface to the student sectioning functions needed during course timetabling.
      * Defaults to an instance of {@link DefaultStudentSectioning}, can be changed using the StudentSectioning.Class parameter.
@@ -324,6 +364,18 @@ public class TimetableModel extends ConstantModel<Lecture, Placement> {
         return ret;
     }
 
+    @Override
+    public void addVariable(Lecture variable) {
+        super.addVariable(variable);
+        iJenrlGraph = null;
+    }
+
+    @Override
+    public void removeVariable(Lecture variable) {
+        super.removeVariable(variable);
+        iJenrlGraph = null;
+    }
+
     @Override
     public void addConstraint(Constraint<Lecture, Placement> constraint) {
         super.addConstraint(constraint);
@@ -331,6 +383,7 @@ public class TimetableModel extends ConstantModel<Lecture, Placement> {
             iInstructorConstraints.add((InstructorConstraint) constraint);
         } else if (constraint instanceof JenrlConstraint) {
             iJenrlConstraints.add((JenrlConstraint) constraint);
+            iJenrlGraph = null;
         } else if (constraint instanceof RoomConstraint) {
             iRoomConstraints.add((RoomConstraint) constraint);
         } else if (constraint instanceof DepartmentSpreadConstraint) {
@@ -353,6 +406,7 @@ public class TimetableModel extends ConstantModel<Lecture, Placement> {
             iInstructorConstraints.remove(constraint);
         } else if (constraint instanceof JenrlConstraint) {
             iJenrlConstraints.remove(constraint);
+            iJenrlGraph = null;
         } else if (constraint instanceof RoomConstraint) {
             iRoomConstraints.remove(constraint);
         } else if (constraint instanceof DepartmentSpreadConstraint) {
@@ -451,6 +505,79 @@ public class TimetableModel extends ConstantModel<Lecture, Placement> {
         iAllStudents.remove(student);
     }
 
+    /**
+     * Compute the domains of all the classes ahead of time, using the number of threads given by the
+     * General.DomainThreads parameter (defaults to the number of available processors).
+     * @see TimetableModel#computeDomains(int)
+     */
+    public void computeDomains() {
+        computeDomains(getProperties().getPropertyInt("General.DomainThreads", Runtime.getRuntime().availableProcessors()));
+    }
+    
+    /**
+     * Compute the domains of all the classes ahead of time. Domains that do not depend on the current assignment
+     * (see {@link Lecture#isDomainCached()}) are computed in parallel, using the given number of threads. Classes
+     * whose domains are kept in the compact form ({@link Lecture#sSaveMemory} is set) need to check the validity of
+     * each placement, which is done afterwards using the calling thread. The progress (if registered for this model)
+     * is incremented for each class.
+     * @param nrThreads number of threads to use
+     */
+    public void computeDomains(int nrThreads) {
+        final Progress progress = Progress.getInstance(this);
+        List<Lecture> parallel = new ArrayList<Lecture>();
+        List<Lecture> serial = new ArrayList<Lecture>();
+        for (Lecture lecture: variables()) {
+            if (!lecture.isDomainCached()) {
+                synchronized (progress) { progress.incProgress(); }
+            } else if (Lecture.sSaveMemory && !lecture.isCommitted()) {
+                serial.add(lecture);
+            } else {
+                parallel.add(lecture);
+            }
+        }
+        if (nrThreads <= 1 || parallel.size() <= 1) {
+            serial.addAll(0, parallel);
+        } else {
+            final Iterator<Lecture> lectures = parallel.iterator();
+            final List<RuntimeException> errors = new ArrayList<RuntimeException>();
+            List<Thread> threads = new ArrayList<Thread>();
+            for (int i = 0; i < Math.min(nrThreads, parallel.size()); i++) {
+                Thread thread = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (;;) {
+                                Lecture lecture = null;
+                                synchronized (lectures) {
+                                    if (!lectures.hasNext()) break;
+                                    lecture = lectures.next();
+                                }
+                                lecture.values(null);
+                                synchronized (progress) { progress.incProgress(); }
+                            }
+                        } catch (RuntimeException e) {
+                            synchronized (errors) { errors.add(e); }
+                        }
+                    }
+                };
+                thread.setName("DomainThread-" + (1 + i));
+                thread.setDaemon(true);
+                thread.start();
+                threads.add(thread);
+            }
+            for (Thread thread: threads) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {}
+            }
+            if (!errors.isEmpty()) throw errors.get(0);
+        }
+        for (Lecture lecture: serial) {
+            lecture.values(null);
+            progress.incProgress();
+        }
+    }
+
     /**
      * Returns amount of allocated memory.
      * 
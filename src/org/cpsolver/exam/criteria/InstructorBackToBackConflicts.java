@@ -1,9 +1,9 @@
 package org.cpsolver.exam.criteria;
 
-import java.util.Map;
 import java.util.Set;
 
 import org.cpsolver.exam.model.Exam;
+import org.cpsolver.exam.model.ExamContext;
 import org.cpsolver.exam.model.ExamInstructor;
 import org.cpsolver.exam.model.ExamModel;
 import org.cpsolver.exam.model.ExamPeriod;
@@ -68,22 +68,28 @@ public class InstructorBackToBackConflicts extends StudentBackToBackConflicts {
         Exam exam = value.variable();
         int penalty = 0;
         ExamPeriod period = value.getPeriod();
-        Map<ExamInstructor, Set<Exam>> prev = (period.prev() != null && (isDayBreakBackToBack() || period.prev().getDay() == period.getDay()) ? ((ExamModel)getModel()).getInstructorsOfPeriod(assignment, period.prev()) : null);
-        Map<ExamInstructor, Set<Exam>> next = (period.next() != null && (isDayBreakBackToBack() || period.next().getDay() == period.getDay()) ? ((ExamModel)getModel()).getInstructorsOfPeriod(assignment, period.next()) : null);
+        ExamContext context = ((ExamModel)getModel()).getContext(assignment);
+        if (context.getConflictGraph() != null && context.getConflictGraph().index(exam) >= 0) {
+            // sum of the instructors shared with the exams of the previous and the following period
+            if (period.prev() != null && (isDayBreakBackToBack() || period.prev().getDay() == period.getDay()))
+                penalty += context.getInstructorConflictsOfPeriod(exam, period.prev().getIndex());
+            if (period.next() != null && (isDayBreakBackToBack() || period.next().getDay() == period.getDay()))
+                penalty += context.getInstructorConflictsOfPeriod(exam, period.next().getIndex());
+            return penalty;
+        }
+        ExamPeriod prev = (period.prev() != null && (isDayBreakBackToBack() || period.prev().getDay() == period.getDay()) ? period.prev() : null);
+        ExamPeriod next = (period.next() != null && (isDayBreakBackToBack() || period.next().getDay() == period.getDay()) ? period.next() : null);
+        ExamPeriod current = context.getExamPeriod(exam);
         for (ExamInstructor s : exam.getInstructors()) {
             if (prev != null) {
-                Set<Exam> exams = prev.get(s);
-                if (exams != null) {
-                    int nrExams = exams.size() + (exams.contains(exam) ? -1 : 0);
-                    penalty += nrExams;
-                }
+                int nrExams = context.getNrExamsOfPeriod(s, prev.getIndex());
+                if (nrExams > 0)
+                    penalty += nrExams + (current != null && current.getIndex() == prev.getIndex() ? -1 : 0);
             }
             if (next != null) {
-                Set<Exam> exams = next.get(s);
-                if (exams != null) {
-                    int nrExams = exams.size() + (exams.contains(exam) ? -1 : 0);
-                    penalty += nrExams;
-                }
+                int nrExams = context.getNrExamsOfPeriod(s, next.getIndex());
+                if (nrExams > 0)
+                    penalty += nrExams + (current != null && current.getIndex() == next.getIndex() ? -1 : 0);
             }
         }
         /*
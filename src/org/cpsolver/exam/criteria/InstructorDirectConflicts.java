@@ -5,6 +5,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.cpsolver.exam.model.Exam;
+import org.cpsolver.exam.model.ExamContext;
 import org.cpsolver.exam.model.ExamInstructor;
 import org.cpsolver.exam.model.ExamModel;
 import org.cpsolver.exam.model.ExamPeriod;
@@ -64,11 +65,16 @@ public class InstructorDirectConflicts extends StudentDirectConflicts {
     public double getValue(Assignment<Exam, ExamPlacement> assignment, ExamPlacement value, Set<ExamPlacement> conflicts) {
         Exam exam = value.variable();
         int penalty = 0;
-        Map<ExamInstructor, Set<Exam>> instructors = ((ExamModel)getModel()).getInstructorsOfPeriod(assignment, value.getPeriod());
+        ExamContext context = ((ExamModel)getModel()).getContext(assignment);
+        int correlated = context.getInstructorCorrelatedExamsOfPeriod(exam, value.getPeriod().getIndex());
+        if (correlated == 0) return 0; // no other exam of the period shares an instructor with this exam
+        if (correlated == 1) return context.getInstructorConflictsOfPeriod(exam, value.getPeriod().getIndex()); // all shared instructors are in a conflict
+        ExamPeriod current = context.getExamPeriod(exam);
+        boolean placed = (current != null && current.getIndex() == value.getPeriod().getIndex());
         for (ExamInstructor s : exam.getInstructors()) {
-            Set<Exam> exams = instructors.get(s);
-            if (exams == null) continue;
-            int nrExams = exams.size() + (exams.contains(exam) ? 0 : 1);
+            int nrExams = context.getNrExamsOfPeriod(s, value.getPeriod().getIndex());
+            if (nrExams == 0) continue;
+            if (!placed) nrExams++;
             if (nrExams > 1)
                 penalty++;
         }
@@ -87,14 +93,9 @@ public class InstructorDirectConflicts extends StudentDirectConflicts {
     public double getValue(Assignment<Exam, ExamPlacement> assignment, Collection<Exam> variables) {
         int ret = 0;
         ExamModel m = (ExamModel)getModel();
-        for (ExamPeriod p: m.getPeriods()) {
-            Map<ExamInstructor, Set<Exam>> instructors = ((ExamModel)getModel()).getInstructorsOfPeriod(assignment, p);
-            for (Set<Exam> exams: instructors.values()) {
-                int nrExams = exams.size();
-                if (nrExams > 1)
-                    ret += nrExams - 1;
-            }
-        }
+        ExamContext context = m.getContext(assignment);
+        for (ExamPeriod p: m.getPeriods())
+            ret += context.getInstructorExcessOfPeriod(p.getIndex(), 1);
         return ret;
     }
 
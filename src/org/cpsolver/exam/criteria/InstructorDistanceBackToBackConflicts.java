@@ -1,9 +1,9 @@
 package org.cpsolver.exam.criteria;
 
-import java.util.Map;
 import java.util.Set;
 
 import org.cpsolver.exam.model.Exam;
+import org.cpsolver.exam.model.ExamContext;
 import org.cpsolver.exam.model.ExamInstructor;
 import org.cpsolver.exam.model.ExamModel;
 import org.cpsolver.exam.model.ExamPeriod;
@@ -72,29 +72,28 @@ public class InstructorDistanceBackToBackConflicts extends StudentDistanceBackTo
             return 0;
         int penalty = 0;
         ExamPeriod period = value.getPeriod();
-        Map<ExamInstructor, Set<Exam>> prev = (period.prev() != null && period.prev().getDay() == period.getDay() ? ((ExamModel)getModel()).getInstructorsOfPeriod(assignment, period.prev()) : null);
-        Map<ExamInstructor, Set<Exam>> next = (period.next() != null && period.next().getDay() == period.getDay() ? ((ExamModel)getModel()).getInstructorsOfPeriod(assignment, period.next()) : null);
+        ExamPeriod prev = (period.prev() != null && period.prev().getDay() == period.getDay() ? period.prev() : null);
+        ExamPeriod next = (period.next() != null && period.next().getDay() == period.getDay() ? period.next() : null);
+        ExamContext context = ((ExamModel)getModel()).getContext(assignment);
         for (ExamInstructor s : exam.getInstructors()) {
-            if (prev != null) {
-                Set<Exam> exams = prev.get(s);
-                if (exams != null)
-                    for (Exam x : exams) {
-                        if (x.equals(exam))
-                            continue;
-                        if (value.getDistanceInMeters(assignment.getValue(x)) > getBackToBackDistance())
-                            penalty++;
-                    }
-            }
-            if (next != null) {
-                Set<Exam> exams = next.get(s);
-                if (exams != null)
-                    for (Exam x : exams) {
-                        if (x.equals(exam))
-                            continue;
-                        if (value.getDistanceInMeters(assignment.getValue(x)) > getBackToBackDistance())
-                            penalty++;
-                    }
-            }
+            if (prev != null && context.getNrExamsOfPeriod(s, prev.getIndex()) > 0)
+                for (Exam x : s.variables()) {
+                    if (x.equals(exam))
+                        continue;
+                    if (!prev.equals(context.getExamPeriod(x)))
+                        continue;
+                    if (value.getDistanceInMeters(assignment.getValue(x)) > getBackToBackDistance())
+                        penalty++;
+                }
+            if (next != null && context.getNrExamsOfPeriod(s, next.getIndex()) > 0)
+                for (Exam x : s.variables()) {
+                    if (x.equals(exam))
+                        continue;
+                    if (!next.equals(context.getExamPeriod(x)))
+                        continue;
+                    if (value.getDistanceInMeters(assignment.getValue(x)) > getBackToBackDistance())
+                        penalty++;
+                }
         }
         /*
         for (ExamInstructor s : exam.getInstructors()) {
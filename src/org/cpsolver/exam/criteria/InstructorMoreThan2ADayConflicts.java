@@ -2,10 +2,10 @@ package org.cpsolver.exam.criteria;
 
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 import org.cpsolver.exam.model.Exam;
+import org.cpsolver.exam.model.ExamContext;
 import org.cpsolver.exam.model.ExamInstructor;
 import org.cpsolver.exam.model.ExamModel;
 import org.cpsolver.exam.model.ExamPeriod;
@@ -65,11 +65,15 @@ public class InstructorMoreThan2ADayConflicts extends StudentMoreThan2ADayConfli
     public double getValue(Assignment<Exam, ExamPlacement> assignment, ExamPlacement value, Set<ExamPlacement> conflicts) {
         Exam exam = value.variable();
         int penalty = 0;
-        Map<ExamInstructor, Set<Exam>> instructors = ((ExamModel)getModel()).getInstructorsOfDay(assignment, value.getPeriod());
+        ExamContext context = ((ExamModel)getModel()).getContext(assignment);
+        int correlated = context.getInstructorCorrelatedExamsOfDay(exam, value.getPeriod().getDay());
+        if (correlated == 0 || correlated == 1) return 0; // there are no two other exams of the day sharing an instructor with this exam
+        ExamPeriod current = context.getExamPeriod(exam);
+        boolean placed = (current != null && current.getDay() == value.getPeriod().getDay());
         for (ExamInstructor s : exam.getInstructors()) {
-            Set<Exam> exams = instructors.get(s);
-            if (exams == null || exams.size() < 2) continue;
-            int nrExams = exams.size() + (exams.contains(exam) ? 0 : 1);
+            int nrExams = context.getNrExamsOfDay(s, value.getPeriod().getDay());
+            if (nrExams < 2) continue;
+            if (!placed) nrExams++;
             if (nrExams > 2)
                 penalty++;
         }
@@ -91,12 +95,7 @@ public class InstructorMoreThan2ADayConflicts extends StudentMoreThan2ADayConfli
         Set<Integer> days = new HashSet<Integer>();
         for (ExamPeriod p: m.getPeriods()) {
             if (days.add(p.getDay())) {
-                Map<ExamInstructor, Set<Exam>> instructors = ((ExamModel)getModel()).getInstructorsOfDay(assignment, p);
-                for (Set<Exam> exams: instructors.values()) {
-                    int nrExams = exams.size();
-                    if (nrExams > 2)
-                        ret += nrExams - 2;
-                }
+                ret += m.getContext(assignment).getInstructorExcessOfDay(p.getDay(), 2);
             }
         }
         return ret;
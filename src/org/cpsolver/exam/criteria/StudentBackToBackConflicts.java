@@ -5,6 +5,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.cpsolver.exam.model.Exam;
+import org.cpsolver.exam.model.ExamContext;
 import org.cpsolver.exam.model.ExamModel;
 import org.cpsolver.exam.model.ExamPeriod;
 import org.cpsolver.exam.model.ExamPlacement;
@@ -117,22 +118,28 @@ public class StudentBackToBackConflicts extends ExamCriterion {
         Exam exam = value.variable();
         int penalty = 0;
         ExamPeriod period = value.getPeriod();
-        Map<ExamStudent, Set<Exam>> prev = (period.prev() != null && (isDayBreakBackToBack() || period.prev().getDay() == period.getDay()) ? ((ExamModel)getModel()).getStudentsOfPeriod(assignment, period.prev()) : null);
-        Map<ExamStudent, Set<Exam>> next = (period.next() != null && (isDayBreakBackToBack() || period.next().getDay() == period.getDay()) ? ((ExamModel)getModel()).getStudentsOfPeriod(assignment, period.next()) : null);
+        ExamContext context = ((ExamModel)getModel()).getContext(assignment);
+        if (context.getConflictGraph() != null && context.getConflictGraph().index(exam) >= 0) {
+            // sum of the students shared with the exams of the previous and the following period
+            if (period.prev() != null && (isDayBreakBackToBack() || period.prev().getDay() == period.getDay()))
+                penalty += context.getStudentConflictsOfPeriod(exam, period.prev().getIndex());
+            if (period.next() != null && (isDayBreakBackToBack() || period.next().getDay() == period.getDay()))
+                penalty += context.getStudentConflictsOfPeriod(exam, period.next().getIndex());
+            return penalty;
+        }
+        ExamPeriod prev = (period.prev() != null && (isDayBreakBackToBack() || period.prev().getDay() == period.getDay()) ? period.prev() : null);
+        ExamPeriod next = (period.next() != null && (isDayBreakBackToBack() || period.next().getDay() == period.getDay()) ? period.next() : null);
+        ExamPeriod current = context.getExamPeriod(exam);
         for (ExamStudent s : exam.getStudents()) {
             if (prev != null) {
-                Set<Exam> exams = prev.get(s);
-                if (exams != null) {
-                    int nrExams = exams.size() + (exams.contains(exam) ? -1 : 0);
-                    penalty += nrExams;
-                }
+                int nrExams = context.getNrExamsOfPeriod(s, prev.getIndex());
+                if (nrExams > 0)
+                    penalty += nrExams + (current != null && current.getIndex() == prev.getIndex() ? -1 : 0);
             }
             if (next != null) {
-                Set<Exam> exams = next.get(s);
-                if (exams != null) {
-                    int nrExams = exams.size() + (exams.contains(exam) ? -1 : 0);
-                    penalty += nrExams;
-                }
+                int nrExams = context.getNrExamsOfPeriod(s, next.getIndex());
+                if (nrExams > 0)
+                    penalty += nrExams + (current != null && current.getIndex() == next.getIndex() ? -1 : 0);
             }
         }
         /*
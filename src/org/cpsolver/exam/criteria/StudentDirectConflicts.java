@@ -5,6 +5,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.cpsolver.exam.model.Exam;
+import org.cpsolver.exam.model.ExamContext;
 import org.cpsolver.exam.model.ExamModel;
 import org.cpsolver.exam.model.ExamPeriod;
 import org.cpsolver.exam.model.ExamPlacement;
@@ -65,11 +66,16 @@ public class StudentDirectConflicts extends ExamCriterion {
         Exam exam = value.variable();
         int penalty = 0;
         ExamPeriod period = value.getPeriod();
-        Map<ExamStudent, Set<Exam>> students = ((ExamModel)getModel()).getStudentsOfPeriod(assignment, period);
+        ExamContext context = ((ExamModel)getModel()).getContext(assignment);
+        int correlated = context.getStudentCorrelatedExamsOfPeriod(exam, period.getIndex());
+        if (correlated == 0) return 0; // no other exam of the period shares a student with this exam
+        if (correlated == 1) return context.getStudentConflictsOfPeriod(exam, period.getIndex()); // all shared students are in a conflict
+        ExamPeriod current = context.getExamPeriod(exam);
+        boolean placed = (current != null && current.getIndex() == period.getIndex());
         for (ExamStudent s : exam.getStudents()) {
-            Set<Exam> exams = students.get(s);
-            if (exams == null) continue;
-            int nrExams = exams.size() + (exams.contains(exam) ? 0 : 1);
+            int nrExams = context.getNrExamsOfPeriod(s, period.getIndex());
+            if (nrExams == 0) continue;
+            if (!placed) nrExams++;
             if (nrExams > 1)
                 penalty++;
         }
@@ -102,14 +108,9 @@ public class StudentDirectConflicts extends ExamCriterion {
     public double getValue(Assignment<Exam, ExamPlacement> assignment, Collection<Exam> variables) {
         int ret = 0;
         ExamModel m = (ExamModel)getModel();
-        for (ExamPeriod p: m.getPeriods()) {
-            Map<ExamStudent, Set<Exam>> students = ((ExamModel)getModel()).getStudentsOfPeriod(assignment, p);
-            for (Set<Exam> exams: students.values()) {
-                int nrExams = exams.size();
-                if (nrExams > 1)
-                    ret += nrExams - 1;
-            }
-        }
+        ExamContext context = m.getContext(assignment);
+        for (ExamPeriod p: m.getPeriods())
+            ret += context.getStudentExcessOfPeriod(p.getIndex(), 1);
         return ret;
     }
 
@@ -6,6 +6,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.cpsolver.exam.model.Exam;
+import org.cpsolver.exam.model.ExamContext;
 import org.cpsolver.exam.model.ExamModel;
 import org.cpsolver.exam.model.ExamPeriod;
 import org.cpsolver.exam.model.ExamPlacement;
@@ -61,11 +62,15 @@ public class StudentMoreThan2ADayConflicts extends ExamCriterion {
         Exam exam = value.variable();
         int penalty = 0;
         ExamPeriod period = value.getPeriod();
-        Map<ExamStudent, Set<Exam>> students = ((ExamModel)getModel()).getStudentsOfDay(assignment, period);
+        ExamContext context = ((ExamModel)getModel()).getContext(assignment);
+        int correlated = context.getStudentCorrelatedExamsOfDay(exam, period.getDay());
+        if (correlated == 0 || correlated == 1) return 0; // there are no two other exams of the day sharing a student with this exam
+        ExamPeriod current = context.getExamPeriod(exam);
+        boolean placed = (current != null && current.getDay() == period.getDay());
         for (ExamStudent s : exam.getStudents()) {
-            Set<Exam> exams = students.get(s);
-            if (exams == null || exams.size() < 2) continue;
-            int nrExams = exams.size() + (exams.contains(exam) ? 0 : 1);
+            int nrExams = context.getNrExamsOfDay(s, period.getDay());
+            if (nrExams < 2) continue;
+            if (!placed) nrExams++;
             if (nrExams > 2)
                 penalty++;
         }
@@ -103,12 +108,7 @@ public class StudentMoreThan2ADayConflicts extends ExamCriterion {
         Set<Integer> days = new HashSet<Integer>();
         for (ExamPeriod p: m.getPeriods()) {
             if (days.add(p.getDay())) {
-                Map<ExamStudent, Set<Exam>> students = ((ExamModel)getModel()).getStudentsOfDay(assignment, p);
-                for (Set<Exam> exams: students.values()) {
-                    int nrExams = exams.size();
-                    if (nrExams > 2)
-                        ret += nrExams - 2;
-                }
+                ret += m.getContext(assignment).getStudentExcessOfDay(p.getDay(), 2);
             }
         }
         return ret;
@@ -890,11 +890,12 @@ public class Exam extends Variable<Exam, ExamPlacement> {
      * @return true if there is a student conflict
      */
     public boolean hasStudentConflictWithPreAssigned(Assignment<Exam, ExamPlacement> assignment, ExamPeriod period) {
-        Map<ExamStudent, Set<Exam>> studentsOfPeriod = ((ExamModel)getModel()).getStudentsOfPeriod(assignment, period);
+        ExamContext context = ((ExamModel)getModel()).getContext(assignment);
         for (ExamStudent s : getStudents()) {
-            Set<Exam> exams = studentsOfPeriod.get(s);
-            if (exams == null) continue;
-            for (Exam exam : exams) {
+            if (context.getNrExamsOfPeriod(s, period.getIndex()) == 0) continue;
+            for (Exam exam : s.variables()) {
+                ExamPlacement placement = assignment.getValue(exam);
+                if (placement == null || placement.getPeriod().getIndex() != period.getIndex()) continue;
                 if (!exam.equals(this) && !s.canConflict(this, exam)) return true;
             }
         }
@@ -913,11 +914,12 @@ public class Exam extends Variable<Exam, ExamPlacement> {
      */
     public int countStudentConflicts(Assignment<Exam, ExamPlacement> assignment, ExamPeriodPlacement period) {
         int conf = 0;
-        Map<ExamStudent, Set<Exam>> studentsOfPeriod = ((ExamModel)getModel()).getStudentsOfPeriod(assignment, period.getPeriod());
+        ExamContext context = ((ExamModel)getModel()).getContext(assignment);
         for (ExamStudent s : getStudents()) {
-            Set<Exam> exams = studentsOfPeriod.get(s);
-            if (exams == null) continue;
-            for (Exam exam : exams) {
+            if (context.getNrExamsOfPeriod(s, period.getPeriod().getIndex()) == 0) continue;
+            for (Exam exam : s.variables()) {
+                ExamPlacement placement = assignment.getValue(exam);
+                if (placement == null || placement.getPeriod().getIndex() != period.getPeriod().getIndex()) continue;
                 if (!exam.equals(this) && !s.canConflict(this, exam)) conf++;
             }
         }
@@ -937,11 +939,12 @@ public class Exam extends Variable<Exam, ExamPlacement> {
      */
     public HashSet<Exam> getStudentConflicts(Assignment<Exam, ExamPlacement> assignment, ExamPeriod period) {
         HashSet<Exam> conf = new HashSet<Exam>();
-        Map<ExamStudent, Set<Exam>> studentsOfPeriod = ((ExamModel)getModel()).getStudentsOfPeriod(assignment, period);
+        ExamContext context = ((ExamModel)getModel()).getContext(assignment);
         for (ExamStudent s : getStudents()) {
-            Set<Exam> exams = studentsOfPeriod.get(s);
-            if (exams == null) continue;
-            for (Exam exam : exams) {
+            if (context.getNrExamsOfPeriod(s, period.getIndex()) == 0) continue;
+            for (Exam exam : s.variables()) {
+                ExamPlacement placement = assignment.getValue(exam);
+                if (placement == null || placement.getPeriod().getIndex() != period.getIndex()) continue;
                 if (!exam.equals(this) && !s.canConflict(this, exam)) conf.add(exam);
             }
         }
@@ -957,11 +960,12 @@ public class Exam extends Variable<Exam, ExamPlacement> {
      *            a period
      */
     public void allowAllStudentConflicts(Assignment<Exam, ExamPlacement> assignment, ExamPeriod period) {
-        Map<ExamStudent, Set<Exam>> studentsOfPeriod = ((ExamModel)getModel()).getStudentsOfPeriod(assignment, period);
+        ExamContext context = ((ExamModel)getModel()).getContext(assignment);
         for (ExamStudent s : getStudents()) {
-            Set<Exam> exams = studentsOfPeriod.get(s);
-            if (exams == null) continue;
-            for (Exam exam : exams) {
+            if (context.getNrExamsOfPeriod(s, period.getIndex()) == 0) continue;
+            for (Exam exam : s.variables()) {
+                ExamPlacement placement = assignment.getValue(exam);
+                if (placement == null || placement.getPeriod().getIndex() != period.getIndex()) continue;
                 if (exam.equals(this)) continue;
                 exam.setAllowDirectConflicts(true);
                 setAllowDirectConflicts(true);
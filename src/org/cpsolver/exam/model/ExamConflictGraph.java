@@ -0,0 +1,206 @@
+package org.cpsolver.exam.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Examination conflict graph. A compact (compressed sparse row) representation of the
+ * exam &ndash; exam adjacency, two exams are adjacent when they share at least one student
+ * or instructor (see {@link Exam#getStudentCorrelatedExams()}). Exams are identified by
+ * their variable index (see {@link Exam#getIndex()}), edges of an exam are stored in a
+ * continuous range of primitive arrays (adjacent exam index, number of shared students, and
+ * number of shared instructors), sorted by the index of the adjacent exam. <br>
+ * <br>
+ * The graph is created by {@link ExamModel#getConflictGraph()} when the first assignment
+ * context is created, and it is used by {@link ExamContext} to keep track of the number of
+ * shared students and instructors with the exams that are assigned in each period, so that
+ * the student and instructor conflict criteria can evaluate a placement by looking at the
+ * neighbouring exams instead of iterating over all the students of the exam.
+ *
+ * @version ExamTT 1.3 (Examination Timetabling)<br>
+ *          Copyright (C) 2008 - 2014 Tomas Muller<br>
+ *          <a href="mailto:muller@unitime.org">muller@unitime.org</a><br>
+ *          <a href="http://muller.unitime.org">http://muller.unitime.org</a><br>
+ * <br>
+ *          This library is free software; you can redistribute it and/or modify
+ *          it under the terms of the GNU Lesser General Public License as
+ *          published by the Free Software Foundation; either version 3 of the
+ *          License, or (at your option) any later version. <br>
+ * <br>
+ *          This library is distributed in the hope that it will be useful, but
+ *          WITHOUT ANY WARRANTY; without even the implied warranty of
+ *          MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *          Lesser General Public License for more details. <br>
+ * <br>
+ *          You should have received a copy of the GNU Lesser General Public
+ *          License along with this library; if not see
+ *          <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ */
+public class ExamConflictGraph {
+    private Exam[] iExams;
+    private int[] iOffsets;
+    private int[] iAdjacent;
+    private int[] iStudents;
+    private int[] iInstructors;
+
+    /**
+     * Create the graph from the given exams, their students and instructors
+     * @param exams all exams of the model
+     */
+    public ExamConflictGraph(Collection<Exam> exams) {
+        int size = 0;
+        for (Exam exam: exams)
+            size = Math.max(size, exam.getIndex() + 1);
+        iExams = new Exam[size];
+        for (Exam exam: exams)
+            if (exam.getIndex() >= 0) iExams[exam.getIndex()] = exam;
+
+        iOffsets = new int[size + 1];
+        int[] students = new int[size], instructors = new int[size], touched = new int[size];
+        List<int[]> rows = new ArrayList<int[]>(size);
+        for (int i = 0; i < size; i++) {
+            int degree = 0;
+            if (iExams[i] != null) {
+                for (ExamStudent student: iExams[i].getStudents())
+                    for (Exam other: student.variables()) {
+                        if (other.equals(iExams[i]) || !contains(other)) continue;
+                        int j = other.getIndex();
+                        if (students[j] == 0 && instructors[j] == 0) touched[degree++] = j;
+                        students[j] ++;
+                    }
+                for (ExamInstructor instructor: iExams[i].getInstructors())
+                    for (Exam other: instructor.variables()) {
+                        if (other.equals(iExams[i]) || !contains(other)) continue;
+                        int j = other.getIndex();
+                        if (students[j] == 0 && instructors[j] == 0) touched[degree++] = j;
+                        instructors[j] ++;
+                    }
+            }
+            Arrays.sort(touched, 0, degree);
+            int[] row = new int[3 * degree];
+            for (int k = 0; k < degree; k++) {
+                int j = touched[k];
+                row[k] = j;
+                row[degree + k] = students[j]; students[j] = 0;
+                row[2 * degree + k] = instructors[j]; instructors[j] = 0;
+            }
+            rows.add(row);
+            iOffsets[i + 1] = iOffsets[i] + degree;
+        }
+        iAdjacent = new int[iOffsets[size]];
+        iStudents = new int[iOffsets[size]];
+        iInstructors = new int[iOffsets[size]];
+        for (int i = 0; i < size; i++) {
+            int[] row = rows.get(i);
+            int degree = row.length / 3;
+            System.arraycopy(row, 0, iAdjacent, iOffsets[i], degree);
+            System.arraycopy(row, degree, iStudents, iOffsets[i], degree);
+            System.arraycopy(row, 2 * degree, iInstructors, iOffsets[i], degree);
+        }
+    }
+
+    /**
+     * Index of an exam in the graph
+     * @param exam an exam
+     * @return its variable index, -1 if the exam is not a part of the graph
+     */
+    public int index(Exam exam) {
+        if (exam == null || exam.getIndex() < 0 || exam.getIndex() >= iExams.length) return -1;
+        return (iExams[exam.getIndex()] == exam ? exam.getIndex() : -1);
+    }
+
+    /** True if the given exam is a part of the graph */
+    private boolean contains(Exam exam) {
+        return index(exam) >= 0;
+    }
+
+    /**
+     * Number of exams (the size of the variable index range)
+     * @return number of exams
+     */
+    public int size() {
+        return iExams.length;
+    }
+
+    /**
+     * Number of edges (twice the number of pairs of exams that share a student or an instructor)
+     * @return number of edges
+     */
+    public int nrEdges() {
+        return iAdjacent.length;
+    }
+
+    /**
+     * Exam of the given index
+     * @param index exam index
+     * @return exam, null if there is no exam of the given index
+     */
+    public Exam getExam(int index) {
+        return iExams[index];
+    }
+
+    /**
+     * First edge of the given exam
+     * @param index exam index
+     * @return index of the first edge of the exam
+     */
+    public int getEdgeStart(int index) {
+        return iOffsets[index];
+    }
+
+    /**
+     * End of the edges of the given exam (exclusive)
+     * @param index exam index
+     * @return index after the last edge of the exam
+     */
+    public int getEdgeEnd(int index) {
+        return iOffsets[index + 1];
+    }
+
+    /**
+     * Adjacent exam of an edge
+     * @param edge edge index
+     * @return index of the other exam of the edge
+     */
+    public int getAdjacent(int edge) {
+        return iAdjacent[edge];
+    }
+
+    /**
+     * Number of students of an edge
+     * @param edge edge index
+     * @return number of students attending both exams
+     */
+    public int getNrStudents(int edge) {
+        return iStudents[edge];
+    }
+
+    /**
+     * Number of instructors of an edge
+     * @param edge edge index
+     * @return number of instructors of both exams
+     */
+    public int getNrInstructors(int edge) {
+        return iInstructors[edge];
+    }
+
+    /**
+     * Find the edge between two exams
+     * @param e1 first exam
+     * @param e2 second exam
+     * @return index of the edge going from the first exam to the second one, -1 if the two exams do not share any student or instructor
+     */
+    public int getEdge(Exam e1, Exam e2) {
+        int i1 = index(e1), i2 = index(e2);
+        if (i1 < 0 || i2 < 0) return -1;
+        int edge = Arrays.binarySearch(iAdjacent, iOffsets[i1], iOffsets[i1 + 1], i2);
+        return (edge < 0 ? -1 : edge);
+    }
+
+    @Override
+    public String toString() {
+        return "ExamConflictGraph{exams=" + size() + ", edges=" + nrEdges() + "}";
+    }
+}
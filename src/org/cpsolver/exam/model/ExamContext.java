@@ -1,34 +1,70 @@
 package org.cpsolver.exam.model;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.Arrays;
 
 import org.cpsolver.ifs.assignment.Assignment;
 import org.cpsolver.ifs.assignment.context.AssignmentConstraintContext;
 
-
+/**
+ * Examination timetabling assignment context. For each period and each day, it keeps the number of exams
+ * of each student and of each instructor (identified by their dense indexes, see {@link ExamStudent#getIndex()}
+ * and {@link ExamInstructor#getIndex()}) that are placed in the period or the day. Exams of a student or an
+ * instructor that are placed in a period can be enumerated without any allocation, by checking the
+ * placements of {@link ExamStudent#variables()} once the counter is not zero. When the
+ * {@link ExamConflictGraph} is used, the context also keeps the number of shared students and instructors with
+ * the exams placed in each period (see {@link ExamContext#getStudentConflictsOfPeriod(Exam, int)}).
+ * <br><br>
+ * The tables are enlarged when a student, an instructor, or an exam that was added to the model after the context
+ * was created gets assigned. Such an exam is not a part of the exam conflict graph of the context, so the context
+ * stops using the graph from that time on (see {@link ExamContext#getConflictGraph()}).
+ * 
+ * @version ExamTT 1.3 (Examination Timetabling)<br>
+ *          Copyright (C) 2008 - 2014 Tomas Muller<br>
+ *          <a href="mailto:muller@unitime.org">muller@unitime.org</a><br>
+ *          <a href="http://muller.unitime.org">http://muller.unitime.org</a><br>
+ * <br>
+ *          This library is free software; you can redistribute it and/or modify
+ *          it under the terms of the GNU Lesser General Public License as
+ *          published by the Free Software Foundation; either version 3 of the
+ *          License, or (at your option) any later version. <br>
+ * <br>
+ *          This library is distributed in the hope that it will be useful, but
+ *          WITHOUT ANY WARRANTY; without even the implied warranty of
+ *          MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *          Lesser General Public License for more details. <br>
+ * <br>
+ *          You should have received a copy of the GNU Lesser General Public
+ *          License along with this library; if not see
+ *          <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ */
 public class ExamContext implements AssignmentConstraintContext<Exam, ExamPlacement> {
-    private Map<ExamStudent, Set<Exam>>[] iStudentTable;
-    private Map<ExamStudent, Set<Exam>>[] iStudentDayTable;
-    private Map<ExamInstructor, Set<Exam>>[] iInstructorTable;
-    private Map<ExamInstructor, Set<Exam>>[] iInstructorDayTable;
+    private short[][] iStudentTable;
+    private short[][] iStudentDayTable;
+    private short[][] iInstructorTable;
+    private short[][] iInstructorDayTable;
+    private ExamPeriod[] iExamPeriods;
+    private int iNrStudents, iNrInstructors;
+    private ExamConflictGraph iGraph;
+    private int[][] iStudentPeriodConflicts, iStudentPeriodExams, iStudentDayExams;
+    private int[][] iInstructorPeriodConflicts, iInstructorPeriodExams, iInstructorDayExams;
     
-    @SuppressWarnings("unchecked")
     public ExamContext(ExamModel model, Assignment<Exam, ExamPlacement> assignment) {
-        iStudentTable = new Map[model.getNrPeriods()];
-        for (int i = 0; i < iStudentTable.length; i++)
-            iStudentTable[i] = new HashMap<ExamStudent, Set<Exam>>();
-        iStudentDayTable = new Map[model.getNrDays()];
-        for (int i = 0; i < iStudentDayTable.length; i++)
-            iStudentDayTable[i] = new HashMap<ExamStudent, Set<Exam>>();
-        iInstructorTable = new Map[model.getNrPeriods()];
-        for (int i = 0; i < iInstructorTable.length; i++)
-            iInstructorTable[i] = new HashMap<ExamInstructor, Set<Exam>>();
-        iInstructorDayTable = new Map[model.getNrDays()];
-        for (int i = 0; i < iInstructorDayTable.length; i++)
-            iInstructorDayTable[i] = new HashMap<ExamInstructor, Set<Exam>>();
+        iNrStudents = model.getNrIndexedStudents();
+        iNrInstructors = model.getNrIndexedInstructors();
+        iStudentTable = new short[model.getNrPeriods()][iNrStudents];
+        iStudentDayTable = new short[model.getNrDays()][iNrStudents];
+        iInstructorTable = new short[model.getNrPeriods()][iNrInstructors];
+        iInstructorDayTable = new short[model.getNrDays()][iNrInstructors];
+        iExamPeriods = new ExamPeriod[model.variables().size()];
+        iGraph = model.getConflictGraph();
+        if (iGraph != null) {
+            iStudentPeriodConflicts = new int[iGraph.size()][model.getNrPeriods()];
+            iStudentPeriodExams = new int[iGraph.size()][model.getNrPeriods()];
+            iStudentDayExams = new int[iGraph.size()][model.getNrDays()];
+            iInstructorPeriodConflicts = new int[iGraph.size()][model.getNrPeriods()];
+            iInstructorPeriodExams = new int[iGraph.size()][model.getNrPeriods()];
+            iInstructorDayExams = new int[iGraph.size()][model.getNrDays()];
+        }
         for (Exam exam: model.variables()) {
             ExamPlacement placement = assignment.getValue(exam);
             if (placement != null)
@@ -40,66 +76,249 @@ public class ExamContext implements AssignmentConstraintContext<Exam, ExamPlacem
     public void assigned(Assignment<Exam, ExamPlacement> assignment, ExamPlacement placement) {
         int period = placement.getPeriod().getIndex();
         int day = placement.getPeriod().getDay();
+        int index = placement.variable().getIndex();
+        if (index >= iExamPeriods.length)
+            iExamPeriods = Arrays.copyOf(iExamPeriods, Math.max(index + 1, 2 * iExamPeriods.length));
+        iExamPeriods[index] = placement.getPeriod();
         for (ExamStudent student: placement.variable().getStudents()) {
-            Set<Exam> examsThisPeriod = iStudentTable[period].get(student);
-            if (examsThisPeriod == null) {
-                examsThisPeriod = new HashSet<Exam>();
-                iStudentTable[period].put(student, examsThisPeriod);
-            }
-            examsThisPeriod.add(placement.variable());
-            Set<Exam> examsThisDay = iStudentDayTable[day].get(student);
-            if (examsThisDay == null) {
-                examsThisDay = new HashSet<Exam>();
-                iStudentDayTable[day].put(student, examsThisDay);
+            if (student.getIndex() >= iNrStudents) {
+                iNrStudents = Math.max(student.getIndex() + 1, 2 * iNrStudents);
+                enlarge(iStudentTable, iNrStudents);
+                enlarge(iStudentDayTable, iNrStudents);
             }
-            examsThisDay.add(placement.variable());
+            inc(iStudentTable[period], student.getIndex(), student);
+            inc(iStudentDayTable[day], student.getIndex(), student);
         }
         for (ExamInstructor instructor: placement.variable().getInstructors()) {
-            Set<Exam> examsThisPeriod = iInstructorTable[period].get(instructor);
-            if (examsThisPeriod == null) {
-                examsThisPeriod = new HashSet<Exam>();
-                iInstructorTable[period].put(instructor, examsThisPeriod);
+            if (instructor.getIndex() >= iNrInstructors) {
+                iNrInstructors = Math.max(instructor.getIndex() + 1, 2 * iNrInstructors);
+                enlarge(iInstructorTable, iNrInstructors);
+                enlarge(iInstructorDayTable, iNrInstructors);
             }
-            examsThisPeriod.add(placement.variable());
-            Set<Exam> examsThisDay = iInstructorDayTable[day].get(instructor);
-            if (examsThisDay == null) {
-                examsThisDay = new HashSet<Exam>();
-                iInstructorDayTable[day].put(instructor, examsThisDay);
-            }
-            examsThisDay.add(placement.variable());
+            inc(iInstructorTable[period], instructor.getIndex(), instructor);
+            inc(iInstructorDayTable[day], instructor.getIndex(), instructor);
         }
+        updateConflicts(placement, 1);
     }
     
     @Override
     public void unassigned(Assignment<Exam, ExamPlacement> assignment, ExamPlacement placement) {
         int period = placement.getPeriod().getIndex();
         int day = placement.getPeriod().getDay();
+        if (placement.variable().getIndex() < iExamPeriods.length)
+            iExamPeriods[placement.variable().getIndex()] = null;
         for (ExamStudent student: placement.variable().getStudents()) {
-            Set<Exam> examsThisPeriod = iStudentTable[period].get(student);
-            examsThisPeriod.remove(placement.variable());
-            if (examsThisPeriod.isEmpty())
-                iStudentTable[period].remove(student);
-            Set<Exam> examsThisDay = iStudentDayTable[day].get(student);
-            examsThisDay.remove(placement.variable());
-            if (examsThisDay.isEmpty())
-                iStudentDayTable[day].remove(student);
-        }for (ExamInstructor instructor: placement.variable().getInstructors()) {
-            Set<Exam> examsThisPeriod = iInstructorTable[period].get(instructor);
-            examsThisPeriod.remove(placement.variable());
-            if (examsThisPeriod.isEmpty())
-                iInstructorTable[period].remove(instructor);
-            Set<Exam> examsThisDay = iInstructorDayTable[day].get(instructor);
-            examsThisDay.remove(placement.variable());
-            if (examsThisDay.isEmpty())
-                iInstructorDayTable[day].remove(instructor);
+            if (student.getIndex() >= iNrStudents) continue;
+            iStudentTable[period][student.getIndex()] --;
+            iStudentDayTable[day][student.getIndex()] --;
+        }
+        for (ExamInstructor instructor: placement.variable().getInstructors()) {
+            if (instructor.getIndex() >= iNrInstructors) continue;
+            iInstructorTable[period][instructor.getIndex()] --;
+            iInstructorDayTable[day][instructor.getIndex()] --;
         }
+        updateConflicts(placement, -1);
+    }
+    
+    /**
+     * Enlarge all the rows of the given table to the given size
+     */
+    private static void enlarge(short[][] table, int size) {
+        for (int i = 0; i < table.length; i++)
+            table[i] = Arrays.copyOf(table[i], size);
+    }
+    
+    /**
+     * Increment a counter of a table, failing when the counter would overflow
+     */
+    private static void inc(short[] row, int index, Object owner) {
+        if (index < 0)
+            throw new IllegalStateException(owner + " has no index, it was not added to the model.");
+        if (row[index] == Short.MAX_VALUE)
+            throw new IllegalStateException(owner + " has more than " + Short.MAX_VALUE + " exams in a period or a day.");
+        row[index] ++;
+    }
+    
+    /**
+     * Update the counters of the exams that are adjacent to the given one in the exam conflict graph
+     */
+    private void updateConflicts(ExamPlacement placement, int delta) {
+        if (iGraph == null) return;
+        int index = iGraph.index(placement.variable());
+        if (index < 0) {
+            // exam added after the graph was created: the counters of its adjacent exams cannot be kept up to date
+            iGraph = null;
+            iStudentPeriodConflicts = null; iStudentPeriodExams = null; iStudentDayExams = null;
+            iInstructorPeriodConflicts = null; iInstructorPeriodExams = null; iInstructorDayExams = null;
+            return;
+        }
+        int period = placement.getPeriod().getIndex();
+        int day = placement.getPeriod().getDay();
+        for (int edge = iGraph.getEdgeStart(index); edge < iGraph.getEdgeEnd(index); edge++) {
+            int other = iGraph.getAdjacent(edge);
+            int students = iGraph.getNrStudents(edge);
+            if (students > 0) {
+                iStudentPeriodConflicts[other][period] += delta * students;
+                iStudentPeriodExams[other][period] += delta;
+                iStudentDayExams[other][day] += delta;
+            }
+            int instructors = iGraph.getNrInstructors(edge);
+            if (instructors > 0) {
+                iInstructorPeriodConflicts[other][period] += delta * instructors;
+                iInstructorPeriodExams[other][period] += delta;
+                iInstructorDayExams[other][day] += delta;
+            }
+        }
+    }
+    
+    /**
+     * Period of the given exam, as counted in the tables of this context. It may differ from the current assignment of the
+     * exam while the exam is being assigned or unassigned (e.g., when a criterion is updated).
+     * @param exam an exam
+     * @return period in which the exam is placed, null if the exam is not placed
+     */
+    public ExamPeriod getExamPeriod(Exam exam) { return (exam.getIndex() >= 0 && exam.getIndex() < iExamPeriods.length ? iExamPeriods[exam.getIndex()] : null); }
+    
+    /**
+     * Number of exams of the given student that are placed in the given period
+     * @param student a student
+     * @param period period index
+     * @return number of exams of the student in the period
+     */
+    public int getNrExamsOfPeriod(ExamStudent student, int period) { return (student.getIndex() >= 0 && student.getIndex() < iNrStudents ? iStudentTable[period][student.getIndex()] : 0); }
+    
+    /**
+     * Number of exams of the given student that are placed in the given day
+     * @param student a student
+     * @param day day index
+     * @return number of exams of the student in the day
+     */
+    public int getNrExamsOfDay(ExamStudent student, int day) { return (student.getIndex() >= 0 && student.getIndex() < iNrStudents ? iStudentDayTable[day][student.getIndex()] : 0); }
+    
+    /**
+     * Number of exams of the given instructor that are placed in the given period
+     * @param instructor an instructor
+     * @param period period index
+     * @return number of exams of the instructor in the period
+     */
+    public int getNrExamsOfPeriod(ExamInstructor instructor, int period) { return (instructor.getIndex() >= 0 && instructor.getIndex() < iNrInstructors ? iInstructorTable[period][instructor.getIndex()] : 0); }
+    
+    /**
+     * Number of exams of the given instructor that are placed in the given day
+     * @param instructor an instructor
+     * @param day day index
+     * @return number of exams of the instructor in the day
+     */
+    public int getNrExamsOfDay(ExamInstructor instructor, int day) { return (instructor.getIndex() >= 0 && instructor.getIndex() < iNrInstructors ? iInstructorDayTable[day][instructor.getIndex()] : 0); }
+    
+    /**
+     * Number of exams over the given limit, summed over all the students that have an exam in the given period
+     * @param period period index
+     * @param limit number of exams a student can have in the period without a conflict
+     * @return sum of max(0, number of exams of a student in the period - limit) over all students
+     */
+    public int getStudentExcessOfPeriod(int period, int limit) { return excess(iStudentTable[period], limit); }
+    
+    /**
+     * Number of exams over the given limit, summed over all the students that have an exam in the given day
+     * @param day day index
+     * @param limit number of exams a student can have in the day without a conflict
+     * @return sum of max(0, number of exams of a student in the day - limit) over all students
+     */
+    public int getStudentExcessOfDay(int day, int limit) { return excess(iStudentDayTable[day], limit); }
+    
+    /**
+     * Number of exams over the given limit, summed over all the instructors that have an exam in the given period
+     * @param period period index
+     * @param limit number of exams an instructor can have in the period without a conflict
+     * @return sum of max(0, number of exams of an instructor in the period - limit) over all instructors
+     */
+    public int getInstructorExcessOfPeriod(int period, int limit) { return excess(iInstructorTable[period], limit); }
+    
+    /**
+     * Number of exams over the given limit, summed over all the instructors that have an exam in the given day
+     * @param day day index
+     * @param limit number of exams an instructor can have in the day without a conflict
+     * @return sum of max(0, number of exams of an instructor in the day - limit) over all instructors
+     */
+    public int getInstructorExcessOfDay(int day, int limit) { return excess(iInstructorDayTable[day], limit); }
+    
+    private static int excess(short[] table, int limit) {
+        int ret = 0;
+        for (int i = 0; i < table.length; i++)
+            if (table[i] > limit) ret += table[i] - limit;
+        return ret;
     }
     
-    public Map<ExamStudent, Set<Exam>> getStudentsOfPeriod(int period) { return iStudentTable[period]; }
+    /**
+     * Exam conflict graph used by this context
+     * @return exam conflict graph, null if not used (see {@link ExamModel#getConflictGraph()}) or if an exam that is not a part of the graph has been assigned
+     */
+    public ExamConflictGraph getConflictGraph() { return iGraph; }
     
-    public Map<ExamStudent, Set<Exam>> getStudentsOfDay(int day) { return iStudentDayTable[day]; }
+    /**
+     * Number of students of the given exam attending other exams of the given period, summed over these exams
+     * @param exam an exam
+     * @param period period index
+     * @return number of shared students with the exams of the period, -1 if the exam conflict graph is not available
+     */
+    public int getStudentConflictsOfPeriod(Exam exam, int period) {
+        int index = (iGraph == null ? -1 : iGraph.index(exam));
+        return (index < 0 ? -1 : iStudentPeriodConflicts[index][period]);
+    }
     
-    public Map<ExamInstructor, Set<Exam>> getInstructorsOfPeriod(int period) { return iInstructorTable[period]; }
+    /**
+     * Number of other exams of the given period that share at least one student with the given exam
+     * @param exam an exam
+     * @param period period index
+     * @return number of student correlated exams of the period, -1 if the exam conflict graph is not available
+     */
+    public int getStudentCorrelatedExamsOfPeriod(Exam exam, int period) {
+        int index = (iGraph == null ? -1 : iGraph.index(exam));
+        return (index < 0 ? -1 : iStudentPeriodExams[index][period]);
+    }
     
-    public Map<ExamInstructor, Set<Exam>> getInstructorsOfDay(int day) { return iInstructorDayTable[day]; }
+    /**
+     * Number of other exams of the given day that share at least one student with the given exam
+     * @param exam an exam
+     * @param day day index
+     * @return number of student correlated exams of the day, -1 if the exam conflict graph is not available
+     */
+    public int getStudentCorrelatedExamsOfDay(Exam exam, int day) {
+        int index = (iGraph == null ? -1 : iGraph.index(exam));
+        return (index < 0 ? -1 : iStudentDayExams[index][day]);
+    }
+    
+    /**
+     * Number of instructors of the given exam having other exams in the given period, summed over these exams
+     * @param exam an exam
+     * @param period period index
+     * @return number of shared instructors with the exams of the period, -1 if the exam conflict graph is not available
+     */
+    public int getInstructorConflictsOfPeriod(Exam exam, int period) {
+        int index = (iGraph == null ? -1 : iGraph.index(exam));
+        return (index < 0 ? -1 : iInstructorPeriodConflicts[index][period]);
+    }
+    
+    /**
+     * Number of other exams of the given period that share at least one instructor with the given exam
+     * @param exam an exam
+     * @param period period index
+     * @return number of instructor correlated exams of the period, -1 if the exam conflict graph is not available
+     */
+    public int getInstructorCorrelatedExamsOfPeriod(Exam exam, int period) {
+        int index = (iGraph == null ? -1 : iGraph.index(exam));
+        return (index < 0 ? -1 : iInstructorPeriodExams[index][period]);
+    }
+    
+    /**
+     * Number of other exams of the given day that share at least one instructor with the given exam
+     * @param exam an exam
+     * @param day day index
+     * @return number of instructor correlated exams of the day, -1 if the exam conflict graph is not available
+     */
+    public int getInstructorCorrelatedExamsOfDay(Exam exam, int day) {
+        int index = (iGraph == null ? -1 : iGraph.index(exam));
+        return (index < 0 ? -1 : iInstructorDayExams[index][day]);
+    }
 }
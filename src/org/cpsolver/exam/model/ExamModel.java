@@ -141,6 +141,10 @@ public class ExamModel extends ModelWithContext<Exam, ExamPlacement, ExamContext
     private List<ExamDistributionConstraint> iDistributionConstraints = new ArrayList<ExamDistributionConstraint>();
     private List<ExamInstructor> iInstructors = new ArrayList<ExamInstructor>();
     private ExamRoomSharing iRoomSharing = null;
+    private boolean iUseConflictGraph = true;
+    private volatile ExamConflictGraph iConflictGraph = null;
+    private int iNrIndexedStudents = 0, iNrIndexedInstructors = 0;
+    private boolean iAllIndexed = false;
 
     private DistanceMetric iDistanceMetric = null;
 
@@ -154,6 +158,7 @@ public class ExamModel extends ModelWithContext<Exam, ExamPlacement, ExamContext
         super();
         iProperties = properties;
         iMaxRooms = properties.getPropertyInt("Exams.MaxRooms", iMaxRooms);
+        iUseConflictGraph = properties.getPropertyBoolean("Exams.ConflictGraph", iUseConflictGraph);
         iDistanceMetric = new DistanceMetric(properties);
         String roomSharingClass = properties.getProperty("Exams.RoomSharingClass");
         if (roomSharingClass != null) {
@@ -1159,33 +1164,224 @@ public class ExamModel extends ModelWithContext<Exam, ExamPlacement, ExamContext
         return true;
     }
 
+    /**
+     * Exam conflict graph, used by the {@link ExamContext} to count the number of students and instructors that
+     * are shared with the exams of each period. The graph is only used when Exams.ConflictGraph is set to true (which
+     * is the default). It is created when needed (i.e., when the first assignment context is created, which is after
+     * all the exams, students and instructors are loaded) and dropped when an exam is added or removed.
+     * @return exam conflict graph, null if not used
+     */
+    public ExamConflictGraph getConflictGraph() {
+        if (!iUseConflictGraph) return null;
+        ExamConflictGraph graph = iConflictGraph;
+        if (graph == null) {
+            synchronized (this) {
+                graph = iConflictGraph;
+                if (graph == null) {
+                    graph = new ExamConflictGraph(variables());
+                    iConflictGraph = graph;
+                }
+            }
+        }
+        return graph;
+    }
+    
+    @Override
+    public void addVariable(Exam variable) {
+        super.addVariable(variable);
+        iConflictGraph = null;
+        iAllIndexed = false;
+    }
+    
+    @Override
+    public void removeVariable(Exam variable) {
+        super.removeVariable(variable);
+        iConflictGraph = null;
+    }
+    
+    @Override
+    public void addConstraint(Constraint<Exam, ExamPlacement> constraint) {
+        super.addConstraint(constraint);
+        if (constraint instanceof ExamStudent)
+            index((ExamStudent)constraint);
+        else if (constraint instanceof ExamInstructor)
+            index((ExamInstructor)constraint);
+    }
+    
+    /**
+     * Assign a dense index to the given student (see {@link ExamStudent#getIndex()}), unless the student already has one.
+     * Indexes are never reassigned, so that they can be read by the solver threads without any locking.
+     * @param student a student
+     */
+    protected synchronized void index(ExamStudent student) {
+        if (student.getIndex() < 0) student.setIndex(iNrIndexedStudents++);
+    }
+    
+    /**
+     * Assign a dense index to the given instructor (see {@link ExamInstructor#getIndex()}), unless the instructor already has one.
+     * Indexes are never reassigned, so that they can be read by the solver threads without any locking.
+     * @param instructor an instructor
+     */
+    protected synchronized void index(ExamInstructor instructor) {
+        if (instructor.getIndex() < 0) instructor.setIndex(iNrIndexedInstructors++);
+    }
+
+    /**
+     * Make sure that all the students and instructors of the model have a dense index, including those that are only
+     * attached to an exam and not added to the model by {@link ExamModel#addConstraint(Constraint)}. Called before a new
+     * assignment context is created, the exams are only checked again after an exam has been added to the model.
+     */
+    protected synchronized void indexStudentsAndInstructors() {
+        if (iAllIndexed) return;
+        for (Exam exam: variables()) {
+            for (ExamStudent student: exam.getStudents())
+                index(student);
+            for (ExamInstructor instructor: exam.getInstructors())
+                index(instructor);
+        }
+        iAllIndexed = true;
+    }
+    
+    /**
+     * Number of students with a dense index
+     * @return number of indexed students
+     */
+    public synchronized int getNrIndexedStudents() {
+        return iNrIndexedStudents;
+    }
+    
+    /**
+     * Number of instructors with a dense index
+     * @return number of indexed instructors
+     */
+    public synchronized int getNrIndexedInstructors() {
+        return iNrIndexedInstructors;
+    }
+
     @Override
     public ExamContext createAssignmentContext(Assignment<Exam, ExamPlacement> assignment) {
+        indexStudentsAndInstructors();
         return new ExamContext(this, assignment);
     }
     
+    /**
+     * Exams placed in the given period, grouped by their students. The table is computed from the current
+     * assignment, use {@link ExamContext#getNrExamsOfPeriod(ExamStudent, int)} or
+     * {@link ExamStudent#getExams(Assignment, ExamPeriod)} instead during the search.
+     * @param assignment current assignment
+     * @param period a period
+     * @return table student &rarr; exams of the student placed in the period
+     */
     public Map<ExamStudent, Set<Exam>> getStudentsOfPeriod(Assignment<Exam, ExamPlacement> assignment, ExamPeriod period) {
-        return getContext(assignment).getStudentsOfPeriod(period.getIndex());
+        Map<ExamStudent, Set<Exam>> table = new HashMap<ExamStudent, Set<Exam>>();
+        for (Exam exam: assignment.assignedVariables()) {
+            if (assignment.getValue(exam).getPeriod().getIndex() != period.getIndex()) continue;
+            for (ExamStudent student: exam.getStudents()) {
+                Set<Exam> exams = table.get(student);
+                if (exams == null) {
+                    exams = new HashSet<Exam>();
+                    table.put(student, exams);
+                }
+                exams.add(exam);
+            }
+        }
+        return table;
     }
     
+    /**
+     * Exams placed in the day of the given period, grouped by their students. The table is computed from the current
+     * assignment, use {@link ExamContext#getNrExamsOfDay(ExamStudent, int)} or
+     * {@link ExamStudent#getExamsADay(Assignment, ExamPeriod)} instead during the search.
+     * @param assignment current assignment
+     * @param period a period
+     * @return table student &rarr; exams of the student placed in the day
+     */
     public Map<ExamStudent, Set<Exam>> getStudentsOfDay(Assignment<Exam, ExamPlacement> assignment, ExamPeriod period) {
-        return getContext(assignment).getStudentsOfDay(period.getDay());
+        return getStudentsOfDay(assignment, period.getDay());
     }
     
+    /**
+     * Exams placed in the given day, grouped by their students. The table is computed from the current
+     * assignment, use {@link ExamContext#getNrExamsOfDay(ExamStudent, int)} or
+     * {@link ExamStudent#getExamsADay(Assignment, int)} instead during the search.
+     * @param assignment current assignment
+     * @param day a day
+     * @return table student &rarr; exams of the student placed in the day
+     */
     public Map<ExamStudent, Set<Exam>> getStudentsOfDay(Assignment<Exam, ExamPlacement> assignment, int day) {
-        return getContext(assignment).getStudentsOfDay(day);
+        Map<ExamStudent, Set<Exam>> table = new HashMap<ExamStudent, Set<Exam>>();
+        for (Exam exam: assignment.assignedVariables()) {
+            if (assignment.getValue(exam).getPeriod().getDay() != day) continue;
+            for (ExamStudent student: exam.getStudents()) {
+                Set<Exam> exams = table.get(student);
+                if (exams == null) {
+                    exams = new HashSet<Exam>();
+                    table.put(student, exams);
+                }
+                exams.add(exam);
+            }
+        }
+        return table;
     }
     
+    /**
+     * Exams placed in the given period, grouped by their instructors. The table is computed from the current
+     * assignment, use {@link ExamContext#getNrExamsOfPeriod(ExamInstructor, int)} or
+     * {@link ExamInstructor#getExams(Assignment, ExamPeriod)} instead during the search.
+     * @param assignment current assignment
+     * @param period a period
+     * @return table instructor &rarr; exams of the instructor placed in the period
+     */
     public Map<ExamInstructor, Set<Exam>> getInstructorsOfPeriod(Assignment<Exam, ExamPlacement> assignment, ExamPeriod period) {
-        return getContext(assignment).getInstructorsOfPeriod(period.getIndex());
+        Map<ExamInstructor, Set<Exam>> table = new HashMap<ExamInstructor, Set<Exam>>();
+        for (Exam exam: assignment.assignedVariables()) {
+            if (assignment.getValue(exam).getPeriod().getIndex() != period.getIndex()) continue;
+            for (ExamInstructor instructor: exam.getInstructors()) {
+                Set<Exam> exams = table.get(instructor);
+                if (exams == null) {
+                    exams = new HashSet<Exam>();
+                    table.put(instructor, exams);
+                }
+                exams.add(exam);
+            }
+        }
+        return table;
     }
     
+    /**
+     * Exams placed in the day of the given period, grouped by their instructors. The table is computed from the current
+     * assignment, use {@link ExamContext#getNrExamsOfDay(ExamInstructor, int)} or
+     * {@link ExamInstructor#getExamsADay(Assignment, ExamPeriod)} instead during the search.
+     * @param assignment current assignment
+     * @param period a period
+     * @return table instructor &rarr; exams of the instructor placed in the day
+     */
     public Map<ExamInstructor, Set<Exam>> getInstructorsOfDay(Assignment<Exam, ExamPlacement> assignment, ExamPeriod period) {
-        return getContext(assignment).getInstructorsOfDay(period.getDay());
+        return getInstructorsOfDay(assignment, period.getDay());
     }
     
+    /**
+     * Exams placed in the given day, grouped by their instructors. The table is computed from the current
+     * assignment, use {@link ExamContext#getNrExamsOfDay(ExamInstructor, int)} or
+     * {@link ExamInstructor#getExamsADay(Assignment, int)} instead during the search.
+     * @param assignment current assignment
+     * @param day a day
+     * @return table instructor &rarr; exams of the instructor placed in the day
+     */
     public Map<ExamInstructor, Set<Exam>> getInstructorsOfDay(Assignment<Exam, ExamPlacement> assignment, int day) {
-        return getContext(assignment).getInstructorsOfDay(day);
+        Map<ExamInstructor, Set<Exam>> table = new HashMap<ExamInstructor, Set<Exam>>();
+        for (Exam exam: assignment.assignedVariables()) {
+            if (assignment.getValue(exam).getPeriod().getDay() != day) continue;
+            for (ExamInstructor instructor: exam.getInstructors()) {
+                Set<Exam> exams = table.get(instructor);
+                if (exams == null) {
+                    exams = new HashSet<Exam>();
+                    table.put(instructor, exams);
+                }
+                exams.add(exam);
+            }
+        }
+        return table;
     }
 
 }
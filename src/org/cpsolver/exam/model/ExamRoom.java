@@ -1,10 +1,8 @@
 package org.cpsolver.exam.model;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import org.cpsolver.ifs.assignment.Assignment;
@@ -79,7 +77,7 @@ public class ExamRoom extends ConstraintWithContext<Exam, ExamPlacement, ExamRoo
         }
     }
     
-    private Map<Long, Double> iDistanceCache = new HashMap<Long, Double>();
+    private volatile int iLocationIndex = -2;
     /**
      * Distance between two rooms. See {@link DistanceMetric}
      * 
@@ -88,14 +86,20 @@ public class ExamRoom extends ConstraintWithContext<Exam, ExamPlacement, ExamRoo
      * @return distance between this and the given room
      */
     public double getDistanceInMeters(ExamRoom other) {
-        synchronized (iDistanceCache) {
-            Double distance = iDistanceCache.get(other.getId());
-            if (distance == null) {
-                distance = ((ExamModel)getModel()).getDistanceMetric().getDistanceInMeters(getId(), getCoordX(), getCoordY(), other.getId(), other.getCoordX(), other.getCoordY());
-                iDistanceCache.put(other.getId(), distance);
-            }
-            return distance;
-        }
+        DistanceMetric m = ((ExamModel)getModel()).getDistanceMetric();
+        int i1 = getLocationIndex(m), i2 = other.getLocationIndex(m);
+        if (i1 >= 0 && i2 >= 0)
+            return m.getDistanceInMeters(i1, i2);
+        return m.getDistanceInMeters(getId(), getCoordX(), getCoordY(), other.getId(), other.getCoordX(), other.getCoordY());
+    }
+    
+    /**
+     * Index of the room in the distance matrix, see {@link DistanceMetric#getLocationIndex(Long, Double, Double)}
+     */
+    private int getLocationIndex(DistanceMetric m) {
+        if (iLocationIndex == -2)
+            iLocationIndex = m.getLocationIndex(getId(), getCoordX(), getCoordY());
+        return iLocationIndex;
     }
 
     /**
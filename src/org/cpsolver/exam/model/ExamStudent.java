@@ -36,6 +36,7 @@ public class ExamStudent extends Constraint<Exam, ExamPlacement> {
     private boolean iAllowDirectConflicts = true;
     private List<ExamOwner> iOwners = new ArrayList<ExamOwner>();
     private boolean[] iAvailable = null;
+    private int iIndex = -1;
 
     /**
      * Constructor
@@ -90,9 +91,13 @@ public class ExamStudent extends Constraint<Exam, ExamPlacement> {
      * @return set of exams that this student is enrolled into and that are placed in the given period
      */
     public Set<Exam> getExams(Assignment<Exam, ExamPlacement> assignment, ExamPeriod period) {
-        Set<Exam> exams = ((ExamModel)getModel()).getStudentsOfPeriod(assignment, period).get(this);
-        return (exams != null ? exams : new HashSet<Exam>());
-        // return getContext(assignment).getExams(period.getIndex());
+        Set<Exam> exams = new HashSet<Exam>();
+        if (getNrExams(assignment, period) > 0)
+            for (Exam exam: variables()) {
+                ExamPlacement placement = assignment.getValue(exam);
+                if (placement != null && placement.getPeriod().getIndex() == period.getIndex()) exams.add(exam);
+            }
+        return exams;
     }
 
     /**
@@ -102,9 +107,7 @@ public class ExamStudent extends Constraint<Exam, ExamPlacement> {
      * @return set of exams that this student is enrolled into and that are placed in the day of the given period
      */
     public Set<Exam> getExamsADay(Assignment<Exam, ExamPlacement> assignment, ExamPeriod period) {
-        Set<Exam> exams = ((ExamModel)getModel()).getStudentsOfDay(assignment, period).get(this);
-        return (exams != null ? exams : new HashSet<Exam>());
-        // return getContext(assignment).getExamsOfDay(period.getDay());
+        return getExamsADay(assignment, period.getDay());
     }
 
     /**
@@ -114,9 +117,49 @@ public class ExamStudent extends Constraint<Exam, ExamPlacement> {
      * @return set of exams that this student is enrolled into and that are placed in the given day
      */
     public Set<Exam> getExamsADay(Assignment<Exam, ExamPlacement> assignment, int day) {
-        Set<Exam> exams = ((ExamModel)getModel()).getStudentsOfDay(assignment, day).get(this);
-        return (exams != null ? exams : new HashSet<Exam>());
-        // return getContext(assignment).getExamsOfDay(day);
+        Set<Exam> exams = new HashSet<Exam>();
+        if (getNrExamsADay(assignment, day) > 0)
+            for (Exam exam: variables()) {
+                ExamPlacement placement = assignment.getValue(exam);
+                if (placement != null && placement.getPeriod().getDay() == day) exams.add(exam);
+            }
+        return exams;
+    }
+    
+    /**
+     * Number of exams enrolled by the student that are scheduled in the given period
+     * @param assignment current assignment
+     * @param period given period
+     * @return number of exams of this student placed in the given period
+     */
+    public int getNrExams(Assignment<Exam, ExamPlacement> assignment, ExamPeriod period) {
+        return ((ExamModel)getModel()).getContext(assignment).getNrExamsOfPeriod(this, period.getIndex());
+    }
+    
+    /**
+     * Number of exams enrolled by the student that are scheduled in the given day
+     * @param assignment current assignment
+     * @param day given day
+     * @return number of exams of this student placed in the given day
+     */
+    public int getNrExamsADay(Assignment<Exam, ExamPlacement> assignment, int day) {
+        return ((ExamModel)getModel()).getContext(assignment).getNrExamsOfDay(this, day);
+    }
+    
+    /**
+     * Dense index of the student, assigned once by {@link ExamModel} when the student is added to the model (or before the first assignment context is created) and never changed afterwards
+     * @return index between zero and {@link ExamModel#getNrIndexedStudents()} (exclusive), -1 if not indexed yet
+     */
+    public int getIndex() {
+        return iIndex;
+    }
+    
+    /**
+     * Set dense index of the student
+     * @param index student index
+     */
+    protected void setIndex(int index) {
+        iIndex = index;
     }
 
     /**
@@ -127,12 +170,12 @@ public class ExamStudent extends Constraint<Exam, ExamPlacement> {
     @Override
     public void computeConflicts(Assignment<Exam, ExamPlacement> assignment, ExamPlacement p, Set<ExamPlacement> conflicts) {
         Exam ex = p.variable();
-        Set<Exam> exams = ((ExamModel)getModel()).getStudentsOfPeriod(assignment, p.getPeriod()).get(this);
-        if (exams != null)
-            for (Exam exam : exams) {
-                if (!canConflict(ex, exam))
-                    conflicts.add(assignment.getValue(exam));
-            }
+        if (getNrExams(assignment, p.getPeriod()) == 0) return;
+        for (Exam exam : variables()) {
+            ExamPlacement placement = assignment.getValue(exam);
+            if (placement != null && placement.getPeriod().getIndex() == p.getPeriod().getIndex() && !canConflict(ex, exam))
+                conflicts.add(placement);
+        }
     }
 
     /**
@@ -144,12 +187,12 @@ public class ExamStudent extends Constraint<Exam, ExamPlacement> {
     @Override
     public boolean inConflict(Assignment<Exam, ExamPlacement> assignment, ExamPlacement p) {
         Exam ex = p.variable();
-        Set<Exam> exams = ((ExamModel)getModel()).getStudentsOfPeriod(assignment, p.getPeriod()).get(this);
-        if (exams != null)
-            for (Exam exam : exams) {
-                if (!canConflict(ex, exam))
-                    return true;
-            }
+        if (getNrExams(assignment, p.getPeriod()) == 0) return false;
+        for (Exam exam : variables()) {
+            ExamPlacement placement = assignment.getValue(exam);
+            if (placement != null && placement.getPeriod().getIndex() == p.getPeriod().getIndex() && !canConflict(ex, exam))
+                return true;
+        }
         return false;
     }
 
@@ -247,50 +290,4 @@ public class ExamStudent extends Constraint<Exam, ExamPlacement> {
         }
         iAvailable[period] = available;
     }
-
-    /*
-    @Override
-    public Context createAssignmentContext(Assignment<Exam, ExamPlacement> assignment) {
-        return new Context(assignment);
-    }
-
-    public class Context implements AssignmentConstraintContext<Exam, ExamPlacement> {
-        private Set<Exam>[] iTable;
-        private Set<Exam>[] iDayTable;
-        
-        @SuppressWarnings("unchecked")
-        public Context(Assignment<Exam, ExamPlacement> assignment) {
-            ExamModel model = (ExamModel)getModel();
-            iTable = new Set[model.getNrPeriods()];
-            for (int i = 0; i < iTable.length; i++)
-                iTable[i] = new HashSet<Exam>();
-            iDayTable = new Set[model.getNrDays()];
-            for (int i = 0; i < iDayTable.length; i++)
-                iDayTable[i] = new HashSet<Exam>();
-            for (Exam exam: variables()) {
-                ExamPlacement placement = assignment.getValue(exam);
-                if (placement != null)
-                    assigned(assignment, placement);
-            }
-        }
-
-        @Override
-        public void assigned(Assignment<Exam, ExamPlacement> assignment, ExamPlacement placement) {
-            iTable[placement.getPeriod().getIndex()].add(placement.variable());
-            iDayTable[placement.getPeriod().getDay()].add(placement.variable());
-        }
-        
-        @Override
-        public void unassigned(Assignment<Exam, ExamPlacement> assignment, ExamPlacement placement) {
-            iTable[placement.getPeriod().getIndex()].remove(placement.variable());
-            iDayTable[placement.getPeriod().getDay()].remove(placement.variable());
-        }
-        
-        
-        public Set<Exam> getExams(int period) { return iTable[period]; }
-        
-        public Set<Exam> getExamsOfDay(int day) { return iDayTable[day]; }
-        
-    }
-    */
 }
\ No newline at end of file
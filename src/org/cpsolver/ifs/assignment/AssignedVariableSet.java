@@ -0,0 +1,193 @@
+package org.cpsolver.ifs.assignment;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.cpsolver.ifs.model.Model;
+import org.cpsolver.ifs.model.Value;
+import org.cpsolver.ifs.model.Variable;
+
+/**
+ * A set of assigned variables, indexed by {@link Variable#getIndex()}. The variables are kept
+ * in a dense array (an unassigned variable is replaced by the last one), and the position of each
+ * variable in this array is stored in an int array indexed by the variable index. Adding, removing,
+ * and checking whether a variable is contained in the set are constant time operations that do not
+ * create any objects (unless the arrays need to be enlarged). Used by the {@link DefaultSingleAssignment}
+ * and {@link DefaultParallelAssignment} to keep track of the assigned variables.<br>
+ * <br>
+ * Variables that do not belong to any model (i.e., having a negative index) are kept in a hash set.
+ *
+ * @see Model#addVariable(Variable)
+ *
+ * @version IFS 1.3 (Iterative Forward Search)<br>
+ *          Copyright (C) 2014 Tomas Muller<br>
+ *          <a href="mailto:muller@unitime.org">muller@unitime.org</a><br>
+ *          <a href="http://muller.unitime.org">http://muller.unitime.org</a><br>
+ * <br>
+ *          This library is free software; you can redistribute it and/or modify
+ *          it under the terms of the GNU Lesser General Public License as
+ *          published by the Free Software Foundation; either version 3 of the
+ *          License, or (at your option) any later version. <br>
+ * <br>
+ *          This library is distributed in the hope that it will be useful, but
+ *          WITHOUT ANY WARRANTY; without even the implied warranty of
+ *          MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *          Lesser General Public License for more details. <br>
+ * <br>
+ *          You should have received a copy of the GNU Lesser General Public
+ *          License along with this library; if not see <a href='http://www.gnu.org/licenses'>http://www.gnu.org/licenses</a>.
+ * @param <V> Variable
+ * @param <T> Value
+ **/
+public class AssignedVariableSet<V extends Variable<V, T>, T extends Value<V, T>> extends AbstractSet<V> {
+    private Object[] iVariables;
+    private int[] iPosition;
+    private int iSize = 0;
+    private int iModCount = 0;
+    private Set<V> iOther = null;
+
+    /**
+     * Constructor
+     * @param capacity expected number of variables (e.g., the number of variables of the model)
+     */
+    public AssignedVariableSet(int capacity) {
+        iVariables = new Object[Math.max(16, capacity)];
+        iPosition = new int[Math.max(16, capacity)];
+    }
+
+    /** Create an empty set */
+    public AssignedVariableSet() {
+        this(0);
+    }
+
+    /**
+     * Position of the variable in the dense array, -1 if not present
+     */
+    private int position(Object o) {
+        if (!(o instanceof Variable<?, ?>)) return -1;
+        int index = ((Variable<?, ?>)o).getIndex();
+        if (index < 0 || index >= iPosition.length) return -1;
+        int pos = iPosition[index] - 1;
+        return (pos >= 0 && iVariables[pos].equals(o) ? pos : -1);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (position(o) >= 0) return true;
+        return iOther != null && iOther.contains(o);
+    }
+
+    @Override
+    public boolean add(V variable) {
+        int index = variable.getIndex();
+        if (index < 0) {
+            if (iOther == null) iOther = new HashSet<V>();
+            if (!iOther.add(variable)) return false;
+            iModCount ++;
+            return true;
+        }
+        if (position(variable) >= 0) return false;
+        if (index >= iPosition.length)
+            iPosition = Arrays.copyOf(iPosition, Math.max(index + 1, 2 * iPosition.length));
+        if (iSize == iVariables.length)
+            iVariables = Arrays.copyOf(iVariables, 2 * iVariables.length);
+        iVariables[iSize] = variable;
+        iPosition[index] = ++iSize;
+        iModCount ++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int pos = position(o);
+        if (pos < 0) {
+            if (iOther != null && iOther.remove(o)) {
+                iModCount ++;
+                return true;
+            }
+            return false;
+        }
+        removeAt(pos);
+        return true;
+    }
+
+    /**
+     * Remove the variable on the given position, the last variable is moved in its place
+     */
+    private void removeAt(int pos) {
+        iPosition[((Variable<?, ?>)iVariables[pos]).getIndex()] = 0;
+        iSize --;
+        if (pos < iSize) {
+            iVariables[pos] = iVariables[iSize];
+            iPosition[((Variable<?, ?>)iVariables[pos]).getIndex()] = pos + 1;
+        }
+        iVariables[iSize] = null;
+        iModCount ++;
+    }
+
+    @Override
+    public int size() {
+        return iSize + (iOther == null ? 0 : iOther.size());
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < iSize; i++) {
+            iPosition[((Variable<?, ?>)iVariables[i]).getIndex()] = 0;
+            iVariables[i] = null;
+        }
+        iSize = 0;
+        if (iOther != null) iOther.clear();
+        iModCount ++;
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+        return new Iterator<V>() {
+            private int iNext = 0;
+            private int iExpectedModCount = iModCount;
+            private Iterator<V> iOtherIterator = null;
+            private boolean iCanRemove = false;
+
+            @Override
+            public boolean hasNext() {
+                if (iNext < iSize) return true;
+                if (iOther == null || iOther.isEmpty()) return false;
+                if (iOtherIterator == null) iOtherIterator = iOther.iterator();
+                return iOtherIterator.hasNext();
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public V next() {
+                if (iExpectedModCount != iModCount) throw new ConcurrentModificationException();
+                if (iNext < iSize) {
+                    iCanRemove = true;
+                    return (V) iVariables[iNext++];
+                }
+                if (!hasNext()) throw new NoSuchElementException();
+                iCanRemove = true;
+                return iOtherIterator.next();
+            }
+
+            @Override
+            public void remove() {
+                if (!iCanRemove) throw new IllegalStateException();
+                if (iExpectedModCount != iModCount) throw new ConcurrentModificationException();
+                iCanRemove = false;
+                if (iOtherIterator != null) {
+                    iOtherIterator.remove();
+                } else {
+                    // the last variable is moved to the removed position, visit it next
+                    removeAt(--iNext);
+                }
+                iExpectedModCount = ++iModCount;
+            }
+        };
+    }
+}
@@ -38,7 +38,7 @@ import org.cpsolver.ifs.model.Variable;
  **/
 public class AssignmentArray<V extends Variable<V, T>, T extends Value<V, T>> extends AssignmentAbstract<V, T> {
     protected Object[] iAssignments = new Object[1000];
-    protected Long[] iIteration = new Long[1000];
+    protected long[] iIteration = new long[1000];
     
     /** Creates an empty assignment 
      * @param contexts assignment context holder
@@ -50,8 +50,7 @@ public class AssignmentArray<V extends Variable<V, T>, T extends Value<V, T>> ex
     @Override
     public long getIteration(V variable) {
         try {
-            Long it = iIteration[variable.getIndex()];
-            return (it == null ? 0 : it);
+            return iIteration[variable.getIndex()];
         } catch (ArrayIndexOutOfBoundsException e) {
             return 0;
         }
@@ -75,7 +74,7 @@ public class AssignmentArray<V extends Variable<V, T>, T extends Value<V, T>> ex
         }
         if (value == null) {
             iAssignments[variable.getIndex()] = null;
-            iIteration[variable.getIndex()] = null;
+            iIteration[variable.getIndex()] = 0;
         } else {
             iAssignments[variable.getIndex()] = value;
             if (iteration > 0)
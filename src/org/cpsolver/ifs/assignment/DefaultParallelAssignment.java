@@ -1,8 +1,7 @@
 package org.cpsolver.ifs.assignment;
 
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.concurrent.locks.Lock;
 
 import org.cpsolver.ifs.assignment.context.AssignmentContextHolder;
@@ -16,10 +15,13 @@ import org.cpsolver.ifs.solver.ParallelSolver;
 
 /**
  * An assignment using the {@link Variable#getAssignments()} to store values of all the
- * variables of the model. Besides of that, a set of assigned variables is kept in memory.
+ * variables of the model. Besides of that, a set of assigned variables is kept in memory
+ * (see {@link AssignedVariableSet}) together with an array of assignment iterations,
+ * both indexed by {@link Variable#getIndex()}.
  * Each extra contains an array of values, indexed by {@link Assignment#getIndex()}.
- * Useful for a small, fixed number of assignments. Used by the {@link ParallelSolver},
- * where there is one assignment for each thread. 
+ * The arrays are enlarged when an assignment of a higher index is created, so the number of
+ * assignments is not limited. Used by the {@link ParallelSolver}, where there is one assignment
+ * for each thread. 
  * 
  * @see Assignment
  * @see ParallelSolver
@@ -45,7 +47,8 @@ import org.cpsolver.ifs.solver.ParallelSolver;
  * @param <T> Value
  **/
 public class DefaultParallelAssignment <V extends Variable<V, T>, T extends Value<V, T>> extends AssignmentAbstract<V, T> {
-    private Map<V, Long> iAssignedVariables = new HashMap<V, Long>();
+    private AssignedVariableSet<V, T> iAssignedVariables = new AssignedVariableSet<V, T>();
+    private long[] iIteration = new long[0];
     private int iIndex;
 
     public DefaultParallelAssignment(int threadIndex) {
@@ -59,6 +62,8 @@ public class DefaultParallelAssignment <V extends Variable<V, T>, T extends Valu
     
     public DefaultParallelAssignment(int threadIndex, Model<V, T> model, Assignment<V, T> assignment) {
         this(threadIndex);
+        iAssignedVariables = new AssignedVariableSet<V, T>(model.variables().size());
+        iIteration = new long[model.variables().size()];
         for (V variable: model.variables())
             setValueInternal(0, variable, assignment != null ? assignment.getValue(variable) : null);
     }
@@ -66,6 +71,8 @@ public class DefaultParallelAssignment <V extends Variable<V, T>, T extends Valu
     public DefaultParallelAssignment(AssignmentContextHolder<V, T> contexts, int threadIndex, Solution<V, T> solution) {
         super(contexts);
         iIndex = threadIndex;
+        iAssignedVariables = new AssignedVariableSet<V, T>(solution.getModel().variables().size());
+        iIteration = new long[solution.getModel().variables().size()];
         Lock lock = solution.getLock().readLock();
         lock.lock();
         try {
@@ -78,29 +85,40 @@ public class DefaultParallelAssignment <V extends Variable<V, T>, T extends Valu
 
     @Override
     public long getIteration(V variable) {
-        Long it = iAssignedVariables.get(variable);
-        return (it == null ? 0 : it.longValue());
+        int index = variable.getIndex();
+        return (index >= 0 && index < iIteration.length ? iIteration[index] : 0);
     }
 
     @Override
     public Collection<V> assignedVariables() {
-        return iAssignedVariables.keySet();
+        return iAssignedVariables;
+    }
+    
+    @Override
+    public int nrAssignedVariables() {
+        return iAssignedVariables.size();
     }
     
     @Override
     @SuppressWarnings({ "deprecation", "unchecked" })
     protected T getValueInternal(V variable) {
-        return (T) variable.getAssignments()[iIndex];
+        return (T) variable.getAssignment(iIndex);
     }
     
     @Override
     @SuppressWarnings("deprecation")
     protected void setValueInternal(long iteration, V variable, T value) {
-        variable.getAssignments()[iIndex] = value;
-        if (value == null)
+        variable.setAssignment(iIndex, value);
+        int index = variable.getIndex();
+        if (index >= iIteration.length)
+            iIteration = Arrays.copyOf(iIteration, Math.max(index + 1, 2 * iIteration.length));
+        if (value == null) {
             iAssignedVariables.remove(variable);
-        else
-            iAssignedVariables.put(variable, iteration);
+            if (index >= 0) iIteration[index] = 0;
+        } else {
+            iAssignedVariables.add(variable);
+            if (index >= 0) iIteration[index] = iteration;
+        }
     }
 
     @Override
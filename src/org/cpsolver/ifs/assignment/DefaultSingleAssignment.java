@@ -1,8 +1,6 @@
 package org.cpsolver.ifs.assignment;
 
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
 
 import org.cpsolver.ifs.assignment.context.DefaultSingleAssignmentContextHolder;
 import org.cpsolver.ifs.model.Model;
@@ -13,7 +11,8 @@ import org.cpsolver.ifs.solver.Solver;
 
 /**
  * An assignment using the old {@link Variable#getAssignment()} to store values of all the
- * variables of the model. Besides of that, a set of assigned variables is kept in memory.
+ * variables of the model. Besides of that, a set of assigned variables is kept in memory
+ * (see {@link AssignedVariableSet}).
  * It is fast, but there can be only one such assignment at a time.
  * Ideal for single threaded solvers. Also used as a default assignment, see
  * {@link Model#getDefaultAssignment()}. Used by {@link Solver} where there is only one
@@ -43,7 +42,7 @@ import org.cpsolver.ifs.solver.Solver;
  * @param <T> Value
  **/
 public class DefaultSingleAssignment<V extends Variable<V, T>, T extends Value<V, T>> extends AssignmentAbstract<V, T> {
-    private Set<V> iAssignedVariables = new HashSet<V>();
+    private AssignedVariableSet<V, T> iAssignedVariables = new AssignedVariableSet<V, T>();
 
     public DefaultSingleAssignment() {
         super(new DefaultSingleAssignmentContextHolder<V,T>());
@@ -59,6 +58,11 @@ public class DefaultSingleAssignment<V extends Variable<V, T>, T extends Value<V
     public Collection<V> assignedVariables() {
         return iAssignedVariables;
     }
+    
+    @Override
+    public int nrAssignedVariables() {
+        return iAssignedVariables.size();
+    }
 
     @Override
     @SuppressWarnings("deprecation")
@@ -1,5 +1,7 @@
 package org.cpsolver.ifs.assignment.context;
 
+import java.util.Arrays;
+
 import org.cpsolver.ifs.assignment.Assignment;
 import org.cpsolver.ifs.assignment.InheritedAssignment;
 import org.cpsolver.ifs.model.Value;
@@ -17,34 +19,70 @@ public class AssignmentContextHelper {
      */
     @SuppressWarnings("unchecked")
     public static <V extends Variable<V, T>, T extends Value<V, T>, C extends AssignmentContext> C getContext(HasAssignmentContext<V, T, C> source, Assignment<V, T> assignment) {
-        if (assignment.getIndex() >= 0 && assignment.getIndex() < CanHoldContext.sMaxSize) {
-            AssignmentContext[] contexts = ((CanHoldContext)source).getContext();
+        if (assignment.getIndex() >= 0) {
+            CanHoldContext holder = (CanHoldContext)source;
             if (assignment.getIndex() > 0 && assignment instanceof InheritedAssignment) {
                 long version = ((InheritedAssignment<V, T>)assignment).getVersion();
                 
-                InheritedAssignmentContextHolder.VersionedContext<C> context = (InheritedAssignmentContextHolder.VersionedContext<C>)contexts[assignment.getIndex()];
+                InheritedAssignmentContextHolder.VersionedContext<C> context = (InheritedAssignmentContextHolder.VersionedContext<C>)getContext(holder, assignment.getIndex());
                 if (context == null) {
                     context = new InheritedAssignmentContextHolder.VersionedContext<C>();
-                    contexts[assignment.getIndex()] = context;
+                    setContext(holder, assignment.getIndex(), context);
                 }
                 
                 if (!context.isCurrent(version)) {
-                    if (source instanceof CanInheritContext && contexts[0] != null)
-                        context.setContent(((CanInheritContext<V, T, C>)source).inheritAssignmentContext(assignment, (C)contexts[0]), version);
+                    C parent = (C)getContext(holder, 0);
+                    if (source instanceof CanInheritContext && parent != null)
+                        context.setContent(((CanInheritContext<V, T, C>)source).inheritAssignmentContext(assignment, parent), version);
                     else
                         context.setContent(source.createAssignmentContext(assignment), version);
                 }
                 
                 return context.getContent();
             } else {
-                AssignmentContext context = contexts[assignment.getIndex()];
+                AssignmentContext context = getContext(holder, assignment.getIndex());
                 if (context == null) {
                     context = source.createAssignmentContext(assignment);
-                    contexts[assignment.getIndex()] = context;
+                    setContext(holder, assignment.getIndex(), context);
                 }
                 return (C) context;
             }
         }
         return assignment.getAssignmentContext(source.getAssignmentContextReference());
     }
+    
+    /**
+     * Returns an assignment context stored on the given index of the {@link CanHoldContext#getContext()} array.
+     * This method does not lock, the array (or its enlarged copy) is read from a volatile field.
+     * @param holder class holding the assignment contexts
+     * @param index assignment index
+     * @return assignment context, null if there is no context stored on the given index (yet)
+     */
+    public static AssignmentContext getContext(CanHoldContext holder, int index) {
+        AssignmentContext[] contexts = holder.getContext();
+        return (index < contexts.length ? contexts[index] : null);
+    }
+    
+    /**
+     * Stores an assignment context on the given index of the {@link CanHoldContext#getContext()} array.
+     * If the array is too short, it is enlarged (the new array is set using {@link CanHoldContext#setContext(AssignmentContext[])}).
+     * The update is synchronized on the holder so that no context is lost when two threads store
+     * their contexts while the array is being enlarged.
+     * @param holder class holding the assignment contexts
+     * @param index assignment index
+     * @param context assignment context to store (null to clear the context)
+     */
+    public static void setContext(CanHoldContext holder, int index, AssignmentContext context) {
+        synchronized (holder) {
+            AssignmentContext[] contexts = holder.getContext();
+            if (index >= contexts.length) {
+                if (context == null) return;
+                contexts = Arrays.copyOf(contexts, Math.max(index + 1, 2 * contexts.length));
+                contexts[index] = context;
+                holder.setContext(contexts);
+            } else {
+                contexts[index] = context;
+            }
+        }
+    }
 }
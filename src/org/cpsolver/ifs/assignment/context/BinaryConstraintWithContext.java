@@ -36,7 +36,7 @@ import org.cpsolver.ifs.model.Variable;
  **/
 public abstract class BinaryConstraintWithContext<V extends Variable<V, T>, T extends Value<V, T>, C extends AssignmentConstraintContext<V, T>> extends BinaryConstraint<V, T> implements HasAssignmentContext<V, T, C>, CanHoldContext {
     private AssignmentContextReference<V, T, C> iContextReference = null;
-    private AssignmentContext[] iContext = new AssignmentContext[CanHoldContext.sMaxSize];
+    private volatile AssignmentContext[] iContext = new AssignmentContext[CanHoldContext.sMaxSize];
     
     public BinaryConstraintWithContext() {
         super();
@@ -72,6 +72,9 @@ public abstract class BinaryConstraintWithContext<V extends Variable<V, T>, T ex
 
     @Override
     public AssignmentContext[] getContext() { return iContext; }
+
+    @Override
+    public void setContext(AssignmentContext[] contexts) { iContext = contexts; }
     
     @Override
     public void assigned(Assignment<V, T> assignment, long iteration, T value) {
@@ -8,6 +8,12 @@ import org.cpsolver.ifs.assignment.Assignment;
  * to store assignment contexts directly on the {@link HasAssignmentContext} class, if the 
  * assignment permits it (the {@link Assignment#getIndex()} is implemented, i.e., a non negative
  * index is returned).
+ * <br><br>
+ * The array of contexts starts with {@link CanHoldContext#sMaxSize} slots, but it is enlarged
+ * on demand (see {@link AssignmentContextHelper#setContext(CanHoldContext, int, AssignmentContext)})
+ * when an assignment of a higher index is used. The enlarged array replaces the old one using
+ * {@link CanHoldContext#setContext(AssignmentContext[])}, so the implementing class should keep
+ * the array in a volatile field to safely publish it to the other threads.
  * 
  * @see HasAssignmentContext
  * 
@@ -31,13 +37,20 @@ import org.cpsolver.ifs.assignment.Assignment;
  **/
 public interface CanHoldContext {
     /**
-     * Maximum number of assignment contexts to be held
+     * Initial number of assignment contexts to be held (the array is enlarged when needed)
      */
     public static int sMaxSize = 17;
     
     /**
-     * An array of {@link CanHoldContext#sMaxSize} assignment contexts
+     * An array of assignment contexts (at least {@link CanHoldContext#sMaxSize} long)
      * @return assignment contexts
      */
     public AssignmentContext[] getContext();
+    
+    /**
+     * Replace the array of assignment contexts. This is only used by the {@link AssignmentContextHelper}
+     * when the array needs to be enlarged.
+     * @param contexts new array of assignment contexts
+     */
+    public void setContext(AssignmentContext[] contexts);
 }
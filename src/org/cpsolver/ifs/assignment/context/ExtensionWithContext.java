@@ -42,7 +42,7 @@ import org.cpsolver.ifs.util.DataProperties;
  **/
 public abstract class ExtensionWithContext<V extends Variable<V, T>, T extends Value<V, T>, C extends AssignmentContext> extends Extension<V, T> implements HasAssignmentContext<V, T, C>, CanHoldContext {
     private AssignmentContextReference<V, T, C> iContextReference = null;
-    private AssignmentContext[] iContext = new AssignmentContext[CanHoldContext.sMaxSize];
+    private volatile AssignmentContext[] iContext = new AssignmentContext[CanHoldContext.sMaxSize];
     
     public ExtensionWithContext(Solver<V, T> solver, DataProperties properties) {
         super(solver, properties);
@@ -75,6 +75,9 @@ public abstract class ExtensionWithContext<V extends Variable<V, T>, T extends V
 
     @Override
     public AssignmentContext[] getContext() { return iContext; }
+
+    @Override
+    public void setContext(AssignmentContext[] contexts) { iContext = contexts; }
     
     @Override
     public void unregister(Model<V, T> model) {
@@ -40,7 +40,7 @@ import org.cpsolver.ifs.model.Variable;
 public abstract class ModelWithContext<V extends Variable<V, T>, T extends Value<V, T>, C extends AssignmentConstraintContext<V, T>> extends Model<V, T> implements HasAssignmentContext<V, T, C>, CanHoldContext {
     
     private AssignmentContextReference<V, T, C> iContextReference = null;
-    private AssignmentContext[] iContext = new AssignmentContext[CanHoldContext.sMaxSize];
+    private volatile AssignmentContext[] iContext = new AssignmentContext[CanHoldContext.sMaxSize];
     
     /**
      * Defines how the context of the model should be automatically updated (i.e., when {@link AssignmentConstraintContext#assigned(Assignment, Value)} and {@link AssignmentConstraintContext#unassigned(Assignment, Value)} are called).
@@ -87,6 +87,9 @@ public abstract class ModelWithContext<V extends Variable<V, T>, T extends Value
 
     @Override
     public AssignmentContext[] getContext() { return iContext; }
+
+    @Override
+    public void setContext(AssignmentContext[] contexts) { iContext = contexts; }
     
     @Override
     public void beforeUnassigned(Assignment<V, T> assignment, long iteration, T value) {
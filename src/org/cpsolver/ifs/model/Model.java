@@ -942,8 +942,8 @@ public class Model<V extends Variable<V, T>, T extends Value<V, T>> {
     public double getTotalValue(Assignment<V, T> assignment) {
         double ret = 0.0;
         if (getCriteria().isEmpty())
-            for (T t: assignment.assignedValues())
-                ret += t.toDouble(assignment);
+            for (V v: assignment.assignedVariables())
+                ret += assignment.getValue(v).toDouble(assignment);
         else
             for (Criterion<V, T> c: getCriteria())
                 ret += c.getWeightedValue(assignment);
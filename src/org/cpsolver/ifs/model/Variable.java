@@ -2,6 +2,7 @@ package org.cpsolver.ifs.model;
 
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -58,7 +59,8 @@ public class Variable<V extends Variable<V, T>, T extends Value<V, T>> implement
     /** Assigned value */
     protected T iValue = null; // assigned value
     @SuppressWarnings("unchecked")
-    private Value<V, T>[] iAssignedValues = (Value<V, T>[])Array.newInstance(Value.class, CanHoldContext.sMaxSize); // assigned values
+    private final Value<V, T>[] iAssignedValues = (Value<V, T>[])Array.newInstance(Value.class, CanHoldContext.sMaxSize); // assigned values
+    private volatile Value<V, T>[][] iAssignedValuesOverflow = null; // assigned values of higher indexes, in blocks of CanHoldContext.sMaxSize
     private T iBestValue = null; // best value
     private long iBestAssignmentIteration = 0;
     private List<T> iValues = null;
@@ -184,7 +186,7 @@ public class Variable<V extends Variable<V, T>, T extends Value<V, T>> implement
     }
     
     /**
-     * Returns current assignments.
+     * Returns current assignments of the first {@link CanHoldContext#sMaxSize} assignment indexes.
      * BEWARE: Do not use outside of {@link DefaultParallelAssignment}.
      * @return currently assigned values
      **/
@@ -192,6 +194,66 @@ public class Variable<V extends Variable<V, T>, T extends Value<V, T>> implement
     public Value<V, T>[] getAssignments() {
         return iAssignedValues;
     }
+    
+    /**
+     * Returns current assignment of the given assignment index.
+     * BEWARE: Do not use outside of {@link DefaultParallelAssignment}.
+     * @param index assignment index
+     * @return currently assigned value, null if not assigned
+     **/
+    @Deprecated
+    public Value<V, T> getAssignment(int index) {
+        if (index < iAssignedValues.length)
+            return iAssignedValues[index];
+        Value<V, T>[][] overflow = iAssignedValuesOverflow;
+        int block = index / iAssignedValues.length - 1;
+        if (overflow == null || block >= overflow.length || overflow[block] == null)
+            return null;
+        return overflow[block][index % iAssignedValues.length];
+    }
+    
+    /**
+     * Sets the value on the given index of the current assignments.
+     * Values of the first {@link CanHoldContext#sMaxSize} assignment indexes are kept in an array of a fixed size. Higher indexes
+     * are kept in additional blocks of the same size that are created on demand (typically, when a new {@link DefaultParallelAssignment}
+     * of a high index is created). A block is never replaced once created, so a value stored by one thread cannot be lost by an
+     * other thread adding a block at the same time. Only the creation of a new block takes the variable's monitor.
+     * BEWARE: Do not use outside of {@link DefaultParallelAssignment}.
+     * @param index assignment index
+     * @param value value to be stored, null when unassigned
+     **/
+    @Deprecated
+    public void setAssignment(int index, Value<V, T> value) {
+        if (index < iAssignedValues.length) {
+            iAssignedValues[index] = value;
+            return;
+        }
+        Value<V, T>[][] overflow = iAssignedValuesOverflow;
+        int block = index / iAssignedValues.length - 1;
+        if (overflow == null || block >= overflow.length || overflow[block] == null) {
+            if (value == null) return;
+            overflow = createAssignmentBlock(block);
+        }
+        overflow[block][index % iAssignedValues.length] = value;
+    }
+    
+    /**
+     * Create a block of assigned values of higher indexes (see {@link Variable#setAssignment(int, Value)})
+     * @param block block index
+     * @return blocks of assigned values, containing the given block
+     */
+    @SuppressWarnings("unchecked")
+    private synchronized Value<V, T>[][] createAssignmentBlock(int block) {
+        Value<V, T>[][] overflow = iAssignedValuesOverflow;
+        if (overflow == null)
+            overflow = (Value<V, T>[][])Array.newInstance(Value[].class, block + 1);
+        else if (block >= overflow.length)
+            overflow = Arrays.copyOf(overflow, Math.max(block + 1, 2 * overflow.length));
+        if (overflow[block] == null)
+            overflow[block] = (Value<V, T>[])Array.newInstance(Value.class, iAssignedValues.length);
+        iAssignedValuesOverflow = overflow;
+        return overflow;
+    }
 
     /** Returns initial assignment 
      * @return initial assignment (for the minimal perturbation problem)
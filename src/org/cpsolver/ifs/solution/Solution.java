@@ -14,6 +14,7 @@ import org.cpsolver.ifs.model.Model;
 import org.cpsolver.ifs.model.Value;
 import org.cpsolver.ifs.model.Variable;
 import org.cpsolver.ifs.perturbations.PerturbationsCounter;
+import org.cpsolver.ifs.solver.ParallelSolver;
 import org.cpsolver.ifs.solver.Solver;
 
 
@@ -192,6 +193,24 @@ public class Solution<V extends Variable<V, T>, T extends Value<V, T>> {
         update(time, true, null);
     }
 
+    /**
+     * Set the solution counters to the given totals. Used by the {@link ParallelSolver} when the solver threads
+     * do not update the master solution on every iteration, but their counters are merged periodically instead.
+     * @param time current solver time
+     * @param iteration total number of iterations
+     * @param failedIterations total number of failed iterations
+     */
+    public void update(double time, long iteration, long failedIterations) {
+        iLock.writeLock().lock();
+        try {
+            iTime = time;
+            iIteration = iteration;
+            iFailedIterations = failedIterations;
+        } finally {
+            iLock.writeLock().unlock();
+        }
+    }
+
     /** Initialization 
      * @param solver current solver
      **/
@@ -3,23 +3,26 @@ package org.cpsolver.ifs.solver;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 
 import org.cpsolver.ifs.assignment.Assignment;
 import org.cpsolver.ifs.assignment.DefaultParallelAssignment;
 import org.cpsolver.ifs.assignment.DefaultSingleAssignment;
-import org.cpsolver.ifs.assignment.context.CanHoldContext;
+import org.cpsolver.ifs.assignment.InheritedAssignment;
 import org.cpsolver.ifs.model.LazyNeighbour;
 import org.cpsolver.ifs.model.LazyNeighbour.LazyNeighbourAcceptanceCriterion;
 import org.cpsolver.ifs.model.Model;
 import org.cpsolver.ifs.model.Neighbour;
 import org.cpsolver.ifs.model.Value;
 import org.cpsolver.ifs.model.Variable;
+import org.cpsolver.ifs.solution.GeneralSolutionComparator;
 import org.cpsolver.ifs.solution.Solution;
 import org.cpsolver.ifs.solution.SolutionListener;
 import org.cpsolver.ifs.util.DataProperties;
@@ -37,6 +40,40 @@ import org.cpsolver.ifs.util.ToolBox;
  * When {@link DefaultSingleAssignment} is given to the solver, only one solution is used.
  * A neighbour is assigned to this (shared) solution when it does not create any conflicts
  * outside of {@link Neighbour#assignments()}.
+ * <br>
+ * <br>
+ * Parallel solver's parameters: <br>
+ * <table border='1' summary='Related Solver Parameters'>
+ * <tr>
+ * <th>Parameter</th>
+ * <th>Type</th>
+ * <th>Comment</th>
+ * </tr>
+ * <tr>
+ * <td>Parallel.NrSolvers</td>
+ * <td>{@link Integer}</td>
+ * <td>Number of solver threads (defaults to 4)</td>
+ * </tr>
+ * <tr>
+ * <td>ParallelSolver.SingleSolutionQueue</td>
+ * <td>{@link Boolean}</td>
+ * <td>When a single solution is used, the selected neighbours are passed to a dedicated assignment thread using a queue</td>
+ * </tr>
+ * <tr>
+ * <td>ParallelSolver.SingleSolutionBatchSize</td>
+ * <td>{@link Integer}</td>
+ * <td>When the single solution queue is used, the assignment thread can take up to the given number of neighbours from the
+ * queue and process them in a single lock section. A neighbour that changes a variable which has been changed since
+ * the neighbour was selected is rejected without being assigned (defaults to 1, i.e., one neighbour at a time)</td>
+ * </tr>
+ * <tr>
+ * <td>ParallelSolver.LockFreeBest</td>
+ * <td>{@link Boolean}</td>
+ * <td>When each thread has its own solution, the value of the best solution is published in an atomic
+ * record and a thread only locks the master solution when it is better than the published best. Iteration
+ * counters of the threads are merged into the master solution by the synchronization thread (defaults to false)</td>
+ * </tr>
+ * </table>
  * 
  * @see Solver
  * 
@@ -64,6 +101,7 @@ import org.cpsolver.ifs.util.ToolBox;
 public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> extends Solver<V, T> {
     private SynchronizationThread iSynchronizationThread = null;
     private int iNrFinished = 0;
+    private AtomicReference<BestValue> iBestValue = new AtomicReference<BestValue>();
     
     public ParallelSolver(DataProperties properties) {
         super(properties);
@@ -72,7 +110,7 @@ public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> ext
     /** Starts solver */
     @Override
     public void start() {
-        int nrSolvers = Math.min(Math.abs(getProperties().getPropertyInt("Parallel.NrSolvers", 4)), CanHoldContext.sMaxSize - 1);
+        int nrSolvers = Math.abs(getProperties().getPropertyInt("Parallel.NrSolvers", 4));
         if (nrSolvers == 1) {
             super.start();
         } else {
@@ -91,7 +129,7 @@ public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> ext
     /** Sets initial solution */
     @Override
     public void setInitalSolution(Model<V, T> model) {
-        int nrSolvers = Math.min(Math.abs(getProperties().getPropertyInt("Parallel.NrSolvers", 4)), CanHoldContext.sMaxSize - 1);
+        int nrSolvers = Math.abs(getProperties().getPropertyInt("Parallel.NrSolvers", 4));
         boolean updateMasterSolution = getProperties().getPropertyBoolean("Parallel.UpdateMasterSolution", true);
         setInitalSolution(new Solution<V, T>(model, nrSolvers > 1 ? new DefaultParallelAssignment<V, T>(updateMasterSolution ? 1 : 0) : new DefaultSingleAssignment<V, T>(), 0, 0));
     }
@@ -110,6 +148,50 @@ public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> ext
         return currentSolution();
     }
     
+    /**
+     * Returns true if the best solution value is to be published using {@link BestValue} record, instead of
+     * locking the master solution on every iteration (ParallelSolver.LockFreeBest property).
+     * @return true if the lock free best solution publication is enabled
+     */
+    protected boolean isLockFreeBest() {
+        return getProperties().getPropertyBoolean("ParallelSolver.LockFreeBest", false);
+    }
+    
+    /**
+     * Update the published best value with the current best solution of the master solution
+     */
+    protected void publishBest() {
+        Lock lock = currentSolution().getLock().readLock();
+        lock.lock();
+        try {
+            Model<V, T> model = currentSolution().getModel();
+            if (currentSolution().getBestInfo() == null || model.getBestUnassignedVariables() < 0)
+                iBestValue.set(null);
+            else
+                iBestValue.set(new BestValue(model.getBestUnassignedVariables(), model.getBestValue(), currentSolution().getBestIndex()));
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Cheap check (no locking) whether the given solution can be better than the published best solution.
+     * Only the number of unassigned variables (and the total value when the {@link GeneralSolutionComparator} is used)
+     * is checked, a solution that passes is to be verified by the solution comparator.
+     * @param solution a solver thread solution
+     * @return false if the given solution is for sure not better than the best solution
+     */
+    protected boolean canBeBetterThanBest(Solution<V, T> solution) {
+        BestValue best = iBestValue.get();
+        if (best == null) return true;
+        int unassigned = solution.getAssignment().nrUnassignedVariables(solution.getModel());
+        if (unassigned != best.getUnassignedVariables())
+            return unassigned < best.getUnassignedVariables();
+        if (getSolutionComparator() instanceof GeneralSolutionComparator)
+            return solution.getModel().getTotalValue(solution.getAssignment()) < best.getValue();
+        return true;
+    }
+    
     /**
      * Synchronization thread
      */
@@ -154,18 +236,45 @@ public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> ext
                 iStop = true;
             }
             
-            BlockingQueue<Neighbour<V, T>> queue = null;
+            boolean lockFreeBest = !hasSingleSolution() && isLockFreeBest();
+            SolutionListener<V, T> bestListener = null;
+            long initialIteration = currentSolution().getIteration(), initialFailedIterations = currentSolution().getFailedIterations();
+            if (lockFreeBest) {
+                publishBest();
+                bestListener = new SolutionListener<V, T>() {
+                    @Override
+                    public void solutionUpdated(Solution<V, T> solution) {}
+                    @Override
+                    public void getInfo(Solution<V, T> solution, Map<String, String> info) {}
+                    @Override
+                    public void getInfo(Solution<V, T> solution, Map<String, String> info, Collection<V> variables) {}
+                    @Override
+                    public void bestCleared(Solution<V, T> solution) {
+                        iBestValue.set(null);
+                    }
+                    @Override
+                    public void bestSaved(Solution<V, T> solution) {}
+                    @Override
+                    public void bestRestored(Solution<V, T> solution) {}
+                };
+                currentSolution().addSolutionListener(bestListener);
+            }
+            
+            BlockingQueue<QueuedNeighbour> queue = null;
             if (hasSingleSolution() && iNrSolvers > 1 && getProperties().getPropertyBoolean("ParallelSolver.SingleSolutionQueue", false))
-                queue = new ArrayBlockingQueue<Neighbour<V, T>>(2 * iNrSolvers);
+                queue = new ArrayBlockingQueue<QueuedNeighbour>(Math.max(2 * iNrSolvers, 2 * getProperties().getPropertyInt("ParallelSolver.SingleSolutionBatchSize", 1)));
             
             if (!iStop) {
+                // Create all the solutions first, so that the assignment arrays and contexts are
+                // enlarged (if needed) before any of the solver threads is started
                 for (int i = 1; i <= iNrSolvers; i++) {
                     SolverThread thread = new SolverThread(i, queue);
                     thread.setPriority(THREAD_PRIORITY);
                     thread.setName("Solver-" + i);
-                    thread.start();
                     iSolvers.add(thread);
                 }
+                for (SolverThread thread: iSolvers)
+                    thread.start();
             }
             
             if (queue != null) {
@@ -180,6 +289,12 @@ public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> ext
                     Thread.sleep(1000);
                     double time = JProf.currentTimeSec() - start;
                     
+                    // Merge iteration counters of the solver threads
+                    if (lockFreeBest) {
+                        mergeCounters(time, initialIteration, initialFailedIterations);
+                        publishBest();
+                    }
+                    
                     // Increment progress bar
                     if (isUpdateProgress()) {
                         if (currentSolution().getBestInfo() != null && currentSolution().getModel().getBestUnassignedVariables() == 0) {
@@ -206,6 +321,10 @@ public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> ext
                     iAssignmentThread.join();
                 } catch (InterruptedException e) {}
             }
+            if (lockFreeBest) {
+                mergeCounters(JProf.currentTimeSec() - start, initialIteration, initialFailedIterations);
+                currentSolution().removeSolutionListener(bestListener);
+            }
             
             // Finalization
             iLastSolution = iCurrentSolution;
@@ -224,6 +343,18 @@ public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> ext
                 onFinish();
             }
         }
+        
+        /**
+         * Set the iteration counters of the master solution to the totals of all the solver threads
+         */
+        private void mergeCounters(double time, long initialIteration, long initialFailedIterations) {
+            long iteration = initialIteration, failed = initialFailedIterations;
+            for (SolverThread thread: iSolvers) {
+                iteration += thread.iIterations;
+                failed += thread.iFailedIterations;
+            }
+            currentSolution().update(time, iteration, failed);
+        }
     }
     
     /**
@@ -260,9 +391,10 @@ public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> ext
         private Model<V, T> iModel;
         private Solution<V, T> iSolution;
         private Assignment<V, T> iAssignment;
-        private BlockingQueue<Neighbour<V, T>> iQueue;
+        private BlockingQueue<QueuedNeighbour> iQueue;
+        private volatile long iIterations = 0, iFailedIterations = 0;
         
-        public SolverThread(int index, BlockingQueue<Neighbour<V, T>> queue) {
+        public SolverThread(int index, BlockingQueue<QueuedNeighbour> queue) {
             iIndex = index;
             iSingle = hasSingleSolution();
             iModel = iCurrentSolution.getModel();
@@ -274,9 +406,12 @@ public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> ext
         @Override
         public void run() {
             iStartTime = JProf.currentTimeSec();
+            // each solver thread has its own random number generator, seeded by General.Seed and the thread index
+            ToolBox.setThreadIndex(iIndex);
             try {
                 boolean neighbourCheck = getProperties().getPropertyBoolean("ParallelSolver.SingleSolutionNeighbourCheck", false);
                 boolean tryLazyFirst = getProperties().getPropertyBoolean("ParallelSolver.SingleSolutionTryLazyFirst", false);
+                boolean lockFreeBest = !iSingle && isLockFreeBest();
                 
                 while (!iStop) {
                     // Break if cannot continue
@@ -333,13 +468,16 @@ public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> ext
                         sLogger.debug("No neighbour selected.");
                         // still update the solution (increase iteration etc.)
                         iSolution.update(time, false);
+                        iIterations ++; iFailedIterations ++;
                         continue;
                     }
                     
                     if (iSingle) {
                         if (iQueue != null) {
+                            QueuedNeighbour queued = new QueuedNeighbour(neighbour, current.getAssignment() instanceof InheritedAssignment ?
+                                    ((InheritedAssignment<V, T>)current.getAssignment()).getVersion() : current.getIteration());
                             do {
-                                if (iQueue.offer(neighbour, 1000, TimeUnit.MILLISECONDS)) break;
+                                if (iQueue.offer(queued, 1000, TimeUnit.MILLISECONDS)) break;
                             } while (!iStop && getTerminationCondition().canContinue(iSolution));
                             continue;
                         }
@@ -423,6 +561,25 @@ public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> ext
                         } finally {
                             lock.unlock();
                         }
+                    } else if (lockFreeBest) {
+                        // Assign selected value to the selected variable, only lock when working with the master solution
+                        Lock lock = (iSolution == currentSolution() ? iSolution.getLock().writeLock() : null);
+                        if (lock != null) lock.lock();
+                        try {
+                            neighbour.assign(iAssignment, iSolution.getIteration());
+                            iSolution.update(time, true);
+                        } finally {
+                            if (lock != null) lock.unlock();
+                        }
+                        iIterations ++;
+
+                        onAssigned(iStartTime, iSolution);
+                        
+                        // Lock the master solution only when the solution can be better than the published best
+                        if ((iSaveBestUnassigned < 0 || iSaveBestUnassigned >= iAssignment.nrUnassignedVariables(iModel)) && canBeBetterThanBest(iSolution)) {
+                            if (iSolution.saveBestIfImproving(currentSolution(), getSolutionComparator()))
+                                publishBest();
+                        }
                     } else {
                         // Assign selected value to the selected variable
                         Lock lock = iSolution.getLock().writeLock();
@@ -461,103 +618,141 @@ public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> ext
     }
     
     /**
-     * Solver thread
+     * A neighbour that is waiting in the single solution queue, together with the iteration of the
+     * solution at the time the neighbour was selected.
+     */
+    protected class QueuedNeighbour {
+        private Neighbour<V, T> iNeighbour;
+        private long iVersion;
+        private Map<V, T> iAssignments = null;
+        
+        public QueuedNeighbour(Neighbour<V, T> neighbour, long version) {
+            iNeighbour = neighbour;
+            iVersion = version;
+        }
+        
+        /** Selected neighbour */
+        public Neighbour<V, T> getNeighbour() { return iNeighbour; }
+        
+        /** Solution iteration at the time the neighbour was selected */
+        public long getVersion() { return iVersion; }
+        
+        /** Assignments of the neighbour, see {@link Neighbour#assignments()} */
+        public Map<V, T> getAssignments() { return iAssignments; }
+        
+        /** Enumerate the assignments of the neighbour, returns false if the neighbour cannot enumerate them */
+        public boolean computeAssignments() {
+            try {
+                iAssignments = iNeighbour.assignments();
+            } catch (UnsupportedOperationException e) {
+                sLogger.error("Failed to enumerate " + iNeighbour.getClass().getSimpleName(), e);
+            }
+            return iAssignments != null;
+        }
+        
+        /**
+         * A neighbour is stale when a variable it changes has been changed (in the given assignment) since the neighbour was selected.
+         * @param assignment current assignment
+         * @return true if one of the variables of the neighbour has been changed since the neighbour was selected
+         */
+        public boolean isStale(Assignment<V, T> assignment) {
+            for (V variable: iAssignments.keySet())
+                if (assignment.getIteration(variable) >= iVersion) return true;
+            return false;
+        }
+    }
+    
+    /**
+     * Assignment thread (single solution queue)
      */
     protected class AssignmentThread extends Thread {
         private double iStartTime;
         private Solution<V, T> iSolution;
-        private BlockingQueue<Neighbour<V, T>> iQueue;
+        private BlockingQueue<QueuedNeighbour> iQueue;
+        private int iBatchSize = 1;
+        private boolean iNeighbourCheck = false;
+        private Double iTotalValue = null;
         
-        public AssignmentThread(BlockingQueue<Neighbour<V, T>> queue) {
+        public AssignmentThread(BlockingQueue<QueuedNeighbour> queue) {
             setName("Assignment");
             setPriority(1 + THREAD_PRIORITY);
             iSolution = iCurrentSolution;
             iQueue = queue;
         }
         
+        /**
+         * Total value of the solution, computed when needed (lazy neighbours and neighbour check). The value is kept while
+         * the neighbours of a batch are rejected (the solution does not change), it is computed again after a neighbour is accepted.
+         */
+        private double getTotalValue() {
+            if (iTotalValue == null)
+                iTotalValue = iSolution.getModel().getTotalValue(iSolution.getAssignment());
+            return iTotalValue;
+        }
+        
         @Override
         public void run() {
             iStartTime = JProf.currentTimeSec();
+            ToolBox.setThreadIndex(iSynchronizationThread.iSolvers.size() + 1);
             try {
-                boolean neighbourCheck = getProperties().getPropertyBoolean("ParallelSolver.SingleSolutionNeighbourCheck", false);
+                iNeighbourCheck = getProperties().getPropertyBoolean("ParallelSolver.SingleSolutionNeighbourCheck", false);
+                iBatchSize = Math.max(1, getProperties().getPropertyInt("ParallelSolver.SingleSolutionBatchSize", 1));
+                List<QueuedNeighbour> batch = new ArrayList<QueuedNeighbour>(iBatchSize);
                 
                 while (!iStop) {
                     // Break if cannot continue
                     if (!getTerminationCondition().canContinue(iSolution)) break;
                     
-                    // Create a sub-solution if needed
-                    Neighbour<V, T> neighbour = iQueue.poll(1000, TimeUnit.MILLISECONDS);
+                    // Take the next neighbour (or a batch of neighbours) from the queue
+                    QueuedNeighbour first = iQueue.poll(1000, TimeUnit.MILLISECONDS);
                     
-                    if (neighbour == null) continue;
+                    if (first == null) continue;
+                    
+                    batch.clear();
+                    batch.add(first);
+                    if (iBatchSize > 1)
+                        iQueue.drainTo(batch, iBatchSize - 1);
 
                     double time = JProf.currentTimeSec() - iStartTime;
                     
-                    Map<V, T> assignments = null;
-                    try {
-                        assignments = neighbour.assignments();
-                    } catch (UnsupportedOperationException e) {
-                        sLogger.error("Failed to enumerate " + neighbour.getClass().getSimpleName(), e);
-                    }
-                    if (assignments == null) {
-                        sLogger.debug("No assignments returned.");
-                        // still update the solution (increase iteration etc.)
-                        iSolution.update(time, false);
-                        continue;
+                    for (Iterator<QueuedNeighbour> i = batch.iterator(); i.hasNext(); ) {
+                        if (!i.next().computeAssignments()) {
+                            sLogger.debug("No assignments returned.");
+                            // still update the solution (increase iteration etc.)
+                            iSolution.update(time, false);
+                            i.remove();
+                        }
                     }
+                    if (batch.isEmpty()) continue;
                     
-                    // Assign selected value to the selected variable
+                    // Assign selected neighbours
                     Lock lock = iSolution.getLock().writeLock();
                     lock.lock();
                     try {
-                        LazyNeighbourAcceptanceCriterion<V,T> lazy = null;
-                        double before = 0, value = 0;
-                        if (neighbour instanceof LazyNeighbour) {
-                            before = iSolution.getModel().getTotalValue(iSolution.getAssignment());
-                            lazy = ((LazyNeighbour<V, T>)neighbour).getAcceptanceCriterion();
-                        } else if (neighbourCheck) {
-                            before = iSolution.getModel().getTotalValue(iSolution.getAssignment());
-                            value = neighbour.value(iSolution.getAssignment());
-                        }
-                        Map<V, T> undo = new HashMap<V, T>();
-                        for (V var: assignments.keySet())
-                            undo.put(var, iSolution.getAssignment().unassign(iSolution.getIteration(), var));
-                        boolean fail = false;
-                        for (T val: assignments.values()) {
-                            if (val == null) continue;
-                            if (iSolution.getModel().inConflict(iSolution.getAssignment(), val)) {
-                                fail = true; break;
+                        iTotalValue = null;
+                        for (QueuedNeighbour neighbour: batch) {
+                            if (iBatchSize > 1 && neighbour.isStale(iSolution.getAssignment())) {
+                                // one of the variables has been changed since the neighbour was selected -> reject right away
+                                iSolution.update(time, false);
+                                for (SolverListener<V, T> listener : iSolverListeners)
+                                    listener.neighbourFailed(iSolution.getAssignment(), iSolution.getIteration(), neighbour.getNeighbour());
+                                continue;
                             }
-                            iSolution.getAssignment().assign(iSolution.getIteration(), val);
-                        }
-                        if (!fail) {
-                            if (lazy != null) {
-                                double after = iSolution.getModel().getTotalValue(iSolution.getAssignment());
-                                if (!lazy.accept(iSolution.getAssignment(), (LazyNeighbour<V, T>) neighbour, after - before))
-                                    fail = true;
-                            } else if (neighbourCheck) {
-                                double after = iSolution.getModel().getTotalValue(iSolution.getAssignment());
-                                if (before + value < after && before < after && !getSolutionComparator().isBetterThanBestSolution(iSolution))
-                                    fail = true;
+                            
+                            boolean fail = !assign(neighbour.getNeighbour(), neighbour.getAssignments());
+                            
+                            iSolution.update(time, !fail);
+                            if (fail) {
+                                for (SolverListener<V, T> listener : iSolverListeners)
+                                    listener.neighbourFailed(iSolution.getAssignment(), iSolution.getIteration(), neighbour.getNeighbour());
+                                continue;
+                            }
+                            
+                            onAssigned(iStartTime, iSolution);
+    
+                            if ((iSaveBestUnassigned < 0 || iSaveBestUnassigned >= iSolution.getAssignment().nrUnassignedVariables(iSolution.getModel())) && getSolutionComparator().isBetterThanBestSolution(iSolution)) {
+                                iSolution.saveBest();
                             }
-                        }
-                        if (fail) {
-                            for (V var: undo.keySet())
-                                iSolution.getAssignment().unassign(iSolution.getIteration(), var);
-                            for (T val: undo.values())
-                                if (val != null)
-                                    iSolution.getAssignment().assign(iSolution.getIteration(), val);
-                        }
-                        iSolution.update(time, !fail);
-                        if (fail) {
-                            for (SolverListener<V, T> listener : iSolverListeners)
-                                listener.neighbourFailed(iSolution.getAssignment(), iSolution.getIteration(), neighbour);
-                            continue;
-                        }
-                        
-                        onAssigned(iStartTime, iSolution);
-
-                        if ((iSaveBestUnassigned < 0 || iSaveBestUnassigned >= iSolution.getAssignment().nrUnassignedVariables(iSolution.getModel())) && getSolutionComparator().isBetterThanBestSolution(iSolution)) {
-                            iSolution.saveBest();
                         }
                     } finally {
                         lock.unlock();
@@ -577,6 +772,83 @@ public class ParallelSolver<V extends Variable<V, T>, T extends Value<V, T>> ext
             }
         }
         
+        /**
+         * Assign the given neighbour to the solution (the solution must be locked). The neighbour is reverted
+         * when it creates a conflict, or when it is not accepted (lazy neighbour or neighbour check).
+         * @param neighbour selected neighbour
+         * @param assignments assignments of the neighbour
+         * @return true if the neighbour has been assigned
+         */
+        protected boolean assign(Neighbour<V, T> neighbour, Map<V, T> assignments) {
+            LazyNeighbourAcceptanceCriterion<V,T> lazy = null;
+            double before = 0, value = 0;
+            if (neighbour instanceof LazyNeighbour) {
+                before = getTotalValue();
+                lazy = ((LazyNeighbour<V, T>)neighbour).getAcceptanceCriterion();
+            } else if (iNeighbourCheck) {
+                before = getTotalValue();
+                value = neighbour.value(iSolution.getAssignment());
+            }
+            Map<V, T> undo = new HashMap<V, T>();
+            for (V var: assignments.keySet())
+                undo.put(var, iSolution.getAssignment().unassign(iSolution.getIteration(), var));
+            boolean fail = false;
+            for (T val: assignments.values()) {
+                if (val == null) continue;
+                if (iSolution.getModel().inConflict(iSolution.getAssignment(), val)) {
+                    fail = true; break;
+                }
+                iSolution.getAssignment().assign(iSolution.getIteration(), val);
+            }
+            double after = 0;
+            if (!fail) {
+                if (lazy != null) {
+                    after = iSolution.getModel().getTotalValue(iSolution.getAssignment());
+                    if (!lazy.accept(iSolution.getAssignment(), (LazyNeighbour<V, T>) neighbour, after - before))
+                        fail = true;
+                } else if (iNeighbourCheck) {
+                    after = iSolution.getModel().getTotalValue(iSolution.getAssignment());
+                    if (before + value < after && before < after && !getSolutionComparator().isBetterThanBestSolution(iSolution))
+                        fail = true;
+                }
+            }
+            if (fail) {
+                for (V var: undo.keySet())
+                    iSolution.getAssignment().unassign(iSolution.getIteration(), var);
+                for (T val: undo.values())
+                    if (val != null)
+                        iSolution.getAssignment().assign(iSolution.getIteration(), val);
+                // the total value is the same as before (if computed)
+            } else {
+                iTotalValue = null;
+            }
+            return !fail;
+        }
     }
 
+    /**
+     * Published best solution value: number of unassigned variables, total value, and the index of the
+     * solver thread that found the solution. Instances are immutable, so that they can be safely shared
+     * using an {@link AtomicReference}.
+     */
+    public static class BestValue {
+        private int iUnassignedVariables;
+        private double iValue;
+        private int iIndex;
+        
+        public BestValue(int unassignedVariables, double value, int index) {
+            iUnassignedVariables = unassignedVariables;
+            iValue = value;
+            iIndex = index;
+        }
+        
+        /** Number of unassigned variables of the best solution */
+        public int getUnassignedVariables() { return iUnassignedVariables; }
+        
+        /** Total value of the best solution */
+        public double getValue() { return iValue; }
+        
+        /** Index of the assignment (solver thread) that found the best solution */
+        public int getIndex() { return iIndex; }
+    }
 }
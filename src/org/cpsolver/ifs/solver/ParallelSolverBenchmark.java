@@ -0,0 +1,257 @@
+package org.cpsolver.ifs.solver;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.assignment.DefaultParallelAssignment;
+import org.cpsolver.ifs.assignment.DefaultSingleAssignment;
+import org.cpsolver.ifs.model.Model;
+import org.cpsolver.ifs.model.Neighbour;
+import org.cpsolver.ifs.model.Value;
+import org.cpsolver.ifs.model.Variable;
+import org.cpsolver.ifs.solution.Solution;
+import org.cpsolver.ifs.util.DataProperties;
+import org.cpsolver.ifs.util.JProf;
+import org.cpsolver.ifs.util.ProblemLoader;
+import org.cpsolver.ifs.util.ToolBox;
+
+/**
+ * A simple benchmark of the {@link ParallelSolver}. For each of the given numbers of solver threads,
+ * the problem is loaded, solved for a fixed amount of time (Termination.TimeOut property, defaults to 60 seconds),
+ * and the number of iterations per second is printed out. <br>
+ * <br>
+ * Usage:<br>
+ * java -cp cpsolver.jar org.cpsolver.ifs.solver.ParallelSolverBenchmark config.properties input.xml [coursett|studentsct] [1,2,4,8,16,32,64]<br>
+ * <br>
+ * Parameter Benchmark.Compare can contain a comma separated list of solver parameters (e.g.,
+ * ParallelSolver.LockFreeBest or ParallelSolver.SingleSolutionBatchSize=16), each of them is then benchmarked against
+ * the default configuration (a parameter without a value is set to true).
+ * When Benchmark.SingleSolution is set to true, all the threads work on a single solution.<br>
+ * <br>
+ * The model and the loader classes can be also given using the Benchmark.Model and Benchmark.Loader
+ * properties (the model needs to have a constructor with {@link DataProperties} parameter, the loader
+ * needs to extend {@link ProblemLoader}).
+ *
+ * @version IFS 1.3 (Iterative Forward Search)<br>
+ *          Copyright (C) 2014 Tomas Muller<br>
+ *          <a href="mailto:muller@unitime.org">muller@unitime.org</a><br>
+ *          <a href="http://muller.unitime.org">http://muller.unitime.org</a><br>
+ * <br>
+ *          This library is free software; you can redistribute it and/or modify
+ *          it under the terms of the GNU Lesser General Public License as
+ *          published by the Free Software Foundation; either version 3 of the
+ *          License, or (at your option) any later version. <br>
+ * <br>
+ *          This library is distributed in the hope that it will be useful, but
+ *          WITHOUT ANY WARRANTY; without even the implied warranty of
+ *          MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *          Lesser General Public License for more details. <br>
+ * <br>
+ *          You should have received a copy of the GNU Lesser General Public
+ *          License along with this library; if not see <a href='http://www.gnu.org/licenses'>http://www.gnu.org/licenses</a>.
+ *
+ * @param <V> Variable
+ * @param <T> Value
+ **/
+public class ParallelSolverBenchmark<V extends Variable<V, T>, T extends Value<V, T>> {
+    private static Logger sLog = Logger.getLogger(ParallelSolverBenchmark.class);
+    private static DecimalFormat sDF = new DecimalFormat("0.00");
+    private DataProperties iProperties;
+
+    /**
+     * Constructor
+     * @param properties solver configuration (including the Benchmark.Model and Benchmark.Loader properties)
+     */
+    public ParallelSolverBenchmark(DataProperties properties) {
+        iProperties = properties;
+    }
+
+    /**
+     * Create and load the model
+     * @param properties solver configuration
+     * @param assignment initial assignment
+     * @return loaded model
+     * @throws Exception when the model cannot be created or loaded
+     */
+    @SuppressWarnings("unchecked")
+    protected Model<V, T> load(DataProperties properties, Assignment<V, T> assignment) throws Exception {
+        Model<V, T> model = (Model<V, T>) Class.forName(properties.getProperty("Benchmark.Model"))
+                .getConstructor(new Class<?>[] { DataProperties.class }).newInstance(new Object[] { properties });
+        ProblemLoader<V, T, Model<V, T>> loader = null;
+        for (Constructor<?> constructor: Class.forName(properties.getProperty("Benchmark.Loader")).getConstructors()) {
+            if (constructor.getParameterTypes().length == 2 && constructor.getParameterTypes()[0].isInstance(model)) {
+                loader = (ProblemLoader<V, T, Model<V, T>>) constructor.newInstance(new Object[] { model, assignment });
+                break;
+            }
+        }
+        if (loader == null)
+            throw new IllegalArgumentException("No suitable constructor found for " + properties.getProperty("Benchmark.Loader") + ".");
+        loader.load();
+        return model;
+    }
+
+    /**
+     * Solve the problem using the given number of solver threads
+     * @param nrSolvers number of solver threads
+     * @param extra additional solver parameters (e.g., to enable a particular parallel solver mode), can be null
+     * @return number of iterations per second
+     * @throws Exception when the problem cannot be loaded
+     */
+    public double run(int nrSolvers, Map<String, String> extra) throws Exception {
+        DataProperties properties = new DataProperties();
+        properties.putAll(iProperties);
+        properties.setProperty("Parallel.NrSolvers", String.valueOf(nrSolvers));
+        if (extra != null)
+            properties.putAll(extra);
+        Assignment<V, T> assignment = (nrSolvers <= 1 ? new DefaultSingleAssignment<V, T>() :
+            properties.getPropertyBoolean("Benchmark.SingleSolution", false) ? new DefaultSingleAssignment<V, T>() : new DefaultParallelAssignment<V, T>());
+        Model<V, T> model = load(properties, assignment);
+
+        Solver<V, T> solver = (nrSolvers <= 1 ? new Solver<V, T>(properties) : new ParallelSolver<V, T>(properties));
+        solver.setInitalSolution(new Solution<V, T>(model, assignment));
+        IterationCounter counter = new IterationCounter();
+        solver.addSolverListener(counter);
+
+        double start = JProf.currentTimeSec();
+        solver.start();
+        try {
+            solver.getSolverThread().join();
+        } catch (InterruptedException e) {}
+        double time = JProf.currentTimeSec() - start;
+
+        long iterations = counter.getIterations(), failed = counter.getFailedIterations();
+        double speed = iterations / time;
+        sLog.info(nrSolvers + " thread(s)" + (extra == null || extra.isEmpty() ? "" : " " + extra) + ": " + iterations + " iterations (" + failed + " failed) in " +
+                sDF.format(time) + " s, " + sDF.format(speed) + " it/s, best " + sDF.format(solver.lastSolution().getBestValue()));
+        return speed;
+    }
+    
+    /**
+     * Solve the problem using the given number of solver threads
+     * @param nrSolvers number of solver threads
+     * @return number of iterations per second
+     * @throws Exception when the problem cannot be loaded
+     */
+    public double run(int nrSolvers) throws Exception {
+        return run(nrSolvers, null);
+    }
+    
+    /**
+     * Solver listener counting the selected and the failed neighbours. Each solver thread counts its own
+     * iterations, so that the counting does not introduce any contention among the threads.
+     */
+    private class IterationCounter implements SolverListener<V, T> {
+        private List<long[]> iCounters = new ArrayList<long[]>();
+        private ThreadLocal<long[]> iCounter = new ThreadLocal<long[]>() {
+            @Override
+            protected long[] initialValue() {
+                long[] counter = new long[] { 0, 0 };
+                synchronized (iCounters) {
+                    iCounters.add(counter);
+                }
+                return counter;
+            }
+        };
+
+        @Override
+        public boolean variableSelected(Assignment<V, T> assignment, long iteration, V variable) {
+            return true;
+        }
+
+        @Override
+        public boolean valueSelected(Assignment<V, T> assignment, long iteration, V variable, T value) {
+            return true;
+        }
+
+        @Override
+        public boolean neighbourSelected(Assignment<V, T> assignment, long iteration, Neighbour<V, T> neighbour) {
+            iCounter.get()[0] ++;
+            return true;
+        }
+
+        @Override
+        public void neighbourFailed(Assignment<V, T> assignment, long iteration, Neighbour<V, T> neighbour) {
+            iCounter.get()[1] ++;
+        }
+        
+        private long get(int index) {
+            long ret = 0;
+            synchronized (iCounters) {
+                for (long[] counter: iCounters)
+                    ret += counter[index];
+            }
+            return ret;
+        }
+        
+        public long getIterations() { return get(0); }
+        
+        public long getFailedIterations() { return get(1); }
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public static void main(String[] args) {
+        try {
+            ToolBox.configureLogging();
+            Logger.getLogger("org.cpsolver").setLevel(Level.INFO);
+            DataProperties properties = ToolBox.loadProperties(new File(args[0]));
+            properties.putAll(System.getProperties());
+            if (args.length > 1)
+                properties.setProperty("General.Input", args[1]);
+            String problem = (args.length > 2 ? args[2] : "coursett");
+            if ("studentsct".equals(problem)) {
+                properties.setProperty("Benchmark.Model", properties.getProperty("Benchmark.Model", "org.cpsolver.studentsct.StudentSectioningModel"));
+                properties.setProperty("Benchmark.Loader", properties.getProperty("Benchmark.Loader", "org.cpsolver.studentsct.StudentSectioningXMLLoader"));
+            } else {
+                properties.setProperty("Benchmark.Model", properties.getProperty("Benchmark.Model", "org.cpsolver.coursett.model.TimetableModel"));
+                properties.setProperty("Benchmark.Loader", properties.getProperty("Benchmark.Loader", "org.cpsolver.coursett.TimetableXMLLoader"));
+            }
+            properties.setProperty("Termination.TimeOut", properties.getProperty("Termination.TimeOut", "60"));
+
+            List<Integer> threads = new ArrayList<Integer>();
+            for (String nrThreads: (args.length > 3 ? args[3] : "1,2,4,8,16,32,64").split(","))
+                threads.add(Integer.valueOf(nrThreads.trim()));
+            
+            // Benchmark.Compare: comma separated list of solver parameters to be compared with the default configuration
+            // (e.g., Benchmark.Compare=ParallelSolver.LockFreeBest,ParallelSolver.SingleSolutionBatchSize=16), true is used when no value is given
+            List<Map<String, String>> modes = new ArrayList<Map<String, String>>();
+            modes.add(new HashMap<String, String>());
+            for (String parameter: properties.getProperty("Benchmark.Compare", "").split(",")) {
+                if (parameter.trim().isEmpty()) continue;
+                Map<String, String> mode = new HashMap<String, String>();
+                int idx = parameter.indexOf('=');
+                if (idx >= 0)
+                    mode.put(parameter.substring(0, idx).trim(), parameter.substring(idx + 1).trim());
+                else
+                    mode.put(parameter.trim(), "true");
+                modes.add(mode);
+            }
+
+            ParallelSolverBenchmark<?, ?> benchmark = new ParallelSolverBenchmark(properties);
+            double[][] speeds = new double[threads.size()][modes.size()];
+            for (int i = 0; i < threads.size(); i++)
+                for (int j = 0; j < modes.size(); j++)
+                    speeds[i][j] = benchmark.run(threads.get(i), modes.get(j));
+
+            String header = "Threads;Speed[it/s];Scaling";
+            for (int j = 1; j < modes.size(); j++)
+                header += ";" + modes.get(j).entrySet().iterator().next() + "[it/s];Speedup";
+            System.out.println(header);
+            for (int i = 0; i < threads.size(); i++) {
+                String line = threads.get(i) + ";" + sDF.format(speeds[i][0]) + ";" + sDF.format(speeds[i][0] / speeds[0][0]);
+                for (int j = 1; j < modes.size(); j++)
+                    line += ";" + sDF.format(speeds[i][j]) + ";" + sDF.format(speeds[i][j] / speeds[i][0]);
+                System.out.println(line);
+            }
+        } catch (Exception e) {
+            sLog.error("Benchmark failed: " + e.getMessage(), e);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.cpsolver.ifs.util;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -16,6 +17,12 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * For instructors, the preference is computed using the distance in meters and the three constants 
  * Instructor.NoPreferenceLimit (distance &lt;= limit &rarr; no preference), Instructor.DiscouragedLimit (distance &lt;= limit &rarr; discouraged),
  * Instructor.ProhibitedLimit (distance &lt;= limit &rarr; strongly discouraged), the back-to-back placement is prohibited when the distance is over the last limit.
+ * <br><br>
+ * Locations (rooms) can be registered using {@link DistanceMetric#getLocationIndex(Long, Double, Double)}. Distances between
+ * registered locations are kept in a dense (triangular) matrix indexed by the location indexes, see
+ * {@link DistanceMetric#getDistanceInMeters(int, int)} and {@link DistanceMetric#getDistanceInMinutes(int, int)}. The
+ * matrix is filled in lazily, up to Distances.MatrixLimit locations (defaults to 2500, at most 65536), locations over the limit
+ * are not registered and the distances are computed using the coordinates (and the travel times) instead.
  * 
  * @version IFS 1.3 (Iterative Forward Search)<br>
  *          Copyright (C) 2006 - 2014 Tomas Muller<br>
@@ -114,7 +121,15 @@ public class DistanceMetric {
     /** Travel times overriding the distances computed from coordintaes */
     private Map<Long, Map<Long, Integer>> iTravelTimes = new HashMap<Long, Map<Long,Integer>>();
     /** Distance cache  */
-    private Map<String, Double> iDistanceCache = new HashMap<String, Double>();
+    private Map<CoordinatesKey, Double> iDistanceCache = new HashMap<CoordinatesKey, Double>();
+    /** Indexes of the registered locations */
+    private Map<Long, Integer> iLocationIndexes = new HashMap<Long, Integer>();
+    /** Distance matrix of the registered locations */
+    private volatile DistanceMatrix iMatrix = new DistanceMatrix(0);
+    /** Maximal number of locations in the distance matrix */
+    private int iMatrixLimit = 2500;
+    /** Highest number of locations of a distance matrix whose size still fits in an array */
+    private static final int sMaxMatrixLimit = 65536;
     /** True if distances should be considered between classes that are NOT back-to-back */
     private boolean iComputeDistanceConflictsBetweenNonBTBClasses = false;
     /** Reference of the accommodation of students that need short distances */
@@ -175,6 +190,7 @@ public class DistanceMetric {
         iShortDistanceAccommodationReference = properties.getProperty(
                 "Distances.ShortDistanceAccommodationReference", iShortDistanceAccommodationReference);
         iInstructorLongTravelInMinutes = properties.getPropertyDouble("Instructor.InstructorLongTravelInMinutes", 30.0);
+        iMatrixLimit = Math.min(sMaxMatrixLimit, properties.getPropertyInt("Distances.MatrixLimit", iMatrixLimit));
     }
 
     /** Degrees to radians 
@@ -208,20 +224,7 @@ public class DistanceMetric {
             return Math.sqrt(dx * dx + dy * dy);
         }
         
-        String id = null;
-        if (lat1 < lat2 || (lat1 == lat2 && lon1 <= lon2)) {
-            id =
-                Long.toHexString(Double.doubleToRawLongBits(lat1)) +
-                Long.toHexString(Double.doubleToRawLongBits(lon1)) +
-                Long.toHexString(Double.doubleToRawLongBits(lat2)) +
-                Long.toHexString(Double.doubleToRawLongBits(lon2));
-        } else {
-            id =
-                Long.toHexString(Double.doubleToRawLongBits(lat1)) +
-                Long.toHexString(Double.doubleToRawLongBits(lon1)) +
-                Long.toHexString(Double.doubleToRawLongBits(lat2)) +
-                Long.toHexString(Double.doubleToRawLongBits(lon2));
-        }
+        CoordinatesKey id = new CoordinatesKey(lat1, lon1, lat2, lon2);
         
         iLock.readLock().lock();
         try {
@@ -377,7 +380,10 @@ public class DistanceMetric {
                     times.remove(roomId1);
                 else
                     times.put(roomId1, travelTimeInMinutes);
-            }            
+            }
+            // travel times take precedence over the coordinates, recompute the distance matrix
+            if (!iLocationIndexes.isEmpty())
+                iMatrix = new DistanceMatrix(iMatrix);
         } finally {
             iLock.writeLock().unlock();
         }
@@ -439,6 +445,86 @@ public class DistanceMetric {
         return getDistanceInMeters(lat1, lon1, lat2, lon2);
     }
     
+    /**
+     * Register a location (e.g., a room) and return its index in the distance matrix. The same location (with the same
+     * coordinates) always gets the same index.
+     * @param roomId room's id
+     * @param lat room's latitude
+     * @param lon room's longitude
+     * @return location index, -1 when the location cannot be registered (no id is given, the coordinates differ from the ones
+     * registered before, or Distances.MatrixLimit has been reached)
+     */
+    public int getLocationIndex(Long roomId, Double lat, Double lon) {
+        if (roomId == null) return -1;
+        iLock.writeLock().lock();
+        try {
+            Integer index = iLocationIndexes.get(roomId);
+            if (index != null) {
+                Location location = iMatrix.getLocation(index);
+                return (location != null && location.hasCoordinates(lat, lon) ? index : -1);
+            }
+            if (iLocationIndexes.size() >= iMatrixLimit) return -1;
+            index = iLocationIndexes.size();
+            iLocationIndexes.put(roomId, index);
+            if (index >= iMatrix.capacity()) {
+                DistanceMatrix matrix = new DistanceMatrix(iMatrix, Math.min(iMatrixLimit, Math.max(index + 1, 2 * iMatrix.capacity())));
+                matrix.setLocation(index, new Location(roomId, lat, lon));
+                iMatrix = matrix;
+            } else {
+                iMatrix.setLocation(index, new Location(roomId, lat, lon));
+            }
+            return index;
+        } finally {
+            iLock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Return travel distance between two registered locations, see {@link DistanceMetric#getDistanceInMeters(Long, Double, Double, Long, Double, Double)}.
+     * The distance is computed only once, it is then taken from the distance matrix.
+     * @param index1 first location's index, see {@link DistanceMetric#getLocationIndex(Long, Double, Double)}
+     * @param index2 second location's index, see {@link DistanceMetric#getLocationIndex(Long, Double, Double)}
+     * @return distance in meters
+     */
+    public double getDistanceInMeters(int index1, int index2) {
+        DistanceMatrix matrix = iMatrix;
+        if (index1 == index2) {
+            Location l = matrix.getLocation(index1);
+            return getDistanceInMeters(l.getId(), l.getLatitude(), l.getLongitude(), l.getId(), l.getLatitude(), l.getLongitude());
+        }
+        int pos = DistanceMatrix.position(index1, index2);
+        double distance = matrix.iMeters[pos];
+        if (!Double.isNaN(distance)) return distance;
+        // always compute the distance in the same direction, so that it does not depend on which pair is asked first
+        Location l1 = matrix.getLocation(Math.min(index1, index2)), l2 = matrix.getLocation(Math.max(index1, index2));
+        distance = getDistanceInMeters(l1.getId(), l1.getLatitude(), l1.getLongitude(), l2.getId(), l2.getLatitude(), l2.getLongitude());
+        matrix.iMeters[pos] = distance;
+        return distance;
+    }
+    
+    /**
+     * Return travel time between two registered locations, see {@link DistanceMetric#getDistanceInMinutes(Long, Double, Double, Long, Double, Double)}.
+     * The travel time is computed only once, it is then taken from the distance matrix.
+     * @param index1 first location's index, see {@link DistanceMetric#getLocationIndex(Long, Double, Double)}
+     * @param index2 second location's index, see {@link DistanceMetric#getLocationIndex(Long, Double, Double)}
+     * @return distance in minutes
+     */
+    public int getDistanceInMinutes(int index1, int index2) {
+        DistanceMatrix matrix = iMatrix;
+        if (index1 == index2) {
+            Location l = matrix.getLocation(index1);
+            return getDistanceInMinutes(l.getId(), l.getLatitude(), l.getLongitude(), l.getId(), l.getLatitude(), l.getLongitude());
+        }
+        int pos = DistanceMatrix.position(index1, index2);
+        int distance = matrix.iMinutes[pos];
+        if (distance != DistanceMatrix.sUnknown) return distance;
+        // always compute the distance in the same direction, so that it does not depend on which pair is asked first
+        Location l1 = matrix.getLocation(Math.min(index1, index2)), l2 = matrix.getLocation(Math.max(index1, index2));
+        distance = getDistanceInMinutes(l1.getId(), l1.getLatitude(), l1.getLongitude(), l2.getId(), l2.getLatitude(), l2.getLongitude());
+        matrix.iMinutes[pos] = distance;
+        return distance;
+    }
+    
     /** Return travel times matrix
      * @return travel times matrix
      **/
@@ -472,4 +558,107 @@ public class DistanceMetric {
         System.out.println("Distance between ENAD and ME: " + new DistanceMetric().getDistanceInMinutes(40.428323, -86.912785, 40.429338, -86.91267) + " minutes");
     }
 
+    /**
+     * A registered location
+     */
+    private static class Location {
+        private Long iId;
+        private Double iLatitude, iLongitude;
+        
+        private Location(Long id, Double latitude, Double longitude) {
+            iId = id; iLatitude = latitude; iLongitude = longitude;
+        }
+        
+        private Long getId() { return iId; }
+        private Double getLatitude() { return iLatitude; }
+        private Double getLongitude() { return iLongitude; }
+        
+        private boolean hasCoordinates(Double latitude, Double longitude) {
+            return (iLatitude == null ? latitude == null : iLatitude.equals(latitude)) && (iLongitude == null ? longitude == null : iLongitude.equals(longitude));
+        }
+    }
+    
+    /**
+     * Triangular distance matrix of the registered locations. The distance between locations i &gt; j is stored on
+     * position i * (i - 1) / 2 + j, so the positions do not change when the matrix is enlarged. Unknown distances
+     * are NaN (in meters) and {@link DistanceMatrix#sUnknown} (in minutes). Computed distances may be written by
+     * multiple threads at once, but since they always write the same value, no locking is needed.
+     */
+    private static class DistanceMatrix {
+        private static final int sUnknown = Integer.MIN_VALUE;
+        private Location[] iLocations;
+        private double[] iMeters;
+        private int[] iMinutes;
+        
+        /** Empty matrix for the given number of locations */
+        private DistanceMatrix(int capacity) {
+            iLocations = new Location[capacity];
+            iMeters = new double[size(capacity)];
+            Arrays.fill(iMeters, Double.NaN);
+            iMinutes = new int[iMeters.length];
+            Arrays.fill(iMinutes, sUnknown);
+        }
+        
+        /** Enlarged copy of the given matrix */
+        private DistanceMatrix(DistanceMatrix matrix, int capacity) {
+            iLocations = Arrays.copyOf(matrix.iLocations, capacity);
+            iMeters = Arrays.copyOf(matrix.iMeters, size(capacity));
+            Arrays.fill(iMeters, matrix.iMeters.length, iMeters.length, Double.NaN);
+            iMinutes = Arrays.copyOf(matrix.iMinutes, iMeters.length);
+            Arrays.fill(iMinutes, matrix.iMinutes.length, iMinutes.length, sUnknown);
+        }
+        
+        /** Empty matrix with the same locations as the given one */
+        private DistanceMatrix(DistanceMatrix matrix) {
+            this(matrix.capacity());
+            System.arraycopy(matrix.iLocations, 0, iLocations, 0, iLocations.length);
+        }
+        
+        private static int position(int index1, int index2) {
+            return (int)(index1 > index2 ? (long)index1 * (index1 - 1) / 2 + index2 : (long)index2 * (index2 - 1) / 2 + index1);
+        }
+        
+        /** Number of distances of a matrix of the given capacity, computed in long so that it cannot overflow */
+        private static int size(int capacity) {
+            long size = (long)capacity * (capacity - 1) / 2;
+            if (size > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Distance matrix of " + capacity + " locations is too large, the limit is " + sMaxMatrixLimit + " locations.");
+            return (int)size;
+        }
+        
+        private int capacity() { return iLocations.length; }
+        
+        private Location getLocation(int index) { return iLocations[index]; }
+        
+        private void setLocation(int index, Location location) { iLocations[index] = location; }
+    }
+    
+    /**
+     * Key of the distance cache (coordinates of the two locations)
+     */
+    private static class CoordinatesKey {
+        private double iLat1, iLon1, iLat2, iLon2;
+        private int iHashCode;
+        
+        private CoordinatesKey(double lat1, double lon1, double lat2, double lon2) {
+            iLat1 = lat1; iLon1 = lon1; iLat2 = lat2; iLon2 = lon2;
+            long bits = Double.doubleToLongBits(lat1);
+            bits = 31 * bits + Double.doubleToLongBits(lon1);
+            bits = 31 * bits + Double.doubleToLongBits(lat2);
+            bits = 31 * bits + Double.doubleToLongBits(lon2);
+            iHashCode = (int) (bits ^ (bits >>> 32));
+        }
+        
+        @Override
+        public int hashCode() {
+            return iHashCode;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (o == null || !(o instanceof CoordinatesKey)) return false;
+            CoordinatesKey k = (CoordinatesKey) o;
+            return Double.compare(iLat1, k.iLat1) == 0 && Double.compare(iLon1, k.iLon1) == 0 && Double.compare(iLat2, k.iLat2) == 0 && Double.compare(iLon2, k.iLon2) == 0;
+        }
+    }
 }
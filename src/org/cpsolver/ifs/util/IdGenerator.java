@@ -1,7 +1,10 @@
 package org.cpsolver.ifs.util;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
- * ID generator.
+ * ID generator. Thread-safe, so that variables, values, and constraints can be
+ * created by multiple threads at once (e.g., when the domains are computed in parallel).
  * 
  * @version IFS 1.3 (Iterative Forward Search)<br>
  *          Copyright (C) 2006 - 2014 Tomas Muller<br>
@@ -23,13 +26,13 @@ package org.cpsolver.ifs.util;
  *          <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
  */
 public class IdGenerator {
-    private int iLastId = 0;
+    private AtomicLong iLastId = new AtomicLong(0);
 
     /** Generates new id 
      * @return new unique id
      **/
     public long newId() {
-        return ++iLastId;
+        return iLastId.incrementAndGet();
     }
 
 }
@@ -19,6 +19,7 @@ import java.util.Random;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
@@ -47,8 +48,58 @@ import org.apache.log4j.PropertyConfigurator;
  *          <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
  */
 public class ToolBox {
-    private static long sSeed = System.currentTimeMillis();
-    private static Random sRandom = new Random(sSeed);
+    private static volatile long sSeed = System.currentTimeMillis();
+    private static volatile int sGeneration = 0;
+    private static final AtomicInteger sNextThreadIndex = new AtomicInteger(0);
+    private static final ThreadLocal<ThreadRandom> sRandom = new ThreadLocal<ThreadRandom>() {
+        @Override
+        protected ThreadRandom initialValue() {
+            return new ThreadRandom(-1);
+        }
+    };
+
+    /**
+     * Random number generator of a thread. Each thread has its own generator, seeded by a seed derived from the
+     * current seed (see {@link ToolBox#setSeed(long)}) and the index of the thread (see {@link ToolBox#setThreadIndex(int)}).
+     * This way, the threads do not compete for a single generator and each of them is getting a deterministic
+     * sequence of random numbers.
+     */
+    private static class ThreadRandom {
+        private boolean iAutoIndex;
+        private int iIndex;
+        private int iGeneration;
+        private Random iRandom;
+        
+        private ThreadRandom(int index) {
+            iAutoIndex = (index < 0);
+            iIndex = index;
+            reset();
+        }
+        
+        private void reset() {
+            iGeneration = sGeneration;
+            if (iAutoIndex)
+                iIndex = sNextThreadIndex.getAndIncrement();
+            iRandom = new Random(seed(sSeed, iIndex));
+        }
+        
+        private Random getRandom() {
+            if (iGeneration != sGeneration) reset();
+            return iRandom;
+        }
+    }
+    
+    /**
+     * Derive seed of the given thread from the global seed. The thread with index 0 uses the global seed as it is,
+     * other threads use a well mixed combination of the seed and the index (SplitMix64 finalizer).
+     */
+    private static long seed(long seed, int index) {
+        if (index == 0) return seed;
+        long z = seed + index * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
 
     /** Returns random number (int) from the set 0 .. limit - 1 
      * @param limit a limit 
@@ -71,7 +122,7 @@ public class ToolBox {
                 return set.iterator().next();
             case 2:
                 Iterator<E> i = set.iterator();
-                if (sRandom.nextBoolean()) i.next();
+                if (getRandom().nextBoolean()) i.next();
                 return i.next();
             default:
                 int index = random(set.size());
@@ -227,12 +278,27 @@ public class ToolBox {
 
     /**
      * Sets seeds for {@link ToolBox#getRandom()} and {@link ToolBox#random()}
-     * methods.
+     * methods. The random number generators of all the threads are re-seeded, the calling
+     * thread gets index 0 (see {@link ToolBox#setThreadIndex(int)}).
      * @param seed random seed
      */
     public static void setSeed(long seed) {
         sSeed = seed;
-        sRandom = new Random(sSeed);
+        sGeneration ++;
+        sNextThreadIndex.set(1);
+        sRandom.set(new ThreadRandom(0));
+    }
+    
+    /**
+     * Sets index of the current thread. The random number generator of the current thread is re-seeded with a seed
+     * derived from the current seed and the given index, so that each thread (e.g., a solver thread of the
+     * {@link org.cpsolver.ifs.solver.ParallelSolver}) gets its own deterministic sequence of random numbers. The thread
+     * that called {@link ToolBox#setSeed(long)} is using index 0 (i.e., the seed as it is), other threads that have not set
+     * their index get the next available index when they first ask for a random number.
+     * @param index thread index, 0 means the seed set by {@link ToolBox#setSeed(long)} is used directly
+     */
+    public static void setThreadIndex(int index) {
+        sRandom.set(new ThreadRandom(Math.max(0, index)));
     }
 
     /** Gets current seed 
@@ -246,14 +312,14 @@ public class ToolBox {
      * @return random number generator
      **/
     public static Random getRandom() {
-        return sRandom;
+        return sRandom.get().getRandom();
     }
 
     /** Generates random double number 
      * @return random number
      **/
     public static double random() {
-        return sRandom.nextDouble();
+        return getRandom().nextDouble();
     }
 
     /** Configurates log4j loging */
@@ -501,6 +567,24 @@ public class ToolBox {
         return ret;
     }
     
+    /**
+     * Index of the given permutation, inverse to {@link ToolBox#permutation(List, int, long)}
+     * @param n number of elements
+     * @param positions positions of the elements of the tuple (permutation) in the list of elements, in ascending order
+     * @return index of the permutation (between 0 and binomial(n, m) - 1, where m is the size of the tuple)
+     */
+    public static long permutationId(int n, int[] positions) {
+        int m = positions.length;
+        long id = 0;
+        int p = 0;
+        for (int i = 0; i < m; i++) {
+            for (; p < positions[i]; p++)
+                id += binomial(n - p - 1, m - i - 1);
+            p = positions[i] + 1;
+        }
+        return id;
+    }
+    
     /**
      * Generate a list of samples of the given list
      * @param items list of elements
@@ -182,10 +182,11 @@ public class StudentPreferencePenalties {
     public double getPenalty(TimeLocation time) {
         int nrSlots = 0;
         double penalty = 0.0;
-        for (Enumeration<Integer> e = time.getSlots(); e.hasMoreElements();) {
-            int slot = e.nextElement();
-            nrSlots++;
-            penalty += (iWeight.get(day(slot) + "." + time(slot))).doubleValue();
+        for (int start: time.getStartSlotsArray()) {
+            for (int slot = start; slot < start + time.getLength(); slot++) {
+                nrSlots++;
+                penalty += (iWeight.get(day(slot) + "." + time(slot))).doubleValue();
+            }
         }
         return penalty / nrSlots;
     }
@@ -0,0 +1,617 @@
+package org.cpsolver.studentsct;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.cpsolver.coursett.model.Placement;
+import org.cpsolver.coursett.model.RoomLocation;
+import org.cpsolver.coursett.model.TimeLocation;
+import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.util.DistanceMetric;
+import org.cpsolver.studentsct.model.AcademicAreaCode;
+import org.cpsolver.studentsct.model.AreaClassificationMajor;
+import org.cpsolver.studentsct.model.Choice;
+import org.cpsolver.studentsct.model.Config;
+import org.cpsolver.studentsct.model.Course;
+import org.cpsolver.studentsct.model.CourseRequest;
+import org.cpsolver.studentsct.model.Enrollment;
+import org.cpsolver.studentsct.model.FreeTimeRequest;
+import org.cpsolver.studentsct.model.Instructor;
+import org.cpsolver.studentsct.model.Offering;
+import org.cpsolver.studentsct.model.Request;
+import org.cpsolver.studentsct.model.RequestGroup;
+import org.cpsolver.studentsct.model.Section;
+import org.cpsolver.studentsct.model.Student;
+import org.cpsolver.studentsct.model.Subpart;
+import org.cpsolver.studentsct.model.Unavailability;
+import org.cpsolver.studentsct.reservation.CourseReservation;
+import org.cpsolver.studentsct.reservation.CurriculumReservation;
+import org.cpsolver.studentsct.reservation.DummyReservation;
+import org.cpsolver.studentsct.reservation.GroupReservation;
+import org.cpsolver.studentsct.reservation.IndividualReservation;
+import org.cpsolver.studentsct.reservation.Reservation;
+import org.cpsolver.studentsct.reservation.ReservationOverride;
+
+/**
+ * Load student sectioning model from a binary snapshot created by {@link StudentSectioningBinarySaver}.
+ * The file is memory-mapped and read directly from the mapped buffer. The loaded model contains the
+ * same offerings, reservations, students, requests, linked sections and travel times as the saved one;
+ * initial enrollments are restored, best enrollments are assigned and saved as the best solution,
+ * and the current enrollments are assigned afterwards (see
+ * {@link StudentSectioningLoader#assignEnrollments(List, List)}).
+ *
+ * <br>
+ * <br>
+ * Usage:
+ * <pre><code>
+ * StudentSectioningModel model = new StudentSectioningModel(cfg);<br>
+ * StudentSectioningBinaryLoader loader = new StudentSectioningBinaryLoader(model, assignment);<br>
+ * loader.setInputFile(new File("solution.snapshot"));<br>
+ * loader.load();<br>
+ * </code></pre>
+ * When no file is given, the General.Input property is used.
+ *
+ * @version StudentSct 1.3 (Student Sectioning)<br>
+ *          Copyright (C) 2014 Tomas Muller<br>
+ *          <a href="mailto:muller@unitime.org">muller@unitime.org</a><br>
+ *          <a href="http://muller.unitime.org">http://muller.unitime.org</a><br>
+ * <br>
+ *          This library is free software; you can redistribute it and/or modify
+ *          it under the terms of the GNU Lesser General Public License as
+ *          published by the Free Software Foundation; either version 3 of the
+ *          License, or (at your option) any later version. <br>
+ * <br>
+ *          This library is distributed in the hope that it will be useful, but
+ *          WITHOUT ANY WARRANTY; without even the implied warranty of
+ *          MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *          Lesser General Public License for more details. <br>
+ * <br>
+ *          You should have received a copy of the GNU Lesser General Public
+ *          License along with this library; if not see
+ *          <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ */
+public class StudentSectioningBinaryLoader extends StudentSectioningLoader {
+    private static org.apache.log4j.Logger sLogger = org.apache.log4j.Logger.getLogger(StudentSectioningBinaryLoader.class);
+    /** First four bytes of a snapshot (SCTB) */
+    public static final int sMagic = 0x53435442;
+    /** Snapshot format version */
+    public static final int sVersion = 1;
+
+    static final byte sReservationIndividual = 0;
+    static final byte sReservationGroup = 1;
+    static final byte sReservationOverride = 2;
+    static final byte sReservationCurriculum = 3;
+    static final byte sReservationCourse = 4;
+    static final byte sReservationDummy = 5;
+
+    static final byte sRequestFreeTime = 0;
+    static final byte sRequestCourse = 1;
+
+    private File iInputFile;
+    private ByteBuffer iIn = null;
+    private List<String> iStrings = null;
+    private Map<Long, Offering> iOfferingTable = new HashMap<Long, Offering>();
+    private Map<Long, Course> iCourseTable = new HashMap<Long, Course>();
+
+    /**
+     * Constructor
+     *
+     * @param model
+     *            student sectioning model
+     * @param assignment current assignment
+     */
+    public StudentSectioningBinaryLoader(StudentSectioningModel model, Assignment<Request, Enrollment> assignment) {
+        super(model, assignment);
+        iInputFile = new File(getModel().getProperties().getProperty("General.Input",
+                "." + File.separator + "solution.snapshot"));
+    }
+
+    /** Set input file (e.g., if it is not set by General.Input property)
+     * @param inputFile input file
+     **/
+    public void setInputFile(File inputFile) {
+        iInputFile = inputFile;
+    }
+
+    /**
+     * Check whether the given file is a binary snapshot
+     * @param file a file
+     * @return true if the file starts with the snapshot magic number
+     */
+    public static boolean isSnapshot(File file) {
+        if (file == null || !file.isFile() || file.length() < 8) return false;
+        try {
+            FileInputStream in = new FileInputStream(file);
+            try {
+                ByteBuffer header = ByteBuffer.allocate(4);
+                while (header.hasRemaining() && in.getChannel().read(header) >= 0);
+                header.flip();
+                return header.remaining() == 4 && header.getInt() == sMagic;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /** Load the snapshot */
+    @Override
+    public void load() throws IOException {
+        sLogger.debug("Reading snapshot from " + iInputFile);
+        FileInputStream fis = new FileInputStream(iInputFile);
+        try {
+            FileChannel channel = fis.getChannel();
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Snapshot " + iInputFile + " is too large.");
+            iIn = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            iStrings = new ArrayList<String>();
+            if (iIn.getInt() != sMagic)
+                throw new IOException("Given file is not a student sectioning snapshot.");
+            int version = iIn.getInt();
+            if (version != sVersion)
+                throw new IOException("Unsupported snapshot version " + version + " (expected " + sVersion + ").");
+
+            String term = readString(), year = readString(), initiative = readString();
+            if (term != null)
+                getModel().getProperties().setProperty("Data.Term", term);
+            if (year != null)
+                getModel().getProperties().setProperty("Data.Year", year);
+            if (initiative != null)
+                getModel().getProperties().setProperty("Data.Initiative", initiative);
+
+            int nrOfferings = iIn.getInt();
+            for (int i = 0; i < nrOfferings; i++) {
+                Map<Long, Config> configTable = new HashMap<Long, Config>();
+                Map<Long, Section> sectionTable = new HashMap<Long, Section>();
+                Offering offering = loadOffering(configTable, sectionTable);
+                loadReservations(offering, configTable, sectionTable);
+            }
+
+            List<Enrollment> bestEnrollments = new ArrayList<Enrollment>();
+            List<Enrollment> currentEnrollments = new ArrayList<Enrollment>();
+            int nrStudents = iIn.getInt();
+            for (int i = 0; i < nrStudents; i++) {
+                Student student = loadStudent();
+                int nrRequests = iIn.getInt();
+                for (int j = 0; j < nrRequests; j++) {
+                    Request request = loadRequest(student);
+                    Enrollment initial = loadEnrollment(request);
+                    if (initial != null)
+                        request.setInitialAssignment(initial);
+                    Enrollment current = loadEnrollment(request);
+                    if (current != null)
+                        currentEnrollments.add(current);
+                    Enrollment best = loadEnrollment(request);
+                    if (best != null)
+                        bestEnrollments.add(best);
+                }
+                getModel().addStudent(student);
+            }
+
+            loadLinkedSections();
+            loadTravelTimes();
+
+            assignEnrollments(bestEnrollments, currentEnrollments);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Snapshot " + iInputFile + " is truncated.", e);
+        } catch (RuntimeException e) {
+            throw new IOException("Snapshot " + iInputFile + " is corrupted: " + e.getMessage(), e);
+        } finally {
+            iIn = null;
+            iStrings = null;
+            fis.close();
+        }
+        sLogger.debug("Model successfully loaded.");
+    }
+
+    /**
+     * Load offering (with its courses, configurations, subparts and sections) and add it into the model
+     * @param configTable config table (of the offering) to be populated
+     * @param sectionTable section table (of the offering) to be populated
+     * @return loaded offering
+     */
+    protected Offering loadOffering(Map<Long, Config> configTable, Map<Long, Section> sectionTable) {
+        Offering offering = new Offering(iIn.getLong(), readString());
+        iOfferingTable.put(offering.getId(), offering);
+        getModel().addOffering(offering);
+        int nrCourses = iIn.getInt();
+        for (int i = 0; i < nrCourses; i++) {
+            long id = iIn.getLong();
+            String subjectArea = readString(), courseNbr = readString();
+            int limit = iIn.getInt(), projected = iIn.getInt();
+            Course course = new Course(id, subjectArea, courseNbr, offering, limit, projected);
+            course.setCredit(readString());
+            iCourseTable.put(course.getId(), course);
+        }
+        Map<Long, Subpart> subpartTable = new HashMap<Long, Subpart>();
+        int nrConfigs = iIn.getInt();
+        for (int i = 0; i < nrConfigs; i++) {
+            long id = iIn.getLong();
+            int limit = iIn.getInt();
+            Config config = new Config(id, limit, readString(), offering);
+            config.setInstructionalMethodId(readOptionalLong());
+            config.setInstructionalMethodName(readString());
+            configTable.put(config.getId(), config);
+            int nrSubparts = iIn.getInt();
+            for (int j = 0; j < nrSubparts; j++) {
+                long subpartId = iIn.getLong();
+                String itype = readString(), name = readString();
+                Long parentId = readOptionalLong();
+                Subpart subpart = new Subpart(subpartId, itype, name, config, parentId == null ? null : subpartTable.get(parentId));
+                subpart.setAllowOverlap(readBoolean());
+                subpart.setCredit(readString());
+                subpartTable.put(subpart.getId(), subpart);
+                int nrSections = iIn.getInt();
+                for (int k = 0; k < nrSections; k++) {
+                    Section section = loadSection(subpart, sectionTable);
+                    sectionTable.put(section.getId(), section);
+                }
+            }
+        }
+        return offering;
+    }
+
+    /**
+     * Load section
+     * @param subpart parent subpart
+     * @param sectionTable section table (of the offering)
+     * @return loaded section
+     */
+    protected Section loadSection(Subpart subpart, Map<Long, Section> sectionTable) {
+        long id = iIn.getLong();
+        int limit = iIn.getInt();
+        String name = readString();
+        Long parentId = readOptionalLong();
+        boolean cancelled = readBoolean();
+        Map<Long, String> names = new HashMap<Long, String>();
+        int nrNames = iIn.getInt();
+        for (int i = 0; i < nrNames; i++)
+            names.put(iIn.getLong(), readString());
+        List<Instructor> instructors = new ArrayList<Instructor>();
+        int nrInstructors = iIn.getInt();
+        for (int i = 0; i < nrInstructors; i++) {
+            long instructorId = iIn.getLong();
+            String externalId = readString(), instructorName = readString(), email = readString();
+            instructors.add(new Instructor(instructorId, externalId, instructorName, email));
+        }
+        Placement placement = null;
+        if (readBoolean()) {
+            TimeLocation time = loadTime();
+            List<RoomLocation> rooms = new ArrayList<RoomLocation>();
+            int nrRooms = iIn.getInt();
+            for (int i = 0; i < nrRooms; i++) {
+                Long roomId = iIn.getLong();
+                String roomName = readString();
+                Long buildingId = readOptionalLong();
+                int preference = iIn.getInt(), capacity = iIn.getInt();
+                Double posX = readOptionalDouble(), posY = readOptionalDouble();
+                rooms.add(new RoomLocation(roomId, roomName, buildingId, preference, capacity, posX, posY, readBoolean(), null));
+            }
+            placement = new Placement(null, time, rooms);
+        }
+        Section section = new Section(id, limit, name, subpart, placement, instructors, parentId == null ? null : sectionTable.get(parentId));
+        section.setCancelled(cancelled);
+        for (Map.Entry<Long, String> entry: names.entrySet())
+            section.setName(entry.getKey(), entry.getValue());
+        section.setSpaceHeld(iIn.getDouble());
+        section.setSpaceExpected(iIn.getDouble());
+        int nrIgnore = iIn.getInt();
+        for (int i = 0; i < nrIgnore; i++)
+            section.addIgnoreConflictWith(iIn.getLong());
+        return section;
+    }
+
+    /**
+     * Load time location
+     * @return loaded time
+     */
+    protected TimeLocation loadTime() {
+        int dayCode = iIn.getInt(), startSlot = iIn.getInt(), length = iIn.getInt(), breakTime = iIn.getInt();
+        Long timePatternId = readOptionalLong(), datePatternId = readOptionalLong();
+        String datePatternName = readString();
+        BitSet weekCode = readBitSet();
+        TimeLocation time = new TimeLocation(dayCode, startSlot, length, 0, 0, datePatternId, datePatternName, weekCode, breakTime);
+        if (timePatternId != null)
+            time.setTimePatternId(timePatternId);
+        return time;
+    }
+
+    /**
+     * Load reservations of the given offering
+     * @param offering parent offering
+     * @param configTable config table (of the offering)
+     * @param sectionTable section table (of the offering)
+     * @throws IOException when a reservation of an unknown type is found
+     */
+    protected void loadReservations(Offering offering, Map<Long, Config> configTable, Map<Long, Section> sectionTable) throws IOException {
+        int nrReservations = iIn.getInt();
+        for (int i = 0; i < nrReservations; i++)
+            loadReservation(offering, configTable, sectionTable);
+    }
+
+    /**
+     * Load reservation
+     * @param offering parent offering
+     * @param configTable config table (of the offering)
+     * @param sectionTable section table (of the offering)
+     * @return loaded reservation
+     * @throws IOException when a reservation of an unknown type is found
+     */
+    protected Reservation loadReservation(Offering offering, Map<Long, Config> configTable, Map<Long, Section> sectionTable) throws IOException {
+        byte type = iIn.get();
+        long id = iIn.getLong();
+        Reservation r = null;
+        switch (type) {
+            case sReservationGroup:
+                double limit = iIn.getDouble();
+                r = new GroupReservation(id, limit, offering, readLongs());
+                break;
+            case sReservationOverride:
+                r = new ReservationOverride(id, offering, readLongs());
+                break;
+            case sReservationIndividual:
+                r = new IndividualReservation(id, offering, readLongs());
+                break;
+            case sReservationCurriculum:
+                double curriculumLimit = iIn.getDouble();
+                String area = readString();
+                List<String> classifications = readStrings();
+                List<String> majors = readStrings();
+                r = new CurriculumReservation(id, curriculumLimit, offering, area, classifications, majors);
+                break;
+            case sReservationCourse:
+                r = new CourseReservation(id, iCourseTable.get(iIn.getLong()));
+                break;
+            case sReservationDummy:
+                r = new DummyReservation(offering);
+                break;
+            default:
+                throw new IOException("Unknown reservation type " + type);
+        }
+        r.setExpired(readBoolean());
+        r.setPriority(iIn.getInt());
+        r.setMustBeUsed(readBoolean());
+        r.setAllowOverlap(readBoolean());
+        r.setCanAssignOverLimit(readBoolean());
+        int nrConfigs = iIn.getInt();
+        for (int i = 0; i < nrConfigs; i++)
+            r.addConfig(configTable.get(iIn.getLong()));
+        int nrSections = iIn.getInt();
+        for (int i = 0; i < nrSections; i++)
+            r.addSection(sectionTable.get(iIn.getLong()));
+        return r;
+    }
+
+    /**
+     * Load student (without requests)
+     * @return loaded student
+     */
+    protected Student loadStudent() {
+        long id = iIn.getLong();
+        Student student = new Student(id, readBoolean());
+        student.setNeedShortDistances(readBoolean());
+        student.setExternalId(readString());
+        student.setName(readString());
+        student.setStatus(readString());
+        loadAcademicAreaCodes(student.getAcademicAreaClasiffications());
+        loadAcademicAreaCodes(student.getMajors());
+        loadAcademicAreaCodes(student.getMinors());
+        int nrAcms = iIn.getInt();
+        for (int i = 0; i < nrAcms; i++) {
+            String area = readString(), classification = readString(), major = readString();
+            student.getAreaClassificationMajors().add(new AreaClassificationMajor(area, classification, major));
+        }
+        int nrUnavailabilities = iIn.getInt();
+        for (int i = 0; i < nrUnavailabilities; i++) {
+            Offering offering = iOfferingTable.get(iIn.getLong());
+            long sectionId = iIn.getLong();
+            boolean allowOverlap = readBoolean();
+            Section section = (offering == null ? null : offering.getSection(sectionId));
+            if (section != null)
+                new Unavailability(student, section, allowOverlap);
+        }
+        return student;
+    }
+
+    /** Load academic area codes */
+    private void loadAcademicAreaCodes(List<AcademicAreaCode> codes) {
+        int nrCodes = iIn.getInt();
+        for (int i = 0; i < nrCodes; i++) {
+            String area = readString(), code = readString();
+            codes.add(new AcademicAreaCode(area, code));
+        }
+    }
+
+    /**
+     * Load request
+     * @param student parent student
+     * @return loaded request
+     * @throws IOException when a request of an unknown type is found
+     */
+    protected Request loadRequest(Student student) throws IOException {
+        byte type = iIn.get();
+        long id = iIn.getLong();
+        int priority = iIn.getInt();
+        boolean alternative = readBoolean();
+        double weight = iIn.getDouble();
+        Request request = null;
+        if (type == sRequestFreeTime) {
+            request = new FreeTimeRequest(id, priority, alternative, student, loadTime());
+        } else if (type == sRequestCourse) {
+            List<Course> courses = new ArrayList<Course>();
+            int nrCourses = iIn.getInt();
+            for (int i = 0; i < nrCourses; i++)
+                courses.add(iCourseTable.get(iIn.getLong()));
+            boolean waitlist = readBoolean();
+            Long timeStamp = readOptionalLong();
+            CourseRequest courseRequest = new CourseRequest(id, priority, alternative, student, courses, waitlist, timeStamp);
+            loadChoices(courseRequest.getWaitlistedChoices());
+            loadChoices(courseRequest.getSelectedChoices());
+            int nrGroups = iIn.getInt();
+            groups: for (int i = 0; i < nrGroups; i++) {
+                long gid = iIn.getLong();
+                String gname = readString();
+                Course course = iCourseTable.get(iIn.getLong());
+                for (RequestGroup g: course.getRequestGroups()) {
+                    if (g.getId() == gid) {
+                        courseRequest.addRequestGroup(g);
+                        continue groups;
+                    }
+                }
+                courseRequest.addRequestGroup(new RequestGroup(gid, gname, course));
+            }
+            request = courseRequest;
+        } else {
+            throw new IOException("Unknown request type " + type);
+        }
+        request.setWeight(weight);
+        return request;
+    }
+
+    /** Load choices */
+    private void loadChoices(Set<Choice> choices) {
+        int nrChoices = iIn.getInt();
+        for (int i = 0; i < nrChoices; i++) {
+            Offering offering = iOfferingTable.get(iIn.getLong());
+            choices.add(new Choice(offering, readString()));
+        }
+    }
+
+    /**
+     * Load enrollment
+     * @param request parent request
+     * @return loaded enrollment, null if not present
+     */
+    protected Enrollment loadEnrollment(Request request) {
+        if (!readBoolean()) return null;
+        if (request instanceof CourseRequest) {
+            CourseRequest courseRequest = (CourseRequest) request;
+            Long reservationId = readOptionalLong();
+            Set<Section> sections = new HashSet<Section>();
+            int nrSections = iIn.getInt();
+            for (int i = 0; i < nrSections; i++)
+                sections.add(courseRequest.getSection(iIn.getLong()));
+            Reservation reservation = null;
+            if (reservationId != null) {
+                for (Course course: courseRequest.getCourses())
+                    for (Reservation r: course.getOffering().getReservations())
+                        if (r.getId() == reservationId) { reservation = r; break; }
+            }
+            if (!sections.isEmpty())
+                return courseRequest.createEnrollment(sections, reservation);
+        } else if (request instanceof FreeTimeRequest) {
+            return ((FreeTimeRequest)request).createEnrollment();
+        }
+        return null;
+    }
+
+    /**
+     * Load linked sections
+     */
+    protected void loadLinkedSections() {
+        int nrLinks = iIn.getInt();
+        for (int i = 0; i < nrLinks; i++) {
+            boolean mustBeUsed = readBoolean();
+            List<Section> sections = new ArrayList<Section>();
+            int nrSections = iIn.getInt();
+            for (int j = 0; j < nrSections; j++) {
+                Offering offering = iOfferingTable.get(iIn.getLong());
+                sections.add(offering.getSection(iIn.getLong()));
+            }
+            getModel().addLinkedSections(mustBeUsed, sections);
+        }
+    }
+
+    /**
+     * Load travel times
+     */
+    protected void loadTravelTimes() {
+        int nrRooms = iIn.getInt();
+        DistanceMetric metric = (getModel().getDistanceConflict() == null ? null : getModel().getDistanceConflict().getDistanceMetric());
+        for (int i = 0; i < nrRooms; i++) {
+            Long id1 = iIn.getLong();
+            int nrTravelTimes = iIn.getInt();
+            for (int j = 0; j < nrTravelTimes; j++) {
+                Long id2 = iIn.getLong();
+                Integer minutes = iIn.getInt();
+                if (metric != null)
+                    metric.addTravelTime(id1, id2, minutes);
+            }
+        }
+    }
+
+    /** Read a boolean */
+    private boolean readBoolean() {
+        return iIn.get() != 0;
+    }
+
+    /** Read a long that can be null */
+    private Long readOptionalLong() {
+        return readBoolean() ? Long.valueOf(iIn.getLong()) : null;
+    }
+
+    /** Read a double that can be null */
+    private Double readOptionalDouble() {
+        return readBoolean() ? Double.valueOf(iIn.getDouble()) : null;
+    }
+
+    /** Read a list of longs */
+    private List<Long> readLongs() {
+        int size = iIn.getInt();
+        List<Long> values = new ArrayList<Long>(size);
+        for (int i = 0; i < size; i++)
+            values.add(iIn.getLong());
+        return values;
+    }
+
+    /** Read a list of strings */
+    private List<String> readStrings() {
+        int size = iIn.getInt();
+        List<String> values = new ArrayList<String>(size);
+        for (int i = 0; i < size; i++)
+            values.add(readString());
+        return values;
+    }
+
+    /** Read a string: -1 for null, -2 for a new string (followed by its UTF-8 bytes), an index of an already read string otherwise */
+    private String readString() {
+        int index = iIn.getInt();
+        if (index == -1) return null;
+        if (index >= 0) return iStrings.get(index);
+        byte[] bytes = new byte[iIn.getInt()];
+        iIn.get(bytes);
+        try {
+            String value = new String(bytes, "UTF-8");
+            iStrings.add(value);
+            return value;
+        } catch (java.io.UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Read a bit set (written as a number of 64-bit words, -1 for null) */
+    private BitSet readBitSet() {
+        int words = iIn.getInt();
+        if (words < 0) return null;
+        BitSet value = new BitSet(words << 6);
+        for (int w = 0; w < words; w++) {
+            long word = iIn.getLong();
+            for (int i = 0; i < 64; i++)
+                if ((word & (1l << i)) != 0)
+                    value.set((w << 6) + i);
+        }
+        return value;
+    }
+}
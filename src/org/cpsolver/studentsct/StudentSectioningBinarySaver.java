@@ -0,0 +1,579 @@
+package org.cpsolver.studentsct;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.cpsolver.coursett.model.RoomLocation;
+import org.cpsolver.coursett.model.TimeLocation;
+import org.cpsolver.ifs.solver.Solver;
+import org.cpsolver.studentsct.constraint.LinkedSections;
+import org.cpsolver.studentsct.model.AcademicAreaCode;
+import org.cpsolver.studentsct.model.AreaClassificationMajor;
+import org.cpsolver.studentsct.model.Choice;
+import org.cpsolver.studentsct.model.Config;
+import org.cpsolver.studentsct.model.Course;
+import org.cpsolver.studentsct.model.CourseRequest;
+import org.cpsolver.studentsct.model.Enrollment;
+import org.cpsolver.studentsct.model.FreeTimeRequest;
+import org.cpsolver.studentsct.model.Instructor;
+import org.cpsolver.studentsct.model.Offering;
+import org.cpsolver.studentsct.model.Request;
+import org.cpsolver.studentsct.model.RequestGroup;
+import org.cpsolver.studentsct.model.Section;
+import org.cpsolver.studentsct.model.Student;
+import org.cpsolver.studentsct.model.Subpart;
+import org.cpsolver.studentsct.model.Unavailability;
+import org.cpsolver.studentsct.reservation.CourseReservation;
+import org.cpsolver.studentsct.reservation.CurriculumReservation;
+import org.cpsolver.studentsct.reservation.DummyReservation;
+import org.cpsolver.studentsct.reservation.GroupReservation;
+import org.cpsolver.studentsct.reservation.IndividualReservation;
+import org.cpsolver.studentsct.reservation.Reservation;
+import org.cpsolver.studentsct.reservation.ReservationOverride;
+
+/**
+ * Save student sectioning model (offerings, reservations, students, requests, and the initial,
+ * current, and best enrollments) into a binary snapshot, that can be loaded back using
+ * {@link StudentSectioningBinaryLoader}. The snapshot is meant for check-pointing of long
+ * running solver runs: unlike {@link StudentSectioningXMLSaver}, all the data are always saved
+ * (no id conversion, no hidden names) and the file is written through a {@link FileChannel} with
+ * no text formatting involved. Strings are only written once, any further occurrence of the same
+ * string is replaced by a reference.
+ *
+ * <br>
+ * <br>
+ * Usage:
+ * <pre><code>
+ * new StudentSectioningBinarySaver(solver).save(new File("solution.snapshot"));<br>
+ * </code></pre>
+ * When no file is given, the snapshot is saved as solution.snapshot in the General.Output folder.
+ *
+ * @version StudentSct 1.3 (Student Sectioning)<br>
+ *          Copyright (C) 2014 Tomas Muller<br>
+ *          <a href="mailto:muller@unitime.org">muller@unitime.org</a><br>
+ *          <a href="http://muller.unitime.org">http://muller.unitime.org</a><br>
+ * <br>
+ *          This library is free software; you can redistribute it and/or modify
+ *          it under the terms of the GNU Lesser General Public License as
+ *          published by the Free Software Foundation; either version 3 of the
+ *          License, or (at your option) any later version. <br>
+ * <br>
+ *          This library is distributed in the hope that it will be useful, but
+ *          WITHOUT ANY WARRANTY; without even the implied warranty of
+ *          MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *          Lesser General Public License for more details. <br>
+ * <br>
+ *          You should have received a copy of the GNU Lesser General Public
+ *          License along with this library; if not see
+ *          <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ */
+public class StudentSectioningBinarySaver extends StudentSectioningSaver {
+    private static org.apache.log4j.Logger sLogger = org.apache.log4j.Logger.getLogger(StudentSectioningBinarySaver.class);
+    private File iOutputFolder = null;
+    private SnapshotOutput iOut = null;
+
+    /**
+     * Constructor
+     *
+     * @param solver
+     *            student sectioning solver
+     */
+    public StudentSectioningBinarySaver(Solver<Request, Enrollment> solver) {
+        super(solver);
+        iOutputFolder = new File(getModel().getProperties().getProperty("General.Output",
+                "." + File.separator + "output"));
+    }
+
+    /** Save a snapshot */
+    @Override
+    public void save() throws Exception {
+        save(null);
+    }
+
+    /**
+     * Save a snapshot. The snapshot is written into a temporary file first (the given file name with .tmp suffix), which is
+     * forced to the disk and renamed to the given file afterwards, so that a crash during the save does not leave a partially
+     * written snapshot behind.
+     *
+     * @param outFile
+     *            output file
+     * @throws IOException thrown when the save fails
+     */
+    public void save(File outFile) throws IOException {
+        if (outFile == null) {
+            outFile = new File(iOutputFolder, "solution.snapshot");
+        } else if (outFile.getParentFile() != null) {
+            outFile.getParentFile().mkdirs();
+        }
+        sLogger.debug("Writing snapshot to " + outFile);
+
+        File tempFile = new File(outFile.getPath() + ".tmp");
+        FileOutputStream fos = new FileOutputStream(tempFile);
+        boolean written = false;
+        try {
+            iOut = new SnapshotOutput(fos.getChannel());
+            iOut.writeInt(StudentSectioningBinaryLoader.sMagic);
+            iOut.writeInt(StudentSectioningBinaryLoader.sVersion);
+            iOut.writeString(getModel().getProperties().getProperty("Data.Term"));
+            iOut.writeString(getModel().getProperties().getProperty("Data.Year"));
+            iOut.writeString(getModel().getProperties().getProperty("Data.Initiative"));
+
+            iOut.writeInt(getModel().getOfferings().size());
+            for (Offering offering: getModel().getOfferings()) {
+                saveOffering(offering);
+                saveReservations(offering);
+            }
+
+            iOut.writeInt(getModel().getStudents().size());
+            for (Student student: getModel().getStudents()) {
+                saveStudent(student);
+                iOut.writeInt(student.getRequests().size());
+                for (Request request: student.getRequests())
+                    saveRequest(request);
+            }
+
+            saveLinkedSections();
+            saveTravelTimes();
+            iOut.flush();
+            fos.getChannel().force(true);
+            written = true;
+        } finally {
+            iOut = null;
+            fos.close();
+            if (!written)
+                tempFile.delete();
+        }
+        if (!tempFile.renameTo(outFile)) {
+            // renaming over an existing file is not supported on all platforms
+            if (!outFile.delete() || !tempFile.renameTo(outFile)) {
+                tempFile.delete();
+                throw new IOException("Failed to move " + tempFile + " to " + outFile + ".");
+            }
+        }
+    }
+
+    /**
+     * Save given offering (with its courses, configurations, subparts and sections)
+     * @param offering offering to be saved
+     * @throws IOException when the output cannot be written
+     */
+    protected void saveOffering(Offering offering) throws IOException {
+        iOut.writeLong(offering.getId());
+        iOut.writeString(offering.getName());
+        iOut.writeInt(offering.getCourses().size());
+        for (Course course: offering.getCourses()) {
+            iOut.writeLong(course.getId());
+            iOut.writeString(course.getSubjectArea());
+            iOut.writeString(course.getCourseNumber());
+            iOut.writeInt(course.getLimit());
+            iOut.writeInt(course.getProjected());
+            iOut.writeString(course.getCredit());
+        }
+        iOut.writeInt(offering.getConfigs().size());
+        for (Config config: offering.getConfigs()) {
+            iOut.writeLong(config.getId());
+            iOut.writeInt(config.getLimit());
+            iOut.writeString(config.getName());
+            iOut.writeOptionalLong(config.getInstructionalMethodId());
+            iOut.writeString(config.getInstructionalMethodName());
+            iOut.writeInt(config.getSubparts().size());
+            for (Subpart subpart: config.getSubparts()) {
+                iOut.writeLong(subpart.getId());
+                iOut.writeString(subpart.getInstructionalType());
+                iOut.writeString(subpart.getName());
+                iOut.writeOptionalLong(subpart.getParent() == null ? null : subpart.getParent().getId());
+                iOut.writeBoolean(subpart.isAllowOverlap());
+                iOut.writeString(subpart.getCredit());
+                iOut.writeInt(subpart.getSections().size());
+                for (Section section: subpart.getSections())
+                    saveSection(section);
+            }
+        }
+    }
+
+    /**
+     * Save section
+     * @param section section to be saved
+     * @throws IOException when the output cannot be written
+     */
+    protected void saveSection(Section section) throws IOException {
+        iOut.writeLong(section.getId());
+        iOut.writeInt(section.getLimit());
+        iOut.writeString(section.getName());
+        iOut.writeOptionalLong(section.getParent() == null ? null : section.getParent().getId());
+        iOut.writeBoolean(section.isCancelled());
+        Map<Long, String> names = section.getNameByCourse();
+        iOut.writeInt(names == null ? 0 : names.size());
+        if (names != null)
+            for (Map.Entry<Long, String> entry: names.entrySet()) {
+                iOut.writeLong(entry.getKey());
+                iOut.writeString(entry.getValue());
+            }
+        List<Instructor> instructors = section.getInstructors();
+        iOut.writeInt(instructors == null ? 0 : instructors.size());
+        if (instructors != null)
+            for (Instructor instructor: instructors) {
+                iOut.writeLong(instructor.getId());
+                iOut.writeString(instructor.getExternalId());
+                iOut.writeString(instructor.getName());
+                iOut.writeString(instructor.getEmail());
+            }
+        TimeLocation time = (section.getPlacement() == null ? null : section.getPlacement().getTimeLocation());
+        iOut.writeBoolean(time != null);
+        if (time != null) {
+            saveTime(time);
+            iOut.writeInt(section.getRooms().size());
+            for (RoomLocation room: section.getRooms()) {
+                iOut.writeLong(room.getId());
+                iOut.writeString(room.getName());
+                iOut.writeOptionalLong(room.getBuildingId());
+                iOut.writeInt(room.getPreference());
+                iOut.writeInt(room.getRoomSize());
+                iOut.writeOptionalDouble(room.getPosX());
+                iOut.writeOptionalDouble(room.getPosY());
+                iOut.writeBoolean(room.getIgnoreTooFar());
+            }
+        }
+        iOut.writeDouble(section.getSpaceHeld());
+        iOut.writeDouble(section.getSpaceExpected());
+        Set<Long> ignore = section.getIgnoreConflictWithSectionIds();
+        iOut.writeInt(ignore == null ? 0 : ignore.size());
+        if (ignore != null)
+            for (Long sectionId: ignore)
+                iOut.writeLong(sectionId);
+    }
+
+    /**
+     * Save time location
+     * @param time time to be saved
+     * @throws IOException when the output cannot be written
+     */
+    protected void saveTime(TimeLocation time) throws IOException {
+        iOut.writeInt(time.getDayCode());
+        iOut.writeInt(time.getStartSlot());
+        iOut.writeInt(time.getLength());
+        iOut.writeInt(time.getBreakTime());
+        iOut.writeOptionalLong(time.getTimePatternId());
+        iOut.writeOptionalLong(time.getDatePatternId());
+        iOut.writeString(time.getDatePatternName());
+        iOut.writeBitSet(time.getWeekCode());
+    }
+
+    /**
+     * Save reservations of the given offering
+     * @param offering offering which reservations are to be saved
+     * @throws IOException when the output cannot be written
+     */
+    protected void saveReservations(Offering offering) throws IOException {
+        iOut.writeInt(offering.getReservations().size());
+        for (Reservation reservation: offering.getReservations())
+            saveReservation(reservation);
+    }
+
+    /**
+     * Save reservation
+     * @param reservation reservation to be saved
+     * @throws IOException when the output cannot be written
+     */
+    protected void saveReservation(Reservation reservation) throws IOException {
+        if (reservation instanceof GroupReservation) {
+            GroupReservation gr = (GroupReservation)reservation;
+            iOut.writeByte(StudentSectioningBinaryLoader.sReservationGroup);
+            iOut.writeLong(gr.getId());
+            iOut.writeDouble(gr.getReservationLimit());
+            iOut.writeLongs(gr.getStudentIds());
+        } else if (reservation instanceof ReservationOverride) {
+            iOut.writeByte(StudentSectioningBinaryLoader.sReservationOverride);
+            iOut.writeLong(reservation.getId());
+            iOut.writeLongs(((ReservationOverride)reservation).getStudentIds());
+        } else if (reservation instanceof IndividualReservation) {
+            iOut.writeByte(StudentSectioningBinaryLoader.sReservationIndividual);
+            iOut.writeLong(reservation.getId());
+            iOut.writeLongs(((IndividualReservation)reservation).getStudentIds());
+        } else if (reservation instanceof CurriculumReservation) {
+            CurriculumReservation cr = (CurriculumReservation)reservation;
+            iOut.writeByte(StudentSectioningBinaryLoader.sReservationCurriculum);
+            iOut.writeLong(cr.getId());
+            iOut.writeDouble(cr.getReservationLimit());
+            iOut.writeString(cr.getAcademicArea());
+            iOut.writeStrings(cr.getClassifications());
+            iOut.writeStrings(cr.getMajors());
+        } else if (reservation instanceof CourseReservation) {
+            iOut.writeByte(StudentSectioningBinaryLoader.sReservationCourse);
+            iOut.writeLong(reservation.getId());
+            iOut.writeLong(((CourseReservation)reservation).getCourse().getId());
+        } else if (reservation instanceof DummyReservation) {
+            iOut.writeByte(StudentSectioningBinaryLoader.sReservationDummy);
+            iOut.writeLong(reservation.getId());
+        } else {
+            throw new IOException("Unsupported reservation type " + reservation.getClass().getSimpleName());
+        }
+        iOut.writeBoolean(reservation.isExpired());
+        iOut.writeInt(reservation.getPriority());
+        iOut.writeBoolean(reservation.mustBeUsed());
+        iOut.writeBoolean(reservation.isAllowOverlap());
+        iOut.writeBoolean(reservation.canAssignOverLimit());
+        iOut.writeInt(reservation.getConfigs().size());
+        for (Config config: reservation.getConfigs())
+            iOut.writeLong(config.getId());
+        int nrSections = 0;
+        for (Set<Section> sections: reservation.getSections().values())
+            nrSections += sections.size();
+        iOut.writeInt(nrSections);
+        for (Set<Section> sections: reservation.getSections().values())
+            for (Section section: sections)
+                iOut.writeLong(section.getId());
+    }
+
+    /**
+     * Save student
+     * @param student student to be saved
+     * @throws IOException when the output cannot be written
+     */
+    protected void saveStudent(Student student) throws IOException {
+        iOut.writeLong(student.getId());
+        iOut.writeBoolean(student.isDummy());
+        iOut.writeBoolean(student.isNeedShortDistances());
+        iOut.writeString(student.getExternalId());
+        iOut.writeString(student.getName());
+        iOut.writeString(student.getStatus());
+        saveAcademicAreaCodes(student.getAcademicAreaClasiffications());
+        saveAcademicAreaCodes(student.getMajors());
+        saveAcademicAreaCodes(student.getMinors());
+        iOut.writeInt(student.getAreaClassificationMajors().size());
+        for (AreaClassificationMajor acm: student.getAreaClassificationMajors()) {
+            iOut.writeString(acm.getArea());
+            iOut.writeString(acm.getClassification());
+            iOut.writeString(acm.getMajor());
+        }
+        iOut.writeInt(student.getUnavailabilities().size());
+        for (Unavailability unavailability: student.getUnavailabilities()) {
+            iOut.writeLong(unavailability.getSection().getSubpart().getConfig().getOffering().getId());
+            iOut.writeLong(unavailability.getSection().getId());
+            iOut.writeBoolean(unavailability.isAllowOverlap());
+        }
+    }
+
+    /** Save academic area codes */
+    private void saveAcademicAreaCodes(List<AcademicAreaCode> codes) throws IOException {
+        iOut.writeInt(codes.size());
+        for (AcademicAreaCode aac: codes) {
+            iOut.writeString(aac.getArea());
+            iOut.writeString(aac.getCode());
+        }
+    }
+
+    /**
+     * Save request, including its initial, current and best enrollments
+     * @param request request to be saved
+     * @throws IOException when the output cannot be written
+     */
+    protected void saveRequest(Request request) throws IOException {
+        if (request instanceof FreeTimeRequest) {
+            FreeTimeRequest ft = (FreeTimeRequest)request;
+            iOut.writeByte(StudentSectioningBinaryLoader.sRequestFreeTime);
+            iOut.writeLong(ft.getId());
+            iOut.writeInt(ft.getPriority());
+            iOut.writeBoolean(ft.isAlternative());
+            iOut.writeDouble(ft.getWeight());
+            saveTime(ft.getTime());
+        } else if (request instanceof CourseRequest) {
+            CourseRequest cr = (CourseRequest)request;
+            iOut.writeByte(StudentSectioningBinaryLoader.sRequestCourse);
+            iOut.writeLong(cr.getId());
+            iOut.writeInt(cr.getPriority());
+            iOut.writeBoolean(cr.isAlternative());
+            iOut.writeDouble(cr.getWeight());
+            iOut.writeInt(cr.getCourses().size());
+            for (Course course: cr.getCourses())
+                iOut.writeLong(course.getId());
+            iOut.writeBoolean(cr.isWaitlist());
+            iOut.writeOptionalLong(cr.getTimeStamp());
+            saveChoices(cr.getWaitlistedChoices());
+            saveChoices(cr.getSelectedChoices());
+            iOut.writeInt(cr.getRequestGroups().size());
+            for (RequestGroup g: cr.getRequestGroups()) {
+                iOut.writeLong(g.getId());
+                iOut.writeString(g.getName());
+                iOut.writeLong(g.getCourse().getId());
+            }
+        } else {
+            throw new IOException("Unsupported request type " + request.getClass().getSimpleName());
+        }
+        saveEnrollment(request.getInitialAssignment());
+        saveEnrollment(getAssignment().getValue(request));
+        saveEnrollment(request.getBestAssignment());
+    }
+
+    /** Save choices */
+    private void saveChoices(Set<Choice> choices) throws IOException {
+        iOut.writeInt(choices.size());
+        for (Choice choice: choices) {
+            iOut.writeLong(choice.getOffering().getId());
+            iOut.writeString(choice.getId());
+        }
+    }
+
+    /**
+     * Save enrollment
+     * @param enrollment enrollment to be saved (can be null)
+     * @throws IOException when the output cannot be written
+     */
+    protected void saveEnrollment(Enrollment enrollment) throws IOException {
+        iOut.writeBoolean(enrollment != null);
+        if (enrollment != null && enrollment.isCourseRequest()) {
+            iOut.writeOptionalLong(enrollment.getReservation() == null ? null : enrollment.getReservation().getId());
+            iOut.writeInt(enrollment.getSections().size());
+            for (Section section: enrollment.getSections())
+                iOut.writeLong(section.getId());
+        }
+    }
+
+    /**
+     * Save linked sections
+     * @throws IOException when the output cannot be written
+     */
+    protected void saveLinkedSections() throws IOException {
+        iOut.writeInt(getModel().getLinkedSections().size());
+        for (LinkedSections linkedSections: getModel().getLinkedSections()) {
+            iOut.writeBoolean(linkedSections.isMustBeUsed());
+            int nrSections = 0;
+            for (Offering offering: linkedSections.getOfferings())
+                for (Subpart subpart: linkedSections.getSubparts(offering))
+                    nrSections += linkedSections.getSections(subpart).size();
+            iOut.writeInt(nrSections);
+            for (Offering offering: linkedSections.getOfferings())
+                for (Subpart subpart: linkedSections.getSubparts(offering))
+                    for (Section section: linkedSections.getSections(subpart)) {
+                        iOut.writeLong(offering.getId());
+                        iOut.writeLong(section.getId());
+                    }
+        }
+    }
+
+    /**
+     * Save travel times
+     * @throws IOException when the output cannot be written
+     */
+    protected void saveTravelTimes() throws IOException {
+        Map<Long, Map<Long, Integer>> travelTimes = (getModel().getDistanceConflict() == null ? null : getModel().getDistanceConflict().getDistanceMetric().getTravelTimes());
+        iOut.writeInt(travelTimes == null ? -1 : travelTimes.size());
+        if (travelTimes != null)
+            for (Map.Entry<Long, Map<Long, Integer>> e1: travelTimes.entrySet()) {
+                iOut.writeLong(e1.getKey());
+                iOut.writeInt(e1.getValue().size());
+                for (Map.Entry<Long, Integer> e2: e1.getValue().entrySet()) {
+                    iOut.writeLong(e2.getKey());
+                    iOut.writeInt(e2.getValue());
+                }
+            }
+    }
+
+    /**
+     * Buffered output over a file channel. Nullable numbers are prefixed with a presence flag,
+     * each distinct string is written only once and referenced by its index afterwards.
+     */
+    private static class SnapshotOutput {
+        private FileChannel iChannel;
+        private ByteBuffer iBuffer = ByteBuffer.allocateDirect(1 << 16);
+        private Map<String, Integer> iStrings = new HashMap<String, Integer>();
+
+        private SnapshotOutput(FileChannel channel) {
+            iChannel = channel;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (iBuffer.remaining() < bytes) flush();
+        }
+
+        private void flush() throws IOException {
+            iBuffer.flip();
+            while (iBuffer.hasRemaining())
+                iChannel.write(iBuffer);
+            iBuffer.clear();
+        }
+
+        private void writeByte(byte value) throws IOException {
+            ensure(1); iBuffer.put(value);
+        }
+
+        private void writeBoolean(boolean value) throws IOException {
+            ensure(1); iBuffer.put(value ? (byte)1 : (byte)0);
+        }
+
+        private void writeInt(int value) throws IOException {
+            ensure(4); iBuffer.putInt(value);
+        }
+
+        private void writeLong(long value) throws IOException {
+            ensure(8); iBuffer.putLong(value);
+        }
+
+        private void writeDouble(double value) throws IOException {
+            ensure(8); iBuffer.putDouble(value);
+        }
+
+        private void writeOptionalLong(Long value) throws IOException {
+            writeBoolean(value != null);
+            if (value != null) writeLong(value.longValue());
+        }
+
+        private void writeOptionalDouble(Double value) throws IOException {
+            writeBoolean(value != null);
+            if (value != null) writeDouble(value.doubleValue());
+        }
+
+        private void writeLongs(Collection<Long> values) throws IOException {
+            writeInt(values.size());
+            for (Long value: values)
+                writeLong(value.longValue());
+        }
+
+        private void writeStrings(Collection<String> values) throws IOException {
+            writeInt(values.size());
+            for (String value: values)
+                writeString(value);
+        }
+
+        /** Null is written as -1, a new string as -2 followed by its UTF-8 bytes, a known string as its index */
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                writeInt(-1); return;
+            }
+            Integer index = iStrings.get(value);
+            if (index != null) {
+                writeInt(index); return;
+            }
+            iStrings.put(value, iStrings.size());
+            byte[] bytes = value.getBytes("UTF-8");
+            writeInt(-2);
+            writeInt(bytes.length);
+            for (int offset = 0; offset < bytes.length; ) {
+                ensure(1);
+                int length = Math.min(iBuffer.remaining(), bytes.length - offset);
+                iBuffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        private void writeBitSet(BitSet value) throws IOException {
+            int words = (value == null ? -1 : (value.length() + 63) >> 6);
+            writeInt(words);
+            for (int w = 0; w < words; w++) {
+                long word = 0;
+                for (int i = value.nextSetBit(w << 6); i >= 0 && i < (w + 1) << 6; i = value.nextSetBit(i + 1))
+                    word |= (1l << (i & 63));
+                writeLong(word);
+            }
+        }
+    }
+}
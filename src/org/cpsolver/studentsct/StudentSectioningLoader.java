@@ -1,6 +1,11 @@
 package org.cpsolver.studentsct;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.model.Constraint;
 import org.cpsolver.ifs.util.ProblemLoader;
 import org.cpsolver.studentsct.model.Enrollment;
 import org.cpsolver.studentsct.model.Request;
@@ -30,6 +35,8 @@ import org.cpsolver.studentsct.model.Request;
  */
 
 public abstract class StudentSectioningLoader extends ProblemLoader<Request, Enrollment, StudentSectioningModel> {
+    private static org.apache.log4j.Logger sLogger = org.apache.log4j.Logger.getLogger(StudentSectioningLoader.class);
+
     /**
      * Constructor
      * 
@@ -40,4 +47,70 @@ public abstract class StudentSectioningLoader extends ProblemLoader<Request, Enr
     public StudentSectioningLoader(StudentSectioningModel model, Assignment<Request, Enrollment> assignment) {
         super(model, assignment);
     }
+
+    /**
+     * Assign the loaded best and current enrollments
+     * @param bestEnrollments best enrollments
+     * @param currentEnrollments current enrollments
+     */
+    protected void assignEnrollments(List<Enrollment> bestEnrollments, List<Enrollment> currentEnrollments) {
+        if (!bestEnrollments.isEmpty()) {
+            // Enrollments with a reservation must go first
+            for (Enrollment enrollment : bestEnrollments) {
+                if (enrollment.getReservation() == null) continue;
+                if (!enrollment.getStudent().isAvailable(enrollment)) {
+                    sLogger.warn("Enrollment " + enrollment + " is conflicting: student not available.");
+                    continue;
+                }
+                Map<Constraint<Request, Enrollment>, Set<Enrollment>> conflicts = getModel().conflictConstraints(getAssignment(), enrollment);
+                if (conflicts.isEmpty())
+                    getAssignment().assign(0, enrollment);
+                else
+                    sLogger.warn("Enrollment " + enrollment + " conflicts with " + conflicts);
+            }
+            for (Enrollment enrollment : bestEnrollments) {
+                if (enrollment.getReservation() != null) continue;
+                if (!enrollment.getStudent().isAvailable(enrollment)) {
+                    sLogger.warn("Enrollment " + enrollment + " is conflicting: student not available.");
+                    continue;
+                }
+                Map<Constraint<Request, Enrollment>, Set<Enrollment>> conflicts = getModel().conflictConstraints(getAssignment(), enrollment);
+                if (conflicts.isEmpty())
+                    getAssignment().assign(0, enrollment);
+                else
+                    sLogger.warn("Enrollment " + enrollment + " conflicts with " + conflicts);
+            }
+            getModel().saveBest(getAssignment());
+        }
+
+        if (!currentEnrollments.isEmpty()) {
+            for (Request request : getModel().variables())
+                getAssignment().unassign(0, request);
+            // Enrollments with a reservation must go first
+            for (Enrollment enrollment : currentEnrollments) {
+                if (enrollment.getReservation() == null) continue;
+                if (!enrollment.getStudent().isAvailable(enrollment)) {
+                    sLogger.warn("Enrollment " + enrollment + " is conflicting: student not available.");
+                    continue;
+                }
+                Map<Constraint<Request, Enrollment>, Set<Enrollment>> conflicts = getModel().conflictConstraints(getAssignment(), enrollment);
+                if (conflicts.isEmpty())
+                    getAssignment().assign(0, enrollment);
+                else
+                    sLogger.warn("Enrollment " + enrollment + " conflicts with " + conflicts);
+            }
+            for (Enrollment enrollment : currentEnrollments) {
+                if (enrollment.getReservation() != null) continue;
+                if (!enrollment.getStudent().isAvailable(enrollment)) {
+                    sLogger.warn("Enrollment " + enrollment + " is conflicting: student not available.");
+                    continue;
+                }
+                Map<Constraint<Request, Enrollment>, Set<Enrollment>> conflicts = getModel().conflictConstraints(getAssignment(), enrollment);
+                if (conflicts.isEmpty())
+                    getAssignment().assign(0, enrollment);
+                else
+                    sLogger.warn("Enrollment " + enrollment + " conflicts with " + conflicts);
+            }
+        }
+    }
 }
@@ -3,7 +3,9 @@ package org.cpsolver.studentsct;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -94,6 +96,11 @@ public class StudentSectioningModel extends ModelWithContext<Request, Enrollment
     private boolean iKeepInitials;
     protected double iProjectedStudentWeight = 0.0100;
     private int iMaxDomainSize = -1; 
+    private int iEnrollmentCacheSize = 1000000;
+    private Map<CourseRequest, Integer> iEnrollmentCache = new HashMap<CourseRequest, Integer>();
+    private long iEnrollmentCacheTotal = 0;
+    private volatile long iEnrollmentCacheStamp = 0;
+    private Object iEnrollmentCacheLock = new Object();
 
 
     /**
@@ -110,6 +117,7 @@ public class StudentSectioningModel extends ModelWithContext<Request, Enrollment
         iKeepInitials = properties.getPropertyBoolean("Sectioning.KeepInitialAssignments", false);
         iStudentWeights = new PriorityStudentWeights(properties);
         iMaxDomainSize = properties.getPropertyInt("Sectioning.MaxDomainSize", iMaxDomainSize);
+        iEnrollmentCacheSize = properties.getPropertyInt("Sectioning.EnrollmentCacheSize", iEnrollmentCacheSize);
         if (properties.getPropertyBoolean("Sectioning.SectionLimit", true)) {
             SectionLimit sectionLimit = new SectionLimit(properties);
             addGlobalConstraint(sectionLimit);
@@ -974,6 +982,82 @@ public class StudentSectioningModel extends ModelWithContext<Request, Enrollment
      */
     public void setMaxDomainSize(int maxDomainSize) { iMaxDomainSize = maxDomainSize; }
     
+    /**
+     * Maximal number of section combinations that are cached by the course requests of this model (Sectioning.EnrollmentCacheSize,
+     * defaults to one million), zero if the caching is disabled. See {@link CourseRequest#computeEnrollments(Assignment)}.
+     * @return enrollment cache size
+     */
+    public int getEnrollmentCacheSize() { return iEnrollmentCacheSize; }
+    
+    /**
+     * Maximal number of section combinations that are cached by the course requests of this model, zero to disable the caching.
+     * @param enrollmentCacheSize enrollment cache size
+     */
+    public void setEnrollmentCacheSize(int enrollmentCacheSize) {
+        synchronized (iEnrollmentCacheLock) {
+            iEnrollmentCacheSize = enrollmentCacheSize;
+            evictEnrollmentCache(null);
+        }
+    }
+    
+    /**
+     * Current enrollment cache stamp, it is increased every time a course request creates its cached section combinations.
+     * A course request remembers the stamp when its cache is used (see {@link CourseRequest#getEnrollmentCacheStamp()}), so that
+     * the least recently used caches can be (approximately) identified without any locking on a cache hit.
+     * @return enrollment cache stamp
+     */
+    public long getEnrollmentCacheStamp() { return iEnrollmentCacheStamp; }
+    
+    /**
+     * Called by a course request when its cached section combinations are created. When there are more than
+     * {@link StudentSectioningModel#getEnrollmentCacheSize()} section combinations cached, the caches of the least recently used
+     * course requests (see {@link CourseRequest#getEnrollmentCacheStamp()}) are cleared until three quarters of the limit are met.
+     * @param request course request
+     * @param size number of section combinations cached by the request
+     */
+    public void enrollmentCacheCreated(CourseRequest request, int size) {
+        synchronized (iEnrollmentCacheLock) {
+            iEnrollmentCacheStamp ++;
+            Integer previous = iEnrollmentCache.put(request, size);
+            iEnrollmentCacheTotal += size - (previous == null ? 0 : previous.intValue());
+            evictEnrollmentCache(request);
+        }
+    }
+    
+    /**
+     * Clear caches of the least recently used course requests until the cache size is met
+     */
+    private void evictEnrollmentCache(CourseRequest skip) {
+        if (iEnrollmentCacheTotal <= iEnrollmentCacheSize) return;
+        List<EnrollmentCacheEntry> entries = new ArrayList<EnrollmentCacheEntry>(iEnrollmentCache.size());
+        for (CourseRequest request: iEnrollmentCache.keySet())
+            if (!request.equals(skip))
+                entries.add(new EnrollmentCacheEntry(request));
+        Collections.sort(entries);
+        long target = 3l * iEnrollmentCacheSize / 4;
+        for (EnrollmentCacheEntry entry: entries) {
+            if (iEnrollmentCacheTotal <= target) break;
+            entry.iRequest.clearEnrollmentCache();
+            iEnrollmentCacheTotal -= iEnrollmentCache.remove(entry.iRequest);
+        }
+    }
+    
+    /**
+     * A course request with its enrollment cache stamp taken when the eviction started (the stamps may change during the eviction)
+     */
+    private static class EnrollmentCacheEntry implements Comparable<EnrollmentCacheEntry> {
+        private CourseRequest iRequest;
+        private long iStamp;
+        
+        private EnrollmentCacheEntry(CourseRequest request) {
+            iRequest = request; iStamp = request.getEnrollmentCacheStamp();
+        }
+        
+        @Override
+        public int compareTo(EnrollmentCacheEntry e) {
+            return (iStamp < e.iStamp ? -1 : iStamp > e.iStamp ? 1 : 0);
+        }
+    }
 
     @Override
     public StudentSectioningModelContext createAssignmentContext(Assignment<Request, Enrollment> assignment) {
@@ -0,0 +1,169 @@
+package org.cpsolver.studentsct;
+
+import java.io.File;
+import java.text.DecimalFormat;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.assignment.DefaultSingleAssignment;
+import org.cpsolver.ifs.solution.Solution;
+import org.cpsolver.ifs.solver.Solver;
+import org.cpsolver.ifs.util.DataProperties;
+import org.cpsolver.ifs.util.JProf;
+import org.cpsolver.ifs.util.ToolBox;
+import org.cpsolver.studentsct.model.Enrollment;
+import org.cpsolver.studentsct.model.Request;
+
+/**
+ * A round-trip benchmark of the binary snapshot ({@link StudentSectioningBinarySaver} and
+ * {@link StudentSectioningBinaryLoader}) against the XML format ({@link StudentSectioningXMLSaver} and
+ * {@link StudentSectioningXMLLoader}). The given problem is loaded, saved in both formats into the
+ * General.Output folder, and then saved and loaded back the given number of times. Average save and load
+ * times and the file sizes are printed out, together with a check that both loaded models have the same
+ * number of students, requests, and assigned requests, and the same total value. <br>
+ * <br>
+ * Usage:<br>
+ * java -cp cpsolver.jar org.cpsolver.studentsct.StudentSectioningSnapshotBenchmark config.properties input.xml [repeats]<br>
+ *
+ * @version StudentSct 1.3 (Student Sectioning)<br>
+ *          Copyright (C) 2014 Tomas Muller<br>
+ *          <a href="mailto:muller@unitime.org">muller@unitime.org</a><br>
+ *          <a href="http://muller.unitime.org">http://muller.unitime.org</a><br>
+ * <br>
+ *          This library is free software; you can redistribute it and/or modify
+ *          it under the terms of the GNU Lesser General Public License as
+ *          published by the Free Software Foundation; either version 3 of the
+ *          License, or (at your option) any later version. <br>
+ * <br>
+ *          This library is distributed in the hope that it will be useful, but
+ *          WITHOUT ANY WARRANTY; without even the implied warranty of
+ *          MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *          Lesser General Public License for more details. <br>
+ * <br>
+ *          You should have received a copy of the GNU Lesser General Public
+ *          License along with this library; if not see
+ *          <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ */
+public class StudentSectioningSnapshotBenchmark {
+    private static Logger sLog = Logger.getLogger(StudentSectioningSnapshotBenchmark.class);
+    private static DecimalFormat sDF = new DecimalFormat("0.000");
+    private DataProperties iProperties;
+
+    /**
+     * Constructor
+     * @param properties solver configuration
+     */
+    public StudentSectioningSnapshotBenchmark(DataProperties properties) {
+        iProperties = properties;
+    }
+
+    /**
+     * Load the problem from the given file
+     * @param file input file, either an XML file or a binary snapshot
+     * @param binary true if the file is a binary snapshot
+     * @return loaded solution
+     * @throws Exception when the problem cannot be loaded
+     */
+    public Solution<Request, Enrollment> load(File file, boolean binary) throws Exception {
+        DataProperties properties = new DataProperties();
+        properties.putAll(iProperties);
+        StudentSectioningModel model = new StudentSectioningModel(properties);
+        Assignment<Request, Enrollment> assignment = new DefaultSingleAssignment<Request, Enrollment>();
+        if (binary) {
+            StudentSectioningBinaryLoader loader = new StudentSectioningBinaryLoader(model, assignment);
+            loader.setInputFile(file);
+            loader.load();
+        } else {
+            StudentSectioningXMLLoader loader = new StudentSectioningXMLLoader(model, assignment);
+            loader.setInputFile(file);
+            loader.load();
+        }
+        return new Solution<Request, Enrollment>(model, assignment);
+    }
+
+    /**
+     * Save the given solution into the given file
+     * @param solution solution to be saved
+     * @param file output file
+     * @param binary true if a binary snapshot is to be created
+     * @throws Exception when the solution cannot be saved
+     */
+    public void save(Solution<Request, Enrollment> solution, File file, boolean binary) throws Exception {
+        Solver<Request, Enrollment> solver = new Solver<Request, Enrollment>(((StudentSectioningModel)solution.getModel()).getProperties());
+        solver.setInitalSolution(solution);
+        if (binary)
+            new StudentSectioningBinarySaver(solver).save(file);
+        else
+            new StudentSectioningXMLSaver(solver).save(file);
+    }
+
+    /**
+     * Short description of a solution, used to compare the loaded models
+     * @param solution a solution
+     * @return number of students, requests, assigned requests and the total value
+     */
+    public static String toString(Solution<Request, Enrollment> solution) {
+        StudentSectioningModel model = (StudentSectioningModel)solution.getModel();
+        return model.getStudents().size() + " students, " + model.variables().size() + " requests, " +
+                solution.getAssignment().nrAssignedVariables() + " assigned, value " + sDF.format(model.getTotalValue(solution.getAssignment()));
+    }
+
+    /**
+     * Run the benchmark
+     * @param repeats number of save and load round-trips of each format
+     * @throws Exception when the problem cannot be loaded or saved
+     */
+    public void run(int repeats) throws Exception {
+        File folder = new File(iProperties.getProperty("General.Output", "." + File.separator + "output"));
+        folder.mkdirs();
+        File xml = new File(folder, "benchmark.xml");
+        File snapshot = new File(folder, "benchmark.snapshot");
+
+        Solution<Request, Enrollment> solution = load(new File(iProperties.getProperty("General.Input")), false);
+        sLog.info("Loaded: " + toString(solution));
+
+        String[] names = new String[] { "XML", "Binary" };
+        File[] files = new File[] { xml, snapshot };
+        String[] loaded = new String[2];
+        double[] saveTime = new double[2], loadTime = new double[2];
+        for (int r = 0; r < repeats; r++) {
+            for (int f = 0; f < 2; f++) {
+                double t0 = JProf.currentTimeSec();
+                save(solution, files[f], f == 1);
+                double t1 = JProf.currentTimeSec();
+                Solution<Request, Enrollment> s = load(files[f], f == 1);
+                double t2 = JProf.currentTimeSec();
+                saveTime[f] += t1 - t0; loadTime[f] += t2 - t1;
+                loaded[f] = toString(s);
+            }
+        }
+
+        System.out.println("Format;Size[kB];Save[s];Load[s]");
+        for (int f = 0; f < 2; f++)
+            System.out.println(names[f] + ";" + (files[f].length() / 1024) + ";" + sDF.format(saveTime[f] / repeats) + ";" + sDF.format(loadTime[f] / repeats));
+        System.out.println("Load speedup: " + sDF.format(loadTime[0] / loadTime[1]) + ", save speedup: " + sDF.format(saveTime[0] / saveTime[1]));
+        for (int f = 0; f < 2; f++)
+            System.out.println(names[f] + ": " + loaded[f]);
+        if (!loaded[0].equals(loaded[1]))
+            sLog.error("Loaded models differ.");
+    }
+
+    public static void main(String[] args) {
+        try {
+            ToolBox.configureLogging();
+            Logger.getLogger("org.cpsolver").setLevel(Level.WARN);
+            sLog.setLevel(Level.INFO);
+            DataProperties properties = ToolBox.loadProperties(new File(args[0]));
+            properties.putAll(System.getProperties());
+            if (args.length > 1)
+                properties.setProperty("General.Input", args[1]);
+            // the current solution is saved as well, so that it is a part of the round-trip
+            properties.setProperty("Xml.SaveCurrent", properties.getProperty("Xml.SaveCurrent", "true"));
+            int repeats = (args.length > 2 ? Integer.parseInt(args[2]) : 5);
+            new StudentSectioningSnapshotBenchmark(properties).run(repeats);
+        } catch (Exception e) {
+            sLog.error("Benchmark failed: " + e.getMessage(), e);
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package org.cpsolver.studentsct;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.HashSet;
@@ -9,12 +13,12 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.zip.GZIPInputStream;
 
 import org.cpsolver.coursett.model.Placement;
 import org.cpsolver.coursett.model.RoomLocation;
 import org.cpsolver.coursett.model.TimeLocation;
 import org.cpsolver.ifs.assignment.Assignment;
-import org.cpsolver.ifs.model.Constraint;
 import org.cpsolver.ifs.util.DistanceMetric;
 import org.cpsolver.ifs.util.Progress;
 import org.cpsolver.studentsct.filter.StudentFilter;
@@ -44,6 +48,8 @@ import org.cpsolver.studentsct.reservation.ReservationOverride;
 import org.dom4j.Document;
 import org.dom4j.DocumentException;
 import org.dom4j.Element;
+import org.dom4j.ElementHandler;
+import org.dom4j.ElementPath;
 import org.dom4j.io.SAXReader;
 
 /**
@@ -94,7 +100,17 @@ import org.dom4j.io.SAXReader;
  * <td>{@link StudentFilter}</td>
  * <td>If provided, students are filtered by the given student filter</td>
  * </tr>
+ * <tr>
+ * <td>Xml.Streaming</td>
+ * <td>{@link Boolean}</td>
+ * <td>If true (default), the file is read in a streaming fashion: each offering and each student is loaded
+ * as soon as it is read and its XML element is discarded right away, so that the whole document is never
+ * kept in memory. The best and current enrollments are assigned and the linked sections are loaded
+ * when the whole file is read.</td>
+ * </tr>
  * </table>
+ * <br>
+ * Input files that are compressed using gzip are decompressed automatically.
  * 
  * <br>
  * <br>
@@ -136,6 +152,7 @@ public class StudentSectioningXMLLoader extends StudentSectioningLoader {
     private boolean iLoadOfferings = true;
     private boolean iLoadStudents = true;
     private StudentFilter iStudentFilter = null;
+    private boolean iStreaming = true;
 
     /**
      * Constructor
@@ -155,6 +172,7 @@ public class StudentSectioningXMLLoader extends StudentSectioningLoader {
         iLoadCurrent = getModel().getProperties().getPropertyBoolean("Xml.LoadCurrent", true);
         iLoadOfferings = getModel().getProperties().getPropertyBoolean("Xml.LoadOfferings", true);
         iLoadStudents = getModel().getProperties().getPropertyBoolean("Xml.LoadStudents", true);
+        iStreaming = getModel().getProperties().getPropertyBoolean("Xml.Streaming", true);
         if (getModel().getProperties().getProperty("Xml.StudentFilter") != null) {
             try {
                 iStudentFilter = (StudentFilter) Class.forName(
@@ -208,10 +226,134 @@ public class StudentSectioningXMLLoader extends StudentSectioningLoader {
     public void load() throws Exception {
         sLogger.debug("Reading XML data from " + iInputFile);
 
-        Document document = (new SAXReader()).read(iInputFile);
+        InputStream in = openInput(iInputFile);
+        try {
+            if (iStreaming) {
+                loadStreaming(in);
+            } else {
+                Document document = (new SAXReader()).read(in);
+                Element root = document.getRootElement();
+
+                load(root);
+            }
+        } finally {
+            in.close();
+        }
+    }
+    
+    /**
+     * Open the given file for reading, a file compressed using gzip is decompressed on the fly
+     * @param file input file
+     * @return input stream
+     * @throws IOException when the file cannot be opened
+     */
+    public static InputStream openInput(File file) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        in.mark(2);
+        int b1 = in.read(), b2 = in.read();
+        in.reset();
+        if (b1 == 0x1f && b2 == 0x8b)
+            return new GZIPInputStream(in);
+        return in;
+    }
+    
+    /**
+     * Load data from the given input stream, each offering and each student is loaded as soon as its
+     * element is read, the element is then discarded.
+     * @param in input stream
+     * @throws DocumentException when the input cannot be parsed
+     */
+    protected void loadStreaming(InputStream in) throws DocumentException {
+        Map<Long, Placement> timetable = null;
+        if (iTimetableFile != null) {
+            sLogger.info("Reading timetable from " + iTimetableFile + " ...");
+            Document timetableDocument = (new SAXReader()).read(iTimetableFile);
+            Element timetableRoot = timetableDocument.getRootElement();
+            if (!"timetable".equals(timetableRoot.getName())) {
+                sLogger.error("Given XML file is not course timetabling problem.");
+                return;
+            }
+            timetable = loadTimetable(timetableRoot);
+        }
+        
+        StreamingHandler handler = new StreamingHandler(timetable);
+        SAXReader reader = new SAXReader();
+        reader.addHandler("/sectioning", handler);
+        reader.addHandler("/sectioning/offerings/offering", handler);
+        reader.addHandler("/sectioning/students/student", handler);
+        Document document = reader.read(in);
+        
         Element root = document.getRootElement();
+        sLogger.debug("Root element: " + root.getName());
+        if (!"sectioning".equals(root.getName())) {
+            sLogger.error("Given XML file is not student sectioning problem.");
+            return;
+        }
+        
+        if (iLoadOfferings && getModel().getDistanceConflict() != null && root.element("travel-times") != null)
+            loadTravelTimes(root.element("travel-times"), getModel().getDistanceConflict().getDistanceMetric());
+        
+        Progress.getInstance(getModel()).load(root, false);
+        
+        if (iLoadStudents)
+            assignEnrollments(handler.iBestEnrollments, handler.iCurrentEnrollments);
+        
+        if (iLoadOfferings && root.element("constraints") != null) 
+            loadLinkedSections(root.element("constraints"), handler.iOfferingTable);
+        
+        sLogger.debug("Model successfully loaded.");
+    }
+    
+    /**
+     * Streaming handler: the root element is processed when it is opened, offerings and students are loaded
+     * (and their elements detached from the document) as soon as they are closed.
+     */
+    private class StreamingHandler implements ElementHandler {
+        private Map<Long, Placement> iTimetable;
+        private Map<Long, Offering> iOfferingTable = new HashMap<Long, Offering>();
+        private Map<Long, Course> iCourseTable = new HashMap<Long, Course>();
+        private HashMap<Long, Config> iConfigTable = new HashMap<Long, Config>();
+        private HashMap<Long, Subpart> iSubpartTable = new HashMap<Long, Subpart>();
+        private HashMap<Long, Section> iSectionTable = new HashMap<Long, Section>();
+        private List<Enrollment> iBestEnrollments = new ArrayList<Enrollment>();
+        private List<Enrollment> iCurrentEnrollments = new ArrayList<Enrollment>();
+        
+        private StreamingHandler(Map<Long, Placement> timetable) {
+            iTimetable = timetable;
+        }
 
-        load(root);
+        @Override
+        public void onStart(ElementPath path) {
+            Element root = path.getCurrent();
+            if (root.getParent() != null) return;
+            
+            Progress.getInstance(getModel()).load(root, true);
+            Progress.getInstance(getModel()).message(Progress.MSGLEVEL_STAGE, "Restoring from backup ...");
+
+            if (root.attributeValue("term") != null)
+                getModel().getProperties().setProperty("Data.Term", root.attributeValue("term"));
+            if (root.attributeValue("year") != null)
+                getModel().getProperties().setProperty("Data.Year", root.attributeValue("year"));
+            if (root.attributeValue("initiative") != null)
+                getModel().getProperties().setProperty("Data.Initiative", root.attributeValue("initiative"));
+            
+            if (!iLoadOfferings)
+                fillOfferingTables(iOfferingTable, iCourseTable);
+        }
+
+        @Override
+        public void onEnd(ElementPath path) {
+            Element element = path.getCurrent();
+            if (element.getParent() == null) return;
+            if ("offering".equals(element.getName())) {
+                if (iLoadOfferings)
+                    loadOffering(element, iOfferingTable, iCourseTable, iConfigTable, iSubpartTable, iSectionTable, iTimetable);
+            } else if ("student".equals(element.getName())) {
+                if (iLoadStudents)
+                    loadStudent(element, iOfferingTable, iCourseTable, iBestEnrollments, iCurrentEnrollments);
+            }
+            element.detach();
+        }
     }
     
     public void load(Document document) {
@@ -281,12 +423,7 @@ public class StudentSectioningXMLLoader extends StudentSectioningLoader {
         if (iLoadOfferings && root.element("offerings") != null) {
             loadOfferings(root.element("offerings"), offeringTable, courseTable, timetable);
         } else {
-            for (Offering offering : getModel().getOfferings()) {
-                offeringTable.put(new Long(offering.getId()), offering);
-                for (Course course : offering.getCourses()) {
-                    courseTable.put(new Long(course.getId()), course);
-                }
-            }
+            fillOfferingTables(offeringTable, courseTable);
         }
 
         if (iLoadStudents && root.element("students") != null) {
@@ -299,6 +436,20 @@ public class StudentSectioningXMLLoader extends StudentSectioningLoader {
         sLogger.debug("Model successfully loaded.");
     }
     
+    /**
+     * Fill in offering and course tables from the offerings that are already in the model (used when the offerings are not loaded)
+     * @param offeringTable offering table
+     * @param courseTable course table
+     */
+    protected void fillOfferingTables(Map<Long, Offering> offeringTable, Map<Long, Course> courseTable) {
+        for (Offering offering : getModel().getOfferings()) {
+            offeringTable.put(offering.getId(), offering);
+            for (Course course : offering.getCourses()) {
+                courseTable.put(course.getId(), course);
+            }
+        }
+    }
+    
     /**
      * Load offerings
      * @param offeringsEl offerings element
@@ -312,31 +463,48 @@ public class StudentSectioningXMLLoader extends StudentSectioningLoader {
         HashMap<Long, Section> sectionTable = new HashMap<Long, Section>();
         for (Iterator<?> i = offeringsEl.elementIterator("offering"); i.hasNext();) {
             Element offeringEl = (Element) i.next();
-            Offering offering = new Offering(
-                    Long.parseLong(offeringEl.attributeValue("id")),
-                    offeringEl.attributeValue("name", "O" + offeringEl.attributeValue("id")));
-            offeringTable.put(new Long(offering.getId()), offering);
-            getModel().addOffering(offering);
-            
-            for (Iterator<?> j = offeringEl.elementIterator("course"); j.hasNext();) {
-                Element courseEl = (Element) j.next();
-                Course course = loadCourse(courseEl, offering);
-                courseTable.put(new Long(course.getId()), course);
-            }
-            
-            for (Iterator<?> j = offeringEl.elementIterator("config"); j.hasNext();) {
-                Element configEl = (Element) j.next();
-                Config config = loadConfig(configEl, offering, subpartTable, sectionTable, timetable);
-                configTable.put(config.getId(), config);
-            }
-            
-            for (Iterator<?> j = offeringEl.elementIterator("reservation"); j.hasNext(); ) {
-                Element reservationEl = (Element)j.next();
-                loadReservation(reservationEl, offering, configTable, sectionTable);
-            } 
+            loadOffering(offeringEl, offeringTable, courseTable, configTable, subpartTable, sectionTable, timetable);
         }
     }
     
+    /**
+     * Load offering
+     * @param offeringEl offering element
+     * @param offeringTable offering table
+     * @param courseTable course table
+     * @param configTable config table
+     * @param subpartTable subpart table
+     * @param sectionTable section table
+     * @param timetable provided timetable (null if to be loaded from the given document)
+     * @return loaded offering
+     */
+    protected Offering loadOffering(Element offeringEl, Map<Long, Offering> offeringTable, Map<Long, Course> courseTable,
+            HashMap<Long, Config> configTable, HashMap<Long, Subpart> subpartTable, HashMap<Long, Section> sectionTable, Map<Long, Placement> timetable) {
+        Offering offering = new Offering(
+                Long.parseLong(offeringEl.attributeValue("id")),
+                offeringEl.attributeValue("name", "O" + offeringEl.attributeValue("id")));
+        offeringTable.put(new Long(offering.getId()), offering);
+        getModel().addOffering(offering);
+        
+        for (Iterator<?> j = offeringEl.elementIterator("course"); j.hasNext();) {
+            Element courseEl = (Element) j.next();
+            Course course = loadCourse(courseEl, offering);
+            courseTable.put(new Long(course.getId()), course);
+        }
+        
+        for (Iterator<?> j = offeringEl.elementIterator("config"); j.hasNext();) {
+            Element configEl = (Element) j.next();
+            Config config = loadConfig(configEl, offering, subpartTable, sectionTable, timetable);
+            configTable.put(config.getId(), config);
+        }
+        
+        for (Iterator<?> j = offeringEl.elementIterator("reservation"); j.hasNext(); ) {
+            Element reservationEl = (Element)j.next();
+            loadReservation(reservationEl, offering, configTable, sectionTable);
+        }
+        return offering;
+    }
+    
     /**
      * Load course
      * @param courseEl course element
@@ -673,94 +841,50 @@ public class StudentSectioningXMLLoader extends StudentSectioningLoader {
         List<Enrollment> currentEnrollments = new ArrayList<Enrollment>();
         for (Iterator<?> i = studentsEl.elementIterator("student"); i.hasNext();) {
             Element studentEl = (Element) i.next();
-            Student student = loadStudent(studentEl, offeringTable);
-            if (iStudentFilter != null && !iStudentFilter.accept(student))
-                continue;
-            for (Iterator<?> j = studentEl.elementIterator(); j.hasNext();) {
-                Element requestEl = (Element) j.next();
-                Request request = loadRequest(requestEl, student, offeringTable, courseTable);
-                if (request == null) continue;
-                
-                Element initialEl = requestEl.element("initial");
-                if (iLoadInitial && initialEl != null) {
-                    Enrollment enrollment = loadEnrollment(initialEl, request);
-                    if (enrollment != null)
-                        request.setInitialAssignment(enrollment);
-                }
-                Element currentEl = requestEl.element("current");
-                if (iLoadCurrent && currentEl != null) {
-                    Enrollment enrollment = loadEnrollment(currentEl, request);
-                    if (enrollment != null)
-                        currentEnrollments.add(enrollment);
-                }
-                Element bestEl = requestEl.element("best");
-                if (iLoadBest && bestEl != null) {
-                    Enrollment enrollment = loadEnrollment(bestEl, request);
-                    if (enrollment != null)
-                        bestEnrollments.add(enrollment);
-                }
-            }
-            getModel().addStudent(student);
+            loadStudent(studentEl, offeringTable, courseTable, bestEnrollments, currentEnrollments);
         }
-
-        if (!bestEnrollments.isEmpty()) {
-            // Enrollments with a reservation must go first
-            for (Enrollment enrollment : bestEnrollments) {
-                if (enrollment.getReservation() == null) continue;
-                if (!enrollment.getStudent().isAvailable(enrollment)) {
-                    sLogger.warn("Enrollment " + enrollment + " is conflicting: student not available.");
-                    continue;
-                }
-                Map<Constraint<Request, Enrollment>, Set<Enrollment>> conflicts = getModel().conflictConstraints(getAssignment(), enrollment);
-                if (conflicts.isEmpty())
-                    getAssignment().assign(0, enrollment);
-                else
-                    sLogger.warn("Enrollment " + enrollment + " conflicts with " + conflicts);
-            }
-            for (Enrollment enrollment : bestEnrollments) {
-                if (enrollment.getReservation() != null) continue;
-                if (!enrollment.getStudent().isAvailable(enrollment)) {
-                    sLogger.warn("Enrollment " + enrollment + " is conflicting: student not available.");
-                    continue;
-                }
-                Map<Constraint<Request, Enrollment>, Set<Enrollment>> conflicts = getModel().conflictConstraints(getAssignment(), enrollment);
-                if (conflicts.isEmpty())
-                    getAssignment().assign(0, enrollment);
-                else
-                    sLogger.warn("Enrollment " + enrollment + " conflicts with " + conflicts);
+        assignEnrollments(bestEnrollments, currentEnrollments);
+    }
+    
+    /**
+     * Load student with all its requests and add it into the model
+     * @param studentEl student element
+     * @param offeringTable offering table
+     * @param courseTable course table
+     * @param bestEnrollments list of best enrollments (to be populated)
+     * @param currentEnrollments list of current enrollments (to be populated)
+     * @return loaded student, null if the student is not accepted by the student filter
+     */
+    protected Student loadStudent(Element studentEl, Map<Long, Offering> offeringTable, Map<Long, Course> courseTable, List<Enrollment> bestEnrollments, List<Enrollment> currentEnrollments) {
+        Student student = loadStudent(studentEl, offeringTable);
+        if (iStudentFilter != null && !iStudentFilter.accept(student))
+            return null;
+        for (Iterator<?> j = studentEl.elementIterator(); j.hasNext();) {
+            Element requestEl = (Element) j.next();
+            Request request = loadRequest(requestEl, student, offeringTable, courseTable);
+            if (request == null) continue;
+            
+            Element initialEl = requestEl.element("initial");
+            if (iLoadInitial && initialEl != null) {
+                Enrollment enrollment = loadEnrollment(initialEl, request);
+                if (enrollment != null)
+                    request.setInitialAssignment(enrollment);
             }
-            getModel().saveBest(getAssignment());
-        }
-
-        if (!currentEnrollments.isEmpty()) {
-            for (Request request : getModel().variables())
-                getAssignment().unassign(0, request);
-            // Enrollments with a reservation must go first
-            for (Enrollment enrollment : currentEnrollments) {
-                if (enrollment.getReservation() == null) continue;
-                if (!enrollment.getStudent().isAvailable(enrollment)) {
-                    sLogger.warn("Enrollment " + enrollment + " is conflicting: student not available.");
-                    continue;
-                }
-                Map<Constraint<Request, Enrollment>, Set<Enrollment>> conflicts = getModel().conflictConstraints(getAssignment(), enrollment);
-                if (conflicts.isEmpty())
-                    getAssignment().assign(0, enrollment);
-                else
-                    sLogger.warn("Enrollment " + enrollment + " conflicts with " + conflicts);
+            Element currentEl = requestEl.element("current");
+            if (iLoadCurrent && currentEl != null) {
+                Enrollment enrollment = loadEnrollment(currentEl, request);
+                if (enrollment != null)
+                    currentEnrollments.add(enrollment);
             }
-            for (Enrollment enrollment : currentEnrollments) {
-                if (enrollment.getReservation() != null) continue;
-                if (!enrollment.getStudent().isAvailable(enrollment)) {
-                    sLogger.warn("Enrollment " + enrollment + " is conflicting: student not available.");
-                    continue;
-                }
-                Map<Constraint<Request, Enrollment>, Set<Enrollment>> conflicts = getModel().conflictConstraints(getAssignment(), enrollment);
-                if (conflicts.isEmpty())
-                    getAssignment().assign(0, enrollment);
-                else
-                    sLogger.warn("Enrollment " + enrollment + " conflicts with " + conflicts);
+            Element bestEl = requestEl.element("best");
+            if (iLoadBest && bestEl != null) {
+                Enrollment enrollment = loadEnrollment(bestEl, request);
+                if (enrollment != null)
+                    bestEnrollments.add(enrollment);
             }
         }
+        getModel().addStudent(student);
+        return student;
     }
     
     /**
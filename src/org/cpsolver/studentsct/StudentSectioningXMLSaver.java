@@ -3,15 +3,18 @@ package org.cpsolver.studentsct;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.math.RoundingMode;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.BitSet;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.zip.GZIPOutputStream;
 
 import org.cpsolver.coursett.IdConvertor;
 import org.cpsolver.coursett.model.RoomLocation;
@@ -103,8 +106,18 @@ import org.dom4j.io.XMLWriter;
  * <td>If true, save student information (i.e., academic area classification,
  * major, minor)</td>
  * </tr>
+ * <tr>
+ * <td>Xml.Streaming</td>
+ * <td>{@link Boolean}</td>
+ * <td>If true (default), the file is written in a streaming fashion: the XML element of each offering and
+ * each student is written as soon as it is created, so that the whole document is never kept in memory.
+ * The document is populated at once when a subclass overrides {@link StudentSectioningXMLSaver#populate(Document)},
+ * {@link StudentSectioningXMLSaver#saveOfferings(Element)}, or {@link StudentSectioningXMLSaver#saveStudents(Element)}.</td>
+ * </tr>
  * </table>
  * <br>
+ * When the name of the output file ends with .gz, the file is compressed using gzip.
+ * <br>
  * <br>
  * Usage:
  * <pre><code>
@@ -147,6 +160,7 @@ public class StudentSectioningXMLSaver extends StudentSectioningSaver {
 
     private boolean iConvertIds = false;
     private boolean iShowNames = false;
+    private boolean iStreaming = true;
     
     static {
         sStudentWeightFormat.setRoundingMode(RoundingMode.DOWN);
@@ -169,6 +183,7 @@ public class StudentSectioningXMLSaver extends StudentSectioningSaver {
         iSaveStudentInfo = getModel().getProperties().getPropertyBoolean("Xml.SaveStudentInfo", true);
         iShowNames = getModel().getProperties().getPropertyBoolean("Xml.ShowNames", true);
         iConvertIds = getModel().getProperties().getPropertyBoolean("Xml.ConvertIds", false);
+        iStreaming = getModel().getProperties().getPropertyBoolean("Xml.Streaming", true);
     }
 
     /** Convert bitset to a bit string */
@@ -217,15 +232,19 @@ public class StudentSectioningXMLSaver extends StudentSectioningSaver {
         }
         sLogger.debug("Writting XML data to:" + outFile);
 
-        Document document = DocumentHelper.createDocument();
-        document.addComment("Student Sectioning");
-        
-        populate(document);
-
-        FileOutputStream fos = null;
+        OutputStream fos = null;
         try {
-            fos = new FileOutputStream(outFile);
-            (new XMLWriter(fos, OutputFormat.createPrettyPrint())).write(document);
+            fos = openOutput(outFile);
+            if (iStreaming && isStreamingSupported()) {
+                saveStreaming(fos);
+            } else {
+                Document document = DocumentHelper.createDocument();
+                document.addComment("Student Sectioning");
+                
+                populate(document);
+
+                (new XMLWriter(fos, OutputFormat.createPrettyPrint())).write(document);
+            }
             fos.flush();
             fos.close();
             fos = null;
@@ -251,10 +270,23 @@ public class StudentSectioningXMLSaver extends StudentSectioningSaver {
     }
 
     /**
-     * Fill in all the data into the given document
-     * @param document document to be populated
+     * Open the given file for writing, the output is compressed using gzip when the file name ends with .gz
+     * @param file output file
+     * @return output stream
+     * @throws IOException when the file cannot be created
      */
-    protected void populate(Document document) {
+    public static OutputStream openOutput(File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        if (file.getName().endsWith(".gz"))
+            return new GZIPOutputStream(out);
+        return out;
+    }
+    
+    /**
+     * Solution info comment (only when the current or the best solution is saved)
+     * @return solution info, null if not to be saved
+     */
+    protected String getSolutionInfoComment() {
         if (iSaveCurrent || iSaveBest) {
             StringBuffer comments = new StringBuffer("Solution Info:\n");
             Map<String, String> solutionInfo = (getSolution() == null ? getModel().getExtendedInfo(getAssignment()) : getSolution().getExtendedInfo());
@@ -262,15 +294,34 @@ public class StudentSectioningXMLSaver extends StudentSectioningSaver {
                 String value = solutionInfo.get(key);
                 comments.append("    " + key + ": " + value + "\n");
             }
-            document.addComment(comments.toString());
+            return comments.toString();
         }
-
-        Element root = document.addElement("sectioning");
+        return null;
+    }
+    
+    /**
+     * Populate attributes of the root element
+     * @param root document root
+     */
+    protected void saveRoot(Element root) {
         root.addAttribute("version", "1.0");
         root.addAttribute("initiative", getModel().getProperties().getProperty("Data.Initiative"));
         root.addAttribute("term", getModel().getProperties().getProperty("Data.Term"));
         root.addAttribute("year", getModel().getProperties().getProperty("Data.Year"));
         root.addAttribute("created", String.valueOf(new Date()));
+    }
+
+    /**
+     * Fill in all the data into the given document
+     * @param document document to be populated
+     */
+    protected void populate(Document document) {
+        String comment = getSolutionInfoComment();
+        if (comment != null)
+            document.addComment(comment);
+
+        Element root = document.addElement("sectioning");
+        saveRoot(root);
 
         saveOfferings(root);
 
@@ -285,6 +336,122 @@ public class StudentSectioningXMLSaver extends StudentSectioningSaver {
         }
     }
     
+    /**
+     * Write all the data into the given output stream, element by element. The output is the same as
+     * when the document is populated using {@link StudentSectioningXMLSaver#populate(Document)} and written
+     * at once.
+     * @param out output stream
+     * @throws IOException when the output cannot be written
+     */
+    protected void saveStreaming(OutputStream out) throws IOException {
+        StreamingXMLWriter writer = new StreamingXMLWriter(out);
+        writer.writeDeclaration();
+        writer.write(DocumentHelper.createComment("Student Sectioning"));
+        String comment = getSolutionInfoComment();
+        if (comment != null)
+            writer.write(DocumentHelper.createComment(comment));
+        
+        Element root = DocumentHelper.createElement("sectioning");
+        saveRoot(root);
+        writer.open(root);
+        
+        Element offeringsEl = DocumentHelper.createElement("offerings");
+        writer.open(offeringsEl);
+        for (Offering offering : getModel().getOfferings()) {
+            Element offeringEl = DocumentHelper.createElement("offering");
+            saveOfferingElement(offeringEl, offering);
+            writer.write(offeringEl);
+        }
+        writer.close(offeringsEl);
+        
+        Element studentsEl = DocumentHelper.createElement("students");
+        writer.open(studentsEl);
+        for (Student student : getModel().getStudents()) {
+            Element studentEl = DocumentHelper.createElement("student");
+            saveStudentElement(studentEl, student);
+            writer.write(studentEl);
+        }
+        writer.close(studentsEl);
+        
+        Element rest = DocumentHelper.createElement("sectioning");
+        saveLinkedSections(rest);
+        saveTravelTimes(rest);
+        if (iShowNames) {
+            Progress.getInstance(getModel()).save(rest);
+        }
+        for (Iterator<?> i = rest.elementIterator(); i.hasNext(); )
+            writer.write((Element) i.next());
+        
+        writer.close(root);
+        writer.writePrintln();
+        writer.flush();
+    }
+    
+    /**
+     * Check whether the file can be written in a streaming fashion, that is when none of the methods that are only used
+     * when the whole document is populated at once ({@link StudentSectioningXMLSaver#populate(Document)},
+     * {@link StudentSectioningXMLSaver#saveOfferings(Element)}, and {@link StudentSectioningXMLSaver#saveStudents(Element)})
+     * is overridden by a subclass. Subclasses should override the per-offering and per-student methods
+     * ({@link StudentSectioningXMLSaver#saveOfferingElement(Element, Offering)} and
+     * {@link StudentSectioningXMLSaver#saveStudentElement(Element, Student)}) instead, these are used by both ways.
+     * @return true if {@link StudentSectioningXMLSaver#saveStreaming(OutputStream)} can be used
+     */
+    protected boolean isStreamingSupported() {
+        for (Class<?> clazz = getClass(); clazz != null && !StudentSectioningXMLSaver.class.equals(clazz); clazz = clazz.getSuperclass()) {
+            if (isDeclared(clazz, "populate", Document.class) || isDeclared(clazz, "saveOfferings", Element.class) || isDeclared(clazz, "saveStudents", Element.class))
+                return false;
+        }
+        return true;
+    }
+    
+    /** True if the given class declares a method of the given name and parameter */
+    private static boolean isDeclared(Class<?> clazz, String name, Class<?> parameter) {
+        try {
+            clazz.getDeclaredMethod(name, parameter);
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Pretty printing XML writer that can write an element that is opened and closed separately,
+     * with its child elements written one by one in between
+     */
+    private static class StreamingXMLWriter extends XMLWriter {
+        private int iLevel = 0;
+        
+        private StreamingXMLWriter(OutputStream out) throws IOException {
+            super(out, OutputFormat.createPrettyPrint());
+        }
+        
+        @Override
+        protected void writeDeclaration() throws IOException {
+            super.writeDeclaration();
+        }
+        
+        @Override
+        protected void writePrintln() throws IOException {
+            super.writePrintln();
+        }
+        
+        /** Write the start tag of the given element, following elements are written as its children */
+        private void open(Element element) throws IOException {
+            writePrintln();
+            indent();
+            writeOpen(element);
+            setIndentLevel(++iLevel);
+        }
+        
+        /** Write the end tag of the given element */
+        private void close(Element element) throws IOException {
+            setIndentLevel(--iLevel);
+            writePrintln();
+            indent();
+            writeClose(element);
+        }
+    }
+    
     /**
      * Save offerings
      * @param root document root
@@ -292,12 +459,21 @@ public class StudentSectioningXMLSaver extends StudentSectioningSaver {
     protected void saveOfferings(Element root) {
         Element offeringsEl = root.addElement("offerings");
         for (Offering offering : getModel().getOfferings()) {
-            Element offeringEl = offeringsEl.addElement("offering");
-            saveOffering(offeringEl, offering);
-            saveReservations(offeringEl, offering);
+            saveOfferingElement(offeringsEl.addElement("offering"), offering);
         }
     }
     
+    /**
+     * Save given offering together with its reservations, used both when the document is populated at once and when it is written
+     * in a streaming fashion
+     * @param offeringEl offering element to be populated
+     * @param offering offering to be saved
+     */
+    protected void saveOfferingElement(Element offeringEl, Offering offering) {
+        saveOffering(offeringEl, offering);
+        saveReservations(offeringEl, offering);
+    }
+    
     /**
      * Save given offering
      * @param offeringEl offering element to be populated
@@ -534,11 +710,20 @@ public class StudentSectioningXMLSaver extends StudentSectioningSaver {
     protected void saveStudents(Element root) {
         Element studentsEl = root.addElement("students");
         for (Student student : getModel().getStudents()) {
-            Element studentEl = studentsEl.addElement("student");
-            saveStudent(studentEl, student);
-            for (Request request : student.getRequests()) {
-                saveRequest(studentEl, request);
-            }
+            saveStudentElement(studentsEl.addElement("student"), student);
+        }
+    }
+    
+    /**
+     * Save given student together with the student's requests, used both when the document is populated at once and when it is
+     * written in a streaming fashion
+     * @param studentEl student element to be populated
+     * @param student student to be saved
+     */
+    protected void saveStudentElement(Element studentEl, Student student) {
+        saveStudent(studentEl, student);
+        for (Request request : student.getRequests()) {
+            saveRequest(studentEl, request);
         }
     }
     
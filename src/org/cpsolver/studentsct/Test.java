@@ -106,7 +106,8 @@ import org.dom4j.io.XMLWriter;
  * <li>Output folder is created (General.Output property) and logging is setup
  * (using log4j).
  * <li>Input data are loaded from the given XML file (calling
- * {@link StudentSectioningXMLLoader#load()}).
+ * {@link StudentSectioningXMLLoader#load()}), or from a binary snapshot (calling
+ * {@link StudentSectioningBinaryLoader#load()}) when the input file is a snapshot.
  * <li>Solver is executed (see {@link Solver}).
  * <li>Resultant solution is saved to an XML file (calling
  * {@link StudentSectioningXMLSaver#save()}.
@@ -241,7 +242,10 @@ public class Test {
             if (cfg.getProperty("Test.CombineStudents") == null) {
                 model = new StudentSectioningModel(cfg);
                 assignment = new DefaultSingleAssignment<Request, Enrollment>();
-                new StudentSectioningXMLLoader(model, assignment).load();
+                if (StudentSectioningBinaryLoader.isSnapshot(new File(cfg.getProperty("General.Input", "." + File.separator + "solution.xml"))))
+                    new StudentSectioningBinaryLoader(model, assignment).load();
+                else
+                    new StudentSectioningXMLLoader(model, assignment).load();
             } else {
                 Solution<Request, Enrollment> solution = combineStudents(cfg,
                         new File(cfg.getProperty("Test.CombineStudentsLastLike", cfg.getProperty("General.Input", "." + File.separator + "solution.xml"))),
@@ -1,15 +1,14 @@
 package org.cpsolver.studentsct.constraint;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Set;
 
 import org.cpsolver.ifs.assignment.Assignment;
 import org.cpsolver.ifs.model.GlobalConstraint;
 import org.cpsolver.ifs.util.DataProperties;
-import org.cpsolver.ifs.util.ToolBox;
 import org.cpsolver.studentsct.model.Course;
 import org.cpsolver.studentsct.model.Enrollment;
+import org.cpsolver.studentsct.model.EnrollmentPriorityIndex;
+import org.cpsolver.studentsct.model.EnrollmentPriorityIndex.EnrollmentFilter;
 import org.cpsolver.studentsct.model.Request;
 
 
@@ -111,7 +110,7 @@ public class CourseLimit extends GlobalConstraint<Request, Enrollment> {
      *            all computed conflicting requests are added into this set
      */
     @Override
-    public void computeConflicts(Assignment<Request, Enrollment> assignment, Enrollment enrollment, Set<Enrollment> conflicts) {
+    public void computeConflicts(Assignment<Request, Enrollment> assignment, final Enrollment enrollment, Set<Enrollment> conflicts) {
         // check reservation can assign over the limit
         if (enrollment.getReservation() != null && enrollment.getReservation().canBatchAssignOverLimit())
             return;
@@ -137,57 +136,29 @@ public class CourseLimit extends GlobalConstraint<Request, Enrollment> {
         // above limit -> compute adepts (current assignments that are not
         // yet conflicting)
         // exclude all conflicts as well
-        List<Enrollment> adepts = new ArrayList<Enrollment>(course.getEnrollments(assignment).size());
-        for (Enrollment e : course.getEnrollments(assignment)) {
-            if (e.getRequest().equals(enrollment.getRequest()))
-                continue;
-            if (e.getReservation() != null && e.getReservation().canBatchAssignOverLimit())
-                continue;
-            if (conflicts.contains(e))
+        EnrollmentFilter adepts = new EnrollmentFilter() {
+            @Override
+            public boolean accept(Enrollment e) {
+                if (e.getRequest().equals(enrollment.getRequest()))
+                    return false;
+                return e.getReservation() == null || !e.getReservation().canBatchAssignOverLimit();
+            }
+        };
+        for (Enrollment e : conflicts)
+            if (course.getEnrollments(assignment).contains(e) && adepts.accept(e))
                 enrlWeight -= e.getRequest().getWeight();
-            else
-                adepts.add(e);
-        }
 
-        // while above limit -> pick an adept and make it conflicting
+        // while above limit -> pick an adept (prefer dummy students) and make it
+        // conflicting
+        EnrollmentPriorityIndex.Cursor cursor = course.getPriorityIndex(assignment).cursor(
+                assignment, iPreferDummyStudents, adepts, null, conflicts);
         while (enrlWeight > course.getLimit()) {
-            if (adepts.isEmpty()) {
+            Enrollment conflict = cursor.next();
+            if (conflict == null) {
                 // no adepts -> enrollment cannot be assigned
                 conflicts.add(enrollment);
                 break;
             }
-            
-            // pick adept (prefer dummy students), decrease unreserved space,
-            // make conflict
-            List<Enrollment> best = new ArrayList<Enrollment>();
-            boolean bestDummy = false;
-            double bestValue = 0;
-            for (Enrollment adept: adepts) {
-                boolean dummy = adept.getStudent().isDummy();
-                double value = adept.toDouble(assignment, false);
-                
-                if (iPreferDummyStudents && dummy != bestDummy) {
-                    if (dummy) {
-                        best.clear();
-                        best.add(adept);
-                        bestDummy = dummy;
-                        bestValue = value;
-                    }
-                    continue;
-                }
-                
-                if (best.isEmpty() || value > bestValue) {
-                    if (best.isEmpty()) best.clear();
-                    best.add(adept);
-                    bestDummy = dummy;
-                    bestValue = value;
-                } else if (bestValue == value) {
-                    best.add(adept);
-                }
-            }
-            
-            Enrollment conflict = ToolBox.random(best);
-            adepts.remove(conflict);
             enrlWeight -= conflict.getRequest().getWeight();
             conflicts.add(conflict);
         }
@@ -1,14 +1,13 @@
 package org.cpsolver.studentsct.constraint;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Set;
 
 import org.cpsolver.ifs.assignment.Assignment;
 import org.cpsolver.ifs.model.GlobalConstraint;
 import org.cpsolver.ifs.util.DataProperties;
-import org.cpsolver.ifs.util.ToolBox;
 import org.cpsolver.studentsct.model.Enrollment;
+import org.cpsolver.studentsct.model.EnrollmentPriorityIndex;
+import org.cpsolver.studentsct.model.EnrollmentPriorityIndex.EnrollmentFilter;
 import org.cpsolver.studentsct.model.Request;
 import org.cpsolver.studentsct.model.Section;
 import org.cpsolver.studentsct.reservation.Reservation;
@@ -146,7 +145,7 @@ public class SectionLimit extends GlobalConstraint<Request, Enrollment> {
      *            all computed conflicting requests are added into this set
      */
     @Override
-    public void computeConflicts(Assignment<Request, Enrollment> assignment, Enrollment enrollment, Set<Enrollment> conflicts) {
+    public void computeConflicts(Assignment<Request, Enrollment> assignment, final Enrollment enrollment, Set<Enrollment> conflicts) {
         // check reservation can assign over the limit
         if (enrollment.getReservation() != null && enrollment.getReservation().canBatchAssignOverLimit())
             return;
@@ -172,58 +171,32 @@ public class SectionLimit extends GlobalConstraint<Request, Enrollment> {
                     // no unreserved space available -> cannot be assigned
                     // try to unassign some other enrollments that also do not have reservation
                     
-                    List<Enrollment> adepts = new ArrayList<Enrollment>(section.getEnrollments(assignment).size());
-                    for (Enrollment e : section.getEnrollments(assignment)) {
-                        if (e.getRequest().equals(enrollment.getRequest()))
-                            continue;
-                        if (e.getReservation() != null && e.getReservation().canBatchAssignOverLimit())
-                            continue;
-                        if (hasSectionReservation(e, section))
-                            continue;
-                        if (conflicts.contains(e))
+                    final Section fSection = section;
+                    EnrollmentFilter adepts = new EnrollmentFilter() {
+                        @Override
+                        public boolean accept(Enrollment e) {
+                            if (e.getRequest().equals(enrollment.getRequest()))
+                                return false;
+                            if (e.getReservation() != null && e.getReservation().canBatchAssignOverLimit())
+                                return false;
+                            return !hasSectionReservation(e, fSection);
+                        }
+                    };
+                    for (Enrollment e : conflicts)
+                        if (section.getEnrollments(assignment).contains(e) && adepts.accept(e))
                             unreserved += e.getRequest().getWeight();
-                        else
-                            adepts.add(e);
-                    }
                     
+                    // pick adepts (prefer dummy students), decrease unreserved space,
+                    // make conflict
+                    EnrollmentPriorityIndex.Cursor cursor = section.getPriorityIndex(assignment).cursor(
+                            assignment, iPreferDummyStudents, adepts, null, conflicts);
                     while (unreserved < 0.0) {
-                        if (adepts.isEmpty()) {
+                        Enrollment conflict = cursor.next();
+                        if (conflict == null) {
                             // no adepts -> enrollment cannot be assigned
                             conflicts.add(enrollment);
                             return;
                         }
-                        
-                        // pick adept (prefer dummy students), decrease unreserved space,
-                        // make conflict
-                        List<Enrollment> best = new ArrayList<Enrollment>();
-                        boolean bestDummy = false;
-                        double bestValue = 0;
-                        for (Enrollment adept: adepts) {
-                            boolean dummy = adept.getStudent().isDummy();
-                            double value = adept.toDouble(assignment, false);
-                            
-                            if (iPreferDummyStudents && dummy != bestDummy) {
-                                if (dummy) {
-                                    best.clear();
-                                    best.add(adept);
-                                    bestDummy = dummy;
-                                    bestValue = value;
-                                }
-                                continue;
-                            }
-                            
-                            if (best.isEmpty() || value > bestValue) {
-                                if (best.isEmpty()) best.clear();
-                                best.add(adept);
-                                bestDummy = dummy;
-                                bestValue = value;
-                            } else if (bestValue == value) {
-                                best.add(adept);
-                            }
-                        }
-                        
-                        Enrollment conflict = ToolBox.random(best);
-                        adepts.remove(conflict);
                         unreserved += conflict.getRequest().getWeight();
                         conflicts.add(conflict);
                     }
@@ -243,70 +216,33 @@ public class SectionLimit extends GlobalConstraint<Request, Enrollment> {
 
             // above limit -> compute adepts (current assignments that are not
             // yet conflicting) exclude all conflicts as well
-            List<Enrollment> adepts = new ArrayList<Enrollment>(section.getEnrollments(assignment).size());
-            for (Enrollment e : section.getEnrollments(assignment)) {
-                if (e.getRequest().equals(enrollment.getRequest()))
-                    continue;
-                if (conflicts.contains(e))
+            EnrollmentFilter adepts = new EnrollmentFilter() {
+                @Override
+                public boolean accept(Enrollment e) {
+                    return !e.getRequest().equals(enrollment.getRequest());
+                }
+            };
+            for (Enrollment e : conflicts)
+                if (section.getEnrollments(assignment).contains(e) && adepts.accept(e))
                     enrlWeight -= e.getRequest().getWeight();
-                else
-                    adepts.add(e);
-            }
 
-            // while above limit -> pick an adept and make it conflicting
+            // while above limit -> pick an adept (prefer dummy students & students w/o reservation)
+            // and make it conflicting
+            final Section fSection = section;
+            EnrollmentPriorityIndex.Cursor cursor = section.getPriorityIndex(assignment).cursor(
+                    assignment, iPreferDummyStudents, adepts, new EnrollmentFilter() {
+                        @Override
+                        public boolean accept(Enrollment e) {
+                            return hasSectionReservation(e, fSection);
+                        }
+                    }, conflicts);
             while (enrlWeight > section.getLimit()) {
-                if (adepts.isEmpty()) {
+                Enrollment conflict = cursor.next();
+                if (conflict == null) {
                     // no adepts -> enrollment cannot be assigned
                     conflicts.add(enrollment);
                     return;
                 }
-                
-                // pick adept (prefer dummy students & students w/o reservation), decrease enrollment
-                // weight, make conflict
-                List<Enrollment> best = new ArrayList<Enrollment>();
-                boolean bestDummy = false;
-                double bestValue = 0;
-                boolean bestRes = true;
-                for (Enrollment adept: adepts) {
-                    boolean dummy = adept.getStudent().isDummy();
-                    double value = adept.toDouble(assignment, false);
-                    boolean res = hasSectionReservation(adept, section);
-                    
-                    if (iPreferDummyStudents && dummy != bestDummy) {
-                        if (dummy) {
-                            best.clear();
-                            best.add(adept);
-                            bestDummy = dummy;
-                            bestValue = value;
-                            bestRes = res;
-                        }
-                        continue;
-                    }
-                    
-                    if (bestRes != res) {
-                        if (!res) {
-                            best.clear();
-                            best.add(adept);
-                            bestDummy = dummy;
-                            bestValue = value;
-                            bestRes = res;
-                        }
-                        continue;
-                    }
-
-                    if (best.isEmpty() || value > bestValue) {
-                        if (best.isEmpty()) best.clear();
-                        best.add(adept);
-                        bestDummy = dummy;
-                        bestValue = value;
-                        bestRes = res;
-                    } else if (bestValue == value) {
-                        best.add(adept);
-                    }
-                }
-                
-                Enrollment conflict = ToolBox.random(best);
-                adepts.remove(conflict);
                 enrlWeight -= conflict.getRequest().getWeight();
                 conflicts.add(conflict);
             }
@@ -33,6 +33,12 @@ import org.cpsolver.studentsct.model.Student;
  * are back-to-back taught in locations that are two far away. This means that
  * the (walking) distance in minutes between the two classes are longer than
  * the break time of the earlier class. See {@link DistanceMetric} for more details.
+ * <br>
+ * <br>
+ * Distance conflicts are kept in a per-student index of the assignment context,
+ * so that the conflicts of an unassigned enrollment do not need to be computed again.
+ * Enrollments with no distance-sensitive section (a section with a time and a room that
+ * is not ignored, see {@link DistanceConflict#isDistanceSensitive(Section)}) are skipped.
  * 
  * @see TimeLocation
  * @see Placement
@@ -106,24 +112,12 @@ public class DistanceConflict extends ExtensionWithContext<Request, Enrollment,
         return iDistanceMetric;
     }
         
-    private Map<Long, Map<Long, Integer>> iDistanceCache = new HashMap<Long, Map<Long,Integer>>();
-    protected synchronized int getDistanceInMinutes(RoomLocation r1, RoomLocation r2) {
-        if (r1.getId().compareTo(r2.getId()) > 0) return getDistanceInMinutes(r2, r1);
+    protected int getDistanceInMinutes(RoomLocation r1, RoomLocation r2) {
         if (r1.getId().equals(r2.getId()) || r1.getIgnoreTooFar() || r2.getIgnoreTooFar())
             return 0;
         if (r1.getPosX() == null || r1.getPosY() == null || r2.getPosX() == null || r2.getPosY() == null)
             return iDistanceMetric.getMaxTravelDistanceInMinutes();
-        Map<Long, Integer> other2distance = iDistanceCache.get(r1.getId());
-        if (other2distance == null) {
-            other2distance = new HashMap<Long, Integer>();
-            iDistanceCache.put(r1.getId(), other2distance);
-        }
-        Integer distance = other2distance.get(r2.getId());
-        if (distance == null) {
-            distance = iDistanceMetric.getDistanceInMinutes(r1.getId(), r1.getPosX(), r1.getPosY(), r2.getId(), r2.getPosX(), r2.getPosY());
-            other2distance.put(r2.getId(), distance);    
-        }
-        return distance;
+        return r1.getDistanceInMinutes(iDistanceMetric, r2);
     }
 
     protected int getDistanceInMinutes(Placement p1, Placement p2) {
@@ -160,6 +154,41 @@ public class DistanceConflict extends ExtensionWithContext<Request, Enrollment,
         }
     }
     
+    /**
+     * Return true if the given section can be in a distance conflict, that is if it has a time
+     * and at least one room that is not ignored (see {@link RoomLocation#getIgnoreTooFar()}).
+     * The distance between a section without such a room and any other section is zero.
+     * @param section a section
+     * @return true if the section is distance-sensitive
+     */
+    public boolean isDistanceSensitive(Section section) {
+        Placement placement = section.getPlacement();
+        if (placement == null || placement.getTimeLocation() == null)
+            return false;
+        if (placement.isMultiRoom()) {
+            for (RoomLocation room : placement.getRoomLocations())
+                if (!room.getIgnoreTooFar())
+                    return true;
+            return false;
+        }
+        return placement.getRoomLocation() != null && !placement.getRoomLocation().getIgnoreTooFar();
+    }
+    
+    /**
+     * Return true if the given enrollment has at least one distance-sensitive section,
+     * see {@link DistanceConflict#isDistanceSensitive(Section)}.
+     * @param enrollment an enrollment
+     * @return true if the enrollment can be in a distance conflict
+     */
+    public boolean isDistanceSensitive(Enrollment enrollment) {
+        if (!enrollment.isCourseRequest())
+            return false;
+        for (Section section : enrollment.getSections())
+            if (isDistanceSensitive(section))
+                return true;
+        return false;
+    }
+
     /**
      * Return true if the given two sections are in distance conflict. This
      * means that the sections are back-to-back and that they are placed in
@@ -240,6 +269,7 @@ public class DistanceConflict extends ExtensionWithContext<Request, Enrollment,
             return 0;
         int cnt = 0;
         for (Section s1 : e1.getSections()) {
+            if (!isDistanceSensitive(s1)) continue;
             for (Section s2 : e1.getSections()) {
                 if (s1.getId() < s2.getId() && inConflict(e1.getStudent(), s1, s2))
                     cnt ++;
@@ -264,6 +294,7 @@ public class DistanceConflict extends ExtensionWithContext<Request, Enrollment,
             return 0;
         int cnt = 0;
         for (Section s1 : e1.getSections()) {
+            if (!isDistanceSensitive(s1)) continue;
             for (Section s2 : e2.getSections()) {
                 if (inConflict(e1.getStudent(), s1, s2))
                     cnt ++;
@@ -286,6 +317,7 @@ public class DistanceConflict extends ExtensionWithContext<Request, Enrollment,
         if (!e1.isCourseRequest())
             return ret;
         for (Section s1 : e1.getSections()) {
+            if (!isDistanceSensitive(s1)) continue;
             for (Section s2 : e1.getSections()) {
                 if (s1.getId() < s2.getId() && inConflict(e1.getStudent(), s1, s2))
                     ret.add(new Conflict(e1.getStudent(), e1, s1, e1, s2));
@@ -307,15 +339,23 @@ public class DistanceConflict extends ExtensionWithContext<Request, Enrollment,
      */
     public Set<Conflict> conflicts(Enrollment e1, Enrollment e2) {
         Set<Conflict> ret = new HashSet<Conflict>();
+        conflicts(e1, e2, ret);
+        return ret;
+    }
+    
+    /**
+     * Add distance conflicts between the given (course) enrollments into the given set
+     */
+    private void conflicts(Enrollment e1, Enrollment e2, Set<Conflict> ret) {
         if (!e1.isCourseRequest() || !e2.isCourseRequest() || !e1.getStudent().equals(e2.getStudent()))
-            return ret;
+            return;
         for (Section s1 : e1.getSections()) {
+            if (!isDistanceSensitive(s1)) continue;
             for (Section s2 : e2.getSections()) {
                 if (inConflict(e1.getStudent(), s1, s2))
                     ret.add(new Conflict(e1.getStudent(), e1, s1, e2, s2));
             }
         }
-        return ret;
     }
 
     /**
@@ -326,13 +366,15 @@ public class DistanceConflict extends ExtensionWithContext<Request, Enrollment,
      * @return set of all conflicts
      */
     public Set<Conflict> allConflicts(Assignment<Request, Enrollment> assignment, Enrollment enrollment) {
+        if (!isDistanceSensitive(enrollment))
+            return new HashSet<Conflict>();
         Set<Conflict> ret = conflicts(enrollment);
-        if (!enrollment.isCourseRequest())
-            return ret;
         for (Request request : enrollment.getStudent().getRequests()) {
-            if (request.equals(enrollment.getRequest()) || assignment.getValue(request) == null)
+            if (request.equals(enrollment.getRequest()))
                 continue;
-            ret.addAll(conflicts(enrollment, assignment.getValue(request)));
+            Enrollment other = assignment.getValue(request);
+            if (other != null)
+                conflicts(enrollment, other, ret);
         }
         return ret;
     }
@@ -413,6 +455,16 @@ public class DistanceConflict extends ExtensionWithContext<Request, Enrollment,
     public Set<Conflict> getAllConflicts(Assignment<Request, Enrollment> assignment) {
         return getContext(assignment).getAllConflicts();
     }
+    
+    /**
+     * Return a set of distance conflicts ({@link Conflict} objects) of the given student.
+     * @param assignment current assignment
+     * @param student a student
+     * @return cached set of distance conflicts of the student (empty if there are none)
+     */
+    public Set<Conflict> getStudentConflicts(Assignment<Request, Enrollment> assignment, Student student) {
+        return getContext(assignment).getStudentConflicts(student);
+    }
 
     /**
      * Called before a value is assigned to a variable.
@@ -549,15 +601,34 @@ public class DistanceConflict extends ExtensionWithContext<Request, Enrollment,
     }
     
     public class DistanceConflictContext implements AssignmentConstraintContext<Request, Enrollment> {
-        private Set<Conflict> iAllConflicts = new HashSet<Conflict>();
+        private Map<Student, Set<Conflict>> iStudentConflicts = new HashMap<Student, Set<Conflict>>();
+        private int iTotalNrConflicts = 0, iTotalNrShortConflicts = 0;
         private Request iOldVariable = null;
         private Enrollment iUnassignedValue = null;
 
         public DistanceConflictContext(Assignment<Request, Enrollment> assignment) {
-            iAllConflicts = computeAllConflicts(assignment);
             StudentSectioningModelContext cx = ((StudentSectioningModel)getModel()).getContext(assignment);
-            for (Conflict c: iAllConflicts)
-                cx.add(assignment, c);
+            for (Conflict c: computeAllConflicts(assignment))
+                if (add(c))
+                    cx.add(assignment, c);
+        }
+        
+        /**
+         * Add a conflict into the index
+         * @return true if the conflict was not there
+         */
+        private boolean add(Conflict conflict) {
+            Set<Conflict> conflicts = iStudentConflicts.get(conflict.getStudent());
+            if (conflicts == null) {
+                conflicts = new HashSet<Conflict>();
+                iStudentConflicts.put(conflict.getStudent(), conflicts);
+            }
+            if (!conflicts.add(conflict))
+                return false;
+            iTotalNrConflicts ++;
+            if (conflict.getStudent().isNeedShortDistances())
+                iTotalNrShortConflicts ++;
+            return true;
         }
         
         /**
@@ -608,9 +679,11 @@ public class DistanceConflict extends ExtensionWithContext<Request, Enrollment,
          */
         @Override
         public void assigned(Assignment<Request, Enrollment> assignment, Enrollment value) {
+            if (!isDistanceSensitive(value))
+                return;
             StudentSectioningModelContext cx = ((StudentSectioningModel)getModel()).getContext(assignment);
             for (Conflict c: allConflicts(assignment, value)) {
-                if (iAllConflicts.add(c))
+                if (add(c))
                     cx.add(assignment, c);
             }
             if (sDebug) {
@@ -633,11 +706,22 @@ public class DistanceConflict extends ExtensionWithContext<Request, Enrollment,
         public void unassigned(Assignment<Request, Enrollment> assignment, Enrollment value) {
             if (value.variable().equals(iOldVariable))
                 return;
+            Set<Conflict> conflicts = iStudentConflicts.get(value.getStudent());
+            if (conflicts == null)
+                return;
             StudentSectioningModelContext cx = ((StudentSectioningModel)getModel()).getContext(assignment);
-            for (Conflict c: allConflicts(assignment, value)) {
-                if (iAllConflicts.remove(c))
+            for (Iterator<Conflict> i = conflicts.iterator(); i.hasNext(); ) {
+                Conflict c = i.next();
+                if (value.getRequest().equals(c.getR1()) || value.getRequest().equals(c.getR2())) {
+                    i.remove();
+                    iTotalNrConflicts --;
+                    if (c.getStudent().isNeedShortDistances())
+                        iTotalNrShortConflicts --;
                     cx.remove(assignment, c);
+                }
             }
+            if (conflicts.isEmpty())
+                iStudentConflicts.remove(value.getStudent());
             if (sDebug) {
                 sLog.debug("U:" + value.variable() + " := " + value);
                 int dec = nrAllConflicts(assignment, value);
@@ -655,19 +739,23 @@ public class DistanceConflict extends ExtensionWithContext<Request, Enrollment,
          **/
         public void checkAllConflicts(Assignment<Request, Enrollment> assignment) {
             Set<Conflict> allConfs = computeAllConflicts(assignment);
-            if (iAllConflicts.size() != allConfs.size()) {
-                sLog.error("Different number of conflicts " + iAllConflicts.size() + "!=" + allConfs.size());
+            if (iTotalNrConflicts != allConfs.size()) {
+                sLog.error("Different number of conflicts " + iTotalNrConflicts + "!=" + allConfs.size());
+                Set<Conflict> allConflicts = getAllConflicts();
                 for (Iterator<Conflict> i = allConfs.iterator(); i.hasNext();) {
                     Conflict c = i.next();
-                    if (!iAllConflicts.contains(c))
+                    if (!allConflicts.contains(c))
                         sLog.debug("  +add+ " + c);
                 }
-                for (Iterator<Conflict> i = iAllConflicts.iterator(); i.hasNext();) {
+                for (Iterator<Conflict> i = allConflicts.iterator(); i.hasNext();) {
                     Conflict c = i.next();
                     if (!allConfs.contains(c))
                         sLog.debug("  -rem- " + c);
                 }
-                iAllConflicts = allConfs;
+                iStudentConflicts.clear();
+                iTotalNrConflicts = 0; iTotalNrShortConflicts = 0;
+                for (Conflict c: allConfs)
+                    add(c);
             }
         }
         
@@ -675,17 +763,14 @@ public class DistanceConflict extends ExtensionWithContext<Request, Enrollment,
          * @return number of all distance conflicts
          **/
         public int getTotalNrConflicts() {
-            return iAllConflicts.size();
+            return iTotalNrConflicts;
         }
         
         /** Actual number of all distance conflicts of students that need short distances
          * @return number of all distance conflicts
          **/
         public int getTotalNrShortConflicts() {
-            int ret = 0;
-            for (Conflict c: iAllConflicts)
-                if (c.getStudent().isNeedShortDistances()) ret ++;
-            return ret;
+            return iTotalNrShortConflicts;
         }
         
         
@@ -694,7 +779,20 @@ public class DistanceConflict extends ExtensionWithContext<Request, Enrollment,
          * @return all distance conflicts
          */
         public Set<Conflict> getAllConflicts() {
-            return iAllConflicts;
+            Set<Conflict> ret = new HashSet<Conflict>();
+            for (Set<Conflict> conflicts: iStudentConflicts.values())
+                ret.addAll(conflicts);
+            return ret;
+        }
+        
+        /**
+         * Return a set of distance conflicts ({@link Conflict} objects) of the given student.
+         * @param student a student
+         * @return distance conflicts of the student (empty if there are none)
+         */
+        public Set<Conflict> getStudentConflicts(Student student) {
+            Set<Conflict> conflicts = iStudentConflicts.get(student);
+            return (conflicts == null ? new HashSet<Conflict>() : conflicts);
         }
         
         /**
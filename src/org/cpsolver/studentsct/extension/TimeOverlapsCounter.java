@@ -1,6 +1,9 @@
 package org.cpsolver.studentsct.extension;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
@@ -24,6 +27,9 @@ import org.cpsolver.studentsct.model.Unavailability;
  * This extension computes time overlaps. Only sections that allow overlaps
  * (see {@link SctAssignment#isAllowOverlap()}) can overlap. This class counts
  * how many overlapping slots there are so that this number can be minimized.
+ * Time overlapping conflicts are kept in a per-student index of the assignment
+ * context, so that the conflicts of an unassigned enrollment do not need to be
+ * computed again.
  * 
  * <br>
  * <br>
@@ -141,15 +147,22 @@ public class TimeOverlapsCounter extends ExtensionWithContext<Request, Enrollmen
      */
     public Set<Conflict> conflicts(Enrollment e1, Enrollment e2) {
         Set<Conflict> ret = new HashSet<Conflict>();
-        if (!e1.getStudent().equals(e2.getStudent())) return ret;
-        if (e1.getRequest() instanceof FreeTimeRequest && e2.getRequest() instanceof FreeTimeRequest) return ret;
+        conflicts(e1, e2, ret);
+        return ret;
+    }
+    
+    /**
+     * Add time overlapping conflicts between the given enrollments into the given set
+     */
+    private void conflicts(Enrollment e1, Enrollment e2, Set<Conflict> ret) {
+        if (!e1.getStudent().equals(e2.getStudent())) return;
+        if (e1.getRequest() instanceof FreeTimeRequest && e2.getRequest() instanceof FreeTimeRequest) return;
         for (SctAssignment s1 : e1.getAssignments()) {
             for (SctAssignment s2 : e2.getAssignments()) {
                 if (inConflict(s1, s2))
                     ret.add(new Conflict(e1.getStudent(), share(s1, s2), e1, s1, e2, s2));
             }
         }
-        return ret;
     }
 
     /**
@@ -263,6 +276,16 @@ public class TimeOverlapsCounter extends ExtensionWithContext<Request, Enrollmen
     public Set<Conflict> getAllConflicts(Assignment<Request, Enrollment> assignment) {
         return getContext(assignment).getAllConflicts();
     }
+    
+    /**
+     * Return a set of time overlapping conflicts ({@link Conflict} objects) of the given student.
+     * @param assignment current assignment
+     * @param student a student
+     * @return cached set of time overlapping conflicts of the student (empty if there are none)
+     */
+    public Set<Conflict> getStudentConflicts(Assignment<Request, Enrollment> assignment, Student student) {
+        return getContext(assignment).getStudentConflicts(student);
+    }
 
     /**
      * Called before a value is assigned to a variable.
@@ -429,10 +452,10 @@ public class TimeOverlapsCounter extends ExtensionWithContext<Request, Enrollmen
             Enrollment other = assignment.getValue(request);
             if (request instanceof FreeTimeRequest) {
                 FreeTimeRequest ft = (FreeTimeRequest)request;
-                ret.addAll(conflicts(enrollment, ft.createEnrollment()));
+                conflicts(enrollment, ft.createEnrollment(), ret);
                 continue;
             } else if (other != null) {
-                ret.addAll(conflicts(enrollment, other));
+                conflicts(enrollment, other, ret);
             }
         }
         for (Unavailability unavailability: enrollment.getStudent().getUnavailabilities())
@@ -444,17 +467,31 @@ public class TimeOverlapsCounter extends ExtensionWithContext<Request, Enrollmen
     
     public class TimeOverlapsCounterContext implements AssignmentConstraintContext<Request, Enrollment> {
         private int iTotalNrConflicts = 0;
-        private Set<Conflict> iAllConflicts = new HashSet<Conflict>();
+        private Map<Student, Set<Conflict>> iStudentConflicts = new HashMap<Student, Set<Conflict>>();
         private Request iOldVariable = null;
         private Enrollment iUnassignedValue = null;
 
         public TimeOverlapsCounterContext(Assignment<Request, Enrollment> assignment) {
-            iTotalNrConflicts = countTotalNrConflicts(assignment);
-            if (sDebug)
-                iAllConflicts = computeAllConflicts(assignment);
             StudentSectioningModelContext cx = ((StudentSectioningModel)getModel()).getContext(assignment);
             for (Conflict c: computeAllConflicts(assignment))
-                cx.add(assignment, c);
+                if (add(c))
+                    cx.add(assignment, c);
+        }
+        
+        /**
+         * Add a conflict into the index
+         * @return true if the conflict was not there
+         */
+        private boolean add(Conflict conflict) {
+            Set<Conflict> conflicts = iStudentConflicts.get(conflict.getStudent());
+            if (conflicts == null) {
+                conflicts = new HashSet<Conflict>();
+                iStudentConflicts.put(conflict.getStudent(), conflicts);
+            }
+            if (!conflicts.add(conflict))
+                return false;
+            iTotalNrConflicts += conflict.getShare();
+            return true;
         }
 
         /**
@@ -466,8 +503,8 @@ public class TimeOverlapsCounter extends ExtensionWithContext<Request, Enrollmen
         public void assigned(Assignment<Request, Enrollment> assignment, Enrollment value) {
             StudentSectioningModelContext cx = ((StudentSectioningModel)getModel()).getContext(assignment);
             for (Conflict c: allConflicts(assignment, value)) {
-                iTotalNrConflicts += c.getShare();
-                cx.add(assignment, c);
+                if (add(c))
+                    cx.add(assignment, c);
             }
             if (sDebug) {
                 sLog.debug("A:" + value.variable() + " := " + value);
@@ -476,7 +513,6 @@ public class TimeOverlapsCounter extends ExtensionWithContext<Request, Enrollmen
                     sLog.debug("-- TOC+" + inc + " A: " + value.variable() + " := " + value);
                     for (Conflict c: allConflicts(assignment, value)) {
                         sLog.debug("  -- " + c);
-                        iAllConflicts.add(c);
                         inc -= c.getShare();
                     }
                     if (inc != 0) {
@@ -493,21 +529,29 @@ public class TimeOverlapsCounter extends ExtensionWithContext<Request, Enrollmen
          */
         @Override
         public void unassigned(Assignment<Request, Enrollment> assignment, Enrollment value) {
+            if (value.getRequest() instanceof FreeTimeRequest)
+                return;
+            Set<Conflict> conflicts = iStudentConflicts.get(value.getStudent());
+            if (conflicts == null)
+                return;
             StudentSectioningModelContext cx = ((StudentSectioningModel)getModel()).getContext(assignment);
-            for (Conflict c: allConflicts(assignment, value)) {
-                iTotalNrConflicts -= c.getShare();
-                cx.remove(assignment, c);
+            int dec = 0;
+            for (Iterator<Conflict> i = conflicts.iterator(); i.hasNext(); ) {
+                Conflict c = i.next();
+                if (value.getRequest().equals(c.getR1()) || value.getRequest().equals(c.getR2())) {
+                    i.remove();
+                    iTotalNrConflicts -= c.getShare();
+                    dec += c.getShare();
+                    cx.remove(assignment, c);
+                }
             }
+            if (conflicts.isEmpty())
+                iStudentConflicts.remove(value.getStudent());
             if (sDebug) {
                 sLog.debug("U:" + value.variable() + " := " + value);
-                int dec = nrAllConflicts(assignment, value);
                 if (dec != 0) {
                     sLog.debug("-- TOC-" + dec + " U: " + value.variable() + " := " + value);
-                    for (Conflict c: allConflicts(assignment, value)) {
-                        sLog.debug("  -- " + c);
-                        iAllConflicts.remove(c);
-                        dec -= c.getShare();
-                    }
+                    dec -= nrAllConflicts(assignment, value);
                     if (dec != 0) {
                         sLog.error("Different number of conflicts for the unassigned value (difference: " + dec + ")!");
                     }
@@ -563,7 +607,20 @@ public class TimeOverlapsCounter extends ExtensionWithContext<Request, Enrollmen
          * @return all conflicts
          */
         public Set<Conflict> getAllConflicts() {
-            return iAllConflicts;
+            Set<Conflict> ret = new HashSet<Conflict>();
+            for (Set<Conflict> conflicts: iStudentConflicts.values())
+                ret.addAll(conflicts);
+            return ret;
+        }
+        
+        /**
+         * Return a set of time overlapping conflicts ({@link Conflict} objects) of the given student.
+         * @param student a student
+         * @return time overlapping conflicts of the student (empty if there are none)
+         */
+        public Set<Conflict> getStudentConflicts(Student student) {
+            Set<Conflict> conflicts = iStudentConflicts.get(student);
+            return (conflicts == null ? new HashSet<Conflict>() : conflicts);
         }
         
         /** Actual number of all time overlapping conflicts
@@ -577,27 +634,30 @@ public class TimeOverlapsCounter extends ExtensionWithContext<Request, Enrollmen
             int total = countTotalNrConflicts(assignment);
             if (total != iTotalNrConflicts) {
                 sLog.error("Number of conflicts does not match (actual: " + total + ", count: " + iTotalNrConflicts + ")!");
-                iTotalNrConflicts = total;
+                Set<Conflict> conflicts = computeAllConflicts(assignment);
                 if (sDebug) {
-                    Set<Conflict> conflicts = computeAllConflicts(assignment);
+                    Set<Conflict> allConflicts = getAllConflicts();
                     for (Conflict c: conflicts) {
-                        if (!iAllConflicts.contains(c))
+                        if (!allConflicts.contains(c))
                             sLog.debug("  +add+ " + c);
                     }
-                    for (Conflict c: iAllConflicts) {
+                    for (Conflict c: allConflicts) {
                         if (!conflicts.contains(c))
                             sLog.debug("  -rem- " + c);
                     }
                     for (Conflict c: conflicts) {
-                        for (Conflict d: iAllConflicts) {
+                        for (Conflict d: allConflicts) {
                             if (c.equals(d) && c.getShare() != d.getShare()) {
                                 sLog.debug("  -dif- " + c + " (other: " + d.getShare() + ")");
                             }
                         }
                     }                
-                    iAllConflicts = conflicts;
                     // getSolver().stopSolver(false);
                 }
+                iStudentConflicts.clear();
+                for (Conflict c: conflicts)
+                    add(c);
+                iTotalNrConflicts = total;
             }
         }
         
@@ -669,10 +729,10 @@ public class TimeOverlapsCounter extends ExtensionWithContext<Request, Enrollmen
                 if (request.equals(enrollment.getRequest())) continue;
                 if (request instanceof FreeTimeRequest) {
                     FreeTimeRequest ft = (FreeTimeRequest)request;
-                    ret.addAll(conflicts(enrollment, ft.createEnrollment()));
+                    conflicts(enrollment, ft.createEnrollment(), ret);
                     continue;
                 } else if (assignment.getValue(request) != null && !request.equals(iOldVariable)) {
-                    ret.addAll(conflicts(enrollment, assignment.getValue(request)));
+                    conflicts(enrollment, assignment.getValue(request), ret);
                 }
             }
             for (Unavailability unavailability: enrollment.getStudent().getUnavailabilities())
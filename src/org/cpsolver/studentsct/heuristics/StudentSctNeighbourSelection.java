@@ -182,6 +182,12 @@ public class StudentSctNeighbourSelection extends RoundRobinNeighbourSelection<R
         NeighbourSelection<Request, Enrollment> selection = getSelection();
         if (neighbour instanceof BranchBoundSelection.BranchBoundNeighbour && selection instanceof BranchBoundSelection)
             ((BranchBoundSelection)selection).addStudent(((BranchBoundSelection.BranchBoundNeighbour)neighbour).getStudent());
+        else if (selection instanceof PriorityConstructionSelection) {
+            if (neighbour instanceof PriorityConstructionSelection.ConstructionNeighbour)
+                ((PriorityConstructionSelection)selection).addStudent(((PriorityConstructionSelection.ConstructionNeighbour)neighbour).getStudent());
+            else if (neighbour instanceof BranchBoundSelection.BranchBoundNeighbour)
+                ((PriorityConstructionSelection)selection).addStudent(((BranchBoundSelection.BranchBoundNeighbour)neighbour).getStudent());
+        }
     }
 
 }
@@ -1,6 +1,7 @@
 package org.cpsolver.studentsct.heuristics.selection;
 
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -18,6 +19,7 @@ import org.cpsolver.ifs.heuristics.NeighbourSelection;
 import org.cpsolver.ifs.model.GlobalConstraint;
 import org.cpsolver.ifs.model.Neighbour;
 import org.cpsolver.ifs.solution.Solution;
+import org.cpsolver.ifs.solver.ParallelSolver;
 import org.cpsolver.ifs.solver.Solver;
 import org.cpsolver.ifs.util.DataProperties;
 import org.cpsolver.ifs.util.JProf;
@@ -28,9 +30,11 @@ import org.cpsolver.studentsct.extension.DistanceConflict;
 import org.cpsolver.studentsct.extension.TimeOverlapsCounter;
 import org.cpsolver.studentsct.heuristics.studentord.StudentGroupsChoiceRealFirstOrder;
 import org.cpsolver.studentsct.heuristics.studentord.StudentOrder;
+import org.cpsolver.studentsct.model.Course;
 import org.cpsolver.studentsct.model.CourseRequest;
 import org.cpsolver.studentsct.model.Enrollment;
 import org.cpsolver.studentsct.model.FreeTimeRequest;
+import org.cpsolver.studentsct.model.Offering;
 import org.cpsolver.studentsct.model.Request;
 import org.cpsolver.studentsct.model.Student;
 import org.cpsolver.studentsct.weights.StudentWeights;
@@ -64,6 +68,20 @@ import org.cpsolver.studentsct.weights.StudentWeights;
  * to better mimic the case when students can choose their sections (section
  * times).</td>
  * </tr>
+ * <tr>
+ * <td>Neighbour.BranchAndBoundPartitions</td>
+ * <td>{@link Boolean}</td>
+ * <td>If true and the {@link ParallelSolver} is used with more than one thread working on a single solution,
+ * students are partitioned so that students of two different partitions do not share any offering. Each
+ * partition is then sectioned by one thread at a time, while different partitions are sectioned concurrently
+ * (see {@link BranchBoundSelection#nextStudent()}).</td>
+ * </tr>
+ * <tr>
+ * <td>Neighbour.BranchAndBoundOverlapMatrix</td>
+ * <td>{@link Boolean}</td>
+ * <td>If true (default), overlaps between enrollments of the selected student are only computed once for each pair
+ * of enrollments and remembered in an {@link EnrollmentOverlapMatrix}.</td>
+ * </tr>
  * </table>
  * <br>
  * <br>
@@ -101,6 +119,14 @@ public class BranchBoundSelection implements NeighbourSelection<Request, Enrollm
     protected StudentOrder iOrder = new StudentGroupsChoiceRealFirstOrder();
     protected double iDistConfWeight = 1.0;
     protected boolean iBranchWhenSelectedHasNoConflict = false;
+    protected boolean iPartitionStudents = false;
+    protected boolean iOverlapMatrix = true;
+    private Solver<Request, Enrollment> iSolver = null;
+    private Queue<StudentPartition> iPartitions = null;
+    private Set<StudentPartition> iClaimedPartitions = null;
+    private Map<Offering, Offering> iOfferingParent = null;
+    private Map<Offering, StudentPartition> iOfferingPartitions = null;
+    private ThreadLocal<StudentPartition> iPartition = null;
 
     /**
      * Constructor
@@ -111,6 +137,7 @@ public class BranchBoundSelection implements NeighbourSelection<Request, Enrollm
     public BranchBoundSelection(DataProperties properties) {
         iTimeout = properties.getPropertyInt("Neighbour.BranchAndBoundTimeout", iTimeout);
         iMinimizePenalty = properties.getPropertyBoolean("Neighbour.BranchAndBoundMinimizePenalty", iMinimizePenalty);
+        iOverlapMatrix = properties.getPropertyBoolean("Neighbour.BranchAndBoundOverlapMatrix", iOverlapMatrix);
         if (iMinimizePenalty)
             sLog.info("Overall penalty is going to be minimized (together with the maximization of the number of assigned requests and minimization of distance conflicts).");
         if (properties.getProperty("Neighbour.BranchAndBoundOrder") != null) {
@@ -123,6 +150,7 @@ public class BranchBoundSelection implements NeighbourSelection<Request, Enrollm
         }
         iDistConfWeight = properties.getPropertyDouble("DistanceConflict.Weight", iDistConfWeight);
         iBranchWhenSelectedHasNoConflict = properties.getPropertyBoolean("Students.BranchWhenSelectedHasNoConflict", iBranchWhenSelectedHasNoConflict);
+        iPartitionStudents = properties.getPropertyBoolean("Neighbour.BranchAndBoundPartitions", iPartitionStudents);
     }
 
     /**
@@ -132,15 +160,22 @@ public class BranchBoundSelection implements NeighbourSelection<Request, Enrollm
      */
     public void init(Solver<Request, Enrollment> solver, String name) {
         setModel((StudentSectioningModel) solver.currentSolution().getModel());
+        iSolver = solver;
+        if (iPartitionStudents && solver instanceof ParallelSolver && solver.hasSingleSolution() && solver.getProperties().getPropertyInt("Parallel.NrSolvers", 4) > 1)
+            createPartitions();
         Progress.getInstance(solver.currentSolution().getModel()).setPhase(name, iModel.getStudents().size());
     }
     
-    public void setModel(StudentSectioningModel model) {
+    public synchronized void setModel(StudentSectioningModel model) {
         iModel = model;
         List<Student> students = iOrder.order(iModel.getStudents());
         iStudents = new LinkedList<Student>(students);
         iTimeOverlaps = model.getTimeOverlaps();
         iDistanceConflict = model.getDistanceConflict();
+        iSolver = null;
+        iPartitions = null; iClaimedPartitions = null;
+        iOfferingParent = null; iOfferingPartitions = null;
+        iPartition = null;
     }
     
     @Override
@@ -148,12 +183,157 @@ public class BranchBoundSelection implements NeighbourSelection<Request, Enrollm
         init(solver, "Branch&bound...");
     }
     
+    /**
+     * Root of the given offering in the offering union-find structure (with path compression)
+     */
+    private Offering root(Offering offering) {
+        Offering root = offering;
+        while (true) {
+            Offering parent = iOfferingParent.get(root);
+            if (parent == null) {
+                iOfferingParent.put(root, root);
+                break;
+            }
+            if (parent.equals(root)) break;
+            root = parent;
+        }
+        while (!offering.equals(root)) {
+            Offering parent = iOfferingParent.put(offering, root);
+            offering = parent;
+        }
+        return root;
+    }
+    
+    /**
+     * Root offering of the given student, null if the student has no course requests
+     */
+    private Offering root(Student student) {
+        Offering root = null;
+        for (Request request: student.getRequests()) {
+            if (!(request instanceof CourseRequest)) continue;
+            for (Course course: ((CourseRequest) request).getCourses()) {
+                Offering other = root(course.getOffering());
+                if (root == null)
+                    root = other;
+                else if (!root.equals(other))
+                    iOfferingParent.put(other, root);
+            }
+        }
+        return root;
+    }
+    
+    /**
+     * Split the students (in the order in which they are to be sectioned) into partitions, so that students of
+     * two different partitions do not request any common offering (and hence cannot conflict with each other in
+     * any section, configuration, or course limit). Partitions are sectioned in the order of their first student.
+     */
+    protected synchronized void createPartitions() {
+        iOfferingParent = new HashMap<Offering, Offering>();
+        for (Student student: iStudents)
+            root(student);
+        iOfferingPartitions = new HashMap<Offering, StudentPartition>();
+        iPartitions = new LinkedList<StudentPartition>();
+        iClaimedPartitions = new HashSet<StudentPartition>();
+        iPartition = new ThreadLocal<StudentPartition>();
+        for (Student student: iStudents)
+            getPartition(student).iStudents.add(student);
+        sLog.debug("Students split into " + iPartitions.size() + " partitions.");
+    }
+    
+    /**
+     * Partition of the given student, a new partition is created (and queued) if needed
+     */
+    private StudentPartition getPartition(Student student) {
+        Offering root = root(student);
+        StudentPartition partition = (root == null ? null : iOfferingPartitions.get(root));
+        if (partition == null) {
+            partition = new StudentPartition();
+            if (root != null) iOfferingPartitions.put(root, partition);
+            iPartitions.add(partition);
+            partition.iQueued = true;
+        }
+        return partition;
+    }
+    
+    /**
+     * Release a partition, it is queued again when it still contains some students
+     */
+    private void release(StudentPartition partition) {
+        iClaimedPartitions.remove(partition);
+        partition.iThread = null;
+        if (!partition.iStudents.isEmpty() && !partition.iQueued) {
+            iPartitions.add(partition);
+            partition.iQueued = true;
+        }
+        notifyAll();
+    }
+    
+    /**
+     * Next student to be sectioned.<br>
+     * <br>
+     * When the students are partitioned (see Neighbour.BranchAndBoundPartitions), each thread claims a partition
+     * and takes its students until there are none left. A partition is released when its thread asks for the next
+     * student, i.e., after the neighbour of the last student has been assigned by the solver, so that no two threads
+     * section students of the same offering at the same time. When there is no partition available, the thread waits
+     * until all the claimed partitions are released (students of a failed neighbour can be put back, see
+     * {@link BranchBoundSelection#addStudent(Student)}).
+     * @return next student, null if there are no more students to section
+     */
     protected synchronized Student nextStudent() {
-        return iStudents.poll();
+        if (iPartitions == null) return iStudents.poll();
+        StudentPartition partition = iPartition.get();
+        if (partition != null) {
+            Student student = partition.iStudents.poll();
+            if (student != null) return student;
+            iPartition.remove();
+            release(partition);
+        }
+        while (true) {
+            partition = iPartitions.poll();
+            if (partition != null) {
+                partition.iQueued = false;
+                Student student = partition.iStudents.poll();
+                if (student == null) continue;
+                partition.iThread = Thread.currentThread();
+                iClaimedPartitions.add(partition);
+                iPartition.set(partition);
+                return student;
+            }
+            if (iClaimedPartitions.isEmpty() || iSolver.isStop()) return null;
+            // release partitions of threads that have already finished
+            for (StudentPartition claimed: new ArrayList<StudentPartition>(iClaimedPartitions))
+                if (!claimed.iThread.isAlive()) release(claimed);
+            if (!iPartitions.isEmpty()) continue;
+            try {
+                wait(100);
+            } catch (InterruptedException e) {
+                return null;
+            }
+        }
     }
     
     public synchronized void addStudent(Student student) {
-        if (iStudents != null) iStudents.add(student);
+        if (iPartitions != null) {
+            StudentPartition partition = getPartition(student);
+            partition.iStudents.add(student);
+            if (partition.iThread == null && !partition.iQueued) {
+                iPartitions.add(partition);
+                partition.iQueued = true;
+            }
+            notifyAll();
+        } else if (iStudents != null) iStudents.add(student);
+    }
+    
+    /**
+     * A partition of students that do not share any offering with the students of the other partitions
+     */
+    private static class StudentPartition {
+        /** Students that are yet to be sectioned */
+        private Queue<Student> iStudents = new LinkedList<Student>();
+        /** Thread that is sectioning the students of this partition, null if not claimed */
+        private Thread iThread = null;
+        /** True if the partition is in the queue of the available partitions */
+        private boolean iQueued = false;
     }
 
     /**
@@ -202,6 +382,8 @@ public class BranchBoundSelection implements NeighbourSelection<Request, Enrollm
         protected double iBestValue;
         /** Value cache */
         protected HashMap<CourseRequest, List<Enrollment>> iValues;
+        /** Overlaps between the cached values (null when disabled) */
+        protected EnrollmentOverlapMatrix iOverlaps;
         /** Current assignment */
         protected Assignment<Request, Enrollment> iCurrentAssignment;
 
@@ -238,6 +420,7 @@ public class BranchBoundSelection implements NeighbourSelection<Request, Enrollm
             
             
             iValues = new HashMap<CourseRequest, List<Enrollment>>();
+            iOverlaps = (iOverlapMatrix ? new EnrollmentOverlapMatrix() : null);
             backTrack(0);
             iT1 = JProf.currentTimeMillis();
             if (iBestAssignment == null)
@@ -505,10 +688,19 @@ public class BranchBoundSelection implements NeighbourSelection<Request, Enrollm
                 }) != null) return true;
             }
             for (int i = 0; i < iAssignment.length; i++)
-                if (iAssignment[i] != null && i != idx && iAssignment[i].isOverlapping(enrollment))
+                if (iAssignment[i] != null && i != idx && isOverlapping(iAssignment[i], enrollment))
                     return true;
             return false;
         }
+        
+        /** True if the two enrollments are overlapping, using the overlap matrix when available
+         * @param e1 first enrollment
+         * @param e2 second enrollment
+         * @return true if the two enrollments are overlapping
+         **/
+        protected boolean isOverlapping(Enrollment e1, Enrollment e2) {
+            return (iOverlaps == null ? e1.isOverlapping(e2) : iOverlaps.isOverlapping(e1, e2));
+        }
 
         /** First conflicting enrollment 
          * @param idx index of request
@@ -528,7 +720,7 @@ public class BranchBoundSelection implements NeighbourSelection<Request, Enrollm
             for (int i = 0; i < iAssignment.length; i++) {
                 if (iAssignment[i] == null || i == idx)
                     continue;
-                if (iAssignment[i].isOverlapping(enrollment))
+                if (isOverlapping(iAssignment[i], enrollment))
                     return iAssignment[i];
             }
             return null;
@@ -701,6 +893,8 @@ public class BranchBoundSelection implements NeighbourSelection<Request, Enrollm
                 if (values == null) {
                     values = values(courseRequest);
                     iValues.put(courseRequest, values);
+                    if (iOverlaps != null)
+                        iOverlaps.register(values);
                 }
             } else {
                 values = request.computeEnrollments(iCurrentAssignment);
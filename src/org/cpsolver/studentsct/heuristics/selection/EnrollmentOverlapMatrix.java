@@ -0,0 +1,141 @@
+package org.cpsolver.studentsct.heuristics.selection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cpsolver.studentsct.model.Enrollment;
+
+/**
+ * Pairwise overlap matrix of the enrollments of a single student, used by the branch &amp; bound
+ * selections to avoid repeated {@link Enrollment#isOverlapping(Enrollment)} checks. Each registered
+ * enrollment gets a compact id (enrollments are matched by identity, so the registered enrollments
+ * are expected to come from a value cache that lives as long as the matrix). For each id, two bit
+ * masks are kept: pairs that have been already computed and pairs that are overlapping. The overlap
+ * of a pair is computed at most once, any further check is a single bit test.<br>
+ * <br>
+ * Enrollments that have not been registered (e.g., free time enrollments that are re-computed each
+ * time) are checked directly using {@link Enrollment#isOverlapping(Enrollment)}.
+ *
+ * @version StudentSct 1.3 (Student Sectioning)<br>
+ *          Copyright (C) 2014 Tomas Muller<br>
+ *          <a href="mailto:muller@unitime.org">muller@unitime.org</a><br>
+ *          <a href="http://muller.unitime.org">http://muller.unitime.org</a><br>
+ * <br>
+ *          This library is free software; you can redistribute it and/or modify
+ *          it under the terms of the GNU Lesser General Public License as
+ *          published by the Free Software Foundation; either version 3 of the
+ *          License, or (at your option) any later version. <br>
+ * <br>
+ *          This library is distributed in the hope that it will be useful, but
+ *          WITHOUT ANY WARRANTY; without even the implied warranty of
+ *          MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *          Lesser General Public License for more details. <br>
+ * <br>
+ *          You should have received a copy of the GNU Lesser General Public
+ *          License along with this library; if not see
+ *          <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ */
+public class EnrollmentOverlapMatrix {
+    private Map<Enrollment, Integer> iIds = new IdentityHashMap<Enrollment, Integer>();
+    private List<Enrollment> iEnrollments = new ArrayList<Enrollment>();
+    private long[][] iComputed = new long[64][];
+    private long[][] iOverlaps = new long[64][];
+
+    /**
+     * Register enrollments, each enrollment that is not yet registered gets a new id
+     * @param enrollments enrollments to register (e.g., cached values of a course request)
+     */
+    public void register(Collection<Enrollment> enrollments) {
+        for (Enrollment enrollment: enrollments)
+            register(enrollment);
+    }
+
+    /**
+     * Register an enrollment
+     * @param enrollment enrollment to register
+     * @return id of the enrollment
+     */
+    public int register(Enrollment enrollment) {
+        Integer id = iIds.get(enrollment);
+        if (id != null) return id;
+        id = iEnrollments.size();
+        iEnrollments.add(enrollment);
+        iIds.put(enrollment, id);
+        if (id >= iComputed.length) {
+            iComputed = Arrays.copyOf(iComputed, 2 * iComputed.length);
+            iOverlaps = Arrays.copyOf(iOverlaps, 2 * iOverlaps.length);
+        }
+        return id;
+    }
+
+    /**
+     * Id of an enrollment
+     * @param enrollment an enrollment
+     * @return id of the enrollment, -1 if the enrollment has not been registered
+     */
+    public int getId(Enrollment enrollment) {
+        Integer id = iIds.get(enrollment);
+        return (id == null ? -1 : id.intValue());
+    }
+
+    /**
+     * Number of registered enrollments
+     * @return number of registered enrollments
+     */
+    public int size() {
+        return iEnrollments.size();
+    }
+
+    /**
+     * Check whether the two enrollments are overlapping. The result is the same as of
+     * {@link Enrollment#isOverlapping(Enrollment)}, but it is only computed once for each pair
+     * of registered enrollments.
+     * @param e1 first enrollment
+     * @param e2 second enrollment
+     * @return true if the two enrollments are overlapping
+     */
+    public boolean isOverlapping(Enrollment e1, Enrollment e2) {
+        int id1 = getId(e1), id2 = getId(e2);
+        if (id1 < 0 || id2 < 0)
+            return e1.isOverlapping(e2);
+        return isOverlapping(id1, id2);
+    }
+
+    /**
+     * Check whether the two registered enrollments are overlapping
+     * @param id1 id of the first enrollment
+     * @param id2 id of the second enrollment
+     * @return true if the two enrollments are overlapping
+     */
+    public boolean isOverlapping(int id1, int id2) {
+        long[] computed = iComputed[id1];
+        int word = (id2 >> 6);
+        long bit = (1l << (id2 & 63));
+        if (computed != null && word < computed.length && (computed[word] & bit) != 0)
+            return (iOverlaps[id1][word] & bit) != 0;
+        boolean overlap = iEnrollments.get(id1).isOverlapping(iEnrollments.get(id2));
+        set(id1, id2, overlap);
+        set(id2, id1, overlap);
+        return overlap;
+    }
+
+    /**
+     * Remember the overlap of the given pair
+     */
+    private void set(int id1, int id2, boolean overlap) {
+        int word = (id2 >> 6);
+        long[] computed = iComputed[id1];
+        if (computed == null || word >= computed.length) {
+            int length = Math.max(word + 1, (iEnrollments.size() + 63) >> 6);
+            iComputed[id1] = computed = (computed == null ? new long[length] : Arrays.copyOf(computed, length));
+            iOverlaps[id1] = (iOverlaps[id1] == null ? new long[length] : Arrays.copyOf(iOverlaps[id1], length));
+        }
+        long bit = (1l << (id2 & 63));
+        computed[word] |= bit;
+        if (overlap) iOverlaps[id1][word] |= bit;
+    }
+}
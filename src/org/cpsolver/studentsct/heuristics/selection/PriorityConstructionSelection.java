@@ -1,15 +1,18 @@
 package org.cpsolver.studentsct.heuristics.selection;
 
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
 
 import org.cpsolver.ifs.assignment.Assignment;
 import org.cpsolver.ifs.heuristics.NeighbourSelection;
 import org.cpsolver.ifs.model.Neighbour;
 import org.cpsolver.ifs.solution.Solution;
+import org.cpsolver.ifs.solver.ParallelSolver;
 import org.cpsolver.ifs.solver.Solver;
 import org.cpsolver.ifs.util.DataProperties;
 import org.cpsolver.ifs.util.Progress;
@@ -29,6 +32,17 @@ import org.cpsolver.studentsct.model.Student;
  * get more requests assigned in a whole cycle. Run the selection only once (at the 
  * beginning), the selection falls back to {@link BranchBoundSelection} if there are already
  * some requests assigned at the time of initialization.
+ * <br>
+ * <br>
+ * When the {@link ParallelSolver} is used with more than one thread working on a single solution
+ * (and Neighbour.PriorityConstructionParallel is true, which is the default; the single solution queue of the
+ * parallel solver is not supported), students of a cycle are
+ * sectioned by all the threads concurrently. Each thread takes the next student in the order, the computed
+ * schedules are committed optimistically by the solver (a schedule that is in a conflict with a schedule
+ * committed by another thread in the meantime is rejected). A student whose schedule has been rejected is
+ * put back and sectioned again, before any student that comes after it in the order (see
+ * {@link PriorityConstructionSelection#addStudent(Student)}). The next cycle only starts when all the
+ * students of the current cycle have been sectioned.
  * 
  * <br>
  * <br>
@@ -56,14 +70,19 @@ import org.cpsolver.studentsct.model.Student;
 public class PriorityConstructionSelection implements NeighbourSelection<Request, Enrollment> {
     private static org.apache.log4j.Logger sLog = org.apache.log4j.Logger.getLogger(PriorityConstructionSelection.class);
     private static DecimalFormat sDF = new DecimalFormat("0.00");
-    private int iCycle = 0;
+    private volatile int iCycle = 0;
     private int iMaxCycles = 7;
-    private boolean iImproved = false;
+    private volatile boolean iImproved = false;
     private boolean iSkip = false;
     private BranchBoundSelection iBranchBoundSelection = null;
     protected Iterator<Student> iStudentsEnumeration = null;
     protected StudentOrder iOrder = new StudentChoiceRealFirstOrder();
     protected List<Student> iStudents = null;
+    private boolean iParallel = true;
+    private Solver<Request, Enrollment> iSolver = null;
+    private Map<Student, Integer> iPositions = null;
+    private TreeSet<Integer> iRemaining = null;
+    private Map<Thread, Student> iInProgress = null;
 
     /**
      * Constructor
@@ -82,21 +101,34 @@ public class PriorityConstructionSelection implements NeighbourSelection<Request
             }
         }
         iMaxCycles = properties.getPropertyInteger("Neighbour.PriorityConstructionCycles", iMaxCycles);
+        iParallel = properties.getPropertyBoolean("Neighbour.PriorityConstructionParallel", iParallel);
     }
     
     /**
      * Initialize
      */
     @Override
-    public void init(Solver<Request, Enrollment> solver) {
+    public synchronized void init(Solver<Request, Enrollment> solver) {
         iCycle = 1;
         iImproved = false;
+        iSolver = solver;
+        iPositions = null; iRemaining = null; iInProgress = null;
         iSkip = !solver.currentSolution().getModel().assignedVariables(solver.currentSolution().getAssignment()).isEmpty();
         if (iSkip) {
             iBranchBoundSelection.init(solver);
         } else {
             iStudents = iOrder.order(((StudentSectioningModel) solver.currentSolution().getModel()).getStudents());
             iStudentsEnumeration = iStudents.iterator();
+            if (iParallel && solver instanceof ParallelSolver && solver.hasSingleSolution() && Math.abs(solver.getProperties().getPropertyInt("Parallel.NrSolvers", 4)) > 1 &&
+                    !solver.getProperties().getPropertyBoolean("ParallelSolver.SingleSolutionQueue", false)) {
+                iPositions = new HashMap<Student, Integer>();
+                iRemaining = new TreeSet<Integer>();
+                iInProgress = new HashMap<Thread, Student>();
+                for (int i = 0; i < iStudents.size(); i++) {
+                    iPositions.put(iStudents.get(i), i);
+                    iRemaining.add(i);
+                }
+            }
             iBranchBoundSelection.init(solver, "Construction[" + iCycle + "]...");
         }
     }
@@ -140,8 +172,62 @@ public class PriorityConstructionSelection implements NeighbourSelection<Request
                 "TV:" + sDF.format(-tv) + " (" + sDF.format(-100.0 * tv / m.getStudents().size()) + "%)");
         
         iStudentsEnumeration = iStudents.iterator();
+        if (iRemaining != null)
+            for (int i = 0; i < iStudents.size(); i++)
+                iRemaining.add(i);
         Progress.getInstance(solution.getModel()).setPhase("Construction[" + iCycle + "]...", iStudents.size());
     }
+    
+    /**
+     * Next student to be sectioned when the students are sectioned concurrently. The student that has been
+     * previously taken by the calling thread is considered done (its schedule has been committed or rejected by
+     * the solver in the meantime). When there are no more students in the current cycle, the thread waits until
+     * all the students taken by the other threads are done, the next cycle is started afterwards.
+     * @param solution current solution
+     * @return next student, null if the construction is finished
+     */
+    protected synchronized Student nextStudent(Solution<Request, Enrollment> solution) {
+        if (iInProgress.remove(Thread.currentThread()) != null)
+            notifyAll();
+        while (true) {
+            if (!iRemaining.isEmpty()) {
+                Student student = iStudents.get(iRemaining.pollFirst());
+                iInProgress.put(Thread.currentThread(), student);
+                return student;
+            }
+            if (iSolver.isStop()) return null;
+            // students of threads that have already finished are done
+            for (Thread thread: new ArrayList<Thread>(iInProgress.keySet()))
+                if (!thread.isAlive()) iInProgress.remove(thread);
+            if (iInProgress.isEmpty()) {
+                if (iCycle == iMaxCycles || !iImproved) return null;
+                nextCycle(solution);
+                continue;
+            }
+            try {
+                wait(100);
+            } catch (InterruptedException e) {
+                return null;
+            }
+        }
+    }
+    
+    /**
+     * Put back a student whose schedule has been rejected by the solver (when the students are sectioned
+     * concurrently), the student is sectioned again before any other student that comes after it in the order.
+     * @param student a student
+     */
+    public synchronized void addStudent(Student student) {
+        if (iSkip) {
+            iBranchBoundSelection.addStudent(student);
+        } else if (iRemaining != null) {
+            Integer position = iPositions.get(student);
+            if (position != null) {
+                iRemaining.add(position);
+                notifyAll();
+            }
+        }
+    }
 
     /**
      * Select neighbor. All students are taken, one by one in a random order.
@@ -151,6 +237,16 @@ public class PriorityConstructionSelection implements NeighbourSelection<Request
     public Neighbour<Request, Enrollment> selectNeighbour(Solution<Request, Enrollment> solution) {
         if (iSkip)
             return iBranchBoundSelection.selectNeighbour(solution);
+        if (iRemaining != null) {
+            Student student = null;
+            while ((student = nextStudent(solution)) != null) {
+                Progress.getInstance(solution.getModel()).incProgress();
+                BranchBoundNeighbour neighbour = iBranchBoundSelection.getSelection(solution.getAssignment(), student).select();
+                if (neighbour != null)
+                    return new ConstructionNeighbour(neighbour);
+            }
+            return null;
+        }
         Neighbour<Request, Enrollment> n = branchAndBound(solution);
         if (n == null) {
             if (iCycle == iMaxCycles || !iImproved) return null;
@@ -171,6 +267,14 @@ public class PriorityConstructionSelection implements NeighbourSelection<Request
         public ConstructionNeighbour(BranchBoundNeighbour neighbour) {
             iNeighbour = neighbour;
         }
+        
+        /**
+         * Selected student
+         * @return student
+         */
+        public Student getStudent() {
+            return iNeighbour.getStudent();
+        }
 
         /**
          * Only assign given number of assignments (from the first priority down).
@@ -99,7 +99,7 @@ public class RndUnProblStudSelection extends RandomUnassignmentSelection {
      */
     @Override
     public synchronized Neighbour<Request, Enrollment> selectNeighbour(Solution<Request, Enrollment> solution) {
-        if (!iProblemStudents.isEmpty() && Math.random() < iRandom) {
+        if (!iProblemStudents.isEmpty() && ToolBox.random() < iRandom) {
             Student student = ToolBox.random(iProblemStudents);
             iProblemStudents.remove(student);
             return new UnassignStudentNeighbour(student, solution.getAssignment());
@@ -72,6 +72,7 @@ public class Config extends AbstractClassWithContext<Request, Enrollment, Config
         iName = name;
         iOffering = offering;
         iOffering.getConfigs().add(this);
+        iOffering.incVersion();
     }
 
     /** Configuration id 
@@ -321,6 +322,14 @@ public class Config extends AbstractClassWithContext<Request, Enrollment, Config
         return getContext(assignment).getEnrollments();
     }
     
+    /** Assigned enrollments of this configuration ordered by their value, see {@link EnrollmentPriorityIndex}
+     * @param assignment current assignment
+     * @return priority index of the assigned enrollments
+     **/
+    public EnrollmentPriorityIndex getPriorityIndex(Assignment<Request, Enrollment> assignment) {
+        return getContext(assignment).getPriorityIndex();
+    }
+    
     /**
      * Enrollment weight -- weight of all requests which have an enrollment that
      * contains this config, excluding the given one. See
@@ -381,6 +390,7 @@ public class Config extends AbstractClassWithContext<Request, Enrollment, Config
         private double iMinEnrollmentWeight = 0.0;
         private Set<Enrollment> iEnrollments = null;
         private boolean iReadOnly = false;
+        private EnrollmentPriorityIndex iPriorityIndex = null;
 
         public ConfigContext(Assignment<Request, Enrollment> assignment) {
             iEnrollments = new HashSet<Enrollment>();
@@ -409,6 +419,8 @@ public class Config extends AbstractClassWithContext<Request, Enrollment, Config
                 iEnrollments = new HashSet<Enrollment>(iEnrollments);
                 iReadOnly = false;
             }
+            if (iPriorityIndex != null)
+                iPriorityIndex.add(enrollment);
             if (iEnrollments.isEmpty()) {
                 iMinEnrollmentWeight = iMaxEnrollmentWeight = enrollment.getRequest().getWeight();
             } else {
@@ -429,6 +441,8 @@ public class Config extends AbstractClassWithContext<Request, Enrollment, Config
                 iEnrollments = new HashSet<Enrollment>(iEnrollments);
                 iReadOnly = false;
             }
+            if (iPriorityIndex != null)
+                iPriorityIndex.remove(enrollment);
             if (iEnrollments.remove(enrollment)) {
                 iEnrollmentTotalWeight -= enrollment.getRequest().getWeight();
                 if (enrollment.getReservation() == null || !enrollment.getReservation().canBatchAssignOverLimit())
@@ -505,6 +519,15 @@ public class Config extends AbstractClassWithContext<Request, Enrollment, Config
         public Set<Enrollment> getEnrollments() {
             return iEnrollments;
         }
+        
+        /** Assigned enrollments ordered by their value, created on the first call
+         * @return priority index of the assigned enrollments
+         **/
+        public EnrollmentPriorityIndex getPriorityIndex() {
+            if (iPriorityIndex == null)
+                iPriorityIndex = new EnrollmentPriorityIndex(iEnrollments);
+            return iPriorityIndex;
+        }
 
         /**
          * Maximal weight of a single enrollment in the config
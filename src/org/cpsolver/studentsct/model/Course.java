@@ -231,6 +231,14 @@ public class Course extends AbstractClassWithContext<Request, Enrollment, Course
         return getContext(assignment).getEnrollments();
     }
     
+    /** Assigned enrollments of this course ordered by their value, see {@link EnrollmentPriorityIndex}
+     * @param assignment current assignment
+     * @return priority index of the assigned enrollments
+     **/
+    public EnrollmentPriorityIndex getPriorityIndex(Assignment<Request, Enrollment> assignment) {
+        return getContext(assignment).getPriorityIndex();
+    }
+    
     /**
      * Maximal weight of a single enrollment in the course
      * @param assignment current assignment
@@ -303,6 +311,7 @@ public class Course extends AbstractClassWithContext<Request, Enrollment, Course
         private double iMaxEnrollmentWeight = 0.0;
         private double iMinEnrollmentWeight = 0.0;
         private boolean iReadOnly = false;
+        private EnrollmentPriorityIndex iPriorityIndex = null;
 
         public CourseContext(Assignment<Request, Enrollment> assignment) {
             iEnrollments = new HashSet<Enrollment>();
@@ -327,6 +336,8 @@ public class Course extends AbstractClassWithContext<Request, Enrollment, Course
                 iEnrollments = new HashSet<Enrollment>(iEnrollments);
                 iReadOnly = false;
             }
+            if (iPriorityIndex != null)
+                iPriorityIndex.add(enrollment);
             if (iEnrollments.isEmpty()) {
                 iMinEnrollmentWeight = iMaxEnrollmentWeight = enrollment.getRequest().getWeight();
             } else {
@@ -343,6 +354,8 @@ public class Course extends AbstractClassWithContext<Request, Enrollment, Course
                 iEnrollments = new HashSet<Enrollment>(iEnrollments);
                 iReadOnly = false;
             }
+            if (iPriorityIndex != null)
+                iPriorityIndex.remove(enrollment);
             if (iEnrollments.remove(enrollment) && (enrollment.getReservation() == null || !enrollment.getReservation().canBatchAssignOverLimit()))
                 iEnrollmentWeight -= enrollment.getRequest().getWeight();
             if (iEnrollments.isEmpty()) {
@@ -400,6 +413,15 @@ public class Course extends AbstractClassWithContext<Request, Enrollment, Course
             return iEnrollments;
         }
         
+        /** Assigned enrollments ordered by their value, created on the first call
+         * @return priority index of the assigned enrollments
+         **/
+        public EnrollmentPriorityIndex getPriorityIndex() {
+            if (iPriorityIndex == null)
+                iPriorityIndex = new EnrollmentPriorityIndex(iEnrollments);
+            return iPriorityIndex;
+        }
+        
         /**
          * Maximal weight of a single enrollment in the course
          * @return maximal enrollment weight
@@ -55,6 +55,7 @@ public class CourseRequest extends Request {
     private boolean iWaitlist = false;
     private Long iTimeStamp = null;
     private Double iCachedMinPenalty = null, iCachedMaxPenalty = null;
+    private volatile SectionCombinations iSectionCombinations = null;
     public static boolean sSameTimePrecise = false;
     private Set<RequestGroup> iRequestGroups = new HashSet<RequestGroup>();
 
@@ -145,10 +146,19 @@ public class CourseRequest extends Request {
     }
 
     /**
-     * Return all possible enrollments.
+     * Return all possible enrollments.<br>
+     * <br>
+     * Unless the domain size is limited (see {@link StudentSectioningModel#getMaxDomainSize()}), all the combinations of sections
+     * that do not depend on the current assignment (sections that are not cancelled, do not overlap in time, follow the parent-child
+     * relations, and match the initial enrollment when it is to be kept) are computed only once and cached on the request. The enrollments
+     * are then created by a pass over the cached combinations, checking the availability of each section (and configuration) only once.
+     * Both this method and {@link CourseRequest#getAvaiableEnrollments(Assignment)} use the cache.
      */
     @Override
     public List<Enrollment> computeEnrollments(Assignment<Request, Enrollment> assignment) {
+        SectionCombinations combinations = getSectionCombinations();
+        if (combinations != null)
+            return computeEnrollments(assignment, combinations, false);
         List<Enrollment> ret = new ArrayList<Enrollment>();
         int idx = 0;
         for (Course course : iCourses) {
@@ -241,46 +251,8 @@ public class CourseRequest extends Request {
             boolean random, int limit) {
         if (limit > 0 && enrollments.size() >= limit)
             return;
-        if (idx == 0) { // run only once for each configuration
-            boolean canOverLimit = false;
-            if (availableOnly) {
-                for (Reservation r: getReservations(course)) {
-                    if (!r.canBatchAssignOverLimit()) continue;
-                    if (!r.getConfigs().isEmpty() && !r.getConfigs().contains(config)) continue;
-                    if (r.getReservedAvailableSpace(assignment, this) < getWeight()) continue;
-                    canOverLimit = true; break;
-                }
-            }
-            if (!canOverLimit) {
-                if (availableOnly && config.getLimit() >= 0 && ConfigLimit.getEnrollmentWeight(assignment, config, this) > config.getLimit())
-                    return;
-                if (availableOnly && course.getLimit() >= 0 && CourseLimit.getEnrollmentWeight(assignment, course, this) > course.getLimit())
-                    return;
-                if (config.getOffering().hasReservations()) {
-                    boolean hasReservation = false, hasConfigReservation = false, reservationMustBeUsed = false;
-                    for (Reservation r: getReservations(course)) {
-                        if (r.mustBeUsed()) reservationMustBeUsed = true;
-                        if (availableOnly && r.getReservedAvailableSpace(assignment, this) < getWeight()) continue;
-                        if (r.getConfigs().isEmpty()) {
-                            hasReservation = true;
-                        } else if (r.getConfigs().contains(config)) {
-                            hasReservation = true;
-                            hasConfigReservation = true;
-                        }
-                    }
-                    if (!hasConfigReservation && config.getTotalUnreservedSpace() < getWeight())
-                        return;
-                    if (!hasReservation && config.getOffering().getTotalUnreservedSpace() < getWeight())
-                        return;
-                    if (availableOnly && !hasReservation && config.getOffering().getUnreservedSpace(assignment, this) < getWeight())
-                        return;
-                    if (availableOnly && !hasConfigReservation && config.getUnreservedSpace(assignment, this) < getWeight())
-                        return;
-                    if (!hasReservation && reservationMustBeUsed)
-                        return;
-                }
-            }
-        }
+        if (idx == 0 && !isAvailable(assignment, course, config, availableOnly)) // run only once for each configuration
+            return;
         if (config.getSubparts().size() == idx) {
             if (skipSameTime && sSameTimePrecise) {
                 boolean waitListedOrSelected = false;
@@ -299,49 +271,7 @@ public class CourseRequest extends Request {
                     }
                 }
             }
-            if (!config.getOffering().hasReservations()) {
-                enrollments.add(new Enrollment(this, priority, null, config, new HashSet<SctAssignment>(sections), null));
-            } else {
-                Enrollment e = new Enrollment(this, priority, null, config, new HashSet<SctAssignment>(sections), null);
-                boolean mustHaveReservation = config.getOffering().getTotalUnreservedSpace() < getWeight();
-                boolean mustHaveConfigReservation = config.getTotalUnreservedSpace() < getWeight();
-                boolean mustHaveSectionReservation = false;
-                for (Section s: sections) {
-                    if (s.getTotalUnreservedSpace() < getWeight()) {
-                        mustHaveSectionReservation = true;
-                        break;
-                    }
-                }
-                boolean canOverLimit = false;
-                if (availableOnly) {
-                    for (Reservation r: getReservations(course)) {
-                        if (!r.canBatchAssignOverLimit() || !r.isIncluded(e)) continue;
-                        if (r.getReservedAvailableSpace(assignment, this) < getWeight()) continue;
-                        enrollments.add(new Enrollment(this, priority, null, config, new HashSet<SctAssignment>(sections), r));
-                        canOverLimit = true;
-                    }
-                }
-                if (!canOverLimit) {
-                    boolean reservationMustBeUsed = false;
-                    reservations: for (Reservation r: (availableOnly ? getSortedReservations(assignment, course) : getReservations(course))) {
-                        if (r.mustBeUsed()) reservationMustBeUsed = true;
-                        if (!r.isIncluded(e)) continue;
-                        if (availableOnly && r.getReservedAvailableSpace(assignment, this) < getWeight()) continue;
-                        if (mustHaveConfigReservation && r.getConfigs().isEmpty()) continue;
-                        if (mustHaveSectionReservation)
-                            for (Section s: sections)
-                                if (r.getSections(s.getSubpart()) == null && s.getTotalUnreservedSpace() < getWeight()) continue reservations;
-                        enrollments.add(new Enrollment(this, priority, null, config, new HashSet<SctAssignment>(sections), r));
-                        if (availableOnly) return; // only one available reservation suffice (the best matching one)
-                    }
-                    // a case w/o reservation
-                    if (!(mustHaveReservation || mustHaveConfigReservation || mustHaveSectionReservation) &&
-                        !(availableOnly && config.getOffering().getUnreservedSpace(assignment, this) < getWeight()) &&
-                        !reservationMustBeUsed) {
-                        enrollments.add(new Enrollment(this, (getReservations(course).isEmpty() ? 0 : 1) + priority, null, config, new HashSet<SctAssignment>(sections), null));
-                    }
-                }
-            }
+            addEnrollments(assignment, enrollments, priority, course, config, sections, availableOnly);
         } else {
             Subpart subpart = config.getSubparts().get(idx);
             HashSet<TimeLocation> times = (skipSameTime ? new HashSet<TimeLocation>() : null);
@@ -364,49 +294,8 @@ public class CourseRequest extends Request {
                     continue;
                 if (selectedOnly && !isSelected(section))
                     continue;
-                if (!getStudent().isAvailable(section)) {
-                    boolean canOverlap = false;
-                    for (Reservation r: getReservations(course)) {
-                        if (!r.isAllowOverlap()) continue;
-                        if (r.getSections(subpart) != null && !r.getSections(subpart).contains(section)) continue;
-                        if (r.getReservedAvailableSpace(assignment, this) < getWeight()) continue;
-                        canOverlap = true; break;
-                    }
-                    if (!canOverlap) continue;
-                }
-                boolean canOverLimit = false;
-                if (availableOnly) {
-                    for (Reservation r: getReservations(course)) {
-                        if (!r.canBatchAssignOverLimit()) continue;
-                        if (r.getSections(subpart) != null && !r.getSections(subpart).contains(section)) continue;
-                        if (r.getReservedAvailableSpace(assignment, this) < getWeight()) continue;
-                        canOverLimit = true; break;
-                    }
-                }
-                if (!canOverLimit) {
-                    if (availableOnly && section.getLimit() >= 0
-                            && SectionLimit.getEnrollmentWeight(assignment, section, this) > section.getLimit())
-                        continue;
-                    if (config.getOffering().hasReservations()) {
-                        boolean hasReservation = false, hasSectionReservation = false, reservationMustBeUsed = false;
-                        for (Reservation r: getReservations(course)) {
-                            if (r.mustBeUsed()) reservationMustBeUsed = true;
-                            if (availableOnly && r.getReservedAvailableSpace(assignment, this) < getWeight()) continue;
-                            if (r.getSections(subpart) == null) {
-                                hasReservation = true;
-                            } else if (r.getSections(subpart).contains(section)) {
-                                hasReservation = true;
-                                hasSectionReservation = true;
-                            }
-                        }
-                        if (!hasSectionReservation && section.getTotalUnreservedSpace() < getWeight())
-                            continue;
-                        if (availableOnly && !hasSectionReservation && section.getUnreservedSpace(assignment, this) < getWeight())
-                            continue;
-                        if (!hasReservation && reservationMustBeUsed)
-                            continue;
-                    }
-                }
+                if (!isAvailable(assignment, course, section, availableOnly))
+                    continue;
                 if (skipSameTime && section.getTime() != null && !hasChildren && !times.add(section.getTime()) && !isSelected(section) && !isWaitlisted(section) && 
                         (section.getIgnoreConflictWithSectionIds() == null || section.getIgnoreConflictWithSectionIds().isEmpty()))
                     continue;
@@ -429,11 +318,338 @@ public class CourseRequest extends Request {
         }
     }
 
+    /**
+     * Check whether the given configuration can be used, run only once for each configuration (see {@link CourseRequest#computeEnrollments(Assignment)}).
+     * @param assignment current assignment
+     * @param course selected course
+     * @param config selected configuration
+     * @param availableOnly only use available configurations
+     * @return false if no enrollment of the given configuration is possible
+     */
+    private boolean isAvailable(Assignment<Request, Enrollment> assignment, Course course, Config config, boolean availableOnly) {
+        boolean canOverLimit = false;
+        if (availableOnly) {
+            for (Reservation r: getReservations(course)) {
+                if (!r.canBatchAssignOverLimit()) continue;
+                if (!r.getConfigs().isEmpty() && !r.getConfigs().contains(config)) continue;
+                if (r.getReservedAvailableSpace(assignment, this) < getWeight()) continue;
+                canOverLimit = true; break;
+            }
+        }
+        if (!canOverLimit) {
+            if (availableOnly && config.getLimit() >= 0 && ConfigLimit.getEnrollmentWeight(assignment, config, this) > config.getLimit())
+                return false;
+            if (availableOnly && course.getLimit() >= 0 && CourseLimit.getEnrollmentWeight(assignment, course, this) > course.getLimit())
+                return false;
+            if (config.getOffering().hasReservations()) {
+                boolean hasReservation = false, hasConfigReservation = false, reservationMustBeUsed = false;
+                for (Reservation r: getReservations(course)) {
+                    if (r.mustBeUsed()) reservationMustBeUsed = true;
+                    if (availableOnly && r.getReservedAvailableSpace(assignment, this) < getWeight()) continue;
+                    if (r.getConfigs().isEmpty()) {
+                        hasReservation = true;
+                    } else if (r.getConfigs().contains(config)) {
+                        hasReservation = true;
+                        hasConfigReservation = true;
+                    }
+                }
+                if (!hasConfigReservation && config.getTotalUnreservedSpace() < getWeight())
+                    return false;
+                if (!hasReservation && config.getOffering().getTotalUnreservedSpace() < getWeight())
+                    return false;
+                if (availableOnly && !hasReservation && config.getOffering().getUnreservedSpace(assignment, this) < getWeight())
+                    return false;
+                if (availableOnly && !hasConfigReservation && config.getUnreservedSpace(assignment, this) < getWeight())
+                    return false;
+                if (!hasReservation && reservationMustBeUsed)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check whether the given section can be used, this check does not depend on the other sections of the enrollment
+     * (see {@link CourseRequest#computeEnrollments(Assignment)}).
+     * @param assignment current assignment
+     * @param course selected course
+     * @param section selected section
+     * @param availableOnly only use available sections
+     * @return false if the section cannot be used
+     */
+    private boolean isAvailable(Assignment<Request, Enrollment> assignment, Course course, Section section, boolean availableOnly) {
+        Subpart subpart = section.getSubpart();
+        Config config = subpart.getConfig();
+        if (!getStudent().isAvailable(section)) {
+            boolean canOverlap = false;
+            for (Reservation r: getReservations(course)) {
+                if (!r.isAllowOverlap()) continue;
+                if (r.getSections(subpart) != null && !r.getSections(subpart).contains(section)) continue;
+                if (r.getReservedAvailableSpace(assignment, this) < getWeight()) continue;
+                canOverlap = true; break;
+            }
+            if (!canOverlap) return false;
+        }
+        boolean canOverLimit = false;
+        if (availableOnly) {
+            for (Reservation r: getReservations(course)) {
+                if (!r.canBatchAssignOverLimit()) continue;
+                if (r.getSections(subpart) != null && !r.getSections(subpart).contains(section)) continue;
+                if (r.getReservedAvailableSpace(assignment, this) < getWeight()) continue;
+                canOverLimit = true; break;
+            }
+        }
+        if (!canOverLimit) {
+            if (availableOnly && section.getLimit() >= 0
+                    && SectionLimit.getEnrollmentWeight(assignment, section, this) > section.getLimit())
+                return false;
+            if (config.getOffering().hasReservations()) {
+                boolean hasReservation = false, hasSectionReservation = false, reservationMustBeUsed = false;
+                for (Reservation r: getReservations(course)) {
+                    if (r.mustBeUsed()) reservationMustBeUsed = true;
+                    if (availableOnly && r.getReservedAvailableSpace(assignment, this) < getWeight()) continue;
+                    if (r.getSections(subpart) == null) {
+                        hasReservation = true;
+                    } else if (r.getSections(subpart).contains(section)) {
+                        hasReservation = true;
+                        hasSectionReservation = true;
+                    }
+                }
+                if (!hasSectionReservation && section.getTotalUnreservedSpace() < getWeight())
+                    return false;
+                if (availableOnly && !hasSectionReservation && section.getUnreservedSpace(assignment, this) < getWeight())
+                    return false;
+                if (!hasReservation && reservationMustBeUsed)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Create enrollments for a complete selection of sections (a section of each subpart of the configuration),
+     * reservations are considered when the offering has some (see {@link CourseRequest#computeEnrollments(Assignment)}).
+     * @param assignment current assignment
+     * @param enrollments list of enrollments to be returned
+     * @param priority zero for the course, one for the first alternative, two for the second alternative
+     * @param course selected course
+     * @param config selected configuration
+     * @param sections selected sections
+     * @param availableOnly only use available reservations
+     */
+    private void addEnrollments(Assignment<Request, Enrollment> assignment, Collection<Enrollment> enrollments, int priority, Course course, Config config,
+            Set<Section> sections, boolean availableOnly) {
+        if (!config.getOffering().hasReservations()) {
+            enrollments.add(new Enrollment(this, priority, null, config, new HashSet<SctAssignment>(sections), null));
+        } else {
+            Enrollment e = new Enrollment(this, priority, null, config, new HashSet<SctAssignment>(sections), null);
+            boolean mustHaveReservation = config.getOffering().getTotalUnreservedSpace() < getWeight();
+            boolean mustHaveConfigReservation = config.getTotalUnreservedSpace() < getWeight();
+            boolean mustHaveSectionReservation = false;
+            for (Section s: sections) {
+                if (s.getTotalUnreservedSpace() < getWeight()) {
+                    mustHaveSectionReservation = true;
+                    break;
+                }
+            }
+            boolean canOverLimit = false;
+            if (availableOnly) {
+                for (Reservation r: getReservations(course)) {
+                    if (!r.canBatchAssignOverLimit() || !r.isIncluded(e)) continue;
+                    if (r.getReservedAvailableSpace(assignment, this) < getWeight()) continue;
+                    enrollments.add(new Enrollment(this, priority, null, config, new HashSet<SctAssignment>(sections), r));
+                    canOverLimit = true;
+                }
+            }
+            if (!canOverLimit) {
+                boolean reservationMustBeUsed = false;
+                reservations: for (Reservation r: (availableOnly ? getSortedReservations(assignment, course) : getReservations(course))) {
+                    if (r.mustBeUsed()) reservationMustBeUsed = true;
+                    if (!r.isIncluded(e)) continue;
+                    if (availableOnly && r.getReservedAvailableSpace(assignment, this) < getWeight()) continue;
+                    if (mustHaveConfigReservation && r.getConfigs().isEmpty()) continue;
+                    if (mustHaveSectionReservation)
+                        for (Section s: sections)
+                            if (r.getSections(s.getSubpart()) == null && s.getTotalUnreservedSpace() < getWeight()) continue reservations;
+                    enrollments.add(new Enrollment(this, priority, null, config, new HashSet<SctAssignment>(sections), r));
+                    if (availableOnly) return; // only one available reservation suffice (the best matching one)
+                }
+                // a case w/o reservation
+                if (!(mustHaveReservation || mustHaveConfigReservation || mustHaveSectionReservation) &&
+                    !(availableOnly && config.getOffering().getUnreservedSpace(assignment, this) < getWeight()) &&
+                    !reservationMustBeUsed) {
+                    enrollments.add(new Enrollment(this, (getReservations(course).isEmpty() ? 0 : 1) + priority, null, config, new HashSet<SctAssignment>(sections), null));
+                }
+            }
+        }
+    }
+
+    /**
+     * Section combinations of this request, computed regardless of the current assignment (see {@link CourseRequest#computeEnrollments(Assignment)}).
+     * The combinations are computed and cached when needed. The cache is dropped when the version of any of the requested offerings changes
+     * (see {@link Offering#getVersion()}), or when the model evicts it (see {@link StudentSectioningModel#getEnrollmentCacheSize()}).
+     * @return cached section combinations, null if the caching is disabled
+     */
+    private SectionCombinations getSectionCombinations() {
+        StudentSectioningModel model = (StudentSectioningModel) getModel();
+        if (model == null || model.getEnrollmentCacheSize() <= 0 || model.getMaxDomainSize() > 0)
+            return null;
+        SectionCombinations combinations = iSectionCombinations;
+        if (combinations == null || !combinations.isValid()) {
+            combinations = new SectionCombinations();
+            combinations.iStamp = model.getEnrollmentCacheStamp();
+            iSectionCombinations = combinations;
+            model.enrollmentCacheCreated(this, combinations.size());
+        } else {
+            long stamp = model.getEnrollmentCacheStamp();
+            if (combinations.iStamp != stamp) combinations.iStamp = stamp;
+        }
+        return combinations;
+    }
+    
+    /**
+     * Enrollment cache stamp of the last use of the cached section combinations of this request (see {@link StudentSectioningModel#getEnrollmentCacheStamp()})
+     * @return enrollment cache stamp, -1 if there are no section combinations cached
+     */
+    public long getEnrollmentCacheStamp() {
+        SectionCombinations combinations = iSectionCombinations;
+        return (combinations == null ? -1 : combinations.iStamp);
+    }
+    
+    /**
+     * Clear cached section combinations of this request
+     */
+    public void clearEnrollmentCache() {
+        iSectionCombinations = null;
+    }
+    
+    /**
+     * Enrollments of this request, computed from the cached section combinations
+     * @param assignment current assignment
+     * @param combinations cached section combinations
+     * @param availableOnly only use available sections (and reservations)
+     * @return computed enrollments, in the same order as {@link CourseRequest#computeEnrollments(Assignment)} and
+     * {@link CourseRequest#getAvaiableEnrollments(Assignment)} would return them
+     */
+    private List<Enrollment> computeEnrollments(Assignment<Request, Enrollment> assignment, SectionCombinations combinations, boolean availableOnly) {
+        List<Enrollment> ret = new ArrayList<Enrollment>();
+        Map<Section, Boolean> available = new HashMap<Section, Boolean>();
+        HashSet<Section> sections = new HashSet<Section>();
+        for (ConfigCombinations config: combinations.iConfigs) {
+            if (!isAvailable(assignment, config.iCourse, config.iConfig, availableOnly))
+                continue;
+            combinations: for (Section[] combination: config.iCombinations) {
+                for (Section section: combination) {
+                    Boolean avail = available.get(section);
+                    if (avail == null) {
+                        avail = isAvailable(assignment, config.iCourse, section, availableOnly);
+                        available.put(section, avail);
+                    }
+                    if (!avail) continue combinations;
+                }
+                sections.clear();
+                for (Section section: combination)
+                    sections.add(section);
+                addEnrollments(assignment, ret, config.iPriority, config.iCourse, config.iConfig, sections, availableOnly);
+            }
+        }
+        return ret;
+    }
+    
+    /**
+     * Section combinations of a configuration: the sections are not cancelled, they do not overlap in time, parent-child relations are
+     * followed, and the initial enrollment is kept when required. Availability (limits, reservations, student's unavailabilities) is checked
+     * when the enrollments are computed.
+     */
+    private static class ConfigCombinations {
+        private int iPriority;
+        private Course iCourse;
+        private Config iConfig;
+        private List<Section[]> iCombinations = new ArrayList<Section[]>();
+        
+        private ConfigCombinations(int priority, Course course, Config config) {
+            iPriority = priority; iCourse = course; iConfig = config;
+        }
+    }
+    
+    /**
+     * Cached section combinations of a course request
+     */
+    private class SectionCombinations {
+        private long[] iVersions;
+        private Enrollment iInitialAssignment;
+        private List<ConfigCombinations> iConfigs = new ArrayList<ConfigCombinations>();
+        private int iSize = 0;
+        private volatile long iStamp = 0;
+        
+        private SectionCombinations() {
+            iVersions = new long[iCourses.size()];
+            for (int i = 0; i < iCourses.size(); i++)
+                iVersions[i] = iCourses.get(i).getOffering().getVersion();
+            iInitialAssignment = getKeptInitialAssignment();
+            int idx = 0;
+            for (Course course : iCourses) {
+                for (Config config : course.getOffering().getConfigs()) {
+                    ConfigCombinations combinations = new ConfigCombinations(idx, course, config);
+                    computeCombinations(combinations, new Section[config.getSubparts().size()], new HashSet<Section>(), 0);
+                    iConfigs.add(combinations);
+                    iSize += combinations.iCombinations.size();
+                }
+                idx++;
+            }
+        }
+        
+        /**
+         * Recursive computation of section combinations
+         */
+        private void computeCombinations(ConfigCombinations combinations, Section[] combination, HashSet<Section> sections, int idx) {
+            if (combination.length == idx) {
+                combinations.iCombinations.add(combination.clone());
+                return;
+            }
+            Subpart subpart = combinations.iConfig.getSubparts().get(idx);
+            for (Section section : subpart.getSections()) {
+                if (section.isCancelled())
+                    continue;
+                if (iInitialAssignment != null && !iInitialAssignment.getAssignments().contains(section))
+                    continue;
+                if (section.getParent() != null && !sections.contains(section.getParent()))
+                    continue;
+                if (section.isOverlapping(sections))
+                    continue;
+                sections.add(section);
+                combination[idx] = section;
+                computeCombinations(combinations, combination, sections, idx + 1);
+                sections.remove(section);
+            }
+        }
+        
+        /** True if none of the requested offerings and the kept initial enrollment have changed */
+        private boolean isValid() {
+            for (int i = 0; i < iCourses.size(); i++)
+                if (iVersions[i] != iCourses.get(i).getOffering().getVersion()) return false;
+            return iInitialAssignment == getKeptInitialAssignment();
+        }
+        
+        /** Number of cached section combinations */
+        private int size() { return iSize; }
+    }
+    
+    /**
+     * Initial assignment, if it is to be kept (see {@link StudentSectioningModel#getKeepInitialAssignments()})
+     */
+    private Enrollment getKeptInitialAssignment() {
+        return (getInitialAssignment() != null && getModel() != null && ((StudentSectioningModel)getModel()).getKeepInitialAssignments() ? getInitialAssignment() : null);
+    }
+
     /** Return all enrollments that are available 
      * @param assignment current assignment
      * @return all available enrollments
      **/
     public List<Enrollment> getAvaiableEnrollments(Assignment<Request, Enrollment> assignment) {
+        SectionCombinations combinations = getSectionCombinations();
+        if (combinations != null)
+            return computeEnrollments(assignment, combinations, true);
         List<Enrollment> ret = new ArrayList<Enrollment>();
         int idx = 0;
         for (Course course : iCourses) {
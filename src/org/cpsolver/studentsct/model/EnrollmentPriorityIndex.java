@@ -0,0 +1,288 @@
+package org.cpsolver.studentsct.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.util.ToolBox;
+import org.cpsolver.studentsct.constraint.ConfigLimit;
+import org.cpsolver.studentsct.constraint.CourseLimit;
+import org.cpsolver.studentsct.constraint.SectionLimit;
+
+/**
+ * Index of the enrollments of a section, a configuration, or a course, ordered by their value
+ * ({@link Enrollment#toDouble(Assignment, boolean)} with precise set to false, the highest value first).
+ * Enrollments of dummy students are kept apart from the enrollments of real students. The index
+ * is used by the {@link SectionLimit}, {@link ConfigLimit}, and {@link CourseLimit} constraints to
+ * pick the enrollments that are to be made conflicting when a limit is exceeded, without the need
+ * to go through all the enrollments again for each of the picked enrollments.<br>
+ * <br>
+ * The index is updated when an enrollment is assigned or unassigned, the value of a newly added
+ * enrollment is only computed when the index is queried. By then, the model has stored the weight of
+ * each assigned enrollment in its request's context (see {@link Request.RequestContext#getLastWeight()}),
+ * so the index uses the same value as a scan over the assigned enrollments would. The stored weight does
+ * not change while the enrollment stays assigned, so the value of an indexed enrollment does not change either.
+ *
+ * @version StudentSct 1.3 (Student Sectioning)<br>
+ *          Copyright (C) 2014 Tomas Muller<br>
+ *          <a href="mailto:muller@unitime.org">muller@unitime.org</a><br>
+ *          <a href="http://muller.unitime.org">http://muller.unitime.org</a><br>
+ * <br>
+ *          This library is free software; you can redistribute it and/or modify
+ *          it under the terms of the GNU Lesser General Public License as
+ *          published by the Free Software Foundation; either version 3 of the
+ *          License, or (at your option) any later version. <br>
+ * <br>
+ *          This library is distributed in the hope that it will be useful, but
+ *          WITHOUT ANY WARRANTY; without even the implied warranty of
+ *          MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *          Lesser General Public License for more details. <br>
+ * <br>
+ *          You should have received a copy of the GNU Lesser General Public
+ *          License along with this library; if not see
+ *          <a href='http://www.gnu.org/licenses/'>http://www.gnu.org/licenses/</a>.
+ */
+public class EnrollmentPriorityIndex {
+    private TreeSet<Entry> iDummy = new TreeSet<Entry>();
+    private TreeSet<Entry> iReal = new TreeSet<Entry>();
+    private Map<Enrollment, Entry> iEntries = new HashMap<Enrollment, Entry>();
+    private Set<Enrollment> iPending = new HashSet<Enrollment>();
+
+    /** Create an empty index */
+    public EnrollmentPriorityIndex() {
+    }
+
+    /**
+     * Create an index containing the given enrollments
+     * @param enrollments enrollments to be indexed
+     */
+    public EnrollmentPriorityIndex(Collection<Enrollment> enrollments) {
+        iPending.addAll(enrollments);
+    }
+
+    /**
+     * Add an enrollment into the index (called when the enrollment is assigned)
+     * @param enrollment an enrollment
+     */
+    public void add(Enrollment enrollment) {
+        if (!iEntries.containsKey(enrollment))
+            iPending.add(enrollment);
+    }
+
+    /**
+     * Remove an enrollment from the index (called when the enrollment is unassigned)
+     * @param enrollment an enrollment
+     */
+    public void remove(Enrollment enrollment) {
+        if (iPending.remove(enrollment)) return;
+        Entry entry = iEntries.remove(enrollment);
+        if (entry != null)
+            (entry.isDummy() ? iDummy : iReal).remove(entry);
+    }
+
+    /**
+     * Number of indexed enrollments
+     * @return number of enrollments in the index
+     */
+    public int size() {
+        return iEntries.size() + iPending.size();
+    }
+
+    /**
+     * Compute values of the newly added enrollments
+     */
+    private void update(Assignment<Request, Enrollment> assignment) {
+        if (iPending.isEmpty()) return;
+        for (Enrollment enrollment: iPending) {
+            Entry entry = new Entry(enrollment, enrollment.toDouble(assignment, false));
+            iEntries.put(enrollment, entry);
+            (entry.isDummy() ? iDummy : iReal).add(entry);
+        }
+        iPending.clear();
+    }
+
+    /**
+     * Enrollments in the order in which they are to be made conflicting. Enrollments of dummy students
+     * go first when preferDummyStudents is true, then enrollments that are not protected,
+     * then enrollments with the highest value. Ties are broken randomly.
+     * @param assignment current assignment
+     * @param preferDummyStudents true if enrollments of dummy students are to be picked first
+     * @param adepts enrollments that can be picked (null if all)
+     * @param protect enrollments that are to be picked last (e.g., enrollments with a reservation), null if none
+     * @param conflicts enrollments that are already conflicting (these are skipped), null if none
+     * @return a cursor returning the enrollments in the given order
+     */
+    public Cursor cursor(Assignment<Request, Enrollment> assignment, boolean preferDummyStudents, EnrollmentFilter adepts, EnrollmentFilter protect, Set<Enrollment> conflicts) {
+        update(assignment);
+        List<Scan> scans = new ArrayList<Scan>(4);
+        if (preferDummyStudents) {
+            for (int p = 0; p < (protect == null ? 1 : 2); p++)
+                scans.add(new Scan(iDummy.iterator(), adepts, protect, conflicts, p == 1));
+            for (int p = 0; p < (protect == null ? 1 : 2); p++)
+                scans.add(new Scan(iReal.iterator(), adepts, protect, conflicts, p == 1));
+        } else {
+            for (int p = 0; p < (protect == null ? 1 : 2); p++)
+                scans.add(new Scan(new MergedIterator(iDummy.iterator(), iReal.iterator()), adepts, protect, conflicts, p == 1));
+        }
+        return new Cursor(scans);
+    }
+
+    /**
+     * Enrollment filter
+     */
+    public static interface EnrollmentFilter {
+        /**
+         * Check an enrollment
+         * @param enrollment an enrollment
+         * @return true if the enrollment is accepted by the filter
+         */
+        public boolean accept(Enrollment enrollment);
+    }
+
+    /**
+     * Cursor over the indexed enrollments, see {@link EnrollmentPriorityIndex#cursor(Assignment, boolean, EnrollmentFilter, EnrollmentFilter, Set)}.
+     * The index must not be changed while a cursor is in use.
+     */
+    public static class Cursor {
+        private List<Scan> iScans;
+        private int iScan = 0;
+        private List<Enrollment> iGroup = new ArrayList<Enrollment>();
+
+        private Cursor(List<Scan> scans) {
+            iScans = scans;
+        }
+
+        /**
+         * Next enrollment to be made conflicting, a random one is picked among the enrollments of the same value
+         * @return next enrollment, null if there are no more enrollments
+         */
+        public Enrollment next() {
+            while (iGroup.isEmpty()) {
+                if (iScan >= iScans.size()) return null;
+                Scan scan = iScans.get(iScan);
+                Entry first = scan.next();
+                if (first == null) {
+                    iScan ++;
+                    continue;
+                }
+                iGroup.add(first.getEnrollment());
+                while (scan.peek() != null && scan.peek().getValue() == first.getValue())
+                    iGroup.add(scan.next().getEnrollment());
+            }
+            int idx = (iGroup.size() == 1 ? 0 : ToolBox.random(iGroup.size()));
+            Enrollment enrollment = iGroup.get(idx);
+            iGroup.set(idx, iGroup.get(iGroup.size() - 1));
+            iGroup.remove(iGroup.size() - 1);
+            return enrollment;
+        }
+    }
+
+    /**
+     * Indexed enrollment
+     */
+    private static class Entry implements Comparable<Entry> {
+        private Enrollment iEnrollment;
+        private double iValue;
+        private boolean iDummy;
+
+        private Entry(Enrollment enrollment, double value) {
+            iEnrollment = enrollment;
+            iValue = value;
+            iDummy = enrollment.getStudent().isDummy();
+        }
+
+        public Enrollment getEnrollment() { return iEnrollment; }
+        public double getValue() { return iValue; }
+        public boolean isDummy() { return iDummy; }
+
+        @Override
+        public int compareTo(Entry e) {
+            int cmp = Double.compare(e.iValue, iValue);
+            if (cmp != 0) return cmp;
+            cmp = Long.valueOf(iEnrollment.getStudent().getId()).compareTo(e.iEnrollment.getStudent().getId());
+            if (cmp != 0) return cmp;
+            return Long.valueOf(iEnrollment.getRequest().getId()).compareTo(e.iEnrollment.getRequest().getId());
+        }
+    }
+
+    /**
+     * Entries of the given iterator that are accepted by the adepts filter, that are (or are not) protected,
+     * and that are not conflicting
+     */
+    private static class Scan {
+        private Iterator<Entry> iIterator;
+        private EnrollmentFilter iAdepts, iProtect;
+        private Set<Enrollment> iConflicts;
+        private boolean iProtected;
+        private Entry iNext = null;
+
+        private Scan(Iterator<Entry> iterator, EnrollmentFilter adepts, EnrollmentFilter protect, Set<Enrollment> conflicts, boolean isProtected) {
+            iIterator = iterator;
+            iAdepts = adepts;
+            iProtect = protect;
+            iConflicts = conflicts;
+            iProtected = isProtected;
+        }
+
+        private Entry peek() {
+            while (iNext == null && iIterator.hasNext()) {
+                Entry entry = iIterator.next();
+                if (iAdepts != null && !iAdepts.accept(entry.getEnrollment())) continue;
+                if (iProtect != null && iProtect.accept(entry.getEnrollment()) != iProtected) continue;
+                if (iConflicts != null && iConflicts.contains(entry.getEnrollment())) continue;
+                iNext = entry;
+            }
+            return iNext;
+        }
+
+        private Entry next() {
+            Entry next = peek();
+            iNext = null;
+            return next;
+        }
+    }
+
+    /**
+     * Merge of two ordered iterators
+     */
+    private static class MergedIterator implements Iterator<Entry> {
+        private Iterator<Entry> iFirst, iSecond;
+        private Entry iFirstNext, iSecondNext;
+
+        private MergedIterator(Iterator<Entry> first, Iterator<Entry> second) {
+            iFirst = first; iSecond = second;
+            iFirstNext = (iFirst.hasNext() ? iFirst.next() : null);
+            iSecondNext = (iSecond.hasNext() ? iSecond.next() : null);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iFirstNext != null || iSecondNext != null;
+        }
+
+        @Override
+        public Entry next() {
+            Entry next = null;
+            if (iSecondNext == null || (iFirstNext != null && iFirstNext.compareTo(iSecondNext) <= 0)) {
+                next = iFirstNext;
+                iFirstNext = (iFirst.hasNext() ? iFirst.next() : null);
+            } else {
+                next = iSecondNext;
+                iSecondNext = (iSecond.hasNext() ? iSecond.next() : null);
+            }
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -45,6 +45,7 @@ public class Offering {
     private List<Config> iConfigs = new ArrayList<Config>();
     private List<Course> iCourses = new ArrayList<Course>();
     private List<Reservation> iReservations = new ArrayList<Reservation>();
+    private volatile long iVersion = 0;
 
     /**
      * Constructor
@@ -302,7 +303,22 @@ public class Offering {
             for (CourseRequest r: c.getRequests())
                 r.clearReservationCache();
         iTotalUnreservedSpace = null;
+        incVersion();
     }
+    
+    /**
+     * Version of the offering. It is incremented each time a configuration, a subpart, or a section is added,
+     * a section is cancelled or its placement is changed, or the reservations of the offering change. Course requests
+     * use the version to invalidate their cached section combinations (see {@link CourseRequest#computeEnrollments(Assignment)}).
+     * @return offering version
+     */
+    public long getVersion() { return iVersion; }
+    
+    /**
+     * Increment the version of the offering, this needs to be called when the offering is changed in a way that
+     * affects the possible enrollments of a course request (regardless of the current assignment).
+     */
+    public synchronized void incVersion() { iVersion ++; }
 
     @Override
     public boolean equals(Object o) {
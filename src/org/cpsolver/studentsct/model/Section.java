@@ -106,6 +106,7 @@ public class Section extends AbstractClassWithContext<Request, Enrollment, Secti
         iPlacement = placement;
         iParent = parent;
         iInstructors = instructors;
+        incVersion();
     }
     
     /**
@@ -212,6 +213,15 @@ public class Section extends AbstractClassWithContext<Request, Enrollment, Secti
      */
     public void setPlacement(Placement placement) {
         iPlacement = placement;
+        incVersion();
+    }
+    
+    /**
+     * Increment version of the offering of this section, see {@link Offering#getVersion()}
+     */
+    private void incVersion() {
+        if (iSubpart != null)
+            iSubpart.getConfig().getOffering().incVersion();
     }
 
     /** Time placement of the section. */
@@ -676,6 +686,7 @@ public class Section extends AbstractClassWithContext<Request, Enrollment, Secti
     public void addIgnoreConflictWith(long sectionId) {
         if (iIgnoreConflictsWith == null) iIgnoreConflictsWith = new HashSet<Long>();
         iIgnoreConflictsWith.add(sectionId);
+        incVersion();
     }
     
     /**
@@ -701,6 +712,14 @@ public class Section extends AbstractClassWithContext<Request, Enrollment, Secti
         return getContext(assignment).getEnrollments();
     }
     
+    /** Assigned enrollments of this section ordered by their value, see {@link EnrollmentPriorityIndex}
+     * @param assignment current assignment
+     * @return priority index of the assigned enrollments
+     **/
+    public EnrollmentPriorityIndex getPriorityIndex(Assignment<Request, Enrollment> assignment) {
+        return getContext(assignment).getPriorityIndex();
+    }
+    
     /**
      * Enrollment weight -- weight of all requests which have an enrollment that
      * contains this section, excluding the given one. See
@@ -752,7 +771,7 @@ public class Section extends AbstractClassWithContext<Request, Enrollment, Secti
      * Set cancelled flag of the class.
      * @param cancelled true if the class is cancelled
      */
-    public void setCancelled(boolean cancelled) { iCancelled = cancelled; }
+    public void setCancelled(boolean cancelled) { iCancelled = cancelled; incVersion(); }
     
     @Override
     public Model<Request, Enrollment> getModel() {
@@ -776,6 +795,7 @@ public class Section extends AbstractClassWithContext<Request, Enrollment, Secti
         private double iMaxEnrollmentWeight = 0.0;
         private double iMinEnrollmentWeight = 0.0;
         private boolean iReadOnly = false;
+        private EnrollmentPriorityIndex iPriorityIndex = null;
 
         public SectionContext(Assignment<Request, Enrollment> assignment) {
             iEnrollments = new HashSet<Enrollment>();
@@ -804,6 +824,8 @@ public class Section extends AbstractClassWithContext<Request, Enrollment, Secti
                 iEnrollments = new HashSet<Enrollment>(iEnrollments);
                 iReadOnly = false;
             }
+            if (iPriorityIndex != null)
+                iPriorityIndex.add(enrollment);
             if (iEnrollments.isEmpty()) {
                 iMinEnrollmentWeight = iMaxEnrollmentWeight = enrollment.getRequest().getWeight();
             } else {
@@ -824,6 +846,8 @@ public class Section extends AbstractClassWithContext<Request, Enrollment, Secti
                 iEnrollments = new HashSet<Enrollment>(iEnrollments);
                 iReadOnly = false;
             }
+            if (iPriorityIndex != null)
+                iPriorityIndex.remove(enrollment);
             if (iEnrollments.remove(enrollment)) {
                 iEnrollmentTotalWeight -= enrollment.getRequest().getWeight();
                 if (enrollment.getReservation() == null || !enrollment.getReservation().canBatchAssignOverLimit())
@@ -866,6 +890,15 @@ public class Section extends AbstractClassWithContext<Request, Enrollment, Secti
             return iEnrollments;
         }
         
+        /** Assigned enrollments ordered by their value, created on the first call
+         * @return priority index of the assigned enrollments
+         **/
+        public EnrollmentPriorityIndex getPriorityIndex() {
+            if (iPriorityIndex == null)
+                iPriorityIndex = new EnrollmentPriorityIndex(iEnrollments);
+            return iPriorityIndex;
+        }
+        
         /**
          * Enrollment weight -- weight of all requests which have an enrollment that
          * contains this section, excluding the given one. See
@@ -66,6 +66,7 @@ public class Subpart implements Comparable<Subpart> {
         iConfig = config;
         iParent = parent;
         iConfig.getSubparts().add(this);
+        iConfig.getOffering().incVersion();
     }
 
     /** Subpart id 
@@ -202,6 +203,7 @@ public class Subpart implements Comparable<Subpart> {
      **/
     public void setAllowOverlap(boolean allowOverlap) {
         iAllowOverlap = allowOverlap;
+        iConfig.getOffering().incVersion();
     }
     
     /**
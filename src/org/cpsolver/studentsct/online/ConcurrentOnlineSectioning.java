@@ -0,0 +1,281 @@
+package org.cpsolver.studentsct.online;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.log4j.Logger;
+import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.util.ToolBox;
+import org.cpsolver.studentsct.heuristics.selection.BranchBoundSelection.BranchBoundNeighbour;
+import org.cpsolver.studentsct.model.Config;
+import org.cpsolver.studentsct.model.Course;
+import org.cpsolver.studentsct.model.CourseRequest;
+import org.cpsolver.studentsct.model.Enrollment;
+import org.cpsolver.studentsct.model.Offering;
+import org.cpsolver.studentsct.model.Request;
+import org.cpsolver.studentsct.model.Section;
+import org.cpsolver.studentsct.model.Student;
+import org.cpsolver.studentsct.model.Subpart;
+import org.cpsolver.studentsct.online.selection.OnlineSectioningSelection;
+import org.cpsolver.studentsct.reservation.Reservation;
+
+/**
+ * Concurrent online student sectioning over a single shared {@link OnlineSectioningModel} and its assignment.
+ * Any number of threads can compute student schedules at the same time, without the need to clone the
+ * courses of each student into a private model (as the {@link Test} does by default).<br>
+ * <br>
+ * A schedule is computed by the given {@link OnlineSectioningSelection} while holding a read lock, so that
+ * the selection sees a consistent snapshot of all section enrollments. The schedule is then committed
+ * optimistically: each offering has an enrollment version which is incremented with every commit that
+ * changes an enrollment in the offering. If none of the offerings of the student's course requests has
+ * changed since the schedule was computed, the schedule is committed right away. Otherwise, each enrollment
+ * is checked against the current assignment and, in case of a conflict, the schedule is computed again (up to
+ * OnlineSectioning.MaxAttempts times, defaults to 10). Commits hold a write lock, but they are short.<br>
+ * <br>
+ * All operations on the model and the assignment that are done outside of this class must use the
+ * {@link ConcurrentOnlineSectioning#getLock()} as well.
+ *
+ * @version StudentSct 1.3 (Student Sectioning)<br>
+ *          Copyright (C) 2014 Tomas Muller<br>
+ *          <a href="mailto:muller@unitime.org">muller@unitime.org</a><br>
+ *          <a href="http://muller.unitime.org">http://muller.unitime.org</a><br>
+ * <br>
+ *          This library is free software; you can redistribute it and/or modify
+ *          it under the terms of the GNU Lesser General Public License as
+ *          published by the Free Software Foundation; either version 3 of the
+ *          License, or (at your option) any later version. <br>
+ * <br>
+ *          This library is distributed in the hope that it will be useful, but
+ *          WITHOUT ANY WARRANTY; without even the implied warranty of
+ *          MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *          Lesser General Public License for more details. <br>
+ * <br>
+ *          You should have received a copy of the GNU Lesser General Public
+ *          License along with this library; if not see <a href='http://www.gnu.org/licenses'>http://www.gnu.org/licenses</a>.
+ *
+ */
+public class ConcurrentOnlineSectioning {
+    private static Logger sLog = Logger.getLogger(ConcurrentOnlineSectioning.class);
+    private OnlineSectioningModel iModel;
+    private Assignment<Request, Enrollment> iAssignment;
+    private ReadWriteLock iLock = new ReentrantReadWriteLock();
+    private Map<Offering, Long> iVersions = new HashMap<Offering, Long>();
+    private int iMaxAttempts = 10;
+    private long iIteration = 0;
+    private AtomicLong iNrCommits = new AtomicLong(0), iNrRetries = new AtomicLong(0), iNrValidations = new AtomicLong(0);
+
+    /**
+     * Constructor
+     * @param model shared online sectioning model
+     * @param assignment shared assignment
+     */
+    public ConcurrentOnlineSectioning(OnlineSectioningModel model, Assignment<Request, Enrollment> assignment) {
+        iModel = model;
+        iAssignment = assignment;
+        iMaxAttempts = model.getProperties().getPropertyInt("OnlineSectioning.MaxAttempts", iMaxAttempts);
+        initContexts();
+    }
+
+    /** Shared model
+     * @return online sectioning model
+     **/
+    public OnlineSectioningModel getModel() { return iModel; }
+
+    /** Shared assignment
+     * @return current assignment
+     **/
+    public Assignment<Request, Enrollment> getAssignment() { return iAssignment; }
+
+    /** Lock that protects the shared model and assignment
+     * @return read write lock
+     **/
+    public ReadWriteLock getLock() { return iLock; }
+
+    /** Number of committed schedules
+     * @return number of successful commits
+     **/
+    public long getNrCommits() { return iNrCommits.get(); }
+
+    /** Number of schedules that had to be computed again because of a conflicting commit of another student
+     * @return number of retries
+     **/
+    public long getNrRetries() { return iNrRetries.get(); }
+
+    /** Number of commits that needed to be validated because an offering was changed by another commit
+     * @return number of validations
+     **/
+    public long getNrValidations() { return iNrValidations.get(); }
+
+    /**
+     * Assignment contexts are created lazily, make sure that all the contexts that are needed by the sectioning
+     * exist before the model is accessed by multiple threads at once.
+     */
+    protected void initContexts() {
+        Lock lock = iLock.writeLock();
+        lock.lock();
+        try {
+            for (Offering offering: iModel.getOfferings()) {
+                for (Course course: offering.getCourses())
+                    course.getEnrollments(iAssignment);
+                for (Config config: offering.getConfigs()) {
+                    config.getEnrollments(iAssignment);
+                    for (Subpart subpart: config.getSubparts())
+                        for (Section section: subpart.getSections())
+                            section.getEnrollments(iAssignment);
+                }
+                for (Reservation reservation: offering.getReservations())
+                    reservation.getEnrollments(iAssignment);
+            }
+            for (Request request: iModel.variables())
+                request.getContext(iAssignment);
+            if (iModel.getDistanceConflict() != null)
+                iModel.getDistanceConflict().getTotalNrConflicts(iAssignment);
+            if (iModel.getTimeOverlaps() != null)
+                iModel.getTimeOverlaps().getTotalNrConflicts(iAssignment);
+            iModel.getTotalValue(iAssignment);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Enrollment version of an offering, incremented with each commit that changes an enrollment of the offering
+     * @param offering an offering
+     * @return current version of the offering
+     */
+    public long getVersion(Offering offering) {
+        Lock lock = iLock.readLock();
+        lock.lock();
+        try {
+            Long version = iVersions.get(offering);
+            return (version == null ? 0 : version.longValue());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Compute a schedule of the given student and commit it. Students are expected to be a part of the shared model.
+     * Only one schedule of a student is computed at a time, schedules of different students are computed concurrently.
+     * @param student a student
+     * @param selection online sectioning selection (it must be initialized, see {@link OnlineSectioningSelection#setModel(OnlineSectioningModel)})
+     * @return committed schedule, null if no schedule has been found or if it could not have been committed in the given number of attempts
+     */
+    public BranchBoundNeighbour section(Student student, OnlineSectioningSelection selection) {
+        synchronized (student) {
+            for (int attempt = 1; attempt <= iMaxAttempts; attempt++) {
+                Map<Offering, Long> versions = new HashMap<Offering, Long>();
+                BranchBoundNeighbour neighbour = null;
+                Lock lock = iLock.readLock();
+                lock.lock();
+                try {
+                    for (Request request: student.getRequests())
+                        if (request instanceof CourseRequest)
+                            for (Course course: ((CourseRequest)request).getCourses())
+                                versions.put(course.getOffering(), getVersion(course.getOffering()));
+                    neighbour = selection.select(iAssignment, student);
+                } finally {
+                    lock.unlock();
+                }
+                if (neighbour == null)
+                    return null;
+                if (commit(student, neighbour.getAssignment(), versions))
+                    return neighbour;
+                iNrRetries.incrementAndGet();
+                sLog.debug(attempt + ". attempt failed for " + student.getId() + ", another student enrolled into the same classes.");
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Commit a schedule of a student. If none of the offerings has changed since the given versions were taken,
+     * the schedule is assigned without any checking. Otherwise, it is only assigned when none of its enrollments is
+     * in a conflict with the current assignment.
+     * @param student a student
+     * @param enrollments new schedule of the student (an enrollment for each request, null when not assigned)
+     * @param versions versions of the offerings at the time the schedule was computed (see {@link ConcurrentOnlineSectioning#getVersion(Offering)})
+     * @return true if the schedule has been committed
+     */
+    public boolean commit(Student student, Enrollment[] enrollments, Map<Offering, Long> versions) {
+        Lock lock = iLock.writeLock();
+        lock.lock();
+        try {
+            boolean changed = false;
+            for (Map.Entry<Offering, Long> entry: versions.entrySet()) {
+                if (getVersion(entry.getKey()) != entry.getValue()) {
+                    changed = true;
+                    break;
+                }
+            }
+            if (changed) iNrValidations.incrementAndGet();
+            iIteration ++;
+            beforeCommit(student);
+            List<Enrollment> previous = new ArrayList<Enrollment>();
+            for (Request request: student.getRequests()) {
+                Enrollment enrollment = iAssignment.getValue(request);
+                if (enrollment != null) {
+                    previous.add(enrollment);
+                    iAssignment.unassign(iIteration, request);
+                }
+            }
+            boolean fail = false;
+            for (Enrollment enrollment: enrollments) {
+                if (enrollment == null || enrollment.getAssignments() == null) continue;
+                if (changed && !iModel.conflictValues(iAssignment, enrollment).isEmpty()) {
+                    fail = true;
+                    break;
+                }
+                iAssignment.assign(iIteration, enrollment);
+            }
+            if (fail) {
+                for (Request request: student.getRequests())
+                    if (iAssignment.getValue(request) != null)
+                        iAssignment.unassign(iIteration, request);
+                for (Enrollment enrollment: previous)
+                    iAssignment.assign(iIteration, enrollment);
+            } else {
+                Set<Offering> offerings = new HashSet<Offering>();
+                for (Enrollment enrollment: previous)
+                    if (enrollment.getOffering() != null && !ToolBox.equals(enrollment, iAssignment.getValue(enrollment.getRequest())))
+                        offerings.add(enrollment.getOffering());
+                for (Enrollment enrollment: enrollments)
+                    if (enrollment != null && enrollment.getOffering() != null && !previous.contains(enrollment))
+                        offerings.add(enrollment.getOffering());
+                for (Offering offering: offerings) {
+                    Long version = iVersions.get(offering);
+                    iVersions.put(offering, version == null ? 1l : version.longValue() + 1);
+                }
+                iNrCommits.incrementAndGet();
+            }
+            afterCommit(student, !fail);
+            return !fail;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Called (while holding the write lock) before the enrollments of the student are changed
+     * @param student a student
+     */
+    protected void beforeCommit(Student student) {
+    }
+
+    /**
+     * Called (while holding the write lock) after the enrollments of the student were changed, or restored when
+     * the commit failed
+     * @param student a student
+     * @param success true if the new schedule has been committed
+     */
+    protected void afterCommit(Student student, boolean success) {
+    }
+}
@@ -16,6 +16,7 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
 
 import org.apache.log4j.BasicConfigurator;
 import org.apache.log4j.Logger;
@@ -76,6 +77,8 @@ import org.cpsolver.studentsct.reservation.Reservation;
  *      <li>-Dsort=shuffle|choice|reverse ... for taking students in random order, more choices first, or more choices last (defaults to shuffle)
  *      <li>-DnrConcurrent=N ... for the number of threads (concurrent computations of student schedules, defaults to 10)
  *      <li>-Dsuggestions=true|false ... true to use suggestions (to simulate students preferring mid-day, defaults to false)
+ *      <li>-Dshared=true|false ... true to section students directly in the loaded model using {@link ConcurrentOnlineSectioning}, instead of cloning
+ *      the courses of each student into a private model (defaults to false, suggestions are not used in this mode)
  *      <li>-Doverexp=<i>x<sub>over</sub></i>|b<i>x<sub>over</sub></i>-<i>x<sub>disb</sub></i>%|<i>x<sub>over</sub></i>-<i>x<sub>max</sub></i>|b<i>x<sub>over</sub></i>-<i>x<sub>max</sub></i>-<i>x<sub>disb</sub></i>% for over-expected criterion, examples:<ul>
  *              <li>1.1 ... {@link PercentageOverExpected} with OverExpected.Percentage set to 1.1 (<i>x<sub>over</sub></i>)
  *              <li>b1-10 ... {@link AvoidUnbalancedWhenNoExpectations} with OverExpected.Percentage set to 1 and General.BalanceUnlimited set to 10/100 (<i>x<sub>disb</sub></i>%)
@@ -113,6 +116,7 @@ public class Test {
     private OnlineSectioningModel iModel;
     private Assignment<Request, Enrollment> iAssignment;
     private boolean iSuggestions = false;
+    private ConcurrentOnlineSectioning iShared = null;
 
     private Map<String, Counter> iCounters = new HashMap<String, Counter>();
 
@@ -407,6 +411,8 @@ public class Test {
     }
 
     public boolean section(Student original) {
+        if (iShared != null)
+            return sectionShared(original);
         OnlineSectioningModel model = new TestModel(iModel.getProperties());
         model.setOverExpectedCriterion(iModel.getOverExpectedCriterion());
         Student student = new Student(original.getId());
@@ -502,6 +508,8 @@ public class Test {
                     long x0 = JProf.currentTimeMillis();
                     TreeSet<SuggestionsBranchAndBound.Suggestion> suggestions = suggestionBaB.computeSuggestions();
                     inc("[S] Suggestion CPU Time", JProf.currentTimeMillis() - x0);
+                    if (suggestionBaB.getTimeToFirstSuggestion() >= 0)
+                        inc("[S] Time to first suggestion [ms]", suggestionBaB.getTimeToFirstSuggestion());
                     totalSuggestions += suggestions.size();
                     if (!suggestions.isEmpty())
                         nrSuggestions += 1.0;
@@ -683,6 +691,96 @@ public class Test {
         return true;
     }
 
+    public boolean sectionShared(Student student) {
+        OnlineSectioningSelection selection = null;
+        if (model().getProperties().getPropertyBoolean("StudentWeights.MultiCriteria", true)) {
+            selection = new MultiCriteriaBranchAndBoundSelection(model().getProperties());
+        } else {
+            selection = new SuggestionSelection(model().getProperties());
+        }
+
+        Hashtable<CourseRequest, Set<Section>> preferredSectionsForCourse = new Hashtable<CourseRequest, Set<Section>>();
+        Lock lock = iShared.getLock().readLock();
+        lock.lock();
+        try {
+            for (Request request : student.getRequests()) {
+                Enrollment enrollment = assignment().getValue(request);
+                if (enrollment != null && enrollment.isCourseRequest())
+                    preferredSectionsForCourse.put((CourseRequest) request, enrollment.getSections());
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        selection.setModel(model());
+        selection.setPreferredSections(preferredSectionsForCourse);
+        selection.setRequiredSections(new Hashtable<CourseRequest, Set<Section>>());
+        selection.setRequiredFreeTimes(new HashSet<FreeTimeRequest>());
+
+        long t0 = JProf.currentTimeMillis();
+        BranchBoundNeighbour neighbour = iShared.section(student, selection);
+        long time = JProf.currentTimeMillis() - t0;
+        inc("[C] CPU Time", time);
+        if (neighbour == null) {
+            inc("[F] Failure");
+        } else {
+            int a = 0, u = 0, np = 0, zp = 0, pp = 0, cp = 0;
+            double over = 0;
+            double p = 0.0;
+            lock.lock();
+            try {
+                for (Request r : student.getRequests()) {
+                    if (r instanceof CourseRequest) {
+                        Enrollment e = assignment().getValue(r);
+                        if (e != null) {
+                            for (Section s : e.getSections()) {
+                                if (s.getPenalty() < 0.0)
+                                    np++;
+                                if (s.getPenalty() == 0.0)
+                                    zp++;
+                                if (s.getPenalty() > 0.0)
+                                    pp++;
+                                if (s.getLimit() > 0) {
+                                    p += s.getPenalty();
+                                    cp++;
+                                }
+                                over += model().getOverExpected(assignment(), s, r);
+                            }
+                            a++;
+                        } else {
+                            u++;
+                        }
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            inc("[A] Student");
+            if (over > 0.0)
+                inc("[O] Over", over);
+            if (a > 0)
+                inc("[A] Assigned", a);
+            if (u > 0)
+                inc("[A] Not Assigned", u);
+            inc("[V] Value", neighbour.value(assignment()));
+            if (zp > 0)
+                inc("[P] Zero penalty", zp);
+            if (np > 0)
+                inc("[P] Negative penalty", np);
+            if (pp > 0)
+                inc("[P] Positive penalty", pp);
+            if (cp > 0)
+                inc("[P] Average penalty", p / cp);
+        }
+        inc("[T0] Time <10ms", time < 10 ? 1 : 0);
+        inc("[T1] Time <100ms", time < 100 ? 1 : 0);
+        inc("[T2] Time <250ms", time < 250 ? 1 : 0);
+        inc("[T3] Time <500ms", time < 500 ? 1 : 0);
+        inc("[T4] Time <1s", time < 1000 ? 1 : 0);
+        inc("[T5] Time >=1s", time >= 1000 ? 1 : 0);
+        return true;
+    }
+
     public static void updateSpace(Assignment<Request, Enrollment> assignment, Enrollment enrollment, boolean increment) {
         if (enrollment == null || !enrollment.isCourseRequest())
             return;
@@ -732,6 +830,22 @@ public class Test {
     public void run() {
         sLog.info("Input: " + ToolBox.dict2string(model().getExtendedInfo(assignment()), 2));
 
+        if ("true".equals(System.getProperty("shared", "false"))) {
+            iShared = new ConcurrentOnlineSectioning(model(), assignment()) {
+                @Override
+                protected void beforeCommit(Student student) {
+                    for (Request r : student.getRequests())
+                        updateSpace(assignment(), assignment().getValue(r), true);
+                }
+
+                @Override
+                protected void afterCommit(Student student, boolean success) {
+                    for (Request r : student.getRequests())
+                        updateSpace(assignment(), assignment().getValue(r), false);
+                }
+            };
+        }
+
         List<Student> students = new ArrayList<Student>(model().getStudents());
         String sort = System.getProperty("sort", "shuffle");
         if ("shuffle".equals(sort)) {
@@ -762,8 +876,18 @@ public class Test {
             } catch (InterruptedException e) {
             }
             long time = System.currentTimeMillis() - t0;
-            synchronized (iModel) {
-                sLog.info("Progress [" + (time / 60000) + "m]: " + ToolBox.dict2string(model().getExtendedInfo(assignment()), 2));
+            if (iShared != null) {
+                Lock lock = iShared.getLock().readLock();
+                lock.lock();
+                try {
+                    sLog.info("Progress [" + (time / 60000) + "m]: " + ToolBox.dict2string(model().getExtendedInfo(assignment()), 2));
+                } finally {
+                    lock.unlock();
+                }
+            } else {
+                synchronized (iModel) {
+                    sLog.info("Progress [" + (time / 60000) + "m]: " + ToolBox.dict2string(model().getExtendedInfo(assignment()), 2));
+                }
             }
         }
 
@@ -829,6 +953,11 @@ public class Test {
                     (model().getProperties().getPropertyBoolean("StudentWeights.MultiCriteria", true) ? "multi-criteria " : "") +
                     (model().getProperties().getPropertyBoolean("StudentWeights.PriorityWeighting", true) ? "priority" : "equal"));
             ret.put("B&B time limit", model().getProperties().getPropertyInt("Neighbour.BranchAndBoundTimeout", 1000) + " ms");
+            if (iShared != null) {
+                ret.put("Shared model commits", String.valueOf(iShared.getNrCommits()));
+                ret.put("Shared model retries", String.valueOf(iShared.getNrRetries()));
+                ret.put("Shared model validations", String.valueOf(iShared.getNrValidations()));
+            }
             if (iSuggestions) {
                 ret.put("Suggestion time limit", model().getProperties().getPropertyInt("Suggestions.Timeout", 1000) + " ms");
             }
@@ -861,7 +990,7 @@ public class Test {
         PrintWriter pw = new PrintWriter(new FileWriter(file, true));
         if (!ex) {
             pw.println("Input File,Run Time [m],Model,Sort,Over Expected,Not Assigned,Disb. Sections [%],Distance Confs.,Time Confs. [m],"
-                    + "CPU Assignment [ms],Has Suggestions [%],Nbr Suggestions,Acceptance [%],CPU Suggestions [ms]");
+                    + "CPU Assignment [ms],Has Suggestions [%],Nbr Suggestions,Acceptance [%],CPU Suggestions [ms],First Suggestion [ms]");
         }
         pw.print(input.getName() + ",");
         pw.print(df.format(get("[T] Run Time [m]").sum()) + ",");
@@ -881,7 +1010,8 @@ public class Test {
             pw.print(df.format(get("[S] Probability that a class has suggestions [%]").avg()) + ",");
             pw.print(df.format(get("[S] Avg. # of suggestions").avg()) + ",");
             pw.print(df.format(get("[S] Suggestion acceptance rate [%]").avg()) + ",");
-            pw.print(df.format(get("[S] Suggestion CPU Time").avg()));
+            pw.print(df.format(get("[S] Suggestion CPU Time").avg()) + ",");
+            pw.print(df.format(get("[S] Time to first suggestion [ms]").avg()));
         }
         pw.println();
 
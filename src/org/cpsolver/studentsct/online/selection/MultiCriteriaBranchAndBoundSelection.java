@@ -15,6 +15,7 @@ import org.cpsolver.ifs.model.GlobalConstraint;
 import org.cpsolver.ifs.util.DataProperties;
 import org.cpsolver.ifs.util.JProf;
 import org.cpsolver.studentsct.constraint.LinkedSections;
+import org.cpsolver.studentsct.heuristics.selection.EnrollmentOverlapMatrix;
 import org.cpsolver.studentsct.heuristics.selection.OnlineSelection;
 import org.cpsolver.studentsct.heuristics.selection.BranchBoundSelection.BranchBoundNeighbour;
 import org.cpsolver.studentsct.model.Config;
@@ -59,6 +60,7 @@ public class MultiCriteriaBranchAndBoundSelection implements OnlineSectioningSel
     protected SelectionCriterion iComparator = null;
     private boolean iPriorityWeighting = true;
     protected boolean iBranchWhenSelectedHasNoConflict = false;
+    protected boolean iOverlapMatrix = true;
 
     /** Student */
     protected Student iStudent;
@@ -74,6 +76,8 @@ public class MultiCriteriaBranchAndBoundSelection implements OnlineSectioningSel
     protected Enrollment[] iBestAssignment;
     /** Value cache */
     protected HashMap<CourseRequest, List<Enrollment>> iValues;
+    /** Overlaps between the cached values (null when disabled) */
+    protected EnrollmentOverlapMatrix iOverlaps;
 
     private Set<FreeTimeRequest> iRequiredFreeTimes;
     private Hashtable<CourseRequest, Set<Section>> iPreferredSections;
@@ -85,6 +89,7 @@ public class MultiCriteriaBranchAndBoundSelection implements OnlineSectioningSel
         iTimeout = config.getPropertyInt("Neighbour.BranchAndBoundTimeout", iTimeout);
         iPriorityWeighting = config.getPropertyBoolean("StudentWeights.PriorityWeighting", iPriorityWeighting);
         iBranchWhenSelectedHasNoConflict = config.getPropertyBoolean("Students.BranchWhenSelectedHasNoConflict", iBranchWhenSelectedHasNoConflict);
+        iOverlapMatrix = config.getPropertyBoolean("Neighbour.BranchAndBoundOverlapMatrix", iOverlapMatrix);
     }
 
     @Override
@@ -157,6 +162,7 @@ public class MultiCriteriaBranchAndBoundSelection implements OnlineSectioningSel
             iCurrentAssignment[j] = null;
 
         iValues = new HashMap<CourseRequest, List<Enrollment>>();
+        iOverlaps = (iOverlapMatrix ? new EnrollmentOverlapMatrix() : null);
         backTrack(0);
         iT1 = JProf.currentTimeMillis();
         if (iBestAssignment == null)
@@ -199,11 +205,16 @@ public class MultiCriteriaBranchAndBoundSelection implements OnlineSectioningSel
                 return true;
         }
         for (int i = 0; i < iCurrentAssignment.length; i++)
-            if (iCurrentAssignment[i] != null && i != idx && iCurrentAssignment[i].isOverlapping(enrollment))
+            if (iCurrentAssignment[i] != null && i != idx && isOverlapping(iCurrentAssignment[i], enrollment))
                 return true;
         return !isAllowed(idx, enrollment);
     }
 
+    /** True if the two enrollments are overlapping, using the overlap matrix when available */
+    protected boolean isOverlapping(Enrollment e1, Enrollment e2) {
+        return (iOverlaps == null ? e1.isOverlapping(e2) : iOverlaps.isOverlapping(e1, e2));
+    }
+
     /** True if the given request can be assigned */
     public boolean canAssign(Request request, int idx) {
         if (!request.isAlternative() || iCurrentAssignment[idx] != null)
@@ -317,6 +328,8 @@ public class MultiCriteriaBranchAndBoundSelection implements OnlineSectioningSel
             if (values == null) {
                 values = values(courseRequest);
                 iValues.put(courseRequest, values);
+                if (iOverlaps != null)
+                    iOverlaps.register(values);
             }
         } else {
             values = request.computeEnrollments(iAssignment);
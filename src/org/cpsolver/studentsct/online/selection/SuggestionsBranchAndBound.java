@@ -35,7 +35,14 @@ import org.cpsolver.studentsct.online.selection.MultiCriteriaBranchAndBoundSelec
  * possible changes that will be displayed to the student as suggestions. The number
  * of suggestions is limited by Suggestions.MaxSuggestions parameter (defaults to 20).
  * Time is limited by Suggestions.Timeout (defaults to 5000 ms), search depth is limited
- * by Suggestions.MaxDepth parameter (default to 4).
+ * by Suggestions.MaxDepth parameter (default to 4).<br>
+ * <br>
+ * The time limit is soft: when it is reached and no suggestion has been found yet, the search
+ * continues until the first suggestion is found or until Suggestions.HardTimeout is reached
+ * (defaults to Suggestions.Timeout, i.e., the search always stops at the soft limit).
+ * The time is only checked every Suggestions.TimeCheckInterval nodes (defaults to 10). 
+ * Suggestions can be streamed to a {@link SuggestionListener} as they are found, see
+ * {@link SuggestionsBranchAndBound#computeSuggestions(SuggestionListener)}.
  * 
  * @version StudentSct 1.3 (Student Sectioning)<br>
  *          Copyright (C) 2014 Tomas Muller<br>
@@ -67,6 +74,11 @@ public class SuggestionsBranchAndBound {
     private TreeSet<Suggestion> iSuggestions = new TreeSet<Suggestion>();
     private int iMaxDepth = 4;
     private long iTimeout = 5000;
+    private long iHardTimeout = 5000;
+    private int iTimeCheckInterval = 10;
+    private long iNrNodes = 0;
+    private long iFirstSuggestion = -1;
+    private SuggestionListener iListener = null;
     private int iMaxSuggestions = 20;
     private long iT0, iT1;
     private boolean iTimeoutReached = false;
@@ -107,6 +119,8 @@ public class SuggestionsBranchAndBound {
         iAssignment = assignment;
         iMaxDepth = properties.getPropertyInt("Suggestions.MaxDepth", iMaxDepth);
         iTimeout = properties.getPropertyLong("Suggestions.Timeout", iTimeout);
+        iHardTimeout = properties.getPropertyLong("Suggestions.HardTimeout", iTimeout);
+        iTimeCheckInterval = Math.max(1, properties.getPropertyInt("Suggestions.TimeCheckInterval", iTimeCheckInterval));
         iMaxSuggestions = properties.getPropertyInt("Suggestions.MaxSuggestions", iMaxSuggestions);
         iMaxSectionsWithPenalty = maxSectionsWithPenalty;
         iFilter = filter;
@@ -147,6 +161,14 @@ public class SuggestionsBranchAndBound {
         return iTimeoutReached;
     }
 
+    /**
+     * Time needed to find the first suggestion
+     * @return time in milliseconds from the start of the search, -1 if no suggestion has been found
+     */
+    public long getTimeToFirstSuggestion() {
+        return iFirstSuggestion;
+    }
+
     /**
      * Number of possible suggestions visited
      * @return a number of solutions seen
@@ -160,9 +182,21 @@ public class SuggestionsBranchAndBound {
      * @return an ordered set of possible suggestions
      */
     public TreeSet<Suggestion> computeSuggestions() {
+        return computeSuggestions(null);
+    }
+
+    /**
+     * Perform the search, passing each suggestion to the given listener as soon as it is found
+     * @param listener suggestion listener (can be null)
+     * @return an ordered set of possible suggestions
+     */
+    public TreeSet<Suggestion> computeSuggestions(SuggestionListener listener) {
         iT0 = System.currentTimeMillis();
         iTimeoutReached = false;
         iNrSolutionsSeen = 0;
+        iNrNodes = 0;
+        iFirstSuggestion = -1;
+        iListener = listener;
         iSuggestions.clear();
 
         ArrayList<Request> requests2resolve = new ArrayList<Request>();
@@ -198,9 +232,23 @@ public class SuggestionsBranchAndBound {
         backtrack(requests2resolve, altRequests2resolve, 0, iMaxDepth, false);
 
         iT1 = System.currentTimeMillis();
+        iListener = null;
         return iSuggestions;
     }
 
+    /**
+     * Check the time limits (called for each node of the search, the time is only checked every Suggestions.TimeCheckInterval nodes).
+     * The soft limit (Suggestions.Timeout) is reached when there is at least one suggestion, the hard limit (Suggestions.HardTimeout) is
+     * reached regardless of the suggestions found.
+     */
+    protected void checkTimeout() {
+        if (iTimeoutReached || iTimeout <= 0 || (iNrNodes++ % iTimeCheckInterval) != 0)
+            return;
+        long time = System.currentTimeMillis() - iT0;
+        if (time > iTimeout && (!iSuggestions.isEmpty() || time > iHardTimeout))
+            iTimeoutReached = true;
+    }
+
     /**
      * Main branch and bound rutine
      * @param requests2resolve remaining requests to assign
@@ -211,8 +259,7 @@ public class SuggestionsBranchAndBound {
      */
     protected void backtrack(ArrayList<Request> requests2resolve, TreeSet<Request> altRequests2resolve, int idx,
             int depth, boolean alt) {
-        if (!iTimeoutReached && iTimeout > 0 && System.currentTimeMillis() - iT0 > iTimeout)
-            iTimeoutReached = true;
+        checkTimeout();
         int nrUnassigned = requests2resolve.size() - idx;
         if (nrUnassigned == 0) {
             List<FreeTimeRequest> okFreeTimes = new ArrayList<FreeTimeRequest>();
@@ -248,6 +295,10 @@ public class SuggestionsBranchAndBound {
             }
             s.init();
             iSuggestions.add(s);
+            if (iFirstSuggestion < 0)
+                iFirstSuggestion = System.currentTimeMillis() - iT0;
+            if (iListener != null)
+                iListener.suggestionFound(s);
             if (iSuggestions.size() > iMaxSuggestions)
                 iSuggestions.remove(iSuggestions.last());
             for (FreeTimeRequest ft : okFreeTimes)
@@ -804,4 +855,17 @@ public class SuggestionsBranchAndBound {
         public boolean match(Course course, Section section);
     }
 
+    /**
+     * Suggestion listener, it is notified about each suggestion as soon as the suggestion is found.
+     * A suggestion that has been passed to the listener may still be dropped from the final
+     * set of suggestions when better suggestions are found later on.
+     */
+    public static interface SuggestionListener {
+        /**
+         * A new suggestion has been found
+         * @param suggestion found suggestion (its enrollments are already computed, see {@link Suggestion#getEnrollments()})
+         */
+        public void suggestionFound(Suggestion suggestion);
+    }
+
 }